@@ -0,0 +1,553 @@
+package com.example.demo.batch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.DefaultJobKeyGenerator;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobKeyGenerator;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.NoSuchJobException;
+import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
+import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.JobRestartException;
+import org.springframework.batch.core.repository.dao.NoSuchObjectException;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.util.Assert;
+
+/**
+ * JobRepository y JobExplorer en memoria para sustituir a MapJobRepositoryFactoryBean en
+ * procesos de larga duración. Cada JobInstance tiene un cerrojo de entre stripes (por
+ * nombre del trabajo y clave de sus parámetros), de modo que los lanzamientos de
+ * instancias distintas no se bloquean entre sí y los de la misma no se pisan; las
+ * StepExecution se actualizan cada una por separado, sin cerrojo de la instancia, para
+ * que las particiones no se esperen. Lo guardado son copias que no se modifican
+ * (copy-on-write): cada actualización guarda una copia nueva con una copia superficial
+ * del ExecutionContext, sin serializarlo, y las lecturas devuelven copias. De cada
+ * trabajo se conservan las maxInstances instancias terminadas más recientes y, con
+ * maxAge (ms) mayor que 0, solo las terminadas hace menos de maxAge; las instancias
+ * descartadas ya no se pueden reiniciar. Las que tienen alguna ejecución en marcha
+ * nunca se descartan.
+ */
+public class InMemoryJobRepository implements JobRepository, JobExplorer, InitializingBean {
+	private static final Logger log = LoggerFactory.getLogger(InMemoryJobRepository.class);
+
+	private int maxInstances = 100;
+	private long maxAge;
+	private JobKeyGenerator<JobParameters> jobKeyGenerator = new DefaultJobKeyGenerator();
+	private Object[] locks = locks(64);
+
+	private final Map<String, Instance> instancesByKey = new ConcurrentHashMap<>();
+	private final Map<Long, Instance> instances = new ConcurrentHashMap<>();
+	private final Map<Long, Execution> executions = new ConcurrentHashMap<>();
+	private final Map<String, Deque<Instance>> finished = new ConcurrentHashMap<>();
+	private final AtomicLong instanceIds = new AtomicLong();
+	private final AtomicLong executionIds = new AtomicLong();
+	private final AtomicLong stepExecutionIds = new AtomicLong();
+
+	// JobInstance y sus ejecuciones (executions y ended con lock)
+	private static final class Instance {
+		final JobInstance jobInstance;
+		final String key;
+		final Object lock;
+		final List<Execution> executions = new ArrayList<>();
+		long ended;
+		boolean finished;
+
+		Instance(JobInstance jobInstance, String key, Object lock) {
+			this.jobInstance = jobInstance;
+			this.key = key;
+			this.lock = lock;
+		}
+	}
+
+	// Copia guardada de una JobExecution (sin pasos) y de sus StepExecution, por id
+	private static final class Execution {
+		final Instance instance;
+		volatile JobExecution snapshot;
+		final Map<Long, StepExecution> steps = new ConcurrentSkipListMap<>();
+
+		Execution(Instance instance, JobExecution snapshot) {
+			this.instance = instance;
+			this.snapshot = snapshot;
+		}
+	}
+
+	private static Object[] locks(int stripes) {
+		Object[] rslt = new Object[stripes];
+		for (int i = 0; i < stripes; i++)
+			rslt[i] = new Object();
+		return rslt;
+	}
+
+	private String key(String jobName, JobParameters jobParameters) {
+		return jobName + "|" + jobKeyGenerator.generateKey(jobParameters);
+	}
+
+	private Object lock(String key) {
+		return locks[(key.hashCode() & Integer.MAX_VALUE) % locks.length];
+	}
+
+	// JobRepository
+
+	@Override
+	public boolean isJobInstanceExists(String jobName, JobParameters jobParameters) {
+		return instancesByKey.containsKey(key(jobName, jobParameters));
+	}
+
+	@Override
+	public JobInstance createJobInstance(String jobName, JobParameters jobParameters) {
+		Assert.notNull(jobName, "Job name must not be null.");
+		Assert.notNull(jobParameters, "JobParameters must not be null.");
+		String key = key(jobName, jobParameters);
+		synchronized (lock(key)) {
+			Assert.state(!instancesByKey.containsKey(key), "JobInstance must not already exist");
+			return newInstance(jobName, key).jobInstance;
+		}
+	}
+
+	// Con el cerrojo de key
+	private Instance newInstance(String jobName, String key) {
+		JobInstance jobInstance = new JobInstance(instanceIds.incrementAndGet(), jobName);
+		jobInstance.incrementVersion();
+		Instance instance = new Instance(jobInstance, key, lock(key));
+		instancesByKey.put(key, instance);
+		instances.put(jobInstance.getId(), instance);
+		return instance;
+	}
+
+	@Override
+	public JobExecution createJobExecution(JobInstance jobInstance, JobParameters jobParameters,
+			String jobConfigurationLocation) {
+		Assert.notNull(jobInstance, "A JobInstance is required to associate the JobExecution with");
+		Assert.notNull(jobParameters, "A JobParameters object is required to create a JobExecution");
+		Instance instance = instances.get(jobInstance.getId());
+		Assert.state(instance != null, "JobInstance " + jobInstance.getId() + " not found");
+		synchronized (instance.lock) {
+			JobExecution jobExecution = new JobExecution(jobInstance, jobParameters, jobConfigurationLocation);
+			save(instance, jobExecution, new ExecutionContext());
+			return jobExecution;
+		}
+	}
+
+	@Override
+	public JobExecution createJobExecution(String jobName, JobParameters jobParameters)
+			throws JobExecutionAlreadyRunningException, JobRestartException, JobInstanceAlreadyCompleteException {
+		Assert.notNull(jobName, "Job name must not be null.");
+		Assert.notNull(jobParameters, "JobParameters must not be null.");
+		String key = key(jobName, jobParameters);
+		synchronized (lock(key)) {
+			Instance instance = instancesByKey.get(key);
+			ExecutionContext executionContext;
+			if (instance != null) {
+				for (Execution execution : instance.executions) {
+					JobExecution jobExecution = execution.snapshot;
+					// Recién creada (STARTING, aún sin startTime) también cuenta como en marcha
+					if (jobExecution.isRunning() || jobExecution.isStopping()
+							|| jobExecution.getStatus() == BatchStatus.STARTING)
+						throw new JobExecutionAlreadyRunningException(
+								"A job execution for this job is already running: " + instance.jobInstance);
+					BatchStatus status = jobExecution.getStatus();
+					if (status == BatchStatus.UNKNOWN)
+						throw new JobRestartException("Cannot restart job from UNKNOWN status. "
+								+ "The last execution ended with a failure that could not be rolled back, "
+								+ "so it may be dangerous to proceed. Manual intervention is probably necessary.");
+					if (!jobExecution.getJobParameters().isEmpty()
+							&& (status == BatchStatus.COMPLETED || status == BatchStatus.ABANDONED))
+						throw new JobInstanceAlreadyCompleteException(
+								"A job instance already exists and is complete for parameters=" + jobParameters
+										+ ".  If you want to run this job again, change the parameters.");
+				}
+				executionContext = new ExecutionContext(last(instance).snapshot.getExecutionContext());
+			} else {
+				instance = newInstance(jobName, key);
+				executionContext = new ExecutionContext();
+			}
+			JobExecution jobExecution = new JobExecution(instance.jobInstance, jobParameters, null);
+			save(instance, jobExecution, executionContext);
+			return jobExecution;
+		}
+	}
+
+	// Con el cerrojo de la instancia
+	private void save(Instance instance, JobExecution jobExecution, ExecutionContext executionContext) {
+		jobExecution.setExecutionContext(executionContext);
+		jobExecution.setLastUpdated(new Date());
+		jobExecution.setId(executionIds.incrementAndGet());
+		jobExecution.incrementVersion();
+		Execution execution = new Execution(instance, copy(jobExecution, new ExecutionContext(executionContext)));
+		executions.put(jobExecution.getId(), execution);
+		instance.executions.add(execution);
+		instance.finished = false;
+	}
+
+	// La más reciente por fecha de creación (con la instancia bloqueada)
+	private static Execution last(Instance instance) {
+		return instance.executions.stream().max(Comparator
+				.comparing((Execution execution) -> execution.snapshot.getCreateTime())
+				.thenComparing(execution -> execution.snapshot.getId())).orElse(null);
+	}
+
+	@Override
+	public void update(JobExecution jobExecution) {
+		Assert.notNull(jobExecution, "JobExecution cannot be null.");
+		Assert.notNull(jobExecution.getJobId(), "JobExecution must have a Job ID set.");
+		Assert.notNull(jobExecution.getId(), "JobExecution must be already saved (have an id assigned).");
+		Execution execution = execution(jobExecution.getId());
+		Instance instance = execution.instance;
+		boolean ended;
+		synchronized (instance.lock) {
+			jobExecution.setLastUpdated(new Date());
+			JobExecution stored = execution.snapshot;
+			// Un stop desde otra copia (JobOperator) llega a la ejecución en marcha
+			if (!stored.getVersion().equals(jobExecution.getVersion())) {
+				jobExecution.upgradeStatus(stored.getStatus());
+				jobExecution.setVersion(stored.getVersion());
+			}
+			jobExecution.incrementVersion();
+			execution.snapshot = copy(jobExecution, stored.getExecutionContext());
+			ended = jobExecution.getEndTime() != null && !jobExecution.isRunning();
+			if (ended) {
+				instance.ended = jobExecution.getEndTime().getTime();
+				ended = !instance.finished;
+				instance.finished = true;
+			}
+		}
+		if (ended)
+			retire(instance);
+	}
+
+	@Override
+	public void updateExecutionContext(JobExecution jobExecution) {
+		Execution execution = execution(jobExecution.getId());
+		synchronized (execution.instance.lock) {
+			execution.snapshot = copy(execution.snapshot, new ExecutionContext(jobExecution.getExecutionContext()));
+		}
+	}
+
+	private Execution execution(Long id) {
+		Execution execution = executions.get(id);
+		if (execution == null)
+			throw new NoSuchObjectException("Invalid JobExecution, ID " + id + " not found.");
+		return execution;
+	}
+
+	@Override
+	public void add(StepExecution stepExecution) {
+		validate(stepExecution);
+		Assert.isNull(stepExecution.getId(),
+				"to-be-saved (not updated) StepExecution can't already have an id assigned");
+		Assert.isNull(stepExecution.getVersion(),
+				"to-be-saved (not updated) StepExecution can't already have a version assigned");
+		Execution execution = execution(stepExecution.getJobExecutionId());
+		stepExecution.setLastUpdated(new Date());
+		stepExecution.setId(stepExecutionIds.incrementAndGet());
+		stepExecution.incrementVersion();
+		execution.steps.put(stepExecution.getId(),
+				copy(stepExecution, null, new ExecutionContext(stepExecution.getExecutionContext())));
+	}
+
+	@Override
+	public void addAll(Collection<StepExecution> stepExecutions) {
+		Assert.notNull(stepExecutions, "Attempt to save a null collection of step executions");
+		for (StepExecution stepExecution : stepExecutions)
+			add(stepExecution);
+	}
+
+	// Solo bloquea esta StepExecution: las particiones se actualizan a la vez
+	@Override
+	public void update(StepExecution stepExecution) {
+		validate(stepExecution);
+		Assert.notNull(stepExecution.getId(), "StepExecution must already be saved (have an id assigned)");
+		Execution execution = execution(stepExecution.getJobExecutionId());
+		stepExecution.setLastUpdated(new Date());
+		execution.steps.compute(stepExecution.getId(), (id, stored) -> {
+			Assert.state(stored != null, "StepExecution " + id + " not found");
+			if (!stored.getVersion().equals(stepExecution.getVersion()))
+				throw new OptimisticLockingFailureException("Attempt to update step execution id=" + id
+						+ " with wrong version (" + stepExecution.getVersion() + "), where current version is "
+						+ stored.getVersion());
+			stepExecution.incrementVersion();
+			return copy(stepExecution, null, stored.getExecutionContext());
+		});
+		if (execution.snapshot.isStopping()) {
+			log.info("La ejecución del trabajo se está parando: " + stepExecution.getStepName() + " terminará");
+			stepExecution.setTerminateOnly();
+		}
+	}
+
+	@Override
+	public void updateExecutionContext(StepExecution stepExecution) {
+		validate(stepExecution);
+		Assert.notNull(stepExecution.getId(), "StepExecution must already be saved (have an id assigned)");
+		Execution execution = execution(stepExecution.getJobExecutionId());
+		ExecutionContext executionContext = new ExecutionContext(stepExecution.getExecutionContext());
+		execution.steps.computeIfPresent(stepExecution.getId(),
+				(id, stored) -> copy(stored, null, executionContext));
+	}
+
+	private static void validate(StepExecution stepExecution) {
+		Assert.notNull(stepExecution, "StepExecution cannot be null.");
+		Assert.notNull(stepExecution.getStepName(), "StepExecution's step name cannot be null.");
+		Assert.notNull(stepExecution.getJobExecutionId(), "StepExecution must belong to persisted JobExecution");
+	}
+
+	@Override
+	public StepExecution getLastStepExecution(JobInstance jobInstance, String stepName) {
+		StepExecution latest = null;
+		for (JobExecution jobExecution : getJobExecutions(jobInstance))
+			for (StepExecution stepExecution : jobExecution.getStepExecutions())
+				if (stepName.equals(stepExecution.getStepName()) && (latest == null
+						|| time(stepExecution) > time(latest)
+						|| time(stepExecution) == time(latest) && stepExecution.getId() > latest.getId()))
+					latest = stepExecution;
+		return latest;
+	}
+
+	private static long time(StepExecution stepExecution) {
+		return stepExecution.getStartTime() == null ? 0 : stepExecution.getStartTime().getTime();
+	}
+
+	@Override
+	public int getStepExecutionCount(JobInstance jobInstance, String stepName) {
+		int count = 0;
+		for (Execution execution : executions(jobInstance))
+			for (StepExecution stepExecution : execution.steps.values())
+				if (stepName.equals(stepExecution.getStepName()))
+					count++;
+		return count;
+	}
+
+	@Override
+	public JobExecution getLastJobExecution(String jobName, JobParameters jobParameters) {
+		Instance instance = instancesByKey.get(key(jobName, jobParameters));
+		return instance == null ? null : getLastJobExecution(instance.jobInstance);
+	}
+
+	// Retención: descarta las instancias terminadas que sobran o que han caducado
+
+	private void retire(Instance instance) {
+		String jobName = instance.jobInstance.getJobName();
+		Deque<Instance> queue = finished.computeIfAbsent(jobName, key -> new ArrayDeque<>());
+		List<Instance> evicted = new ArrayList<>();
+		synchronized (queue) {
+			queue.remove(instance);
+			queue.addLast(instance);
+			long oldest = maxAge > 0 ? System.currentTimeMillis() - maxAge : Long.MIN_VALUE;
+			while (!queue.isEmpty() && (queue.size() > maxInstances || queue.peekFirst().ended < oldest))
+				evicted.add(queue.pollFirst());
+		}
+		int count = 0;
+		for (Instance candidate : evicted)
+			synchronized (candidate.lock) {
+				// Reiniciada mientras tanto: vuelve a la cola cuando termine
+				if (!candidate.finished)
+					continue;
+				instancesByKey.remove(candidate.key, candidate);
+				instances.remove(candidate.jobInstance.getId());
+				for (Execution execution : candidate.executions)
+					executions.remove(execution.snapshot.getId());
+				count++;
+			}
+		if (count > 0 && log.isDebugEnabled())
+			log.debug(jobName + ": " + count + " instancias terminadas descartadas");
+	}
+
+	// JobExplorer
+
+	@Override
+	public List<JobInstance> getJobInstances(String jobName, int start, int count) {
+		return instances.values().stream()
+				.map(instance -> instance.jobInstance)
+				.filter(jobInstance -> jobInstance.getJobName().equals(jobName))
+				.sorted(Comparator.comparing(JobInstance::getId).reversed())
+				.skip(start).limit(count)
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public JobInstance getLastJobInstance(String jobName) {
+		List<JobInstance> last = getJobInstances(jobName, 0, 1);
+		return last.isEmpty() ? null : last.get(0);
+	}
+
+	@Override
+	public JobExecution getJobExecution(Long executionId) {
+		if (executionId == null)
+			return null;
+		Execution execution = executions.get(executionId);
+		return execution == null ? null : read(execution);
+	}
+
+	@Override
+	public StepExecution getStepExecution(Long jobExecutionId, Long stepExecutionId) {
+		JobExecution jobExecution = getJobExecution(jobExecutionId);
+		if (jobExecution == null)
+			return null;
+		for (StepExecution stepExecution : jobExecution.getStepExecutions())
+			if (stepExecution.getId().equals(stepExecutionId))
+				return stepExecution;
+		return null;
+	}
+
+	@Override
+	public JobInstance getJobInstance(Long instanceId) {
+		Instance instance = instanceId == null ? null : instances.get(instanceId);
+		return instance == null ? null : instance.jobInstance;
+	}
+
+	@Override
+	public List<JobExecution> getJobExecutions(JobInstance jobInstance) {
+		return executions(jobInstance).stream()
+				.sorted(Comparator.comparing((Execution execution) -> execution.snapshot.getId()).reversed())
+				.map(InMemoryJobRepository::read)
+				.collect(Collectors.toList());
+	}
+
+	private List<Execution> executions(JobInstance jobInstance) {
+		Instance instance = jobInstance == null ? null : instances.get(jobInstance.getId());
+		if (instance == null)
+			return new ArrayList<>();
+		synchronized (instance.lock) {
+			return new ArrayList<>(instance.executions);
+		}
+	}
+
+	@Override
+	public JobExecution getLastJobExecution(JobInstance jobInstance) {
+		Instance instance = jobInstance == null ? null : instances.get(jobInstance.getId());
+		if (instance == null)
+			return null;
+		Execution last;
+		synchronized (instance.lock) {
+			last = last(instance);
+		}
+		return last == null ? null : read(last);
+	}
+
+	@Override
+	public Set<JobExecution> findRunningJobExecutions(String jobName) {
+		Set<JobExecution> rslt = new HashSet<>();
+		for (Execution execution : executions.values()) {
+			JobExecution snapshot = execution.snapshot;
+			if (snapshot.getJobInstance().getJobName().equals(jobName) && snapshot.isRunning())
+				rslt.add(read(execution));
+		}
+		return rslt;
+	}
+
+	@Override
+	public List<String> getJobNames() {
+		Set<String> names = new TreeSet<>();
+		for (Instance instance : instances.values())
+			names.add(instance.jobInstance.getJobName());
+		return new ArrayList<>(names);
+	}
+
+	// Admite * como comodín, como el explorador de los DAO en memoria
+	@Override
+	public List<JobInstance> findJobInstancesByJobName(String jobName, int start, int count) {
+		String pattern = jobName.replaceAll("\\*", ".*");
+		return instances.values().stream()
+				.map(instance -> instance.jobInstance)
+				.filter(jobInstance -> jobInstance.getJobName().matches(pattern))
+				.sorted(Comparator.comparing(JobInstance::getId).reversed())
+				.skip(start).limit(count)
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public int getJobInstanceCount(String jobName) throws NoSuchJobException {
+		int count = 0;
+		for (Instance instance : instances.values())
+			if (instance.jobInstance.getJobName().equals(jobName))
+				count++;
+		if (count == 0)
+			throw new NoSuchJobException("No job instances for job name " + jobName + " were found");
+		return count;
+	}
+
+	// Copias
+
+	// JobExecution con sus StepExecution y copias de los ExecutionContext, para quien lee
+	private static JobExecution read(Execution execution) {
+		JobExecution snapshot = execution.snapshot;
+		JobExecution rslt = copy(snapshot, new ExecutionContext(snapshot.getExecutionContext()));
+		for (StepExecution stepExecution : execution.steps.values())
+			copy(stepExecution, rslt, new ExecutionContext(stepExecution.getExecutionContext()));
+		return rslt;
+	}
+
+	private static JobExecution copy(JobExecution source, ExecutionContext executionContext) {
+		JobExecution rslt = new JobExecution(source.getJobInstance(), source.getId(), source.getJobParameters(),
+				source.getJobConfigurationName());
+		rslt.setVersion(source.getVersion());
+		rslt.setStatus(source.getStatus());
+		rslt.setCreateTime(source.getCreateTime());
+		rslt.setStartTime(source.getStartTime());
+		rslt.setEndTime(source.getEndTime());
+		rslt.setLastUpdated(source.getLastUpdated());
+		rslt.setExitStatus(source.getExitStatus());
+		rslt.setExecutionContext(executionContext);
+		return rslt;
+	}
+
+	// Con jobExecution la copia se añade a sus pasos; sin ella queda suelta (la guardada)
+	private static StepExecution copy(StepExecution source, JobExecution jobExecution,
+			ExecutionContext executionContext) {
+		StepExecution rslt = jobExecution == null ? new StepExecution(source.getStepName(), null)
+				: new StepExecution(source.getStepName(), jobExecution, source.getId());
+		rslt.setId(source.getId());
+		rslt.setVersion(source.getVersion());
+		rslt.setStatus(source.getStatus());
+		rslt.setReadCount(source.getReadCount());
+		rslt.setWriteCount(source.getWriteCount());
+		rslt.setFilterCount(source.getFilterCount());
+		rslt.setCommitCount(source.getCommitCount());
+		rslt.setRollbackCount(source.getRollbackCount());
+		rslt.setReadSkipCount(source.getReadSkipCount());
+		rslt.setProcessSkipCount(source.getProcessSkipCount());
+		rslt.setWriteSkipCount(source.getWriteSkipCount());
+		rslt.setStartTime(source.getStartTime());
+		rslt.setEndTime(source.getEndTime());
+		rslt.setLastUpdated(source.getLastUpdated());
+		rslt.setExitStatus(source.getExitStatus());
+		rslt.setExecutionContext(executionContext);
+		if (source.isTerminateOnly())
+			rslt.setTerminateOnly();
+		return rslt;
+	}
+
+	public void setMaxInstances(int maxInstances) { this.maxInstances = maxInstances; }
+	public void setMaxAge(long maxAge) { this.maxAge = maxAge; }
+	public void setStripes(int stripes) { this.locks = locks(stripes); }
+	public void setJobKeyGenerator(JobKeyGenerator<JobParameters> jobKeyGenerator) { this.jobKeyGenerator = jobKeyGenerator; }
+	public void afterPropertiesSet() throws Exception {
+		Assert.isTrue(maxInstances > 0, "maxInstances must be positive");
+		Assert.isTrue(maxAge >= 0, "maxAge must not be negative");
+		Assert.isTrue(locks.length > 0, "stripes must be positive");
+		Assert.notNull(jobKeyGenerator, "jobKeyGenerator must be set");
+	}
+}
@@ -1,5 +1,7 @@
 package com.example.demo.batch;
 
+import java.util.function.Function;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.ItemProcessor;
@@ -15,11 +17,23 @@ public class PersonaItemProcessor implements ItemProcessor<PersonaDTO, Persona>
 	
 	@Override
 	public Persona process(PersonaDTO item) throws Exception {	
-		if(item.getId() % 2 == 0 || "Male".equals(item.getSexo())) 
+		if(filterReason(item) != null) 
 			return null;
 		Persona rslt = new Persona(item.getId(), item.getApellidos() + ", " + item.getNombre(), 
 				item.getCorreo(), item.getIp());
 		log.info("Procesando: " + item);
 		return rslt;
 	}
+
+	// Motivo por el que process descarta el elemento ("id" o "sexo"), null si no lo descarta
+	public static final Function<Object, String> FILTER_REASONS = item -> item instanceof PersonaDTO
+			? filterReason((PersonaDTO) item) : null;
+
+	public static String filterReason(PersonaDTO item) {
+		if(item.getId() % 2 == 0)
+			return "id";
+		if("Male".equals(item.getSexo()))
+			return "sexo";
+		return null;
+	}
 }
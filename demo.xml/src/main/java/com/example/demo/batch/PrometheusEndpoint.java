@@ -0,0 +1,113 @@
+package com.example.demo.batch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.util.Assert;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+
+/**
+ * Sirve en http://host:port/path las métricas del PrometheusMeterRegistry en el formato
+ * de texto de Prometheus, con el HttpServer del JDK (la aplicación no es web). Al arrancar
+ * añade el registro a Metrics.globalRegistry para publicar también las métricas propias
+ * de Spring Batch. Sus hilos son daemon: no impide que la aplicación termine al acabar
+ * el trabajo. Con enabled a false no arranca.
+ */
+public class PrometheusEndpoint implements SmartLifecycle, InitializingBean {
+	private static final Logger log = LoggerFactory.getLogger(PrometheusEndpoint.class);
+
+	private PrometheusMeterRegistry registry;
+	private int port = 9464;
+	private String path = "/metrics";
+	private boolean enabled = true;
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	@Override
+	public void start() {
+		Metrics.addRegistry(registry);
+		executor = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "metrics-http");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// El hilo dispatcher del HttpServer hereda el carácter daemon del que lo arranca
+		AtomicReference<Exception> error = new AtomicReference<>();
+		Thread starter = new Thread(() -> {
+			try {
+				server = HttpServer.create(new InetSocketAddress(port), 0);
+				server.createContext(path, this::scrape);
+				server.setExecutor(executor);
+				server.start();
+			} catch (IOException e) {
+				error.set(e);
+			}
+		}, "metrics-start");
+		starter.setDaemon(true);
+		starter.start();
+		try {
+			starter.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (error.get() != null)
+			throw new IllegalStateException("No se puede abrir el puerto de métricas " + port, error.get());
+		log.info("Métricas en http://localhost:{}{}", server.getAddress().getPort(), path);
+	}
+
+	private void scrape(HttpExchange exchange) throws IOException {
+		byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	@Override
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+			server = null;
+		}
+		if (executor != null)
+			executor.shutdownNow();
+		Metrics.removeRegistry(registry);
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return enabled;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return server != null;
+	}
+
+	public int getPort() { return server == null ? port : server.getAddress().getPort(); }
+
+	public void setMeterRegistry(PrometheusMeterRegistry registry) { this.registry = registry; }
+	public void setPort(int port) { this.port = port; }
+	public void setPath(String path) { this.path = path; }
+	public void setEnabled(boolean enabled) { this.enabled = enabled; }
+	public void afterPropertiesSet() throws Exception {
+		Assert.isTrue(!enabled || registry != null, "meterRegistry must be set");
+		Assert.isTrue(path.startsWith("/"), "path must start with /");
+	}
+}
@@ -0,0 +1,139 @@
+package com.example.demo.bench;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.database.BeanPropertyItemSqlParameterSourceProvider;
+import org.springframework.batch.item.database.JdbcBatchItemWriter;
+import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.batch.PersonaJdbcItemWriter;
+import com.example.demo.model.Persona;
+
+/**
+ * personaDBItemWriter contra HSQLDB en memoria: una operación es un chunk
+ * escrito y confirmado en su propia transacción. Compara el JdbcBatchItemWriter
+ * original con los modos de PersonaJdbcItemWriter (lotes JDBC de 100).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g", "-Dlogback.configurationFile=logback-jmh.xml" })
+public class JdbcWriterBenchmark {
+	@Param({ "10000", "1000000" })
+	private int rows;
+	@Param({ "100", "10000" })
+	private int chunk;
+
+	private Persona[] items;
+	private int next;
+	private JdbcTemplate jdbcTemplate;
+	private TransactionTemplate transactionTemplate;
+	private JdbcBatchItemWriter<Persona> beanPropertyWriter;
+	private PersonaJdbcItemWriter insertWriter;
+	private PersonaJdbcItemWriter upsertWriter;
+	private PersonaJdbcItemWriter bulkWriter;
+
+	@Setup
+	public void setup() throws Exception {
+		items = PersonasData.personas(rows);
+		SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+				"jdbc:hsqldb:mem:bench;shutdown=true", "sa", "", true);
+		dataSource.setAutoCommit(false);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("DROP TABLE personas IF EXISTS");
+		jdbcTemplate.execute("CREATE TABLE personas (id BIGINT IDENTITY NOT NULL PRIMARY KEY, "
+				+ "nombre VARCHAR(250), correo VARCHAR(250), ip VARCHAR(20))");
+		jdbcTemplate.execute("DROP TABLE personas_stage IF EXISTS");
+		jdbcTemplate.execute("CREATE GLOBAL TEMPORARY TABLE personas_stage (id BIGINT NOT NULL PRIMARY KEY, "
+				+ "nombre VARCHAR(250), correo VARCHAR(250), ip VARCHAR(20)) ON COMMIT PRESERVE ROWS");
+		transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		beanPropertyWriter = new JdbcBatchItemWriterBuilder<Persona>()
+				.itemSqlParameterSourceProvider(new BeanPropertyItemSqlParameterSourceProvider<>())
+				.sql("INSERT INTO personas VALUES (:id,:nombre,:correo,:ip)")
+				.dataSource(dataSource)
+				.build();
+		beanPropertyWriter.afterPropertiesSet();
+		insertWriter = writer(dataSource, PersonaJdbcItemWriter.Mode.INSERT);
+		upsertWriter = writer(dataSource, PersonaJdbcItemWriter.Mode.UPSERT);
+		bulkWriter = writer(dataSource, PersonaJdbcItemWriter.Mode.BULK);
+	}
+
+	private static PersonaJdbcItemWriter writer(DataSource dataSource, PersonaJdbcItemWriter.Mode mode)
+			throws Exception {
+		PersonaJdbcItemWriter writer = new PersonaJdbcItemWriter();
+		writer.setDataSource(dataSource);
+		writer.setMode(mode);
+		writer.setBatchSize(100);
+		writer.afterPropertiesSet();
+		return writer;
+	}
+
+	@Setup(Level.Iteration)
+	public void truncate() {
+		transactionTemplate.execute(status -> jdbcTemplate.update("TRUNCATE TABLE personas"));
+		next = 0;
+	}
+
+	protected List<Persona> nextChunk() {
+		if (next + chunk > items.length)
+			truncate();
+		List<Persona> rslt = Arrays.asList(items).subList(next, next + chunk);
+		next += chunk;
+		return rslt;
+	}
+
+	protected int write(ItemWriter<Persona> writer) {
+		List<Persona> items = nextChunk();
+		return transactionTemplate.execute(status -> {
+			try {
+				writer.write(items);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			return items.size();
+		});
+	}
+
+	@Benchmark
+	public int beanPropertyInsert() {
+		return write(beanPropertyWriter);
+	}
+
+	@Benchmark
+	public int preparedStatementInsert() {
+		return write(insertWriter);
+	}
+
+	@Benchmark
+	public int mergeUpsert() {
+		return write(upsertWriter);
+	}
+
+	@Benchmark
+	public int bulkMerge() {
+		return write(bulkWriter);
+	}
+}
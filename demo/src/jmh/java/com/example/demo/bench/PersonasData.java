@@ -0,0 +1,92 @@
+package com.example.demo.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import com.example.demo.model.Persona;
+import com.example.demo.model.PersonaDTO;
+
+/**
+ * Datos sintéticos con el formato de personas-*.csv y Personas.xml.
+ */
+public final class PersonasData {
+	public static final String HEADER = "id,first_name,last_name,email,gender,ip_address";
+	public static final String[] NAMES = { "id", "nombre", "apellidos", "correo", "sexo", "ip" };
+
+	private static final String[] NOMBRES = { "Brucie", "Tilda", "Blanca", "Donielle", "Lianna", "Dalila", "Andie",
+			"Findley", "Levin", "Izaak", "Farris", "Morley", "Lorie", "Mitzi", "Yardley", "Timmie" };
+	private static final String[] APELLIDOS = { "Humphrys", "Jakubovits", "Huck", "Guinn", "Pickvance", "Bigglestone",
+			"Wetherell", "Artz", "Franzewitch", "Warre", "Couche", "Dary", "Long", "Hodgets", "Osband", "De Goey" };
+	private static final String[] DOMINIOS = { "t-online.de", "imgur.com", "apache.org", "dropbox.com",
+			"bloglines.com", "yolasite.com", "rakuten.co.jp", "jigsy.com", "amazonaws.com", "archive.org" };
+
+	private PersonasData() { }
+
+	public static PersonaDTO[] dtos(int rows) {
+		Random random = new Random(rows);
+		PersonaDTO[] rslt = new PersonaDTO[rows];
+		for (int i = 0; i < rows; i++) {
+			String nombre = NOMBRES[random.nextInt(NOMBRES.length)];
+			String apellidos = APELLIDOS[random.nextInt(APELLIDOS.length)];
+			String correo = Character.toLowerCase(nombre.charAt(0)) + apellidos.toLowerCase().replace(" ", "")
+					+ Integer.toString(i, 36) + "@" + DOMINIOS[random.nextInt(DOMINIOS.length)];
+			String ip = random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256) + "."
+					+ random.nextInt(256);
+			rslt[i] = new PersonaDTO(i + 1, nombre, apellidos, correo, random.nextBoolean() ? "Male" : "Female", ip);
+		}
+		return rslt;
+	}
+
+	public static Persona[] personas(int rows) {
+		PersonaDTO[] dtos = dtos(rows);
+		Persona[] rslt = new Persona[rows];
+		for (int i = 0; i < rows; i++) {
+			PersonaDTO dto = dtos[i];
+			rslt[i] = new Persona(dto.getId(), dto.getApellidos() + ", " + dto.getNombre(), dto.getCorreo(),
+					dto.getIp());
+		}
+		return rslt;
+	}
+
+	public static String line(PersonaDTO dto) {
+		return dto.getId() + "," + dto.getNombre() + "," + dto.getApellidos() + "," + dto.getCorreo() + ","
+				+ dto.getSexo() + "," + dto.getIp();
+	}
+
+	public static String[] lines(int rows) {
+		PersonaDTO[] dtos = dtos(rows);
+		String[] rslt = new String[rows];
+		for (int i = 0; i < rows; i++)
+			rslt[i] = line(dtos[i]);
+		return rslt;
+	}
+
+	public static Path writeCsv(Path file, int rows) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			out.write(HEADER);
+			out.newLine();
+			for (PersonaDTO dto : dtos(rows)) {
+				out.write(line(dto));
+				out.newLine();
+			}
+		}
+		return file;
+	}
+
+	public static Path writeXml(Path file, int rows) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			out.write("<?xml version='1.0' encoding='UTF-8'?>\n<Personas>\n");
+			for (PersonaDTO dto : dtos(rows)) {
+				out.write("<Persona><id>" + dto.getId() + "</id><nombre>" + dto.getNombre() + "</nombre><apellidos>"
+						+ dto.getApellidos() + "</apellidos><correo>" + dto.getCorreo() + "</correo><sexo>"
+						+ dto.getSexo() + "</sexo><ip>" + dto.getIp() + "</ip></Persona>");
+			}
+			out.write("\n</Personas>\n");
+		}
+		return file;
+	}
+}
@@ -0,0 +1,79 @@
+package com.example.demo.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demo.batch.ItemAuditLog;
+import com.example.demo.batch.ItemProcessorException;
+import com.example.demo.batch.PersonaItemProcessor;
+import com.example.demo.model.Persona;
+import com.example.demo.model.PersonaDTO;
+
+/**
+ * PersonaItemProcessor.process, incluidos los filtros y, con audit, la auditoría de cada
+ * elemento (en un directorio temporal).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g", "-Dlogback.configurationFile=logback-jmh.xml" })
+public class ProcessBenchmark {
+	@Param({ "10000", "1000000" })
+	private int rows;
+	@Param({ "false", "true" })
+	private boolean audit;
+
+	private PersonaDTO[] items;
+	private int next;
+	private PersonaItemProcessor processor;
+	private ItemAuditLog auditLog;
+
+	@Setup
+	public void setup() throws Exception {
+		items = PersonasData.dtos(rows);
+		processor = new PersonaItemProcessor();
+		if (audit) {
+			auditLog = new ItemAuditLog();
+			auditLog.setDirectory(Files.createTempDirectory("audit"));
+			auditLog.afterPropertiesSet();
+			processor.setAuditLog(auditLog);
+		}
+		// Agota los errores forzados antes de medir
+		for (PersonaDTO item : items) {
+			try {
+				processor.process(item);
+			} catch (ItemProcessorException e) {
+				// esperado
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		if (auditLog != null)
+			auditLog.close();
+	}
+
+	@Benchmark
+	public Persona process() throws Exception {
+		if (next == items.length)
+			next = 0;
+		return processor.process(items[next++]);
+	}
+}
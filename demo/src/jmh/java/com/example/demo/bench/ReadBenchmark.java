@@ -0,0 +1,154 @@
+package com.example.demo.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.batch.item.file.transform.FieldSet;
+import org.springframework.core.io.FileSystemResource;
+
+import com.example.demo.batch.MappedPersonaCSVItemReader;
+import com.example.demo.batch.PersonaColumnarItemReader;
+import com.example.demo.batch.PersonaColumnarItemWriter;
+import com.example.demo.batch.PersonaDTOFieldSetMapper;
+import com.example.demo.model.Persona;
+import com.example.demo.model.PersonaDTO;
+
+/**
+ * Lectura CSV de personaCSVItemReader: DelimitedLineTokenizer + BeanWrapperFieldSetMapper
+ * frente a PersonaDTOFieldSetMapper, y lectura de fichero con FlatFileItemReader frente a
+ * MappedPersonaCSVItemReader, y recorrido del mismo contenido con PersonaColumnarItemReader.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g", "-Dlogback.configurationFile=logback-jmh.xml" })
+public class ReadBenchmark {
+	@Param({ "10000", "1000000" })
+	private int rows;
+
+	private String[] lines;
+	private int next;
+	private DelimitedLineTokenizer tokenizer;
+	private BeanWrapperFieldSetMapper<PersonaDTO> beanWrapperMapper;
+	private PersonaDTOFieldSetMapper directMapper;
+	private Path csv;
+	private FlatFileItemReader<PersonaDTO> flatFileReader;
+	private MappedPersonaCSVItemReader mappedReader;
+	private Path columnar;
+	private PersonaColumnarItemReader columnarReader;
+
+	@Setup
+	public void setup() throws Exception {
+		lines = PersonasData.lines(rows);
+		tokenizer = new DelimitedLineTokenizer();
+		tokenizer.setNames(PersonasData.NAMES);
+		beanWrapperMapper = new BeanWrapperFieldSetMapper<>();
+		beanWrapperMapper.setTargetType(PersonaDTO.class);
+		beanWrapperMapper.afterPropertiesSet();
+		directMapper = PersonaDTOFieldSetMapper.forNames(PersonasData.NAMES);
+
+		csv = PersonasData.writeCsv(Files.createTempFile("personas", ".csv"), rows);
+		flatFileReader = new FlatFileItemReaderBuilder<PersonaDTO>().name("personaCSVItemReader")
+				.resource(new FileSystemResource(csv.toFile()))
+				.linesToSkip(1)
+				.delimited()
+				.names(PersonasData.NAMES)
+				.fieldSetMapper(beanWrapperMapper)
+				.build();
+		flatFileReader.open(new ExecutionContext());
+		mappedReader = new MappedPersonaCSVItemReader();
+		mappedReader.setName("personaMappedCSVItemReader");
+		mappedReader.setResource(new FileSystemResource(csv.toFile()));
+		mappedReader.setLinesToSkip(1);
+		mappedReader.setNames(PersonasData.NAMES);
+		mappedReader.open(new ExecutionContext());
+
+		columnar = Files.createTempFile("personas", ".pcol");
+		PersonaColumnarItemWriter writer = new PersonaColumnarItemWriter();
+		writer.setResource(new FileSystemResource(columnar.toFile()));
+		writer.open(new ExecutionContext());
+		writer.write(Arrays.asList(PersonasData.personas(rows)));
+		writer.close();
+		columnarReader = new PersonaColumnarItemReader();
+		columnarReader.setResource(new FileSystemResource(columnar.toFile()));
+		columnarReader.open(new ExecutionContext());
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		flatFileReader.close();
+		mappedReader.close();
+		columnarReader.close();
+		Files.deleteIfExists(csv);
+		Files.deleteIfExists(columnar);
+	}
+
+	private String nextLine() {
+		if (next == lines.length)
+			next = 0;
+		return lines[next++];
+	}
+
+	@Benchmark
+	public FieldSet tokenize() {
+		return tokenizer.tokenize(nextLine());
+	}
+
+	@Benchmark
+	public PersonaDTO tokenizeAndBeanWrapperMap() throws Exception {
+		return beanWrapperMapper.mapFieldSet(tokenizer.tokenize(nextLine()));
+	}
+
+	@Benchmark
+	public PersonaDTO tokenizeAndDirectMap() {
+		return directMapper.mapFieldSet(tokenizer.tokenize(nextLine()));
+	}
+
+	private static <T> T read(ItemStreamReader<T> reader) throws Exception {
+		T item = reader.read();
+		if (item == null) {
+			reader.close();
+			reader.open(new ExecutionContext());
+			item = reader.read();
+		}
+		return item;
+	}
+
+	@Benchmark
+	public PersonaDTO flatFileRead() throws Exception {
+		return read(flatFileReader);
+	}
+
+	@Benchmark
+	public PersonaDTO mappedRead() throws Exception {
+		return read(mappedReader);
+	}
+
+	@Benchmark
+	public Persona columnarRead() throws Exception {
+		return read(columnarReader);
+	}
+}
@@ -0,0 +1,156 @@
+package com.example.demo.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
+import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
+import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
+import org.springframework.core.io.FileSystemResource;
+
+import com.example.demo.batch.CsvItemWriter;
+import com.example.demo.batch.GzipBlockCompressor;
+import com.example.demo.model.Persona;
+
+/**
+ * Escritura CSV de personaCSVItemWriter: BeanWrapperFieldExtractor + DelimitedLineAggregator
+ * y chunks de 100 con FlatFileItemWriter frente a CsvItemWriter (ops/s por elemento), y
+ * CsvItemWriter comprimiendo con GzipBlockCompressor en un pool de un hilo por CPU.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g", "-Dlogback.configurationFile=logback-jmh.xml" })
+public class WriteBenchmark {
+	private static final int CHUNK = 100;
+
+	@Param({ "10000", "1000000" })
+	private int rows;
+
+	private Persona[] items;
+	private int next;
+	private DelimitedLineAggregator<Persona> aggregator;
+	private Path file;
+	private FlatFileItemWriter<Persona> flatFileWriter;
+	private CsvItemWriter<Persona> csvWriter;
+	private Path gzipFile;
+	private ExecutorService gzipExecutor;
+	private CsvItemWriter<Persona> gzipWriter;
+
+	@Setup
+	public void setup() throws Exception {
+		items = PersonasData.personas(rows);
+		BeanWrapperFieldExtractor<Persona> extractor = new BeanWrapperFieldExtractor<>();
+		extractor.setNames(new String[] { "id", "nombre", "correo", "ip" });
+		extractor.afterPropertiesSet();
+		aggregator = new DelimitedLineAggregator<>();
+		aggregator.setDelimiter(",");
+		aggregator.setFieldExtractor(extractor);
+
+		file = Files.createTempFile("outputData", ".csv");
+		flatFileWriter = new FlatFileItemWriterBuilder<Persona>().name("personaCSVItemWriter")
+				.resource(new FileSystemResource(file.toFile()))
+				.lineAggregator(aggregator)
+				.build();
+		flatFileWriter.afterPropertiesSet();
+		csvWriter = new CsvItemWriter<>();
+		csvWriter.setName("personaCSVItemWriter");
+		csvWriter.setResource(new FileSystemResource(file.toFile()));
+		csvWriter.setLineEncoder((item, line) -> line.field(item.getId()).field(item.getNombre())
+				.field(item.getCorreo()).field(item.getIp()));
+
+		gzipFile = Files.createTempFile("outputData", ".csv.gz");
+		gzipExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		GzipBlockCompressor compressor = new GzipBlockCompressor();
+		compressor.setExecutor(gzipExecutor);
+		compressor.afterPropertiesSet();
+		gzipWriter = new CsvItemWriter<>();
+		gzipWriter.setName("personaCSVItemWriter");
+		gzipWriter.setResource(new FileSystemResource(gzipFile.toFile()));
+		gzipWriter.setLineEncoder((item, line) -> line.field(item.getId()).field(item.getNombre())
+				.field(item.getCorreo()).field(item.getIp()));
+		gzipWriter.setCompressor(compressor);
+	}
+
+	@Setup(Level.Iteration)
+	public void open() {
+		flatFileWriter.open(new ExecutionContext());
+		csvWriter.open(new ExecutionContext());
+		gzipWriter.open(new ExecutionContext());
+	}
+
+	@TearDown(Level.Iteration)
+	public void close() {
+		flatFileWriter.close();
+		csvWriter.close();
+		gzipWriter.close();
+	}
+
+	@TearDown
+	public void delete() throws IOException {
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(gzipFile);
+		gzipExecutor.shutdown();
+	}
+
+	private Persona nextItem() {
+		if (next == items.length)
+			next = 0;
+		return items[next++];
+	}
+
+	@Benchmark
+	public String beanWrapperAggregate() {
+		return aggregator.aggregate(nextItem());
+	}
+
+	private List<Persona> nextChunk() {
+		if (next + CHUNK > items.length)
+			next = 0;
+		List<Persona> rslt = Arrays.asList(items).subList(next, next + CHUNK);
+		next += CHUNK;
+		return rslt;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CHUNK)
+	public void flatFileWriteChunk() throws Exception {
+		flatFileWriter.write(nextChunk());
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CHUNK)
+	public void csvWriteChunk() throws Exception {
+		csvWriter.write(nextChunk());
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CHUNK)
+	public void gzipCsvWriteChunk() throws Exception {
+		gzipWriter.write(nextChunk());
+	}
+}
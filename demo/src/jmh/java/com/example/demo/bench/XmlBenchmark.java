@@ -0,0 +1,193 @@
+package com.example.demo.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.transform.stax.StAXResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.xml.StaxEventItemReader;
+import org.springframework.batch.item.xml.StaxEventItemWriter;
+import org.springframework.batch.item.xml.builder.StaxEventItemReaderBuilder;
+import org.springframework.batch.item.xml.builder.StaxEventItemWriterBuilder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.oxm.xstream.XStreamMarshaller;
+
+import com.example.demo.batch.PersonaXmlItemReader;
+import com.example.demo.batch.PersonaXmlItemWriter;
+import com.example.demo.model.Persona;
+import com.example.demo.model.PersonaDTO;
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * XStreamMarshaller en los pasos XML: marshal de Persona (exportDB2XMLStep) y
+ * StaxEventItemReader de PersonaDTO (importXML2DBStep1) frente a PersonaXmlItemReader.
+ * Escritura por chunks de 100 con StaxEventItemWriter frente a PersonaXmlItemWriter
+ * (ops/s por elemento).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g", "-Dlogback.configurationFile=logback-jmh.xml" })
+public class XmlBenchmark {
+	private static final int CHUNK = 100;
+
+	@Param({ "10000", "1000000" })
+	private int rows;
+
+	private Persona[] items;
+	private int next;
+	private XMLEventWriter eventWriter;
+	private XStreamMarshaller writeMarshaller;
+	private Path xml;
+	private StaxEventItemReader<PersonaDTO> reader;
+	private PersonaXmlItemReader cursorReader;
+	private Path output;
+	private StaxEventItemWriter<Persona> staxWriter;
+	private PersonaXmlItemWriter cursorWriter;
+
+	@Setup
+	public void setup() throws Exception {
+		items = PersonasData.personas(rows);
+		writeMarshaller = marshaller("Persona", Persona.class);
+		eventWriter = XMLOutputFactory.newInstance().createXMLEventWriter(new OutputStream() {
+			@Override
+			public void write(int b) { }
+			@Override
+			public void write(byte[] b, int off, int len) { }
+		}, "UTF-8");
+		xml = PersonasData.writeXml(Files.createTempFile("Personas", ".xml"), rows);
+		reader = new StaxEventItemReaderBuilder<PersonaDTO>()
+				.name("personaXMLItemReader")
+				.resource(new FileSystemResource(xml.toFile()))
+				.addFragmentRootElements("Persona")
+				.unmarshaller(marshaller("Persona", PersonaDTO.class))
+				.build();
+		reader.open(new ExecutionContext());
+		cursorReader = new PersonaXmlItemReader();
+		cursorReader.setName("personaXMLItemReader");
+		cursorReader.setResource(new FileSystemResource(xml.toFile()));
+		cursorReader.open(new ExecutionContext());
+		output = Files.createTempFile("outputData", ".xml");
+		staxWriter = new StaxEventItemWriterBuilder<Persona>()
+				.name("personaXMLItemWriter")
+				.resource(new FileSystemResource(output.toFile()))
+				.marshaller(writeMarshaller)
+				.rootTagName("Personas")
+				.overwriteOutput(true)
+				.build();
+		cursorWriter = new PersonaXmlItemWriter();
+		cursorWriter.setName("personaXMLItemWriter");
+		cursorWriter.setResource(new FileSystemResource(output.toFile()));
+	}
+
+	@Setup(Level.Iteration)
+	public void open() {
+		staxWriter.open(new ExecutionContext());
+		cursorWriter.open(new ExecutionContext());
+	}
+
+	@TearDown(Level.Iteration)
+	public void close() {
+		staxWriter.close();
+		cursorWriter.close();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		reader.close();
+		cursorReader.close();
+		Files.deleteIfExists(xml);
+		Files.deleteIfExists(output);
+	}
+
+	@SuppressWarnings("rawtypes")
+	static XStreamMarshaller marshaller(String alias, Class<?> type) {
+		// XStream 1.4.18+ rechaza por defecto los tipos no permitidos explícitamente
+		XStreamMarshaller marshaller = new XStreamMarshaller() {
+			@Override
+			protected void customizeXStream(XStream xstream) {
+				xstream.allowTypes(new Class[] { type });
+			}
+		};
+		Map<String, Class> aliases = new HashMap<>();
+		aliases.put(alias, type);
+		marshaller.setAliases(aliases);
+		return marshaller;
+	}
+
+	@Benchmark
+	public XMLEventWriter xstreamMarshal() throws Exception {
+		if (next == items.length)
+			next = 0;
+		writeMarshaller.marshal(items[next++], new StAXResult(eventWriter));
+		return eventWriter;
+	}
+
+	private List<Persona> nextChunk() {
+		if (next + CHUNK > items.length)
+			next = 0;
+		List<Persona> rslt = Arrays.asList(items).subList(next, next + CHUNK);
+		next += CHUNK;
+		return rslt;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CHUNK)
+	public void staxEventWriteChunk() throws Exception {
+		staxWriter.write(nextChunk());
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CHUNK)
+	public void cursorWriteChunk() throws Exception {
+		cursorWriter.write(nextChunk());
+	}
+
+	@Benchmark
+	public PersonaDTO staxEventRead() throws Exception {
+		PersonaDTO item = reader.read();
+		if (item == null) {
+			reader.close();
+			reader.open(new ExecutionContext());
+			item = reader.read();
+		}
+		return item;
+	}
+
+	@Benchmark
+	public PersonaDTO cursorRead() throws Exception {
+		PersonaDTO item = cursorReader.read();
+		if (item == null) {
+			cursorReader.close();
+			cursorReader.open(new ExecutionContext());
+			item = cursorReader.read();
+		}
+		return item;
+	}
+}
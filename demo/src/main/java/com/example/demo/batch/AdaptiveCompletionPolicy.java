@@ -0,0 +1,203 @@
+package com.example.demo.batch;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatContext;
+import org.springframework.batch.repeat.context.RepeatContextSupport;
+import org.springframework.batch.repeat.policy.CompletionPolicySupport;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * CompletionPolicy que ajusta el tamaño del chunk mientras se ejecuta el paso. Cada chunk
+ * se mide de un start al siguiente (lectura, proceso, escritura y commit): el tamaño se
+ * duplica mientras el rendimiento (elementos por segundo) mejore, sin pasar de maxSize ni
+ * del tamaño que al ritmo medido tardaría más de targetLatency ms; si un chunk tarda más
+ * de targetLatency se reduce en proporción y si ha habido rollbacks (errores de escritura)
+ * se divide a la mitad, nunca por debajo de minSize. El estado es de cada ejecución del paso
+ * (atributo del StepContext), así que una misma instancia sirve para particiones en paralelo.
+ * El tamaño elegido para cada chunk queda en el ExecutionContext del paso: el último en
+ * adaptiveChunk.size, con el que se continúa al reiniciar, y la secuencia en
+ * adaptiveChunk.history (tamaño x chunks, por ejemplo "10x1,20x3,40x57").
+ */
+public class AdaptiveCompletionPolicy extends CompletionPolicySupport implements InitializingBean {
+	private static final Logger log = LoggerFactory.getLogger(AdaptiveCompletionPolicy.class);
+	public static final String SIZE = "adaptiveChunk.size";
+	public static final String HISTORY = "adaptiveChunk.history";
+	private static final String STATE = AdaptiveCompletionPolicy.class.getName() + ".STATE";
+	// Chunks completos que se miden con cada tamaño antes de decidir
+	private static final int WINDOW = 3;
+	// Mejora mínima del rendimiento para seguir creciendo
+	private static final double GAIN = 1.05;
+	// Ventanas estables tras las que se vuelve a probar un tamaño mayor
+	private static final int PROBE = 20;
+	private static final int HISTORY_RUNS = 32;
+
+	private int initialSize = 10;
+	private int minSize = 1;
+	private int maxSize = 1000;
+	private long targetLatency = 0;
+	private LongSupplier nanoTime = System::nanoTime;
+
+	private static final class State {
+		int size;
+		int previousSize;
+		double previousThroughput;
+		boolean growing = true;
+		int stableWindows;
+		// Chunk en curso
+		int chunkSize;
+		long chunkStart;
+		long doneAtStart;
+		int rollbacksAtStart;
+		// Ventana de medida del tamaño actual
+		int windowChunks;
+		long windowItems;
+		long windowNanos;
+		final Deque<int[]> history = new ArrayDeque<>();
+	}
+
+	private static final class SizedContext extends RepeatContextSupport {
+		final int size;
+
+		SizedContext(RepeatContext parent, int size) {
+			super(parent);
+			this.size = size;
+		}
+	}
+
+	@Override
+	public RepeatContext start(RepeatContext parent) {
+		StepContext step = StepSynchronizationManager.getContext();
+		return new SizedContext(parent, step == null ? clamp(initialSize) : next(step));
+	}
+
+	@Override
+	public boolean isComplete(RepeatContext context) {
+		return context.getStartedCount() >= ((SizedContext) context).size;
+	}
+
+	private int next(StepContext step) {
+		StepExecution execution = step.getStepExecution();
+		long now = nanoTime.getAsLong();
+		long done = execution.getWriteCount() + execution.getFilterCount();
+		State state = (State) step.getAttribute(STATE);
+		if (state == null) {
+			state = new State();
+			state.size = clamp(execution.getExecutionContext().getInt(SIZE, initialSize));
+			step.setAttribute(STATE, state);
+		} else {
+			int old = state.size;
+			String reason = adjust(state, done - state.doneAtStart, now - state.chunkStart,
+					execution.getRollbackCount() > state.rollbacksAtStart);
+			if (state.size != old)
+				log.info("{}: chunk de {} a {} ({})", step.getStepName(), old, state.size, reason);
+		}
+		state.chunkSize = state.size;
+		state.chunkStart = now;
+		state.doneAtStart = done;
+		state.rollbacksAtStart = execution.getRollbackCount();
+		record(execution.getExecutionContext(), state);
+		return state.size;
+	}
+
+	// Decide el tamaño del siguiente chunk a partir del que acaba de terminar
+	private String adjust(State state, long items, long nanos, boolean rolledBack) {
+		long target = TimeUnit.MILLISECONDS.toNanos(targetLatency);
+		if (rolledBack) {
+			state.size = clamp(state.size / 2);
+			settle(state);
+			return "rollback";
+		}
+		if (target > 0 && nanos > target && items > 0) {
+			state.size = clamp(state.chunkSize * target / nanos);
+			settle(state);
+			return "latencia " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms";
+		}
+		// Los chunks incompletos (final de la entrada) no sirven para comparar
+		if (items < state.chunkSize || nanos <= 0)
+			return null;
+		state.windowChunks++;
+		state.windowItems += items;
+		state.windowNanos += nanos;
+		if (state.windowChunks < WINDOW)
+			return null;
+		double throughput = (double) state.windowItems / state.windowNanos;
+		long perItem = state.windowNanos / state.windowItems;
+		resetWindow(state);
+		if (state.growing) {
+			if (state.previousThroughput > 0 && throughput < state.previousThroughput * GAIN) {
+				state.size = state.previousSize;
+				state.growing = false;
+				return "sin mejora";
+			}
+		} else if (++state.stableWindows < PROBE) {
+			return null;
+		}
+		state.growing = true;
+		state.stableWindows = 0;
+		state.previousSize = state.size;
+		state.previousThroughput = throughput;
+		long grown = 2L * state.size;
+		if (target > 0 && perItem > 0)
+			grown = Math.min(grown, Math.max(state.size, target / perItem));
+		state.size = clamp(grown);
+		if (state.size == state.previousSize)
+			state.growing = false;
+		return "crece";
+	}
+
+	private static void settle(State state) {
+		state.growing = false;
+		state.stableWindows = 0;
+		state.previousThroughput = 0;
+		resetWindow(state);
+	}
+
+	private static void resetWindow(State state) {
+		state.windowChunks = 0;
+		state.windowItems = 0;
+		state.windowNanos = 0;
+	}
+
+	private static void record(ExecutionContext context, State state) {
+		int[] last = state.history.peekLast();
+		if (last != null && last[0] == state.size) {
+			last[1]++;
+		} else {
+			state.history.addLast(new int[] { state.size, 1 });
+			if (state.history.size() > HISTORY_RUNS)
+				state.history.removeFirst();
+		}
+		StringJoiner history = new StringJoiner(",");
+		for (int[] run : state.history)
+			history.add(run[0] + "x" + run[1]);
+		context.putInt(SIZE, state.size);
+		context.putString(HISTORY, history.toString());
+	}
+
+	private int clamp(long size) {
+		return (int) Math.max(minSize, Math.min(maxSize, size));
+	}
+
+	public void setInitialSize(int initialSize) { this.initialSize = initialSize; }
+	public void setMinSize(int minSize) { this.minSize = minSize; }
+	public void setMaxSize(int maxSize) { this.maxSize = maxSize; }
+	public void setTargetLatency(long targetLatency) { this.targetLatency = targetLatency; }
+	// Reloj de los tiempos de chunk; las pruebas lo sustituyen
+	void setNanoTime(LongSupplier nanoTime) { this.nanoTime = nanoTime; }
+	public void afterPropertiesSet() throws Exception {
+		Assert.isTrue(minSize > 0 && minSize <= maxSize, "minSize must be positive and not greater than maxSize");
+		Assert.isTrue(targetLatency >= 0, "targetLatency must not be negative");
+	}
+}
@@ -0,0 +1,216 @@
+package com.example.demo.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+/**
+ * Escribe cada chunk en el delegado dentro de un savepoint (transacción NESTED) y, si
+ * falla con una de las isolatedExceptions (por defecto DataIntegrityViolationException),
+ * vuelve al savepoint y parte el chunk por la mitad hasta aislar los elementos que
+ * fallan: k errores en n elementos cuestan unas k·log2(n) escrituras, en lugar del
+ * rollback y el reproceso elemento a elemento del paso tolerante a fallos. Si la primera
+ * mitad entra, la segunda no se prueba entera (tiene que fallar). Los elementos aislados
+ * van al deadLetterWriter y a los listeners (onWriteError con ese elemento) y cuentan
+ * como omitidos en escritura; el resto del chunk se confirma sin volver a procesar nada.
+ * El coste queda en el ExecutionContext del paso (recovery.*), que publica
+ * StepMetricsListener; esas cuentas y las de escritos y omitidos se anotan al confirmar
+ * el chunk, para que un chunk deshecho no cuente dos veces. Pasado deadLetterLimit en un
+ * paso la escritura falla.
+ */
+public class BisectingItemWriter<T> implements ItemStreamWriter<T>, InitializingBean {
+	private static final Logger log = LoggerFactory.getLogger(BisectingItemWriter.class);
+	public static final String WRITES = "recovery.writes";
+	public static final String DEAD_LETTERS = "recovery.deadLetters";
+	public static final String NANOS = "recovery.nanos";
+
+	// Elemento aislado y el error con el que falló
+	public static final class DeadLetter<T> {
+		private final T item;
+		private final Exception error;
+
+		DeadLetter(T item, Exception error) {
+			this.item = item;
+			this.error = error;
+		}
+
+		public T getItem() { return item; }
+		public Exception getError() { return error; }
+	}
+
+	private ItemWriter<? super T> delegate;
+	private PlatformTransactionManager transactionManager;
+	private List<Class<? extends Throwable>> isolatedExceptions = Collections
+			.singletonList(DataIntegrityViolationException.class);
+	private ItemWriter<? super DeadLetter<T>> deadLetterWriter;
+	private ItemWriteListener<? super T>[] listeners = newListeners(0);
+	private int deadLetterLimit = Integer.MAX_VALUE;
+
+	private TransactionTemplate savepoint;
+
+	@SuppressWarnings("unchecked")
+	private static <T> ItemWriteListener<? super T>[] newListeners(int size) {
+		return new ItemWriteListener[size];
+	}
+
+	@Override
+	public void write(List<? extends T> items) throws Exception {
+		if (items.isEmpty())
+			return;
+		Exception error = attempt(items);
+		if (error == null)
+			return;
+		if (!isolated(error))
+			throw error;
+		long start = System.nanoTime();
+		List<DeadLetter<T>> deadLetters = new ArrayList<>();
+		long[] writes = { 1 };
+		isolate(items, error, deadLetters, writes);
+		long nanos = System.nanoTime() - start;
+
+		StepContext context = StepSynchronizationManager.getContext();
+		StepExecution stepExecution = context == null ? null : context.getStepExecution();
+		long total = deadLetters.size()
+				+ (stepExecution == null ? 0 : stepExecution.getExecutionContext().getLong(DEAD_LETTERS, 0));
+		if (total > deadLetterLimit)
+			throw deadLetters.get(0).error;
+		if (stepExecution != null)
+			record(stepExecution, writes[0], deadLetters.size(), nanos);
+		if (deadLetterWriter != null)
+			deadLetterWriter.write(deadLetters);
+		for (DeadLetter<T> deadLetter : deadLetters)
+			for (ItemWriteListener<? super T> listener : listeners)
+				listener.onWriteError(deadLetter.error, Collections.singletonList(deadLetter.item));
+		log.info(deadLetters.size() + " de " + items.size() + " elementos aislados en " + writes[0] + " escrituras ("
+				+ nanos / 1000000 + " ms)");
+	}
+
+	// Al confirmar el chunk (o ya, sin transacción)
+	private static void record(StepExecution stepExecution, long writes, int deadLetters, long nanos) {
+		Runnable apply = () -> {
+			ExecutionContext executionContext = stepExecution.getExecutionContext();
+			executionContext.putLong(WRITES, executionContext.getLong(WRITES, 0) + writes);
+			executionContext.putLong(DEAD_LETTERS, executionContext.getLong(DEAD_LETTERS, 0) + deadLetters);
+			executionContext.putLong(NANOS, executionContext.getLong(NANOS, 0) + nanos);
+			// El paso cuenta el chunk entero como escrito
+			stepExecution.setWriteCount(stepExecution.getWriteCount() - deadLetters);
+			stepExecution.setWriteSkipCount(stepExecution.getWriteSkipCount() + deadLetters);
+		};
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			apply.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				apply.run();
+			}
+		});
+	}
+
+	// items ha fallado junto con error
+	private void isolate(List<? extends T> items, Exception error, List<DeadLetter<T>> deadLetters, long[] writes)
+			throws Exception {
+		if (items.size() == 1) {
+			deadLetters.add(new DeadLetter<>(items.get(0), error));
+			return;
+		}
+		int half = items.size() / 2;
+		List<? extends T> first = items.subList(0, half);
+		List<? extends T> second = items.subList(half, items.size());
+		Exception firstError = attempt(first);
+		writes[0]++;
+		if (firstError != null) {
+			if (!isolated(firstError))
+				throw firstError;
+			isolate(first, firstError, deadLetters, writes);
+			error = attempt(second);
+			writes[0]++;
+			if (error == null)
+				return;
+			if (!isolated(error))
+				throw error;
+		}
+		isolate(second, error, deadLetters, writes);
+	}
+
+	// Escribe items en un savepoint; si falla vuelve a él y devuelve el error
+	private Exception attempt(List<? extends T> items) {
+		return savepoint.execute(status -> {
+			try {
+				delegate.write(items);
+				return null;
+			} catch (Exception e) {
+				status.setRollbackOnly();
+				return e;
+			}
+		});
+	}
+
+	private boolean isolated(Exception error) {
+		for (Class<? extends Throwable> type : isolatedExceptions)
+			if (type.isInstance(error))
+				return true;
+		return false;
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		if (delegate instanceof ItemStream)
+			((ItemStream) delegate).open(executionContext);
+		if (deadLetterWriter instanceof ItemStream)
+			((ItemStream) deadLetterWriter).open(executionContext);
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		if (delegate instanceof ItemStream)
+			((ItemStream) delegate).update(executionContext);
+		if (deadLetterWriter instanceof ItemStream)
+			((ItemStream) deadLetterWriter).update(executionContext);
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		if (delegate instanceof ItemStream)
+			((ItemStream) delegate).close();
+		if (deadLetterWriter instanceof ItemStream)
+			((ItemStream) deadLetterWriter).close();
+	}
+
+	public void setDelegate(ItemWriter<? super T> delegate) { this.delegate = delegate; }
+	public void setTransactionManager(PlatformTransactionManager transactionManager) { this.transactionManager = transactionManager; }
+	public void setIsolatedExceptions(List<Class<? extends Throwable>> isolatedExceptions) { this.isolatedExceptions = isolatedExceptions; }
+	public void setDeadLetterWriter(ItemWriter<? super DeadLetter<T>> deadLetterWriter) { this.deadLetterWriter = deadLetterWriter; }
+	public void setListeners(ItemWriteListener<? super T>[] listeners) { this.listeners = listeners; }
+	public void setDeadLetterLimit(int deadLetterLimit) { this.deadLetterLimit = deadLetterLimit; }
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(delegate, "delegate must be set");
+		Assert.notNull(transactionManager, "transactionManager must be set");
+		Assert.notEmpty(isolatedExceptions, "isolatedExceptions must not be empty");
+		Assert.notNull(listeners, "listeners must be set");
+		Assert.isTrue(deadLetterLimit >= 0, "deadLetterLimit must not be negative");
+		savepoint = new TransactionTemplate(transactionManager);
+		savepoint.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+	}
+}
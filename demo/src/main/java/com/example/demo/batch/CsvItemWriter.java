@@ -0,0 +1,309 @@
+package com.example.demo.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.WriteFailedException;
+import org.springframework.batch.item.support.AbstractItemStreamItemWriter;
+import org.springframework.core.io.Resource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+/**
+ * Alternativa a FlatFileItemWriter + DelimitedLineAggregator para exportaciones
+ * grandes: cada elemento se codifica directamente en un buffer reutilizable
+ * (sin Object[] ni String por línea) y el chunk se vuelca en bloques grandes.
+ * Guarda en el ExecutionContext las mismas claves que FlatFileItemWriter
+ * (current.count y written) y, si la transacción se deshace, recorta el fichero
+ * hasta la última posición confirmada. Con un GzipBlockCompressor el fichero se escribe
+ * comprimido: cada chunk termina en el límite de un miembro gzip, de modo que las
+ * posiciones guardadas (en bytes comprimidos) siguen sirviendo para reiniciar y deshacer.
+ */
+public class CsvItemWriter<T> extends AbstractItemStreamItemWriter<T> {
+	private static final String RESTART_DATA_NAME = "current.count";
+	private static final String WRITTEN_STATISTICS_NAME = "written";
+
+	@FunctionalInterface
+	public interface LineEncoder<T> {
+		void encode(T item, Line line);
+	}
+
+	private Resource resource;
+	private LineEncoder<T> lineEncoder;
+	private String header;
+	private char delimiter = ',';
+	private String lineSeparator = System.getProperty("line.separator");
+	private int bufferSize = 64 * 1024;
+	private boolean saveState = true;
+	private GzipBlockCompressor compressor;
+
+	private FileChannel channel;
+	private WritableByteChannel out;
+	private GzipBlockCompressor.Channel gzip;
+	private Line line;
+	private CharsetEncoder encoder;
+	private ByteBuffer bytes;
+	private long linesWritten;
+	private boolean synchronizationRegistered;
+
+	@Override
+	public void open(ExecutionContext executionContext) {
+		Assert.notNull(resource, "resource must be set");
+		Assert.notNull(lineEncoder, "lineEncoder must be set");
+		line = new Line(delimiter, lineSeparator.toCharArray(), bufferSize);
+		encoder = StandardCharsets.UTF_8.newEncoder();
+		bytes = ByteBuffer.allocate(bufferSize * 2);
+		try {
+			File file = resource.getFile();
+			if (file.getParentFile() != null)
+				file.getParentFile().mkdirs();
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			gzip = compressor == null ? null : compressor.channel(channel);
+			out = gzip == null ? channel : gzip;
+			if (executionContext.containsKey(getExecutionContextKey(RESTART_DATA_NAME))) {
+				long position = executionContext.getLong(getExecutionContextKey(RESTART_DATA_NAME));
+				linesWritten = executionContext.getLong(getExecutionContextKey(WRITTEN_STATISTICS_NAME), 0);
+				Assert.state(channel.size() >= position, "El fichero es más corto que la posición de reinicio");
+				channel.truncate(position);
+				channel.position(position);
+			} else {
+				linesWritten = 0;
+				channel.truncate(0);
+				if (header != null) {
+					line.text(header).end();
+					flush();
+					finish();
+				}
+			}
+		} catch (IOException e) {
+			throw new ItemStreamException("No se puede abrir " + resource, e);
+		}
+	}
+
+	@Override
+	public void write(List<? extends T> items) throws Exception {
+		registerSynchronization();
+		for (T item : items) {
+			lineEncoder.encode(item, line);
+			line.end();
+			if (line.length() >= bufferSize)
+				flush();
+		}
+		flush();
+		finish();
+		linesWritten += items.size();
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) {
+		if (!saveState || channel == null)
+			return;
+		try {
+			executionContext.putLong(getExecutionContextKey(RESTART_DATA_NAME), channel.position());
+			executionContext.putLong(getExecutionContextKey(WRITTEN_STATISTICS_NAME), linesWritten);
+		} catch (IOException e) {
+			throw new ItemStreamException("No se puede obtener la posición de " + resource, e);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (channel == null)
+			return;
+		try {
+			finish();
+			channel.close();
+		} catch (IOException e) {
+			throw new ItemStreamException("No se puede cerrar " + resource, e);
+		} finally {
+			channel = null;
+			out = null;
+			gzip = null;
+			line = null;
+			bytes = null;
+		}
+	}
+
+	private void flush() throws IOException {
+		CharBuffer chars = line.buffer();
+		encoder.reset();
+		for (boolean done = false; !done;) {
+			CoderResult result = encoder.encode(chars, bytes, true);
+			if (result.isOverflow()) {
+				drain();
+			} else {
+				if (result.isError())
+					result.throwException();
+				done = encoder.flush(bytes).isUnderflow();
+				drain();
+			}
+		}
+		line.clear();
+	}
+
+	private void drain() throws IOException {
+		bytes.flip();
+		while (bytes.hasRemaining())
+			out.write(bytes);
+		bytes.clear();
+	}
+
+	// Comprimido, escribe los miembros pendientes: la posición queda en un límite
+	private void finish() throws IOException {
+		if (gzip != null)
+			gzip.finish();
+	}
+
+	private void registerSynchronization() throws IOException {
+		if (synchronizationRegistered || !TransactionSynchronizationManager.isSynchronizationActive())
+			return;
+		long position = channel.position();
+		long lines = linesWritten;
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(int status) {
+				synchronizationRegistered = false;
+				if (status == STATUS_COMMITTED || channel == null)
+					return;
+				try {
+					if (gzip != null)
+						gzip.discard();
+					channel.truncate(position);
+					channel.position(position);
+					linesWritten = lines;
+				} catch (IOException e) {
+					throw new WriteFailedException("No se puede deshacer la escritura en " + resource, e);
+				}
+			}
+		});
+		synchronizationRegistered = true;
+	}
+
+	public void setResource(Resource resource) { this.resource = resource; }
+	public void setLineEncoder(LineEncoder<T> lineEncoder) { this.lineEncoder = lineEncoder; }
+	public void setHeader(String header) { this.header = header; }
+	public void setDelimiter(char delimiter) { this.delimiter = delimiter; }
+	public void setLineSeparator(String lineSeparator) { this.lineSeparator = lineSeparator; }
+	public void setBufferSize(int bufferSize) { this.bufferSize = bufferSize; }
+	public void setSaveState(boolean saveState) { this.saveState = saveState; }
+	public void setCompressor(GzipBlockCompressor compressor) { this.compressor = compressor; }
+
+	/**
+	 * Línea en construcción: separa los campos y los entrecomilla (RFC 4180)
+	 * cuando contienen el delimitador, comillas o saltos de línea.
+	 */
+	public static final class Line {
+		private final char delimiter;
+		private final char[] separator;
+		private char[] buffer;
+		private int length;
+		private boolean first = true;
+
+		Line(char delimiter, char[] separator, int capacity) {
+			this.delimiter = delimiter;
+			this.separator = separator;
+			this.buffer = new char[capacity + 256];
+		}
+
+		public Line field(long value) {
+			next();
+			if (value == Long.MIN_VALUE)
+				return text(Long.toString(value));
+			ensure(20);
+			if (value < 0) {
+				buffer[length++] = '-';
+				value = -value;
+			}
+			int start = length;
+			do {
+				buffer[length++] = (char) ('0' + value % 10);
+				value /= 10;
+			} while (value != 0);
+			for (int i = start, j = length - 1; i < j; i++, j--) {
+				char c = buffer[i];
+				buffer[i] = buffer[j];
+				buffer[j] = c;
+			}
+			return this;
+		}
+
+		public Line field(String value) {
+			next();
+			if (value == null)
+				return this;
+			int size = value.length();
+			boolean quote = false;
+			for (int i = 0; i < size && !quote; i++) {
+				char c = value.charAt(i);
+				quote = c == delimiter || c == '"' || c == '\n' || c == '\r';
+			}
+			if (!quote)
+				return text(value);
+			ensure(size * 2 + 2);
+			buffer[length++] = '"';
+			for (int i = 0; i < size; i++) {
+				char c = value.charAt(i);
+				if (c == '"')
+					buffer[length++] = '"';
+				buffer[length++] = c;
+			}
+			buffer[length++] = '"';
+			return this;
+		}
+
+		Line text(String value) {
+			int size = value.length();
+			ensure(size);
+			value.getChars(0, size, buffer, length);
+			length += size;
+			return this;
+		}
+
+		void end() {
+			ensure(separator.length);
+			System.arraycopy(separator, 0, buffer, length, separator.length);
+			length += separator.length;
+			first = true;
+		}
+
+		int length() {
+			return length;
+		}
+
+		CharBuffer buffer() {
+			return CharBuffer.wrap(buffer, 0, length);
+		}
+
+		void clear() {
+			length = 0;
+			first = true;
+		}
+
+		private void next() {
+			if (first) {
+				first = false;
+			} else {
+				ensure(1);
+				buffer[length++] = delimiter;
+			}
+		}
+
+		private void ensure(int extra) {
+			if (length + extra > buffer.length)
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+		}
+	}
+}
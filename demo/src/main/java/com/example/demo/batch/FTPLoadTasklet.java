@@ -2,9 +2,25 @@ package com.example.demo.batch;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,29 +28,165 @@ import org.springframework.batch.core.StepContribution;
 import org.springframework.batch.core.UnexpectedJobExecutionException;
 import org.springframework.batch.core.scope.context.ChunkContext;
 import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.io.Resource;
 import org.springframework.util.Assert;
 
-public class FTPLoadTasklet  implements Tasklet, InitializingBean {
+/**
+ * Copia los *.csv del directorio de entrada al de staging. Cada llamada a execute copia
+ * en paralelo el siguiente lote de ficheros (tantos como hilos) con FileChannel.transferTo,
+ * o con un enlace duro si se ha pedido y ambos directorios están en el mismo sistema de
+ * ficheros, anota los ya copiados en el ExecutionContext del paso y devuelve CONTINUABLE
+ * hasta terminar: al reiniciar el paso no se vuelven a copiar. Un fichero ya copiado con
+ * el mismo tamaño, fecha de modificación y CRC32 que el de entrada tampoco se copia.
+ * El pool de hilos es el mismo en todas las llamadas: se crea en afterPropertiesSet y se
+ * cierra en destroy.
+ */
+public class FTPLoadTasklet  implements Tasklet, InitializingBean, DisposableBean {
 	private static final Logger log = LoggerFactory.getLogger(FTPLoadTasklet.class);
-    private Resource source;
-    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
-        File dir = source.getFile();
-        Assert.state(dir.isDirectory(), "No es un Directory");
-        File[] files = dir.listFiles(new FilenameFilter() {
-            public boolean accept(File file, String name) {
-            	return name.toLowerCase().endsWith(".csv");
-            }
-        });
-        // if(files.length % 2 == 1) throw new UnexpectedJobExecutionException("Error forzado");
-        for (int i = 0; i < files.length; i++) {
-        	Files.copy(files[i].toPath(), Paths.get("src/main/resources/" + files[i].getName()), StandardCopyOption.REPLACE_EXISTING);
-        	log.info("Copy " + files[i].getName());
-        }
-        return RepeatStatus.FINISHED;
-    }
-    public void setDirectoryResource(Resource directory) { this.source = directory; }
-    public void afterPropertiesSet() throws Exception { Assert.notNull(source, "directory must be set"); }
+	private static final String STAGED = "ftpLoad.staged";
+	private static final String SEPARATOR = "/";
+
+	private enum Outcome { COPIED, LINKED, SKIPPED }
+
+	private Resource source;
+	private Resource target;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private boolean links = false;
+
+	private ExecutorService executor;
+
+	public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+		File dir = source.getFile();
+		Assert.state(dir.isDirectory(), "No es un Directory");
+		File[] files = dir.listFiles(new FilenameFilter() {
+			public boolean accept(File file, String name) {
+				return name.toLowerCase().endsWith(".csv");
+			}
+		});
+		// if(files.length % 2 == 1) throw new UnexpectedJobExecutionException("Error forzado");
+		Arrays.sort(files, Comparator.comparing(File::getName));
+		ExecutionContext context = chunkContext.getStepContext().getStepExecution().getExecutionContext();
+		Set<String> staged = staged(context);
+		List<File> batch = new ArrayList<>();
+		for (File file : files)
+			if (!staged.contains(file.getName()) && batch.size() < threads)
+				batch.add(file);
+		if (batch.isEmpty())
+			return RepeatStatus.FINISHED;
+
+		Path targetDir = target.getFile().toPath();
+		Files.createDirectories(targetDir);
+		boolean link = links && Files.getFileStore(dir.toPath()).equals(Files.getFileStore(targetDir));
+		Assert.state(executor != null, "afterPropertiesSet must be called");
+		List<Future<Outcome>> outcomes = new ArrayList<>();
+		try {
+			for (File file : batch)
+				outcomes.add(executor.submit(() -> stage(file.toPath(), targetDir.resolve(file.getName()), link)));
+			for (int i = 0; i < batch.size(); i++) {
+				Outcome outcome;
+				try {
+					outcome = outcomes.get(i).get();
+				} catch (ExecutionException e) {
+					throw new UnexpectedJobExecutionException("Error copiando " + batch.get(i).getName(), e.getCause());
+				}
+				contribution.incrementReadCount();
+				if (outcome == Outcome.SKIPPED)
+					contribution.incrementFilterCount(1);
+				else
+					contribution.incrementWriteCount(1);
+				staged.add(batch.get(i).getName());
+				log.info((outcome == Outcome.SKIPPED ? "Sin cambios " : outcome == Outcome.LINKED ? "Link " : "Copy ")
+						+ batch.get(i).getName());
+			}
+		} finally {
+			// Si uno falla, los demás del lote no siguen copiando
+			for (Future<Outcome> outcome : outcomes)
+				outcome.cancel(true);
+			context.putString(STAGED, String.join(SEPARATOR, staged));
+		}
+		for (File file : files)
+			if (!staged.contains(file.getName()))
+				return RepeatStatus.CONTINUABLE;
+		return RepeatStatus.FINISHED;
+	}
+
+	private Outcome stage(Path from, Path to, boolean link) throws IOException {
+		if (Files.exists(to) && (Files.isSameFile(from, to) || unchanged(from, to)))
+			return Outcome.SKIPPED;
+		Path tmp = to.resolveSibling(to.getFileName() + ".tmp");
+		Files.deleteIfExists(tmp);
+		Outcome rslt = Outcome.COPIED;
+		if (link) {
+			try {
+				Files.createLink(tmp, from);
+				rslt = Outcome.LINKED;
+			} catch (IOException | UnsupportedOperationException e) {
+				log.debug("No se puede enlazar {}, se copia: {}", from, e.getMessage());
+			}
+		}
+		if (rslt == Outcome.COPIED) {
+			try (FileChannel in = FileChannel.open(from, StandardOpenOption.READ);
+					FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+							StandardOpenOption.TRUNCATE_EXISTING)) {
+				long size = in.size();
+				for (long position = 0; position < size;)
+					position += in.transferTo(position, size - position, out);
+			}
+			Files.setLastModifiedTime(tmp, Files.getLastModifiedTime(from));
+		}
+		Files.move(tmp, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return rslt;
+	}
+
+	private static boolean unchanged(Path from, Path to) throws IOException {
+		return Files.size(from) == Files.size(to)
+				&& Files.getLastModifiedTime(from).equals(Files.getLastModifiedTime(to))
+				&& crc(from) == crc(to);
+	}
+
+	private static long crc(Path path) throws IOException {
+		CRC32 crc = new CRC32();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+		try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+			while (in.read(buffer) != -1) {
+				buffer.flip();
+				crc.update(buffer);
+				buffer.clear();
+			}
+		}
+		return crc.getValue();
+	}
+
+	private static Set<String> staged(ExecutionContext context) {
+		Set<String> rslt = new LinkedHashSet<>();
+		String value = context.getString(STAGED, "");
+		if (!value.isEmpty())
+			rslt.addAll(Arrays.asList(value.split(SEPARATOR)));
+		return rslt;
+	}
+
+	public void setDirectoryResource(Resource directory) { this.source = directory; }
+	public void setStagingResource(Resource staging) { this.target = staging; }
+	public void setThreads(int threads) { this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors(); }
+	public void setLinks(boolean links) { this.links = links; }
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(source, "directory must be set");
+		Assert.notNull(target, "staging must be set");
+		AtomicInteger count = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(threads, task -> {
+			Thread thread = new Thread(task, "ftp-load-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public void destroy() {
+		if (executor != null)
+			executor.shutdownNow();
+	}
 }
@@ -0,0 +1,144 @@
+package com.example.demo.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+/**
+ * Escribe cada chunk con todos los escritores delegados a la vez, cada uno en su hilo:
+ * así un paso lee la tabla una sola vez y genera todas las salidas. Los delegados solo
+ * escriben en paralelo entre sí dentro de un chunk, no con la lectura del siguiente:
+ * write espera a que terminen todos y lanza el primer error (sin envolver,
+ * para que las políticas de reintento y omisión lo reconozcan), de modo que el estado
+ * que guarda update es siempre el de chunks completos en todos los ficheros. Los
+ * delegados (open, write, update y close) se usan solo desde su hilo, fuera de la
+ * transacción, y no pueden deshacer por sí mismos: si se deshace, se reabren todos desde
+ * el último estado guardado, como en un reinicio. Los delegados que guardan estado
+ * necesitan nombres distintos.
+ */
+public class FanOutItemWriter<T> implements ItemStreamWriter<T>, InitializingBean {
+	private List<ItemWriter<? super T>> delegates;
+
+	private final List<ExecutorService> executors = new ArrayList<>();
+	private ExecutionContext saved;
+	private boolean synchronizationRegistered;
+
+	@Override
+	public void open(ExecutionContext executionContext) {
+		for (int i = 0; i < delegates.size(); i++) {
+			String name = "fan-out-" + i;
+			executors.add(Executors.newSingleThreadExecutor(task -> {
+				Thread thread = new Thread(task, name);
+				thread.setDaemon(true);
+				return thread;
+			}));
+		}
+		streams(stream -> stream.open(executionContext));
+		saved = new ExecutionContext(executionContext);
+	}
+
+	@Override
+	public void write(List<? extends T> items) throws Exception {
+		registerSynchronization();
+		onEach(delegate -> delegate.write(items));
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) {
+		streams(stream -> stream.update(executionContext));
+		saved = new ExecutionContext(executionContext);
+	}
+
+	@Override
+	public void close() {
+		try {
+			streams(ItemStream::close);
+		} finally {
+			for (ExecutorService executor : executors)
+				executor.shutdownNow();
+			executors.clear();
+		}
+	}
+
+	// Al deshacer, los ficheros vuelven al último estado guardado
+	private void registerSynchronization() {
+		if (synchronizationRegistered || !TransactionSynchronizationManager.isSynchronizationActive())
+			return;
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(int status) {
+				synchronizationRegistered = false;
+				if (status == STATUS_COMMITTED || saved == null)
+					return;
+				ExecutionContext executionContext = saved;
+				streams(stream -> {
+					stream.close();
+					stream.open(new ExecutionContext(executionContext));
+				});
+			}
+		});
+		synchronizationRegistered = true;
+	}
+
+	@FunctionalInterface
+	private interface Action<D> {
+		void run(D delegate) throws Exception;
+	}
+
+	private void streams(Action<ItemStream> action) {
+		try {
+			onEach(delegate -> {
+				if (delegate instanceof ItemStream)
+					action.run((ItemStream) delegate);
+			});
+		} catch (ItemStreamException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ItemStreamException(e);
+		}
+	}
+
+	// Cada delegado se usa siempre desde su hilo, fuera de la transacción del paso;
+	// se espera a todos y se lanza el primer error
+	private void onEach(Action<ItemWriter<? super T>> action) throws Exception {
+		List<Future<?>> futures = new ArrayList<>(delegates.size());
+		for (int i = 0; i < delegates.size(); i++) {
+			ItemWriter<? super T> delegate = delegates.get(i);
+			futures.add(executors.get(i).submit(() -> {
+				action.run(delegate);
+				return null;
+			}));
+		}
+		Exception error = null;
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Error)
+					throw (Error) e.getCause();
+				if (error == null)
+					error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+			}
+		}
+		if (error != null)
+			throw error;
+	}
+
+	public void setDelegates(List<ItemWriter<? super T>> delegates) { this.delegates = delegates; }
+	public void afterPropertiesSet() throws Exception {
+		Assert.notEmpty(delegates, "delegates must be set");
+	}
+}
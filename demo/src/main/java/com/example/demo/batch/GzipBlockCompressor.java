@@ -0,0 +1,190 @@
+package com.example.demo.batch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * Compresión gzip por bloques en paralelo, al estilo de pigz: los datos se cortan en
+ * bloques de blockSize bytes y cada uno se comprime en el pool como un miembro gzip
+ * independiente; los miembros se escriben en orden y su concatenación es un gzip válido
+ * (gunzip y GZIPInputStream los leen seguidos). Cada canal tiene como mucho maxPending
+ * bloques en compresión. finish() cierra el bloque en curso y escribe todo lo pendiente,
+ * de modo que la posición del fichero queda en el límite de un miembro: los escritores lo
+ * llaman al final de cada chunk para que la posición de reinicio sea siempre un límite.
+ * Solo usa java.util.zip.
+ */
+public class GzipBlockCompressor implements InitializingBean {
+	private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+	private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+	private ExecutorService executor;
+	private int blockSize = 128 * 1024;
+	private int level = Deflater.DEFAULT_COMPRESSION;
+	private int maxPending = 2 * Runtime.getRuntime().availableProcessors();
+
+	public Channel channel(WritableByteChannel target) {
+		return new Channel(target);
+	}
+
+	// Un miembro gzip completo (cabecera de 10 bytes sin nombre ni fecha, deflate, CRC32 e ISIZE)
+	public static byte[] member(byte[] data, int offset, int length, int level) {
+		Deflater deflater = DEFLATERS.get();
+		deflater.reset();
+		deflater.setLevel(level);
+		deflater.setInput(data, offset, length);
+		deflater.finish();
+		byte[] out = Arrays.copyOf(HEADER, length + (length >>> 10) + 64);
+		int size = HEADER.length;
+		while (!deflater.finished()) {
+			if (size == out.length)
+				out = Arrays.copyOf(out, out.length * 2);
+			size += deflater.deflate(out, size, out.length - size);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(data, offset, length);
+		if (out.length < size + 8)
+			out = Arrays.copyOf(out, size + 8);
+		size = littleEndian(out, size, (int) crc.getValue());
+		size = littleEndian(out, size, length);
+		return size == out.length ? out : Arrays.copyOf(out, size);
+	}
+
+	private static int littleEndian(byte[] out, int position, int value) {
+		for (int i = 0; i < 4; i++)
+			out[position++] = (byte) (value >>> (8 * i));
+		return position;
+	}
+
+	/**
+	 * Canal que comprime lo que se escribe y lo pasa al canal destino en miembros gzip.
+	 * No es seguro para varios hilos; no cierra el destino.
+	 */
+	public final class Channel implements WritableByteChannel {
+		private final WritableByteChannel target;
+		private final Deque<Block> pending = new ArrayDeque<>();
+		private final Deque<byte[]> free = new ArrayDeque<>();
+		private byte[] block;
+		private int length;
+		private boolean open = true;
+
+		private final class Block {
+			final byte[] data;
+			final Future<byte[]> member;
+
+			Block(byte[] data, Future<byte[]> member) {
+				this.data = data;
+				this.member = member;
+			}
+		}
+
+		Channel(WritableByteChannel target) {
+			this.target = target;
+			this.block = new byte[blockSize];
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			if (!open)
+				throw new ClosedChannelException();
+			int written = src.remaining();
+			while (src.hasRemaining()) {
+				int n = Math.min(src.remaining(), blockSize - length);
+				src.get(block, length, n);
+				length += n;
+				if (length == blockSize)
+					submit();
+			}
+			return written;
+		}
+
+		// Comprime el bloque en curso aunque no esté lleno y escribe todos los pendientes
+		public void finish() throws IOException {
+			submit();
+			while (!pending.isEmpty())
+				drain();
+		}
+
+		// Descarta lo que aún no se ha escrito en el destino (al deshacer un chunk)
+		public void discard() {
+			for (Block pendingBlock : pending)
+				pendingBlock.member.cancel(false);
+			pending.clear();
+			length = 0;
+		}
+
+		private void submit() throws IOException {
+			if (length == 0)
+				return;
+			byte[] data = block;
+			int size = length;
+			FutureTask<byte[]> task = new FutureTask<>(() -> member(data, 0, size, level));
+			if (executor == null)
+				task.run();
+			else
+				executor.execute(task);
+			pending.add(new Block(data, task));
+			block = free.isEmpty() ? new byte[blockSize] : free.pop();
+			length = 0;
+			while (pending.size() > maxPending)
+				drain();
+		}
+
+		private void drain() throws IOException {
+			Block first = pending.poll();
+			byte[] member;
+			try {
+				member = first.member.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Compresión interrumpida");
+			} catch (ExecutionException e) {
+				throw new IOException("No se puede comprimir el bloque", e.getCause());
+			}
+			ByteBuffer bytes = ByteBuffer.wrap(member);
+			while (bytes.hasRemaining())
+				target.write(bytes);
+			free.push(first.data);
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!open)
+				return;
+			try {
+				finish();
+			} finally {
+				open = false;
+			}
+		}
+	}
+
+	public void setExecutor(ExecutorService executor) { this.executor = executor; }
+	public void setBlockSize(int blockSize) { this.blockSize = blockSize; }
+	public void setLevel(int level) { this.level = level; }
+	public void setMaxPending(int maxPending) { this.maxPending = maxPending; }
+	public void afterPropertiesSet() throws Exception {
+		Assert.isTrue(blockSize > 0, "blockSize must be positive");
+		Assert.isTrue(maxPending > 0, "maxPending must be positive");
+		Assert.isTrue(level == Deflater.DEFAULT_COMPRESSION || (level >= 0 && level <= 9), "level must be -1 or 0..9");
+	}
+}
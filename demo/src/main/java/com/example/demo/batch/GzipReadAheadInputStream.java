@@ -0,0 +1,138 @@
+package com.example.demo.batch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Descomprime un gzip (también de varios miembros, como los de GzipBlockCompressor) en un
+ * hilo propio, por delante de quien lee: el hilo llena hasta depth buffers de bufferSize
+ * bytes mientras el lector analiza los anteriores. Los buffers se reutilizan y los errores
+ * del hilo se lanzan en el read() que llega a ellos.
+ */
+public class GzipReadAheadInputStream extends InputStream {
+	private static final Chunk END = new Chunk(new byte[0]);
+
+	private final InputStream source;
+	private final BlockingQueue<Chunk> filled;
+	private final BlockingQueue<Chunk> free;
+	private final Thread producer;
+	private volatile boolean closed;
+	private Chunk current;
+	private int position;
+
+	private static final class Chunk {
+		final byte[] data;
+		int length;
+		IOException error;
+
+		Chunk(byte[] data) {
+			this.data = data;
+		}
+	}
+
+	public GzipReadAheadInputStream(InputStream source, int bufferSize, int depth) {
+		this.source = source;
+		this.filled = new ArrayBlockingQueue<>(depth + 1);
+		this.free = new ArrayBlockingQueue<>(depth);
+		for (int i = 0; i < depth; i++)
+			free.add(new Chunk(new byte[bufferSize]));
+		producer = new Thread(this::produce, "gunzip-" + Thread.currentThread().getName());
+		producer.setDaemon(true);
+		producer.start();
+	}
+
+	private void produce() {
+		try (InputStream in = new GZIPInputStream(source, 64 * 1024)) {
+			while (!closed) {
+				Chunk chunk = free.take();
+				chunk.length = 0;
+				chunk.error = null;
+				for (int n = 0; n >= 0 && chunk.length < chunk.data.length; chunk.length += Math.max(n, 0))
+					n = in.read(chunk.data, chunk.length, chunk.data.length - chunk.length);
+				if (chunk.length > 0)
+					filled.put(chunk);
+				if (chunk.length < chunk.data.length)
+					break;
+			}
+			filled.put(END);
+		} catch (IOException e) {
+			Chunk error = new Chunk(END.data);
+			error.error = e;
+			filled.offer(error);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!next())
+			return -1;
+		return current.data[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		if (!next())
+			return -1;
+		int n = Math.min(len, current.length - position);
+		System.arraycopy(current.data, position, b, off, n);
+		position += n;
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		while (skipped < n && next()) {
+			int step = (int) Math.min(n - skipped, current.length - position);
+			position += step;
+			skipped += step;
+		}
+		return skipped;
+	}
+
+	// Deja en current un buffer con bytes por leer; false al final
+	private boolean next() throws IOException {
+		if (current == END)
+			return false;
+		if (current != null && position < current.length)
+			return true;
+		if (current != null)
+			free.offer(current);
+		try {
+			current = filled.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Lectura interrumpida");
+		}
+		position = 0;
+		if (current.error != null) {
+			IOException error = current.error;
+			current = END;
+			throw error;
+		}
+		return current != END;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		producer.interrupt();
+		try {
+			producer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			source.close();
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package com.example.demo.batch;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Conjunto de ids (long) comprimido al estilo de roaring: los 48 bits altos eligen un
+ * contenedor y los 16 bajos se guardan en él, como array ordenado de char mientras
+ * tiene hasta 4096 valores y como mapa de bits de 8 KB a partir de ahí. Ids
+ * consecutivos cuestan un bit cada uno y los dispersos dos bytes, sin objetos por id.
+ * Se puede usar desde varios hilos: cada contenedor se bloquea por separado y add y
+ * remove devuelven si el conjunto cambió, de modo que solo un hilo gana cada id.
+ */
+public class IdBitmap {
+	private static final int ARRAY_MAX = 4096;
+
+	private final ConcurrentHashMap<Long, Container> containers = new ConcurrentHashMap<>();
+
+	// true si el id no estaba
+	public boolean add(long id) {
+		Container container = containers.computeIfAbsent(id >>> 16, key -> new Container());
+		synchronized (container) {
+			return container.add((char) id);
+		}
+	}
+
+	// true si el id estaba
+	public boolean remove(long id) {
+		Container container = containers.get(id >>> 16);
+		if (container == null)
+			return false;
+		synchronized (container) {
+			return container.remove((char) id);
+		}
+	}
+
+	public boolean contains(long id) {
+		Container container = containers.get(id >>> 16);
+		if (container == null)
+			return false;
+		synchronized (container) {
+			return container.contains((char) id);
+		}
+	}
+
+	public long cardinality() {
+		long rslt = 0;
+		for (Container container : containers.values())
+			synchronized (container) {
+				rslt += container.size;
+			}
+		return rslt;
+	}
+
+	// Bytes aproximados de los contenedores
+	public long sizeInBytes() {
+		long rslt = 0;
+		for (Container container : containers.values())
+			synchronized (container) {
+				rslt += container.bits != null ? container.bits.length * 8L : container.array.length * 2L;
+			}
+		return rslt;
+	}
+
+	public void clear() {
+		containers.clear();
+	}
+
+	private static final class Container {
+		private char[] array = new char[4];
+		private long[] bits;
+		private int size;
+
+		boolean add(char low) {
+			if (bits != null) {
+				long mask = 1L << low;
+				if ((bits[low >>> 6] & mask) != 0)
+					return false;
+				bits[low >>> 6] |= mask;
+				size++;
+				return true;
+			}
+			int i = Arrays.binarySearch(array, 0, size, low);
+			if (i >= 0)
+				return false;
+			if (size == ARRAY_MAX) {
+				toBits();
+				return add(low);
+			}
+			i = -i - 1;
+			if (size == array.length)
+				array = Arrays.copyOf(array, Math.min(ARRAY_MAX, array.length * 2));
+			System.arraycopy(array, i, array, i + 1, size - i);
+			array[i] = low;
+			size++;
+			return true;
+		}
+
+		boolean remove(char low) {
+			if (bits != null) {
+				long mask = 1L << low;
+				if ((bits[low >>> 6] & mask) == 0)
+					return false;
+				bits[low >>> 6] &= ~mask;
+				if (--size <= ARRAY_MAX)
+					toArray();
+				return true;
+			}
+			int i = Arrays.binarySearch(array, 0, size, low);
+			if (i < 0)
+				return false;
+			System.arraycopy(array, i + 1, array, i, size - i - 1);
+			size--;
+			return true;
+		}
+
+		boolean contains(char low) {
+			if (bits != null)
+				return (bits[low >>> 6] & 1L << low) != 0;
+			return Arrays.binarySearch(array, 0, size, low) >= 0;
+		}
+
+		private void toBits() {
+			bits = new long[1 << 10];
+			for (int i = 0; i < size; i++)
+				bits[array[i] >>> 6] |= 1L << array[i];
+			array = null;
+		}
+
+		private void toArray() {
+			array = new char[ARRAY_MAX];
+			int n = 0;
+			for (int word = 0; word < bits.length; word++)
+				for (long w = bits[word]; w != 0; w &= w - 1)
+					array[n++] = (char) (word << 6 | Long.numberOfTrailingZeros(w));
+			bits = null;
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package com.example.demo.batch;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Broker en memoria: una cola de peticiones compartida por todos los workers del
+ * mismo proceso y una cola de resultados para el manager. Sustituye al broker de
+ * mensajería en pruebas y en despliegues de un solo nodo.
+ */
+public class InVmPartitionTransport implements PartitionTransport {
+	private final BlockingQueue<PartitionRequest> requests = new LinkedBlockingQueue<>();
+	private final BlockingQueue<PartitionResult> results = new LinkedBlockingQueue<>();
+
+	@Override
+	public void send(PartitionRequest request) {
+		requests.add(request);
+	}
+
+	@Override
+	public PartitionResult receiveResult(long timeout, TimeUnit unit) throws InterruptedException {
+		return results.poll(timeout, unit);
+	}
+
+	@Override
+	public PartitionRequest receiveRequest() throws InterruptedException {
+		return requests.take();
+	}
+
+	@Override
+	public void sendResult(PartitionResult result) {
+		results.add(result);
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,307 @@
+package com.example.demo.batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * Auditoría por elemento sin coste en el camino caliente: record publica un registro de
+ * tamaño fijo (id, paso, fase, resultado, nanos) en un buffer circular preasignado, sin
+ * bloqueos ni objetos nuevos, y un hilo en segundo plano los escribe por lotes en
+ * dir/items.audit, que rota a items-fecha.audit al pasar de maxFileSize (se guardan los
+ * maxFiles últimos). Con sample n solo se registra uno de cada n ids (siempre los mismos,
+ * con todas sus fases); los errores se registran siempre. Si el buffer se llena el
+ * productor espera al escritor, no se pierden registros. Los ficheros se leen con
+ * ItemAuditReader. El escritor no termina mientras quede algún record en curso, y es él
+ * quien cierra el fichero; close espera un tiempo acotado a que acabe.
+ * <p>
+ * Formato: "AUD1" y entradas que empiezan por un byte, 'S' (int índice, short longitud y
+ * nombre del paso en UTF-8, antes del primer registro de ese paso en el fichero) o 'R'
+ * (long fecha en ms, long id, int paso, byte fase, byte resultado, long nanos).
+ */
+public class ItemAuditLog implements InitializingBean, Closeable {
+	private static final Logger log = LoggerFactory.getLogger(ItemAuditLog.class);
+	public static final int MAGIC = 0x41554431; // "AUD1"
+	public static final byte STEP = 'S';
+	public static final byte RECORD = 'R';
+	public static final int RECORD_SIZE = 1 + 8 + 8 + 4 + 1 + 1 + 8;
+	static final String CURRENT = "items.audit";
+	private static final String STAMP = "yyyyMMdd-HHmmss-SSS";
+
+	public enum Phase { READ, PROCESS, WRITE }
+	public enum Outcome { OK, FILTERED, SKIPPED, ERROR }
+
+	private Path dir;
+	private int capacity = 65536;
+	private int sample = 1;
+	private long maxFileSize = 64L * 1024 * 1024;
+	private int maxFiles = 10;
+
+	// Buffer circular: cada campo en su array, la posición i guarda la secuencia publicada
+	private int mask;
+	private long[] times, ids, nanos;
+	private int[] steps;
+	private byte[] phases, outcomes;
+	private AtomicLongArray published;
+	private final AtomicLong claimed = new AtomicLong();
+	private final AtomicLong consumed = new AtomicLong();
+	// Productores dentro de record: el escritor no termina hasta que salen todos
+	private final AtomicInteger producers = new AtomicInteger();
+
+	private final Map<String, Integer> stepIndexes = new ConcurrentHashMap<>();
+	private final List<String> stepNames = new CopyOnWriteArrayList<>();
+
+	private volatile boolean closed;
+	private Thread writer;
+	private FileChannel channel;
+	private long size;
+	private long rotated;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+	private final BitSet defined = new BitSet();
+
+	public void record(long id, Phase phase, Outcome outcome, long nanos) {
+		StepContext context = StepSynchronizationManager.getContext();
+		record(id, context == null ? "-" : context.getStepName(), phase, outcome, nanos);
+	}
+
+	public void record(long id, String step, Phase phase, Outcome outcome, long nanos) {
+		if (sample > 1 && outcome != Outcome.ERROR && !sampled(id))
+			return;
+		// Se entra antes de mirar closed: o close ya se ve aquí, o el escritor ve este
+		// productor y espera a que publique su registro
+		producers.incrementAndGet();
+		try {
+			if (closed)
+				return;
+			int stepIndex = stepIndex(step);
+			long seq = claimed.getAndIncrement();
+			while (seq - consumed.get() >= capacity)
+				LockSupport.parkNanos(1000);
+			int i = (int) seq & mask;
+			times[i] = System.currentTimeMillis();
+			ids[i] = id;
+			steps[i] = stepIndex;
+			phases[i] = (byte) phase.ordinal();
+			outcomes[i] = (byte) outcome.ordinal();
+			this.nanos[i] = nanos;
+			published.lazySet(i, seq);
+		} finally {
+			producers.decrementAndGet();
+		}
+	}
+
+	// Muestreo por id mezclado, para no depender de los patrones de los ids (pares, etc.)
+	private boolean sampled(long id) {
+		return ((id * 0x9E3779B97F4A7C15L) >>> 33) % sample == 0;
+	}
+
+	private int stepIndex(String step) {
+		Integer index = stepIndexes.get(step);
+		return index != null ? index : registerStep(step);
+	}
+
+	private synchronized int registerStep(String step) {
+		Integer index = stepIndexes.get(step);
+		if (index == null) {
+			index = stepNames.size();
+			stepNames.add(step);
+			stepIndexes.put(step, index);
+		}
+		return index;
+	}
+
+	private void drain() {
+		try {
+			drainUntilClosed();
+		} finally {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				log.error("No se puede cerrar la auditoría en " + dir, e);
+			}
+		}
+	}
+
+	private void drainUntilClosed() {
+		long next = consumed.get();
+		while (true) {
+			long seq = next;
+			int i = (int) seq & mask;
+			while (published.get(i) == seq) {
+				try {
+					write(i);
+				} catch (IOException | RuntimeException e) {
+					log.error("No se puede escribir la auditoría en " + dir, e);
+					buffer.clear();
+				}
+				i = (int) ++seq & mask;
+			}
+			if (seq != next) {
+				consumed.lazySet(next = seq);
+				continue;
+			}
+			try {
+				flush();
+			} catch (IOException e) {
+				log.error("No se puede escribir la auditoría en " + dir, e);
+				buffer.clear();
+			}
+			// Se lee claimed después de producers: un productor que ya salió dejó su registro publicado
+			if (closed && producers.get() == 0 && claimed.get() == next)
+				return;
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+	}
+
+	private void write(int i) throws IOException {
+		int step = steps[i];
+		byte[] name = defined.get(step) ? null : stepName(step);
+		if (size + buffer.position() + RECORD_SIZE + (name == null ? 0 : 7 + name.length) > maxFileSize
+				&& size + buffer.position() > 4) {
+			flush();
+			roll();
+			name = stepName(step);
+		}
+		if (buffer.remaining() < RECORD_SIZE + (name == null ? 0 : 7 + name.length))
+			flush();
+		if (name != null) {
+			buffer.put(STEP).putInt(step).putShort((short) name.length).put(name);
+			defined.set(step);
+		}
+		buffer.put(RECORD).putLong(times[i]).putLong(ids[i]).putInt(step)
+				.put(phases[i]).put(outcomes[i]).putLong(nanos[i]);
+	}
+
+	private byte[] stepName(int step) {
+		String name = stepNames.get(step);
+		return (name.length() > 256 ? name.substring(0, 256) : name).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private void flush() throws IOException {
+		if (buffer.position() == 0)
+			return;
+		buffer.flip();
+		size += buffer.remaining();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	private void roll() throws IOException {
+		channel.close();
+		rotate();
+		open();
+	}
+
+	// items.audit pasa a items-fecha.audit y se borran los más antiguos
+	private void rotate() throws IOException {
+		List<Path> rolled = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "items-*.audit")) {
+			for (Path file : files)
+				rolled.add(file);
+		}
+		Collections.sort(rolled);
+		SimpleDateFormat format = new SimpleDateFormat(STAMP);
+		// Fechas siempre crecientes, también respecto a los rotados de una ejecución anterior:
+		// dos rotaciones en el mismo milisegundo no se pisan ni se desordenan
+		if (!rolled.isEmpty()) {
+			String name = rolled.get(rolled.size() - 1).getFileName().toString();
+			try {
+				rotated = Math.max(rotated, format.parse(name.substring("items-".length(),
+						name.length() - ".audit".length())).getTime());
+			} catch (ParseException e) {
+				log.warn("Nombre de auditoría rotada inesperado: {}", name);
+			}
+		}
+		rotated = Math.max(System.currentTimeMillis(), rotated + 1);
+		Path target = dir.resolve("items-" + format.format(new Date(rotated)) + ".audit");
+		Files.move(dir.resolve(CURRENT), target);
+		rolled.add(target);
+		for (int i = 0; i < rolled.size() - maxFiles; i++)
+			Files.deleteIfExists(rolled.get(i));
+	}
+
+	private void open() throws IOException {
+		channel = FileChannel.open(dir.resolve(CURRENT), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		ByteBuffer header = ByteBuffer.allocate(4).putInt(MAGIC);
+		header.flip();
+		channel.write(header);
+		size = 4;
+		defined.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		if (writer == null)
+			return;
+		try {
+			writer.join(TimeUnit.SECONDS.toMillis(10));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// El fichero lo cierra el escritor al terminar, no se le cierra mientras escribe
+		if (writer.isAlive())
+			log.warn("La auditoría en {} sigue escribiéndose; se cerrará al terminar", dir);
+	}
+
+	public void setDirectory(Path dir) { this.dir = dir; }
+	public void setCapacity(int capacity) { this.capacity = capacity; }
+	public void setSample(int sample) { this.sample = sample; }
+	public void setMaxFileSize(long maxFileSize) { this.maxFileSize = maxFileSize; }
+	public void setMaxFiles(int maxFiles) { this.maxFiles = maxFiles; }
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(dir, "directory must be set");
+		Assert.isTrue(capacity > 0 && Integer.bitCount(capacity) == 1, "capacity must be a power of two");
+		Assert.isTrue(sample > 0, "sample must be positive");
+		Assert.isTrue(maxFiles >= 0, "maxFiles must not be negative");
+		Assert.isTrue(maxFileSize > 4 + RECORD_SIZE, "maxFileSize too small");
+		mask = capacity - 1;
+		times = new long[capacity];
+		ids = new long[capacity];
+		nanos = new long[capacity];
+		steps = new int[capacity];
+		phases = new byte[capacity];
+		outcomes = new byte[capacity];
+		published = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++)
+			published.set(i, -1);
+		Files.createDirectories(dir);
+		// Cada arranque empieza fichero: el de la ejecución anterior se rota
+		if (Files.exists(dir.resolve(CURRENT)) && Files.size(dir.resolve(CURRENT)) > 4)
+			rotate();
+		open();
+		writer = new Thread(this::drain, "item-audit");
+		writer.setDaemon(true);
+		writer.start();
+	}
+}
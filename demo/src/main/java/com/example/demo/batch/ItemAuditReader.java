@@ -0,0 +1,114 @@
+package com.example.demo.batch;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.example.demo.batch.ItemAuditLog.Outcome;
+import com.example.demo.batch.ItemAuditLog.Phase;
+
+/**
+ * Lee los ficheros de ItemAuditLog. Desde la línea de comandos imprime un registro por
+ * línea (fecha, paso, fase, resultado, id y nanos separados por tabuladores) de los
+ * ficheros o directorios indicados; de un directorio, los rotados y después el actual:
+ * java -cp demo.jar -Dloader.main=com.example.demo.batch.ItemAuditReader
+ * org.springframework.boot.loader.PropertiesLauncher audit
+ */
+public class ItemAuditReader {
+	public static final class Entry {
+		public final long time;
+		public final String step;
+		public final Phase phase;
+		public final Outcome outcome;
+		public final long id;
+		public final long nanos;
+
+		Entry(long time, String step, Phase phase, Outcome outcome, long id, long nanos) {
+			this.time = time;
+			this.step = step;
+			this.phase = phase;
+			this.outcome = outcome;
+			this.id = id;
+			this.nanos = nanos;
+		}
+	}
+
+	public static void read(Path file, Consumer<Entry> consumer) throws IOException {
+		Map<Integer, String> steps = new HashMap<>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+			if (in.readInt() != ItemAuditLog.MAGIC)
+				throw new IOException("No es un fichero de auditoría: " + file);
+			while (true) {
+				int kind = in.read();
+				if (kind == -1)
+					return;
+				try {
+					if (kind == ItemAuditLog.STEP) {
+						int index = in.readInt();
+						byte[] name = new byte[in.readUnsignedShort()];
+						in.readFully(name);
+						steps.put(index, new String(name, StandardCharsets.UTF_8));
+					} else if (kind == ItemAuditLog.RECORD) {
+						long time = in.readLong();
+						long id = in.readLong();
+						String step = steps.get(in.readInt());
+						Phase phase = Phase.values()[in.readByte()];
+						Outcome outcome = Outcome.values()[in.readByte()];
+						consumer.accept(new Entry(time, step, phase, outcome, id, in.readLong()));
+					} else {
+						throw new IOException("Entrada desconocida " + kind + " en " + file);
+					}
+				} catch (EOFException e) {
+					// Último registro a medio escribir (la aplicación sigue en marcha o se cortó)
+					return;
+				}
+			}
+		}
+	}
+
+	// Un directorio se lee en orden: los rotados (items-fecha.audit) y después items.audit
+	public static List<Path> files(Path path) throws IOException {
+		List<Path> rslt = new ArrayList<>();
+		if (!Files.isDirectory(path)) {
+			rslt.add(path);
+			return rslt;
+		}
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(path, "items-*.audit")) {
+			for (Path file : files)
+				rslt.add(file);
+		}
+		Collections.sort(rslt);
+		if (Files.exists(path.resolve(ItemAuditLog.CURRENT)))
+			rslt.add(path.resolve(ItemAuditLog.CURRENT));
+		return rslt;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Uso: ItemAuditReader fichero|directorio...");
+			System.exit(1);
+		}
+		PrintStream out = System.out;
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+		for (String arg : args)
+			for (Path file : files(Paths.get(arg)))
+				read(file, entry -> out.println(format.format(new Date(entry.time)) + "\t" + entry.step + "\t"
+						+ entry.phase + "\t" + entry.outcome + "\t" + entry.id + "\t" + entry.nanos));
+		out.flush();
+	}
+}
@@ -6,21 +6,50 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.batch.core.listener.ItemListenerSupport;
 
+import com.example.demo.batch.ItemAuditLog.Outcome;
+import com.example.demo.batch.ItemAuditLog.Phase;
+import com.example.demo.model.Persona;
+import com.example.demo.model.PersonaDTO;
+
+/**
+ * Errores de lectura, proceso y escritura. Con auditLog se registran en la auditoría por
+ * id del elemento, sin formatear el elemento; las trazas de las excepciones de lectura y
+ * escritura se siguen registrando en el log.
+ */
 public class ItemFailureLoggerListener extends ItemListenerSupport {
 	private static Log logger = LogFactory.getLog("ITEM ERROR");
+	private ItemAuditLog auditLog;
 
 	@Override
 	public void onReadError(Exception ex) {
+		if (auditLog != null)
+			auditLog.record(-1, Phase.READ, Outcome.ERROR, 0);
 		logger.error("Read Error", ex);
 	}
 
 	@Override
 	public void onProcessError(Object item, Exception ex) {
-		logger.error(item);
+		if (auditLog != null)
+			auditLog.record(id(item), Phase.PROCESS, Outcome.ERROR, 0);
+		else
+			logger.error(item);
 	}
 
 	@Override
 	public void onWriteError(Exception ex, List item) {
+		if (auditLog != null)
+			for (Object element : item)
+				auditLog.record(id(element), Phase.WRITE, Outcome.ERROR, 0);
 		logger.error("Write Error", ex);
 	}
+
+	private static long id(Object item) {
+		if (item instanceof PersonaDTO)
+			return ((PersonaDTO) item).getId();
+		if (item instanceof Persona)
+			return ((Persona) item).getId();
+		return -1;
+	}
+
+	public void setAuditLog(ItemAuditLog auditLog) { this.auditLog = auditLog; }
 }
@@ -0,0 +1,343 @@
+package com.example.demo.batch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.support.AbstractItemStreamItemReader;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+import com.example.demo.model.PersonaDTO;
+
+/**
+ * Lector CSV de PersonaDTO sobre el fichero proyectado en memoria (por ventanas,
+ * para ficheros de más de 2 GB). Separa los campos sobre los bytes UTF-8 sin crear
+ * la línea como String y solo crea String para las columnas que se asignan; las
+ * columnas sin nombre se saltan. Guarda el desplazamiento en bytes de la siguiente
+ * línea, de modo que un reinicio va directo a ella sin volver a leer las anteriores.
+ * Con gzip el fichero está comprimido: un hilo lo descomprime por delante
+ * (GzipReadAheadInputStream) y las ventanas se llenan en memoria en lugar de
+ * proyectarse; los desplazamientos son de los datos descomprimidos y al reiniciar se
+ * descomprimen y descartan los bytes anteriores. Un recurso que no es un fichero (en
+ * el classpath dentro del jar) se lee igual, por ventanas en memoria desde
+ * getInputStream().
+ */
+public class MappedPersonaCSVItemReader extends AbstractItemStreamItemReader<PersonaDTO> {
+	private static final String OFFSET = "offset";
+	private static final String READ_COUNT = "read.count";
+
+	@FunctionalInterface
+	private interface Column {
+		void set(PersonaDTO target, MappedPersonaCSVItemReader reader, int start, int end, boolean quoted);
+	}
+
+	private Resource resource;
+	private String[] names;
+	private int linesToSkip;
+	private long startOffset = -1;
+	private int maxItemCount = Integer.MAX_VALUE;
+	private byte delimiter = ',';
+	private int windowSize = 256 * 1024 * 1024;
+	private boolean saveState = true;
+	private boolean gzip;
+	// Ventana en memoria cuando se lee como stream (comprimido o fuera de un fichero)
+	private int gzipWindowSize = 4 * 1024 * 1024;
+
+	private FileChannel channel;
+	private InputStream input;
+	private long size;
+	private ByteBuffer window;
+	private long windowStart;
+	private long windowEnd;
+	private long offset;
+	private long nextOffset;
+	private int lineEnd;
+	private int count;
+	private Column[] columns;
+	private byte[] scratch = new byte[256];
+
+	@Override
+	public void open(ExecutionContext executionContext) {
+		Assert.notNull(resource, "resource must be set");
+		Assert.notEmpty(names, "names must be set");
+		columns = new Column[names.length];
+		for (int i = 0; i < names.length; i++)
+			columns[i] = column(names[i]);
+		try {
+			window = null;
+			InputStream stream;
+			if (resource.isFile()) {
+				channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ);
+				stream = gzip ? Channels.newInputStream(channel) : null;
+			} else {
+				stream = resource.getInputStream();
+			}
+			input = gzip ? new GzipReadAheadInputStream(stream, 1024 * 1024, 4) : stream;
+			if (input != null) {
+				// Tamaño (descomprimido) desconocido hasta llegar al final
+				size = Long.MAX_VALUE;
+				windowStart = windowEnd = 0;
+			} else {
+				size = channel.size();
+			}
+			if (executionContext.containsKey(getExecutionContextKey(OFFSET))) {
+				offset = executionContext.getLong(getExecutionContextKey(OFFSET));
+				count = executionContext.getInt(getExecutionContextKey(READ_COUNT), 0);
+				skip(offset);
+			} else {
+				count = 0;
+				offset = startOffset >= 0 ? startOffset : 0;
+				skip(offset);
+				for (int i = 0; startOffset < 0 && i < linesToSkip && offset < size; i++) {
+					nextLine();
+					offset = nextOffset;
+				}
+			}
+		} catch (IOException e) {
+			close();
+			throw new ItemStreamException((gzip ? "No se puede descomprimir " : "No se puede leer ") + resource, e);
+		}
+	}
+
+	// Leído como stream, descarta los primeros bytes (descomprimidos)
+	private void skip(long bytes) throws IOException {
+		if (input == null)
+			return;
+		for (long skipped = 0; skipped < bytes; ) {
+			long n = input.skip(bytes - skipped);
+			if (n <= 0)
+				break;
+			skipped += n;
+		}
+		windowStart = windowEnd = bytes;
+	}
+
+	@Override
+	public PersonaDTO read() throws Exception {
+		if (channel == null && input == null)
+			throw new ItemStreamException("El lector no está abierto");
+		while (count < maxItemCount && offset < size) {
+			int start = nextLine();
+			long lineOffset = offset;
+			offset = nextOffset;
+			if (lineEnd == start)
+				continue;
+			count++;
+			try {
+				return parse(start, lineEnd);
+			} catch (RuntimeException e) {
+				throw new FlatFileParseException("Línea incorrecta en el byte " + lineOffset + ": " + e.getMessage(),
+						e, string(start, lineEnd, false), count + linesToSkip);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) {
+		if (!saveState)
+			return;
+		executionContext.putLong(getExecutionContextKey(OFFSET), offset);
+		executionContext.putInt(getExecutionContextKey(READ_COUNT), count);
+	}
+
+	@Override
+	public void close() {
+		window = null;
+		if (channel == null && input == null)
+			return;
+		try {
+			if (input != null)
+				input.close();
+			if (channel != null)
+				channel.close();
+		} catch (IOException e) {
+			throw new ItemStreamException("No se puede cerrar " + resource, e);
+		} finally {
+			channel = null;
+			input = null;
+		}
+	}
+
+	// Deja en la ventana la línea que empieza en offset: devuelve su inicio relativo,
+	// fija lineEnd (sin \r\n) y nextOffset
+	private int nextLine() throws IOException {
+		if (window == null || offset < windowStart || offset >= windowEnd)
+			map(offset);
+		int start = (int) (offset - windowStart);
+		int end = find(start);
+		if (end < 0 && windowEnd < size) {
+			map(offset);
+			start = 0;
+			end = find(start);
+			if (end < 0 && windowEnd < size)
+				throw new ItemStreamException("Línea mayor que la ventana de " + windowSize + " bytes en el byte " + offset);
+		}
+		if (end < 0) {
+			end = (int) (windowEnd - windowStart);
+			nextOffset = windowEnd;
+		} else {
+			nextOffset = windowStart + end + 1;
+		}
+		lineEnd = end > start && window.get(end - 1) == '\r' ? end - 1 : end;
+		return start;
+	}
+
+	private void map(long position) throws IOException {
+		if (input != null) {
+			fill(position);
+			return;
+		}
+		long length = Math.min(windowSize, size - position);
+		window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+		windowStart = position;
+		windowEnd = position + length;
+	}
+
+	// Como stream la lectura es secuencial: la ventana nueva empieza por lo que quedaba
+	// de la anterior desde position y se completa con lo siguiente del fichero
+	private void fill(long position) throws IOException {
+		if (window == null)
+			window = ByteBuffer.allocate(Math.min(windowSize, gzipWindowSize));
+		int keep = (int) Math.max(0, windowEnd - position);
+		byte[] data = window.array();
+		System.arraycopy(data, (int) (position - windowStart), data, 0, keep);
+		int length = keep;
+		for (int n = 0; n >= 0 && length < data.length; length += Math.max(n, 0))
+			n = input.read(data, length, data.length - length);
+		windowStart = position;
+		windowEnd = position + length;
+		if (length < data.length)
+			size = windowEnd;
+	}
+
+	private int find(int from) {
+		int limit = (int) (windowEnd - windowStart);
+		boolean quoted = false;
+		for (int i = from; i < limit; i++) {
+			byte b = window.get(i);
+			if (b == '"')
+				quoted = !quoted;
+			else if (b == '\n' && !quoted)
+				return i;
+		}
+		return -1;
+	}
+
+	private PersonaDTO parse(int start, int end) {
+		PersonaDTO rslt = new PersonaDTO();
+		int column = 0;
+		int i = start;
+		while (i <= end && column < columns.length) {
+			int fieldStart = i;
+			int fieldEnd;
+			boolean quoted = i < end && window.get(i) == '"';
+			if (quoted) {
+				for (fieldStart = ++i; i < end; i++) {
+					if (window.get(i) != '"')
+						continue;
+					if (i + 1 < end && window.get(i + 1) == '"')
+						i++;
+					else
+						break;
+				}
+				fieldEnd = i++;
+				while (i < end && window.get(i) != delimiter)
+					i++;
+			} else {
+				while (i < end && window.get(i) != delimiter)
+					i++;
+				fieldEnd = i;
+			}
+			if (columns[column] != null)
+				columns[column].set(rslt, this, fieldStart, fieldEnd, quoted);
+			column++;
+			i++;
+		}
+		if (column != columns.length || i <= end)
+			throw new IllegalStateException("se esperaban " + columns.length + " columnas");
+		return rslt;
+	}
+
+	private long number(int start, int end) {
+		while (start < end && (window.get(start) & 0xFF) <= ' ')
+			start++;
+		while (end > start && (window.get(end - 1) & 0xFF) <= ' ')
+			end--;
+		if (start == end)
+			throw new NumberFormatException("valor vacío");
+		boolean negative = window.get(start) == '-';
+		if (negative || window.get(start) == '+')
+			start++;
+		if (start == end)
+			throw new NumberFormatException("valor sin dígitos");
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			int digit = window.get(i) - '0';
+			if (digit < 0 || digit > 9)
+				throw new NumberFormatException("dígito incorrecto '" + (char) window.get(i) + "'");
+			value = Math.subtractExact(Math.multiplyExact(value, 10), digit);
+		}
+		return negative ? value : Math.negateExact(value);
+	}
+
+	private String string(int start, int end, boolean quoted) {
+		if (!quoted) {
+			while (start < end && (window.get(start) & 0xFF) <= ' ')
+				start++;
+			while (end > start && (window.get(end - 1) & 0xFF) <= ' ')
+				end--;
+		}
+		int length = end - start;
+		if (scratch.length < length)
+			scratch = new byte[Math.max(length, scratch.length * 2)];
+		int n = 0;
+		for (int i = start; i < end; i++) {
+			byte b = window.get(i);
+			scratch[n++] = b;
+			if (quoted && b == '"' && i + 1 < end && window.get(i + 1) == '"')
+				i++;
+		}
+		return new String(scratch, 0, n, StandardCharsets.UTF_8);
+	}
+
+	private static Column column(String name) {
+		if (name == null || name.trim().isEmpty())
+			return null;
+		switch (name.trim().toLowerCase()) {
+		case "id":
+			return (target, reader, start, end, quoted) -> target.setId(reader.number(start, end));
+		case "nombre":
+			return (target, reader, start, end, quoted) -> target.setNombre(reader.string(start, end, quoted));
+		case "apellidos":
+			return (target, reader, start, end, quoted) -> target.setApellidos(reader.string(start, end, quoted));
+		case "correo":
+			return (target, reader, start, end, quoted) -> target.setCorreo(reader.string(start, end, quoted));
+		case "sexo":
+			return (target, reader, start, end, quoted) -> target.setSexo(reader.string(start, end, quoted));
+		case "ip":
+			return (target, reader, start, end, quoted) -> target.setIp(reader.string(start, end, quoted));
+		default:
+			throw new IllegalArgumentException("PersonaDTO no tiene la propiedad " + name);
+		}
+	}
+
+	public void setResource(Resource resource) { this.resource = resource; }
+	public void setNames(String... names) { this.names = names; }
+	public void setLinesToSkip(int linesToSkip) { this.linesToSkip = linesToSkip; }
+	public void setStartOffset(long startOffset) { this.startOffset = startOffset; }
+	public void setMaxItemCount(int maxItemCount) { this.maxItemCount = maxItemCount; }
+	public void setDelimiter(char delimiter) { this.delimiter = (byte) delimiter; }
+	public void setWindowSize(int windowSize) { this.windowSize = windowSize; }
+	public void setSaveState(boolean saveState) { this.saveState = saveState; }
+	public void setGzip(boolean gzip) { this.gzip = gzip; }
+	public void setGzipWindowSize(int gzipWindowSize) { this.gzipWindowSize = gzipWindowSize; }
+}
@@ -0,0 +1,46 @@
+package com.example.demo.batch;
+
+import java.io.Serializable;
+
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+
+/**
+ * Partición que el manager envía a un worker: el paso que hay que ejecutar y el
+ * ExecutionContext de la StepExecution que el manager ya ha guardado en su JobRepository.
+ */
+public class PartitionRequest implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final String jobName;
+	private final long jobExecutionId;
+	private final JobParameters jobParameters;
+	private final String stepName;
+	private final long stepExecutionId;
+	private final String stepExecutionName;
+	private final ExecutionContext executionContext;
+
+	public PartitionRequest(String stepName, StepExecution stepExecution) {
+		this.jobName = stepExecution.getJobExecution().getJobInstance().getJobName();
+		this.jobExecutionId = stepExecution.getJobExecutionId();
+		this.jobParameters = stepExecution.getJobParameters();
+		this.stepName = stepName;
+		this.stepExecutionId = stepExecution.getId();
+		this.stepExecutionName = stepExecution.getStepName();
+		this.executionContext = new ExecutionContext(stepExecution.getExecutionContext());
+	}
+
+	public String getJobName() { return jobName; }
+	public long getJobExecutionId() { return jobExecutionId; }
+	public JobParameters getJobParameters() { return jobParameters; }
+	public String getStepName() { return stepName; }
+	public long getStepExecutionId() { return stepExecutionId; }
+	public String getStepExecutionName() { return stepExecutionName; }
+	public ExecutionContext getExecutionContext() { return executionContext; }
+
+	@Override
+	public String toString() {
+		return "PartitionRequest [" + stepExecutionName + ", id=" + stepExecutionId + "]";
+	}
+}
@@ -0,0 +1,105 @@
+package com.example.demo.batch;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+
+/**
+ * Estado final de una partición ejecutada en un worker, para que el manager lo
+ * copie en la StepExecution de su JobRepository.
+ */
+public class PartitionResult implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final long stepExecutionId;
+	private final String worker;
+	private BatchStatus status;
+	private String exitCode;
+	private String exitDescription;
+	private int readCount;
+	private int writeCount;
+	private int filterCount;
+	private int commitCount;
+	private int rollbackCount;
+	private int readSkipCount;
+	private int processSkipCount;
+	private int writeSkipCount;
+	private Date startTime;
+	private Date endTime;
+	private ExecutionContext executionContext;
+	private final List<String> failures = new ArrayList<>();
+
+	private PartitionResult(long stepExecutionId, String worker) {
+		this.stepExecutionId = stepExecutionId;
+		this.worker = worker;
+	}
+
+	public static PartitionResult of(long stepExecutionId, String worker, StepExecution execution) {
+		PartitionResult rslt = new PartitionResult(stepExecutionId, worker);
+		rslt.status = execution.getStatus();
+		rslt.exitCode = execution.getExitStatus().getExitCode();
+		rslt.exitDescription = execution.getExitStatus().getExitDescription();
+		rslt.readCount = execution.getReadCount();
+		rslt.writeCount = execution.getWriteCount();
+		rslt.filterCount = execution.getFilterCount();
+		rslt.commitCount = execution.getCommitCount();
+		rslt.rollbackCount = execution.getRollbackCount();
+		rslt.readSkipCount = execution.getReadSkipCount();
+		rslt.processSkipCount = execution.getProcessSkipCount();
+		rslt.writeSkipCount = execution.getWriteSkipCount();
+		rslt.startTime = execution.getStartTime();
+		rslt.endTime = execution.getEndTime();
+		rslt.executionContext = new ExecutionContext(execution.getExecutionContext());
+		for (Throwable failure : execution.getFailureExceptions())
+			rslt.failures.add(failure.toString());
+		return rslt;
+	}
+
+	public static PartitionResult failed(PartitionRequest request, String worker, Throwable cause) {
+		PartitionResult rslt = new PartitionResult(request.getStepExecutionId(), worker);
+		rslt.status = BatchStatus.FAILED;
+		rslt.exitCode = ExitStatus.FAILED.getExitCode();
+		rslt.exitDescription = cause.toString();
+		rslt.startTime = rslt.endTime = new Date();
+		rslt.executionContext = request.getExecutionContext();
+		rslt.failures.add(cause.toString());
+		return rslt;
+	}
+
+	/**
+	 * Copia el resultado en la StepExecution del manager.
+	 */
+	public void applyTo(StepExecution execution) {
+		execution.setStatus(status);
+		execution.setExitStatus(new ExitStatus(exitCode, exitDescription));
+		execution.setReadCount(readCount);
+		execution.setWriteCount(writeCount);
+		execution.setFilterCount(filterCount);
+		execution.setCommitCount(commitCount);
+		execution.setRollbackCount(rollbackCount);
+		execution.setReadSkipCount(readSkipCount);
+		execution.setProcessSkipCount(processSkipCount);
+		execution.setWriteSkipCount(writeSkipCount);
+		if (startTime != null)
+			execution.setStartTime(startTime);
+		execution.setEndTime(endTime);
+		execution.setExecutionContext(new ExecutionContext(executionContext));
+		for (String failure : failures)
+			execution.addFailureException(new IllegalStateException("[" + worker + "] " + failure));
+	}
+
+	public long getStepExecutionId() { return stepExecutionId; }
+	public String getWorker() { return worker; }
+	public BatchStatus getStatus() { return status; }
+
+	@Override
+	public String toString() {
+		return "PartitionResult [id=" + stepExecutionId + ", worker=" + worker + ", status=" + status + "]";
+	}
+}
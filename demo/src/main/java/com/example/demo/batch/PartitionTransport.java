@@ -0,0 +1,20 @@
+package com.example.demo.batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Canal entre el manager y los workers del particionado remoto. Las peticiones
+ * se reparten entre los workers conectados (el primero libre se la lleva) y los
+ * resultados vuelven al manager.
+ */
+public interface PartitionTransport extends Closeable {
+	// Lado manager
+	void send(PartitionRequest request) throws IOException;
+	PartitionResult receiveResult(long timeout, TimeUnit unit) throws IOException, InterruptedException;
+
+	// Lado worker: espera hasta que haya una petición
+	PartitionRequest receiveRequest() throws IOException, InterruptedException;
+	void sendResult(PartitionResult result) throws IOException;
+}
@@ -0,0 +1,146 @@
+package com.example.demo.batch;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.util.Assert;
+
+/**
+ * Worker del particionado remoto: cada hilo recibe peticiones del PartitionTransport,
+ * ejecuta el paso pedido con el ExecutionContext de la partición y devuelve el
+ * resultado al manager. La ejecución se registra en el JobRepository local del worker
+ * (como un trabajo &lt;job&gt;.worker propio), no en el del manager, con una JobInstance por
+ * ejecución del manager y partición: si la misma partición vuelve a llegar, se reinicia
+ * desde el último ExecutionContext que guardó el worker y, si ya había terminado, se
+ * devuelve ese resultado sin ejecutarla otra vez.
+ */
+public class PartitionWorker implements SmartLifecycle, InitializingBean {
+	private static final Logger log = LoggerFactory.getLogger(PartitionWorker.class);
+
+	private PartitionTransport transport;
+	private JobRepository jobRepository;
+	private final Map<String, Step> steps = new HashMap<>();
+	private int threads = 1;
+	private String name = ManagementFactory.getRuntimeMXBean().getName();
+	private long retryInterval = 5000;
+
+	private final List<Thread> consumers = new ArrayList<>();
+	private volatile boolean running;
+
+	@Override
+	public void start() {
+		running = true;
+		for (int i = 1; i <= threads; i++) {
+			// Hilos no daemon: mantienen vivo el nodo worker hasta que se cierra el contexto
+			Thread consumer = new Thread(this::consume, "partition-" + i);
+			consumers.add(consumer);
+			consumer.start();
+		}
+		log.info("Worker " + name + " con " + threads + " hilos para " + steps.keySet());
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+		consumers.forEach(Thread::interrupt);
+		for (Thread consumer : consumers) {
+			try {
+				consumer.join(retryInterval);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		consumers.clear();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	private void consume() {
+		while (running) {
+			try {
+				PartitionRequest request = transport.receiveRequest();
+				transport.sendResult(execute(request));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (Exception e) {
+				if (!running)
+					return;
+				log.warn("Worker " + name + " sin conexión con el manager: " + e);
+				try {
+					Thread.sleep(retryInterval);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	PartitionResult execute(PartitionRequest request) {
+		Step step = steps.get(request.getStepName());
+		if (step == null)
+			return PartitionResult.failed(request, name, new IllegalStateException("Paso desconocido: " + request.getStepName()));
+		try {
+			String jobName = request.getJobName() + ".worker";
+			JobParameters parameters = new JobParametersBuilder(request.getJobParameters())
+					.addLong("partition.jobExecutionId", request.getJobExecutionId())
+					.addString("partition.name", request.getStepExecutionName())
+					.toJobParameters();
+			JobExecution last = jobRepository.getLastJobExecution(jobName, parameters);
+			StepExecution previous = last == null ? null
+					: jobRepository.getLastStepExecution(last.getJobInstance(), request.getStepExecutionName());
+			if (previous != null && previous.getStatus() == BatchStatus.COMPLETED) {
+				log.info("Ya ejecutada, se devuelve su resultado: " + request);
+				return PartitionResult.of(request.getStepExecutionId(), name, previous);
+			}
+			JobExecution jobExecution = jobRepository.createJobExecution(jobName, parameters);
+			StepExecution execution = jobExecution.createStepExecution(request.getStepExecutionName());
+			execution.setExecutionContext(previous != null ? previous.getExecutionContext() : request.getExecutionContext());
+			jobRepository.add(execution);
+			log.info("Ejecutando " + request);
+			step.execute(execution);
+			jobExecution.setStartTime(execution.getStartTime());
+			jobExecution.upgradeStatus(execution.getStatus());
+			jobExecution.setExitStatus(execution.getExitStatus());
+			jobExecution.setEndTime(new Date());
+			jobRepository.update(jobExecution);
+			return PartitionResult.of(request.getStepExecutionId(), name, execution);
+		} catch (Exception e) {
+			log.error("Error ejecutando " + request, e);
+			return PartitionResult.failed(request, name, e);
+		}
+	}
+
+	public void setTransport(PartitionTransport transport) { this.transport = transport; }
+	public void setJobRepository(JobRepository jobRepository) { this.jobRepository = jobRepository; }
+	public void setSteps(Collection<Step> steps) { steps.forEach(step -> this.steps.put(step.getName(), step)); }
+	public void setThreads(int threads) { this.threads = threads; }
+	public void setName(String name) { this.name = name; }
+	public void setRetryInterval(long retryInterval) { this.retryInterval = retryInterval; }
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(transport, "transport must be set");
+		Assert.notNull(jobRepository, "jobRepository must be set");
+		Assert.notEmpty(steps, "steps must be set");
+		Assert.isTrue(threads > 0, "threads must be positive");
+	}
+}
@@ -0,0 +1,264 @@
+package com.example.demo.batch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import com.example.demo.batch.PersonaColumnarItemWriter.RowGroup;
+import com.example.demo.model.Persona;
+
+/**
+ * Lee los ficheros de PersonaColumnarItemWriter. Con minId y maxId solo devuelve las
+ * filas de ese rango de ids y, con las estadísticas del pie, ni siquiera lee los grupos
+ * que quedan fuera. Cada grupo se lee de una vez y se decodifica columna a columna; las
+ * palabras y dominios repetidos son el mismo String del diccionario. Al reiniciar salta
+ * sin decodificarlos los grupos ya leídos enteros (read.count en el ExecutionContext).
+ */
+public class PersonaColumnarItemReader extends AbstractItemCountingItemStreamItemReader<Persona> {
+	private Resource resource;
+	private long minId = Long.MIN_VALUE;
+	private long maxId = Long.MAX_VALUE;
+
+	private FileChannel channel;
+	private List<RowGroup> groups;
+	private long rowCount;
+	private int group;
+	private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+	private int rows;
+	private int row;
+	private long[] ids = new long[0];
+	private String[] nombres = new String[0];
+	private String[] correos = new String[0];
+	private String[] ips = new String[0];
+	private StringBuilder text = new StringBuilder();
+
+	public PersonaColumnarItemReader() {
+		setName(ClassUtils.getShortName(PersonaColumnarItemReader.class));
+	}
+
+	@Override
+	protected void doOpen() throws Exception {
+		Assert.notNull(resource, "resource must be set");
+		channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ);
+		readHeader();
+		readFooter();
+		group = 0;
+		rows = 0;
+		row = 0;
+	}
+
+	private void readHeader() throws IOException {
+		ByteBuffer header = read(0, 4 + 1 + 4);
+		Assert.state(header.getInt() == PersonaColumnarItemWriter.MAGIC, "No es un fichero por columnas: " + resource);
+		byte version = header.get();
+		Assert.state(version == PersonaColumnarItemWriter.VERSION, "Versión " + version + " no admitida en " + resource);
+		ByteBuffer schema = read(4 + 1 + 4, header.getInt());
+		int columns = (int) varint(schema);
+		String[][] expected = PersonaColumnarItemWriter.SCHEMA;
+		Assert.state(columns == expected.length, "Se esperaban " + expected.length + " columnas en " + resource);
+		for (String[] column : expected) {
+			String name = string(schema);
+			String encoding = string(schema);
+			Assert.state(column[0].equals(name) && column[1].equals(encoding),
+					"Columna " + name + " (" + encoding + ") no admitida en " + resource);
+		}
+	}
+
+	// Índice de grupos del pie, sin los que quedan fuera de [minId, maxId]
+	private void readFooter() throws IOException {
+		long size = channel.size();
+		ByteBuffer tail = read(size - 8, 8);
+		int length = tail.getInt();
+		Assert.state(tail.getInt() == PersonaColumnarItemWriter.MAGIC, "Fichero sin pie (¿sin cerrar?): " + resource);
+		ByteBuffer footer = read(size - 8 - length, length);
+		int count = footer.getInt();
+		groups = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			RowGroup rowGroup = new RowGroup(footer.getLong(), footer.getInt(), footer.getLong(), footer.getLong());
+			if (rowGroup.maxId >= minId && rowGroup.minId <= maxId)
+				groups.add(rowGroup);
+		}
+		rowCount = footer.getLong();
+	}
+
+	@Override
+	protected Persona doRead() throws Exception {
+		while (true) {
+			for (; row < rows; row++)
+				if (ids[row] >= minId && ids[row] <= maxId) {
+					Persona item = new Persona(ids[row], nombres[row], correos[row], ips[row]);
+					row++;
+					return item;
+				}
+			if (group == groups.size())
+				return null;
+			decode(groups.get(group++));
+		}
+	}
+
+	// Los grupos que caen enteros en el rango y ya se leyeron se saltan sin decodificarlos
+	@Override
+	protected void jumpToItem(int itemIndex) throws Exception {
+		while (group < groups.size() && itemIndex >= groups.get(group).rows
+				&& groups.get(group).minId >= minId && groups.get(group).maxId <= maxId)
+			itemIndex -= groups.get(group++).rows;
+		for (int i = 0; i < itemIndex; i++)
+			doRead();
+	}
+
+	private void decode(RowGroup rowGroup) throws IOException {
+		ByteBuffer header = read(rowGroup.offset, PersonaColumnarItemWriter.GROUP_HEADER);
+		rows = header.getInt();
+		header.position(header.position() + 16);
+		ByteBuffer body = read(rowGroup.offset + PersonaColumnarItemWriter.GROUP_HEADER, header.getInt());
+		if (ids.length < rows) {
+			int capacity = Math.max(rows, ids.length * 2);
+			ids = new long[capacity];
+			nombres = new String[capacity];
+			correos = new String[capacity];
+			ips = new String[capacity];
+		}
+		decodeIds(column(body));
+		decodeNombres(column(body));
+		decodeCorreos(column(body));
+		decodeIps(column(body));
+		row = 0;
+	}
+
+	private static ByteBuffer column(ByteBuffer body) {
+		int length = body.getInt();
+		ByteBuffer column = body.slice();
+		column.limit(length);
+		body.position(body.position() + length);
+		return column;
+	}
+
+	private void decodeIds(ByteBuffer column) {
+		long previous = 0;
+		for (int i = 0; i < rows; i++) {
+			long delta = varint(column);
+			previous += (delta >>> 1) ^ -(delta & 1);
+			ids[i] = previous;
+		}
+	}
+
+	private void decodeNombres(ByteBuffer column) {
+		String[] dictionary = dictionary(column);
+		for (int i = 0; i < rows; i++) {
+			int words = (int) varint(column) - 1;
+			if (words <= 1) {
+				nombres[i] = words < 0 ? null : dictionary[(int) varint(column)];
+				continue;
+			}
+			text.setLength(0);
+			for (int w = 0; w < words; w++) {
+				if (w > 0)
+					text.append(' ');
+				text.append(dictionary[(int) varint(column)]);
+			}
+			nombres[i] = text.toString();
+		}
+	}
+
+	private void decodeCorreos(ByteBuffer column) {
+		String[] dictionary = dictionary(column);
+		for (int i = 0; i < rows; i++) {
+			int tag = (int) varint(column);
+			if (tag == PersonaColumnarItemWriter.NULL)
+				correos[i] = null;
+			else if (tag == PersonaColumnarItemWriter.RAW)
+				correos[i] = string(column);
+			else
+				correos[i] = string(column) + '@' + dictionary[tag - PersonaColumnarItemWriter.ENCODED];
+		}
+	}
+
+	private void decodeIps(ByteBuffer column) {
+		boolean packed = column.get() == 0;
+		int tags = column.position();
+		int values = tags + (packed ? 0 : rows);
+		ByteBuffer raw = column.duplicate();
+		raw.position(values + rows * 4);
+		for (int i = 0; i < rows; i++) {
+			int tag = packed ? PersonaColumnarItemWriter.ENCODED : column.get(tags + i);
+			if (tag == PersonaColumnarItemWriter.NULL) {
+				ips[i] = null;
+			} else if (tag == PersonaColumnarItemWriter.RAW) {
+				ips[i] = string(raw);
+			} else {
+				int ip = column.getInt(values + i * 4);
+				text.setLength(0);
+				ips[i] = text.append(ip >>> 24).append('.').append(ip >>> 16 & 0xFF).append('.')
+						.append(ip >>> 8 & 0xFF).append('.').append(ip & 0xFF).toString();
+			}
+		}
+	}
+
+	private static String[] dictionary(ByteBuffer column) {
+		String[] rslt = new String[(int) varint(column)];
+		for (int i = 0; i < rslt.length; i++)
+			rslt[i] = string(column);
+		return rslt;
+	}
+
+	private static long varint(ByteBuffer in) {
+		long value = 0;
+		for (int shift = 0; ; shift += 7) {
+			byte b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+	}
+
+	private static String string(ByteBuffer in) {
+		int length = (int) varint(in);
+		String rslt = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+		in.position(in.position() + length);
+		return rslt;
+	}
+
+	// Lee length bytes desde position en el buffer reutilizable (que crece si hace falta)
+	private ByteBuffer read(long position, int length) throws IOException {
+		if (buffer.capacity() < length)
+			buffer = ByteBuffer.allocate(Math.max(length, buffer.capacity() * 2));
+		buffer.clear().limit(length);
+		while (buffer.hasRemaining())
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new ItemStreamException("Fichero truncado en el byte " + position + ": " + resource);
+		buffer.flip();
+		return buffer;
+	}
+
+	@Override
+	protected void doClose() throws Exception {
+		if (channel != null)
+			channel.close();
+		channel = null;
+		groups = null;
+		Arrays.fill(nombres, null);
+		Arrays.fill(correos, null);
+		Arrays.fill(ips, null);
+		rows = 0;
+	}
+
+	// Filas del fichero según el pie (todas, sin aplicar el rango); -1 si no está abierto
+	public long getRowCount() {
+		return channel == null ? -1 : rowCount;
+	}
+
+	public void setResource(Resource resource) { this.resource = resource; }
+	public void setMinId(long minId) { this.minId = minId; }
+	public void setMaxId(long maxId) { this.maxId = maxId; }
+}
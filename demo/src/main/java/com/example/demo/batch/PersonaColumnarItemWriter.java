@@ -0,0 +1,430 @@
+package com.example.demo.batch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.WriteFailedException;
+import org.springframework.batch.item.support.AbstractItemStreamItemWriter;
+import org.springframework.core.io.Resource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import com.example.demo.model.Persona;
+
+/**
+ * Exporta Persona en un fichero binario por columnas, para análisis sin volver a
+ * interpretar CSV o XML. El fichero describe su esquema en la cabecera y se divide en
+ * grupos de filas (cada chunk cierra uno; como mucho rowGroupSize filas) con una columna
+ * tras otra: id en deltas (varint zigzag), nombre como índices de un diccionario de
+ * palabras, correo como parte local más índice de un diccionario de dominios e ip como
+ * int de 4 bytes. Cada grupo lleva delante sus filas y su id mínimo y máximo, y el pie
+ * repite los de todos con su posición y los totales, para que PersonaColumnarItemReader
+ * salte los grupos fuera de un rango de ids. Guarda en el ExecutionContext la posición
+ * (en un límite de grupo) y las filas escritas; al reiniciar recorta el fichero y
+ * reconstruye el índice de grupos leyendo sus cabeceras.
+ *
+ * <pre>
+ * MAGIC VERSION longitud-esquema esquema
+ * grupo*: filas idMínimo idMáximo longitud (longitud-columna columna)x4
+ * pie: grupos (posición filas idMínimo idMáximo)* filas idMínimo idMáximo
+ * longitud-pie MAGIC
+ * </pre>
+ */
+public class PersonaColumnarItemWriter extends AbstractItemStreamItemWriter<Persona> {
+	public static final int MAGIC = 0x50434F4C; // "PCOL"
+	public static final byte VERSION = 1;
+	static final String[][] SCHEMA = { { "id", "delta-varint" }, { "nombre", "dict-tokens" },
+			{ "correo", "dict-domain" }, { "ip", "ipv4-int" } };
+	static final int GROUP_HEADER = 4 + 8 + 8 + 4;
+	// Etiquetas de correo e ip
+	static final int NULL = 0;
+	static final int RAW = 1;
+	static final int ENCODED = 2;
+	private static final String RESTART_DATA_NAME = "position";
+	private static final String WRITE_STATISTICS_NAME = "record.count";
+
+	private Resource resource;
+	private int rowGroupSize = 10000;
+	private boolean saveState = true;
+
+	private FileChannel channel;
+	private final List<RowGroup> groups = new ArrayList<>();
+	private final Encoder[] columns = { new Encoder(), new Encoder(), new Encoder(), new Encoder() };
+	private final Encoder rows = new Encoder();
+	private final Map<String, Integer> dictionary = new HashMap<>();
+	private final List<String> entries = new ArrayList<>();
+	private long[] ips = new long[0];
+	private long recordsWritten;
+	private boolean synchronizationRegistered;
+
+	static final class RowGroup {
+		final long offset;
+		final int rows;
+		final long minId;
+		final long maxId;
+
+		RowGroup(long offset, int rows, long minId, long maxId) {
+			this.offset = offset;
+			this.rows = rows;
+			this.minId = minId;
+			this.maxId = maxId;
+		}
+	}
+
+	// Buffer de bytes con varint (LEB128), zigzag y cadenas UTF-8 con su longitud
+	static final class Encoder extends ByteArrayOutputStream {
+		Encoder() {
+			super(64 * 1024);
+		}
+
+		void varint(long value) {
+			while ((value & ~0x7FL) != 0) {
+				write((int) (value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			write((int) value);
+		}
+
+		void zigzag(long value) {
+			varint((value << 1) ^ (value >> 63));
+		}
+
+		void string(String value) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			varint(bytes.length);
+			write(bytes, 0, bytes.length);
+		}
+
+		void integer(int value) {
+			write(value >>> 24);
+			write(value >>> 16);
+			write(value >>> 8);
+			write(value);
+		}
+
+		void append(Encoder other) {
+			write(other.buf, 0, other.count);
+		}
+
+		ByteBuffer buffer() {
+			return ByteBuffer.wrap(buf, 0, count);
+		}
+	}
+
+	public PersonaColumnarItemWriter() {
+		setName(ClassUtils.getShortName(PersonaColumnarItemWriter.class));
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) {
+		Assert.notNull(resource, "resource must be set");
+		groups.clear();
+		try {
+			File file = resource.getFile();
+			if (file.getParentFile() != null)
+				file.getParentFile().mkdirs();
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			if (executionContext.containsKey(getExecutionContextKey(RESTART_DATA_NAME))) {
+				long position = executionContext.getLong(getExecutionContextKey(RESTART_DATA_NAME));
+				recordsWritten = executionContext.getLong(getExecutionContextKey(WRITE_STATISTICS_NAME), 0);
+				Assert.state(channel.size() >= position, "El fichero es más corto que la posición de reinicio");
+				channel.truncate(position);
+				scanGroups(position);
+				channel.position(position);
+			} else {
+				recordsWritten = 0;
+				channel.truncate(0);
+				writeHeader();
+			}
+		} catch (IOException e) {
+			throw new ItemStreamException("No se puede abrir " + resource, e);
+		}
+	}
+
+	private void writeHeader() throws IOException {
+		Encoder schema = columns[0];
+		schema.reset();
+		schema.varint(SCHEMA.length);
+		for (String[] column : SCHEMA) {
+			schema.string(column[0]);
+			schema.string(column[1]);
+		}
+		ByteBuffer header = ByteBuffer.allocate(4 + 1 + 4);
+		header.putInt(MAGIC).put(VERSION).putInt(schema.size()).flip();
+		write(header);
+		write(schema.buffer());
+	}
+
+	// Reconstruye el índice de grupos hasta end leyendo la cabecera de cada uno
+	private void scanGroups(long end) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(GROUP_HEADER);
+		read(header, 0, 4 + 1 + 4);
+		Assert.state(header.getInt() == MAGIC, "No es un fichero por columnas: " + resource);
+		header.get();
+		long position = 4 + 1 + 4 + header.getInt();
+		while (position < end) {
+			read(header, position, GROUP_HEADER);
+			int size = header.getInt();
+			groups.add(new RowGroup(position, size, header.getLong(), header.getLong()));
+			position += GROUP_HEADER + header.getInt();
+		}
+		Assert.state(position == end, "La posición de reinicio no es un límite de grupo en " + resource);
+	}
+
+	private void read(ByteBuffer buffer, long position, int length) throws IOException {
+		buffer.clear().limit(length);
+		while (buffer.hasRemaining())
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new IOException("Grupo incompleto en " + resource);
+		buffer.flip();
+	}
+
+	@Override
+	public void write(List<? extends Persona> items) throws Exception {
+		registerSynchronization();
+		for (int from = 0; from < items.size(); from += rowGroupSize)
+			writeGroup(items.subList(from, Math.min(items.size(), from + rowGroupSize)));
+		recordsWritten += items.size();
+	}
+
+	private void writeGroup(List<? extends Persona> items) throws IOException {
+		long minId = Long.MAX_VALUE;
+		long maxId = Long.MIN_VALUE;
+		Encoder ids = columns[0];
+		ids.reset();
+		long previous = 0;
+		for (Persona item : items) {
+			ids.zigzag(item.getId() - previous);
+			previous = item.getId();
+			minId = Math.min(minId, previous);
+			maxId = Math.max(maxId, previous);
+		}
+		encodeNombres(items, columns[1]);
+		encodeCorreos(items, columns[2]);
+		encodeIps(items, columns[3]);
+		int length = 0;
+		for (Encoder column : columns)
+			length += 4 + column.size();
+		ByteBuffer header = ByteBuffer.allocate(GROUP_HEADER);
+		header.putInt(items.size()).putLong(minId).putLong(maxId).putInt(length).flip();
+		long offset = channel.position();
+		write(header);
+		ByteBuffer size = ByteBuffer.allocate(4);
+		for (Encoder column : columns) {
+			size.clear();
+			size.putInt(column.size()).flip();
+			write(size);
+			write(column.buffer());
+		}
+		groups.add(new RowGroup(offset, items.size(), minId, maxId));
+	}
+
+	// Por fila: 0 si es null o el número de palabras más uno, y el índice de cada palabra
+	private void encodeNombres(List<? extends Persona> items, Encoder column) {
+		startDictionary();
+		for (Persona item : items) {
+			String nombre = item.getNombre();
+			if (nombre == null) {
+				rows.varint(0);
+				continue;
+			}
+			int words = 1;
+			for (int i = nombre.indexOf(' '); i >= 0; i = nombre.indexOf(' ', i + 1))
+				words++;
+			rows.varint(words + 1);
+			for (int start = 0, end; start <= nombre.length(); start = end + 1) {
+				end = nombre.indexOf(' ', start);
+				if (end < 0)
+					end = nombre.length();
+				rows.varint(entry(nombre.substring(start, end)));
+			}
+		}
+		endDictionary(column);
+	}
+
+	// Por fila: NULL, RAW y el correo entero (sin @) o ENCODED más el índice del dominio,
+	// y la parte local
+	private void encodeCorreos(List<? extends Persona> items, Encoder column) {
+		startDictionary();
+		for (Persona item : items) {
+			String correo = item.getCorreo();
+			int at = correo == null ? -1 : correo.lastIndexOf('@');
+			if (correo == null) {
+				rows.varint(NULL);
+			} else if (at < 0) {
+				rows.varint(RAW);
+				rows.string(correo);
+			} else {
+				rows.varint(ENCODED + entry(correo.substring(at + 1)));
+				rows.string(correo.substring(0, at));
+			}
+		}
+		endDictionary(column);
+	}
+
+	// Un byte (0 si todas son IPv4 en forma canónica), las etiquetas por fila si no lo
+	// son, un int por fila y, como texto, las que no se pueden empaquetar
+	private void encodeIps(List<? extends Persona> items, Encoder column) {
+		if (ips.length < items.size())
+			ips = new long[Math.max(items.size(), ips.length * 2)];
+		boolean packed = true;
+		for (int i = 0; i < items.size(); i++) {
+			ips[i] = ipv4(items.get(i).getIp());
+			packed &= ips[i] >= 0;
+		}
+		column.reset();
+		rows.reset();
+		column.write(packed ? 0 : 1);
+		if (!packed)
+			for (int i = 0; i < items.size(); i++)
+				column.write(ips[i] >= 0 ? ENCODED : items.get(i).getIp() == null ? NULL : RAW);
+		for (int i = 0; i < items.size(); i++) {
+			column.integer((int) Math.max(ips[i], 0));
+			if (ips[i] < 0 && items.get(i).getIp() != null)
+				rows.string(items.get(i).getIp());
+		}
+		column.append(rows);
+	}
+
+	// IPv4 en forma canónica (sin ceros a la izquierda, que no se reconstruirían) como
+	// entero sin signo, o -1
+	static long ipv4(String ip) {
+		if (ip == null)
+			return -1;
+		long value = 0;
+		int part = 0;
+		int digits = 0;
+		int parts = 0;
+		for (int i = 0; i <= ip.length(); i++) {
+			char c = i < ip.length() ? ip.charAt(i) : '.';
+			if (c == '.') {
+				if (digits == 0 || part > 255 || ++parts > 4)
+					return -1;
+				value = value << 8 | part;
+				part = 0;
+				digits = 0;
+			} else if (c >= '0' && c <= '9' && digits < 3 && !(digits == 1 && part == 0)) {
+				part = part * 10 + (c - '0');
+				digits++;
+			} else {
+				return -1;
+			}
+		}
+		return parts == 4 ? value : -1;
+	}
+
+	private void startDictionary() {
+		dictionary.clear();
+		entries.clear();
+		rows.reset();
+	}
+
+	private int entry(String value) {
+		Integer index = dictionary.get(value);
+		if (index == null) {
+			index = entries.size();
+			dictionary.put(value, index);
+			entries.add(value);
+		}
+		return index;
+	}
+
+	// La columna es el diccionario seguido de las filas
+	private void endDictionary(Encoder column) {
+		column.reset();
+		column.varint(entries.size());
+		for (String value : entries)
+			column.string(value);
+		column.append(rows);
+	}
+
+	private void write(ByteBuffer bytes) throws IOException {
+		while (bytes.hasRemaining())
+			channel.write(bytes);
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) {
+		if (!saveState || channel == null)
+			return;
+		try {
+			executionContext.putLong(getExecutionContextKey(RESTART_DATA_NAME), channel.position());
+			executionContext.putLong(getExecutionContextKey(WRITE_STATISTICS_NAME), recordsWritten);
+		} catch (IOException e) {
+			throw new ItemStreamException("No se puede obtener la posición de " + resource, e);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (channel == null)
+			return;
+		try {
+			writeFooter();
+			channel.close();
+		} catch (IOException e) {
+			throw new ItemStreamException("No se puede cerrar " + resource, e);
+		} finally {
+			channel = null;
+		}
+	}
+
+	private void writeFooter() throws IOException {
+		int length = 4 + groups.size() * (8 + 4 + 8 + 8) + 8 + 8 + 8;
+		ByteBuffer footer = ByteBuffer.allocate(length + 4 + 4);
+		long total = 0;
+		long minId = Long.MAX_VALUE;
+		long maxId = Long.MIN_VALUE;
+		footer.putInt(groups.size());
+		for (RowGroup group : groups) {
+			footer.putLong(group.offset).putInt(group.rows).putLong(group.minId).putLong(group.maxId);
+			total += group.rows;
+			minId = Math.min(minId, group.minId);
+			maxId = Math.max(maxId, group.maxId);
+		}
+		footer.putLong(total).putLong(minId).putLong(maxId).putInt(length).putInt(MAGIC).flip();
+		write(footer);
+	}
+
+	private void registerSynchronization() throws IOException {
+		if (synchronizationRegistered || !TransactionSynchronizationManager.isSynchronizationActive())
+			return;
+		long position = channel.position();
+		long records = recordsWritten;
+		int groupCount = groups.size();
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(int status) {
+				synchronizationRegistered = false;
+				if (status == STATUS_COMMITTED || channel == null)
+					return;
+				try {
+					channel.truncate(position);
+					channel.position(position);
+					recordsWritten = records;
+					groups.subList(groupCount, groups.size()).clear();
+				} catch (IOException e) {
+					throw new WriteFailedException("No se puede deshacer la escritura en " + resource, e);
+				}
+			}
+		});
+		synchronizationRegistered = true;
+	}
+
+	public void setResource(Resource resource) { this.resource = resource; }
+	public void setRowGroupSize(int rowGroupSize) { this.rowGroupSize = rowGroupSize; }
+	public void setSaveState(boolean saveState) { this.saveState = saveState; }
+}
@@ -0,0 +1,88 @@
+package com.example.demo.batch;
+
+import java.util.Arrays;
+
+import org.springframework.batch.item.file.mapping.FieldSetMapper;
+import org.springframework.batch.item.file.transform.FieldSet;
+
+import com.example.demo.model.PersonaDTO;
+
+/**
+ * Sustituto de BeanWrapperFieldSetMapper&lt;PersonaDTO&gt; sin reflexión: resuelve una
+ * sola vez qué setter corresponde a cada columna y después asigna por posición.
+ * Si no se indican los nombres se toman de los FieldSet (los del tokenizer) y se
+ * vuelven a resolver cuando cambian, por ejemplo al leer otro fichero con otra cabecera.
+ */
+public class PersonaDTOFieldSetMapper implements FieldSetMapper<PersonaDTO> {
+	@FunctionalInterface
+	private interface Binding {
+		void bind(PersonaDTO target, FieldSet fieldSet, int index);
+	}
+
+	// names es null si los nombres se fijaron con setNames
+	private static final class Columns {
+		private final String[] names;
+		private final Binding[] bindings;
+
+		private Columns(String[] names, Binding[] bindings) {
+			this.names = names;
+			this.bindings = bindings;
+		}
+	}
+
+	private volatile Columns columns;
+
+	public PersonaDTOFieldSetMapper() { }
+	public PersonaDTOFieldSetMapper(String... names) {
+		setNames(names);
+	}
+
+	public static PersonaDTOFieldSetMapper forNames(String... names) {
+		return new PersonaDTOFieldSetMapper(names);
+	}
+
+	public void setNames(String[] names) {
+		columns = new Columns(null, bind(names));
+	}
+
+	@Override
+	public PersonaDTO mapFieldSet(FieldSet fieldSet) {
+		Columns current = columns;
+		if (current == null || current.names != null) {
+			String[] names = fieldSet.getNames();
+			if (current == null || !Arrays.equals(current.names, names))
+				columns = current = new Columns(names, bind(names));
+		}
+		Binding[] bindings = current.bindings;
+		PersonaDTO rslt = new PersonaDTO();
+		for (int i = 0; i < bindings.length; i++)
+			bindings[i].bind(rslt, fieldSet, i);
+		return rslt;
+	}
+
+	private static Binding[] bind(String[] names) {
+		Binding[] rslt = new Binding[names.length];
+		for (int i = 0; i < names.length; i++)
+			rslt[i] = binding(names[i].trim());
+		return rslt;
+	}
+
+	private static Binding binding(String name) {
+		switch (name.toLowerCase()) {
+		case "id":
+			return (target, fs, i) -> target.setId(fs.readLong(i));
+		case "nombre":
+			return (target, fs, i) -> target.setNombre(fs.readString(i));
+		case "apellidos":
+			return (target, fs, i) -> target.setApellidos(fs.readString(i));
+		case "correo":
+			return (target, fs, i) -> target.setCorreo(fs.readString(i));
+		case "sexo":
+			return (target, fs, i) -> target.setSexo(fs.readString(i));
+		case "ip":
+			return (target, fs, i) -> target.setIp(fs.readString(i));
+		default:
+			throw new IllegalArgumentException("PersonaDTO no tiene la propiedad " + name);
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package com.example.demo.batch;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import com.example.demo.batch.ItemAuditLog.Outcome;
+import com.example.demo.batch.ItemAuditLog.Phase;
+import com.example.demo.model.Persona;
+
+/**
+ * Descarta (filtra, sin error) las Persona cuyo id ya está en la tabla o ya ha pasado
+ * por aquí, para que los ficheros que se solapan y las repeticiones no lleguen a la base
+ * de datos con ids duplicados. Los ids vistos se guardan en un IdBitmap compartido por
+ * todos los pasos, particiones e hilos; al empezar el primer paso de cada ejecución del
+ * trabajo se cargan los de la tabla con una sola consulta en streaming. Cada id lo
+ * reserva el primer elemento que lo procesa; si el chunk no se confirma, sus reservas se
+ * liberan para que al volver a procesarlo no se descarte. Registrarlo en el paso como
+ * StepExecutionListener y ChunkListener; los duplicados de cada paso quedan en su
+ * ExecutionContext (duplicates) y en la cuenta de filtrados. Como ItemWriteListener
+ * olvida los ids de las Persona cuya escritura falla (por ejemplo las que BisectingItemWriter
+ * aparta), para que se puedan volver a importar.
+ */
+public class PersonaDedupItemProcessor implements ItemProcessor<Persona, Persona>, StepExecutionListener,
+		ChunkListener, ItemWriteListener<Object>, InitializingBean {
+	private static final Logger log = LoggerFactory.getLogger(PersonaDedupItemProcessor.class);
+	public static final String DUPLICATES = "duplicates";
+
+	private JdbcTemplate jdbcTemplate;
+	private String table = "personas";
+	private String column = "id";
+	private int fetchSize = 1000;
+	private ItemAuditLog auditLog;
+
+	private final IdBitmap ids = new IdBitmap();
+	private Long loadedJobExecution;
+	private final Map<Long, Claims> claims = new ConcurrentHashMap<>();
+
+	// Ids reservados y duplicados del chunk en curso de un paso, y duplicados confirmados
+	private static final class Claims {
+		private long[] ids = new long[64];
+		private int size;
+		private long pending;
+		private long duplicates;
+
+		synchronized void add(long id) {
+			if (size == ids.length)
+				ids = Arrays.copyOf(ids, size * 2);
+			ids[size++] = id;
+		}
+
+		synchronized void duplicate() {
+			pending++;
+		}
+
+		synchronized void release(IdBitmap bitmap) {
+			for (int i = 0; i < size; i++)
+				bitmap.remove(ids[i]);
+			size = 0;
+			pending = 0;
+		}
+
+		synchronized void forget(long id) {
+			for (int i = 0; i < size; i++)
+				if (ids[i] == id) {
+					ids[i] = ids[--size];
+					return;
+				}
+		}
+
+		synchronized void commit() {
+			size = 0;
+			duplicates += pending;
+			pending = 0;
+		}
+	}
+
+	@Override
+	public void beforeStep(StepExecution stepExecution) {
+		claims.put(stepExecution.getId(), new Claims());
+		load(stepExecution.getJobExecutionId());
+	}
+
+	// Una carga por ejecución del trabajo, aunque empiecen a la vez varias particiones;
+	// se añade a lo ya visto, que otros trabajos en curso pueden estar usando
+	private synchronized void load(Long jobExecutionId) {
+		if (jobExecutionId != null && jobExecutionId.equals(loadedJobExecution))
+			return;
+		long start = System.currentTimeMillis();
+		JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+		streaming.setFetchSize(fetchSize);
+		streaming.query("SELECT " + column + " FROM " + table, rs -> {
+			ids.add(rs.getLong(1));
+		});
+		loadedJobExecution = jobExecutionId;
+		log.info("Ids cargados de " + table + ": " + ids.cardinality() + " (" + ids.sizeInBytes() + " bytes, "
+				+ (System.currentTimeMillis() - start) + " ms)");
+	}
+
+	@Override
+	public Persona process(Persona item) throws Exception {
+		long start = System.nanoTime();
+		Claims step = current();
+		if (!ids.add(item.getId())) {
+			if (step != null)
+				step.duplicate();
+			if (auditLog != null)
+				auditLog.record(item.getId(), Phase.PROCESS, Outcome.FILTERED, System.nanoTime() - start);
+			return null;
+		}
+		if (step != null)
+			step.add(item.getId());
+		return item;
+	}
+
+	private Claims current() {
+		StepContext context = StepSynchronizationManager.getContext();
+		return context == null ? null : claims.get(context.getStepExecution().getId());
+	}
+
+	// En el hilo del paso y dentro de la transacción del chunk, también con el pipeline
+	@Override
+	public void beforeChunk(ChunkContext context) {
+		Claims step = claims.get(context.getStepContext().getStepExecution().getId());
+		if (step == null || !TransactionSynchronizationManager.isSynchronizationActive())
+			return;
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(int status) {
+				if (status == STATUS_COMMITTED)
+					step.commit();
+				else
+					step.release(ids);
+			}
+		});
+	}
+
+	@Override
+	public void afterChunk(ChunkContext context) {
+	}
+
+	@Override
+	public void afterChunkError(ChunkContext context) {
+	}
+
+	@Override
+	public void beforeWrite(List<? extends Object> items) {
+	}
+
+	@Override
+	public void afterWrite(List<? extends Object> items) {
+	}
+
+	// Fuera también de las reservas, para que un rollback posterior no quite el id a otro paso
+	@Override
+	public void onWriteError(Exception exception, List<? extends Object> items) {
+		Claims step = current();
+		for (Object item : items)
+			if (item instanceof Persona) {
+				long id = ((Persona) item).getId();
+				if (step != null)
+					step.forget(id);
+				ids.remove(id);
+			}
+	}
+
+	@Override
+	public ExitStatus afterStep(StepExecution stepExecution) {
+		Claims step = claims.remove(stepExecution.getId());
+		if (step != null) {
+			// Lo reservado fuera de un chunk confirmado no llegó a la tabla
+			step.release(ids);
+			stepExecution.getExecutionContext().putLong(DUPLICATES, step.duplicates);
+			if (step.duplicates > 0)
+				log.info(stepExecution.getStepName() + ": " + step.duplicates + " ids duplicados descartados");
+		}
+		return null;
+	}
+
+	public void setDataSource(DataSource dataSource) { this.jdbcTemplate = new JdbcTemplate(dataSource); }
+	public void setTable(String table) { this.table = table; }
+	public void setColumn(String column) { this.column = column; }
+	public void setFetchSize(int fetchSize) { this.fetchSize = fetchSize; }
+	public void setAuditLog(ItemAuditLog auditLog) { this.auditLog = auditLog; }
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(jdbcTemplate, "dataSource must be set");
+	}
+}
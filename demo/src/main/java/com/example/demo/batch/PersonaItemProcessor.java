@@ -1,8 +1,10 @@
 package com.example.demo.batch;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
 import org.springframework.batch.item.ItemProcessor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.example.demo.model.Persona;
@@ -10,19 +12,43 @@ import com.example.demo.model.PersonaDTO;
 
 @Component
 public class PersonaItemProcessor implements ItemProcessor<PersonaDTO, Persona> {
-	private static final Logger log = LoggerFactory.getLogger(PersonaItemProcessor.class);
-	private int maxError = 5;
+	private final AtomicInteger maxError = new AtomicInteger(5);
+	private ItemAuditLog auditLog;
 	
 	@Override
 	public Persona process(PersonaDTO item) throws Exception {	
-		if(item.getId() % 10 == 0 && maxError-- > 0) {
+		long start = System.nanoTime();
+		if(item.getId() % 10 == 0 && maxError.getAndDecrement() > 0) {
 			throw new ItemProcessorException("Error forzado");
 		}
-		if(item.getId() % 2 == 0 || "Male".equals(item.getSexo())) 
+		if(filterReason(item) != null) {
+			audit(item, ItemAuditLog.Outcome.FILTERED, start);
 			return null;
+		}
 		Persona rslt = new Persona(item.getId(), item.getApellidos() + ", " + item.getNombre(), 
 				item.getCorreo(), item.getIp());
-		log.info("Procesando: " + item);
+		audit(item, ItemAuditLog.Outcome.OK, start);
 		return rslt;
 	}
+
+	// Traza por elemento en la auditoría asíncrona; los errores los registra ItemFailureLoggerListener
+	private void audit(PersonaDTO item, ItemAuditLog.Outcome outcome, long start) {
+		if(auditLog != null)
+			auditLog.record(item.getId(), ItemAuditLog.Phase.PROCESS, outcome, System.nanoTime() - start);
+	}
+
+	@Autowired(required = false)
+	public void setAuditLog(ItemAuditLog auditLog) { this.auditLog = auditLog; }
+
+	// Motivo por el que process descarta el elemento ("id" o "sexo"), null si no lo descarta
+	public static final Function<Object, String> FILTER_REASONS = item -> item instanceof PersonaDTO
+			? filterReason((PersonaDTO) item) : null;
+
+	public static String filterReason(PersonaDTO item) {
+		if(item.getId() % 2 == 0)
+			return "id";
+		if("Male".equals(item.getSexo()))
+			return "sexo";
+		return null;
+	}
 }
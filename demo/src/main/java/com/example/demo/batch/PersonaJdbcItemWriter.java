@@ -0,0 +1,103 @@
+package com.example.demo.batch;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.database.ItemPreparedStatementSetter;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.Assert;
+
+import com.example.demo.model.Persona;
+
+/**
+ * Escribe Persona en la tabla personas sin reflexión (ItemPreparedStatementSetter) y con
+ * un tamaño de lote JDBC propio, independiente del chunk. Modos:
+ * INSERT, un INSERT por fila en lotes JDBC de batchSize (falla si el id ya existe);
+ * UPSERT, un MERGE ... USING (VALUES (?,?,?,?)) por fila en lotes JDBC de batchSize;
+ * BULK, para chunks grandes, carga el chunk en la tabla temporal personas_stage y lo
+ * mezcla con un único MERGE. UPSERT y BULK permiten volver a cargar los mismos ids y
+ * repetirlos dentro de un chunk (queda el último): BULK deja en personas_stage una sola
+ * fila por id, como UPSERT al aplicar sus MERGE en orden. BULK necesita una transacción
+ * (la del paso), porque personas_stage es temporal por conexión. Las sentencias MERGE
+ * usan la sintaxis de HSQLDB.
+ */
+public class PersonaJdbcItemWriter implements ItemWriter<Persona>, InitializingBean {
+	public enum Mode { INSERT, UPSERT, BULK }
+
+	public static final ItemPreparedStatementSetter<Persona> SETTER = (item, ps) -> bind(ps, 0, item);
+
+	private static final String INSERT = "INSERT INTO personas VALUES (?,?,?,?)";
+	private static final String STAGE = "INSERT INTO personas_stage VALUES (?,?,?,?)";
+	private static final String CLEAR_STAGE = "DELETE FROM personas_stage";
+	private static final String MERGE_ON = " ON p.id = v.id"
+			+ " WHEN MATCHED THEN UPDATE SET p.nombre = v.nombre, p.correo = v.correo, p.ip = v.ip"
+			+ " WHEN NOT MATCHED THEN INSERT VALUES (v.id, v.nombre, v.correo, v.ip)";
+	private static final String MERGE_VALUES = "MERGE INTO personas p USING (VALUES (?,?,?,?)) AS v(id, nombre, correo, ip)"
+			+ MERGE_ON;
+	private static final String MERGE_STAGE = "MERGE INTO personas p USING personas_stage v" + MERGE_ON;
+
+	private JdbcTemplate jdbcTemplate;
+	private Mode mode = Mode.INSERT;
+	private int batchSize = 100;
+
+	@Override
+	public void write(List<? extends Persona> items) throws Exception {
+		if (items.isEmpty())
+			return;
+		switch (mode) {
+		case INSERT:
+			int[][] counts = jdbcTemplate.batchUpdate(INSERT, items, batchSize, (ps, item) -> SETTER.setValues(item, ps));
+			int i = 0;
+			for (int[] batch : counts)
+				for (int count : batch) {
+					if (count == 0)
+						throw new EmptyResultDataAccessException("Item " + i + " of " + items.size()
+								+ " did not update any rows: [" + items.get(i) + "]", 1);
+					i++;
+				}
+			break;
+		case UPSERT:
+			jdbcTemplate.batchUpdate(MERGE_VALUES, items, batchSize, (ps, item) -> SETTER.setValues(item, ps));
+			break;
+		case BULK:
+			jdbcTemplate.update(CLEAR_STAGE);
+			jdbcTemplate.batchUpdate(STAGE, lastById(items), batchSize, (ps, item) -> SETTER.setValues(item, ps));
+			jdbcTemplate.update(MERGE_STAGE);
+			jdbcTemplate.update(CLEAR_STAGE);
+			break;
+		}
+	}
+
+	// El último elemento de cada id; sin ids repetidos, el chunk tal cual
+	private static List<? extends Persona> lastById(List<? extends Persona> items) {
+		Map<Long, Persona> byId = new LinkedHashMap<>(items.size() * 4 / 3 + 1);
+		for (Persona item : items)
+			byId.put(item.getId(), item);
+		return byId.size() == items.size() ? items : new ArrayList<>(byId.values());
+	}
+
+	private static void bind(PreparedStatement ps, int offset, Persona item) throws SQLException {
+		ps.setLong(offset + 1, item.getId());
+		ps.setString(offset + 2, item.getNombre());
+		ps.setString(offset + 3, item.getCorreo());
+		ps.setString(offset + 4, item.getIp());
+	}
+
+	public void setDataSource(DataSource dataSource) { this.jdbcTemplate = new JdbcTemplate(dataSource); }
+	public void setMode(Mode mode) { this.mode = mode; }
+	public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(jdbcTemplate, "dataSource must be set");
+		Assert.notNull(mode, "mode must be set");
+		Assert.isTrue(batchSize > 0, "batchSize must be positive");
+	}
+}
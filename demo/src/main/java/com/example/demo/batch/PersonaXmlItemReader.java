@@ -0,0 +1,138 @@
+package com.example.demo.batch;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.NonTransientResourceException;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import com.example.demo.model.PersonaDTO;
+
+/**
+ * Alternativa a StaxEventItemReader + XStreamMarshaller para leer Personas.xml: recorre
+ * el fichero con el cursor de StAX (XMLStreamReader) y asigna directamente los hijos de
+ * cada Persona (id, nombre, apellidos, correo, sexo e ip), sin eventos, fragmentos en
+ * memoria ni reflexión; los elementos desconocidos se saltan sin leerlos. Al reiniciar
+ * salta los fragmentos ya leídos (read.count en el ExecutionContext) sin asignarlos. No
+ * admite DTD ni entidades externas. Con gzip el fichero está comprimido y un hilo lo
+ * descomprime por delante del analizador (GzipReadAheadInputStream).
+ */
+public class PersonaXmlItemReader extends AbstractItemCountingItemStreamItemReader<PersonaDTO> {
+	private static final Logger log = LoggerFactory.getLogger(PersonaXmlItemReader.class);
+
+	private Resource resource;
+	private String fragmentRootElementName = "Persona";
+	private int bufferSize = 64 * 1024;
+	private boolean strict = true;
+	private boolean gzip;
+
+	private InputStream input;
+	private XMLStreamReader xml;
+
+	public PersonaXmlItemReader() {
+		setName(ClassUtils.getShortName(PersonaXmlItemReader.class));
+	}
+
+	@Override
+	protected void doOpen() throws Exception {
+		Assert.notNull(resource, "resource must be set");
+		if (!resource.exists()) {
+			if (strict)
+				throw new IllegalStateException("El fichero no existe: " + resource);
+			log.warn("El fichero no existe: " + resource);
+			return;
+		}
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		input = gzip ? new GzipReadAheadInputStream(resource.getInputStream(), bufferSize, 4)
+				: new BufferedInputStream(resource.getInputStream(), bufferSize);
+		xml = factory.createXMLStreamReader(input);
+	}
+
+	@Override
+	protected PersonaDTO doRead() throws Exception {
+		if (xml == null || !nextFragment())
+			return null;
+		PersonaDTO item = new PersonaDTO();
+		try {
+			while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+				switch (xml.getLocalName()) {
+				case "id": item.setId(Long.parseLong(xml.getElementText().trim())); break;
+				case "nombre": item.setNombre(xml.getElementText()); break;
+				case "apellidos": item.setApellidos(xml.getElementText()); break;
+				case "correo": item.setCorreo(xml.getElementText()); break;
+				case "sexo": item.setSexo(xml.getElementText()); break;
+				case "ip": item.setIp(xml.getElementText()); break;
+				default: skipElement();
+				}
+			}
+		} catch (XMLStreamException | NumberFormatException e) {
+			throw new NonTransientResourceException("Persona mal formada cerca de la línea "
+					+ xml.getLocation().getLineNumber() + " en " + resource, e);
+		}
+		return item;
+	}
+
+	@Override
+	protected void jumpToItem(int itemIndex) throws Exception {
+		for (int i = 0; i < itemIndex; i++) {
+			if (!nextFragment())
+				return;
+			skipElement();
+		}
+	}
+
+	// Avanza hasta la etiqueta de apertura del siguiente fragmento, a cualquier profundidad
+	private boolean nextFragment() throws XMLStreamException {
+		while (xml.hasNext()) {
+			if (xml.next() == XMLStreamConstants.START_ELEMENT && fragmentRootElementName.equals(xml.getLocalName()))
+				return true;
+		}
+		return false;
+	}
+
+	// Salta el elemento actual (en su etiqueta de apertura) hasta su cierre
+	private void skipElement() throws XMLStreamException {
+		for (int depth = 1; depth > 0; ) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				depth++;
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				depth--;
+		}
+	}
+
+	@Override
+	protected void doClose() throws Exception {
+		try {
+			if (xml != null)
+				xml.close();
+			if (input != null)
+				input.close();
+		} catch (XMLStreamException | IOException e) {
+			throw new ItemStreamException("No se puede cerrar " + resource, e);
+		} finally {
+			xml = null;
+			input = null;
+		}
+	}
+
+	public void setResource(Resource resource) { this.resource = resource; }
+	public void setFragmentRootElementName(String fragmentRootElementName) { this.fragmentRootElementName = fragmentRootElementName; }
+	public void setBufferSize(int bufferSize) { this.bufferSize = bufferSize; }
+	public void setStrict(boolean strict) { this.strict = strict; }
+	public void setGzip(boolean gzip) { this.gzip = gzip; }
+}
@@ -2,50 +2,86 @@ package com.example.demo.batch;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
+import org.springframework.batch.core.ChunkListener;
 import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.configuration.annotation.BatchConfigurer;
+import org.springframework.batch.core.configuration.annotation.DefaultBatchConfigurer;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
+import org.springframework.batch.core.configuration.annotation.JobScope;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.job.builder.SimpleJobBuilder;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.JobLauncher;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
-import org.springframework.batch.item.database.BeanPropertyItemSqlParameterSourceProvider;
-import org.springframework.batch.item.database.JdbcBatchItemWriter;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.AbstractTaskletStepBuilder;
+import org.springframework.batch.core.step.builder.FaultTolerantStepBuilder;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.tasklet.TaskletStep;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.database.JdbcCursorItemReader;
-import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
+import org.springframework.batch.item.database.JdbcPagingItemReader;
+import org.springframework.batch.item.database.Order;
 import org.springframework.batch.item.database.builder.JdbcCursorItemReaderBuilder;
+import org.springframework.batch.item.database.builder.JdbcPagingItemReaderBuilder;
 import org.springframework.batch.item.file.FlatFileHeaderCallback;
 import org.springframework.batch.item.file.FlatFileItemReader;
 import org.springframework.batch.item.file.FlatFileItemWriter;
 import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
 import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
-import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
 import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
 import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
-import org.springframework.batch.item.xml.StaxEventItemReader;
-import org.springframework.batch.item.xml.StaxEventItemWriter;
-import org.springframework.batch.item.xml.builder.StaxEventItemReaderBuilder;
-import org.springframework.batch.item.xml.builder.StaxEventItemWriterBuilder;
+import org.springframework.batch.item.support.CompositeItemProcessor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
-import org.springframework.oxm.xstream.XStreamMarshaller;
+import org.springframework.retry.RetryListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import com.example.demo.model.Persona;
 import com.example.demo.model.PersonaCortoDTO;
 import com.example.demo.model.PersonaDTO;
 import com.example.demo.model.PhotoDTO;
 
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+
 @Configuration
 @EnableBatchProcessing
 public class PersonasBatchConfiguration {
@@ -53,6 +89,33 @@ public class PersonasBatchConfiguration {
 	public JobBuilderFactory jobBuilderFactory;
 	@Autowired
 	public StepBuilderFactory stepBuilderFactory;
+
+	// JobRepository en memoria (batch.repository.type=memory) en lugar del de JDBC: sin
+	// tablas BATCH_*, conserva por trabajo las batch.repository.max-instances instancias
+	// terminadas más recientes (y, con max-age en ms, solo las de menos de max-age). Los
+	// pasos siguen usando la transacción de la base de datos. Estático porque el resto de
+	// esta configuración depende de él
+	@Bean
+	@ConditionalOnProperty(name = "batch.repository.type", havingValue = "memory")
+	public static BatchConfigurer inMemoryBatchConfigurer(DataSource dataSource,
+			@Value("${batch.repository.max-instances:100}") int maxInstances,
+			@Value("${batch.repository.max-age:0}") long maxAge) throws Exception {
+		InMemoryJobRepository repository = new InMemoryJobRepository();
+		repository.setMaxInstances(maxInstances);
+		repository.setMaxAge(maxAge);
+		repository.afterPropertiesSet();
+		return new DefaultBatchConfigurer(dataSource) {
+			@Override
+			protected JobRepository createJobRepository() {
+				return repository;
+			}
+
+			@Override
+			protected JobExplorer createJobExplorer() {
+				return repository;
+			}
+		};
+	}
 	
 	// CSV a DB
 	public FlatFileItemReader<PersonaDTO> personaCSVItemReader(String fname) {
@@ -61,9 +124,7 @@ public class PersonasBatchConfiguration {
 				.linesToSkip(1)
 				.delimited()
 				.names(new String[] { "id", "nombre", "apellidos", "correo", "sexo", "ip" })
-				.fieldSetMapper(new BeanWrapperFieldSetMapper<PersonaDTO>() { {
-						setTargetType(PersonaDTO.class);
-					}})
+				.fieldSetMapper(new PersonaDTOFieldSetMapper())
 				.build();
 	}
 	public FlatFileItemReader<PersonaDTO> personaCSV2ItemReader(String fname) {
@@ -72,91 +133,619 @@ public class PersonasBatchConfiguration {
 				.linesToSkip(1)
 				.delimited()
 				.names(new String[] { "id", "correo", "nombre", "apellidos", "sexo", "ip" })
-				.fieldSetMapper(new BeanWrapperFieldSetMapper<PersonaDTO>() { {
-						setTargetType(PersonaDTO.class);
-					}})
+				.fieldSetMapper(new PersonaDTOFieldSetMapper())
 				.build();
 	}
 
+	public MappedPersonaCSVItemReader personaMappedCSVItemReader(String fname, String... names) {
+		MappedPersonaCSVItemReader reader = new MappedPersonaCSVItemReader();
+		reader.setName("personaMappedCSVItemReader");
+		reader.setResource(new ClassPathResource(fname));
+		reader.setGzip(fname.endsWith(".gz"));
+		reader.setLinesToSkip(1);
+		reader.setNames(names);
+		return reader;
+	}
+
 	@Autowired
 	public PersonaItemProcessor personaItemProcessor;
 
+	// persona.writer.mode: insert, upsert (MERGE por lotes) o bulk (tabla temporal + MERGE)
 	@Bean
-	public JdbcBatchItemWriter<Persona> personaDBItemWriter(DataSource dataSource) {
-		return new JdbcBatchItemWriterBuilder<Persona>()
-				.itemSqlParameterSourceProvider(new BeanPropertyItemSqlParameterSourceProvider<>())
-				.sql("INSERT INTO personas VALUES (:id,:nombre,:correo,:ip)")
-				.dataSource(dataSource)
-				.build();
+	public PersonaJdbcItemWriter personaDBItemWriter(DataSource dataSource,
+			@Value("${persona.writer.mode:insert}") PersonaJdbcItemWriter.Mode mode,
+			@Value("${persona.writer.batch-size:100}") int batchSize) {
+		PersonaJdbcItemWriter writer = new PersonaJdbcItemWriter();
+		writer.setDataSource(dataSource);
+		writer.setMode(mode);
+		writer.setBatchSize(batchSize);
+		return writer;
+	}
+
+	// Tamaño de chunk adaptativo (batch.chunk.*): los pasos de importación empiezan en 10
+	// y los de exportación en 100, y se ajustan entre min-size y max-size
+	private AdaptiveCompletionPolicy completionPolicy(int initialSize, int minSize, int maxSize, long targetLatency) {
+		AdaptiveCompletionPolicy policy = new AdaptiveCompletionPolicy();
+		policy.setInitialSize(initialSize);
+		policy.setMinSize(minSize);
+		policy.setMaxSize(maxSize);
+		policy.setTargetLatency(targetLatency);
+		return policy;
+	}
+	@Bean
+	public AdaptiveCompletionPolicy importCompletionPolicy(@Value("${batch.chunk.min-size:10}") int minSize,
+			@Value("${batch.chunk.max-size:5000}") int maxSize,
+			@Value("${batch.chunk.target-latency:1000}") long targetLatency) {
+		return completionPolicy(10, minSize, maxSize, targetLatency);
+	}
+	@Bean
+	public AdaptiveCompletionPolicy exportCompletionPolicy(@Value("${batch.chunk.min-size:10}") int minSize,
+			@Value("${batch.chunk.max-size:5000}") int maxSize,
+			@Value("${batch.chunk.target-latency:1000}") long targetLatency) {
+		return completionPolicy(100, minSize, maxSize, targetLatency);
+	}
+
+	// Métricas (batch.metrics.enabled) en formato Prometheus; desactivadas, los pasos no
+	// llevan el listener y no cuestan nada
+	@Bean
+	@ConditionalOnProperty(name = "batch.metrics.enabled", havingValue = "true")
+	public PrometheusMeterRegistry prometheusMeterRegistry() {
+		return new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+	}
+	@Bean
+	@ConditionalOnProperty(name = "batch.metrics.enabled", havingValue = "true")
+	public PrometheusEndpoint prometheusEndpoint(PrometheusMeterRegistry prometheusMeterRegistry,
+			@Value("${batch.metrics.port:9464}") int port, @Value("${batch.metrics.path:/metrics}") String path) {
+		PrometheusEndpoint endpoint = new PrometheusEndpoint();
+		endpoint.setMeterRegistry(prometheusMeterRegistry);
+		endpoint.setPort(port);
+		endpoint.setPath(path);
+		return endpoint;
+	}
+	@Bean
+	@ConditionalOnProperty(name = "batch.metrics.enabled", havingValue = "true")
+	public StepMetricsListener stepMetricsListener(PrometheusMeterRegistry prometheusMeterRegistry) {
+		StepMetricsListener listener = new StepMetricsListener();
+		listener.setMeterRegistry(prometheusMeterRegistry);
+		listener.setFilterReasons(item -> {
+			String reason = PersonaItemProcessor.FILTER_REASONS.apply(item);
+			return reason != null ? reason : "duplicado";
+		});
+		return listener;
+	}
+	@Autowired
+	private ObjectProvider<StepMetricsListener> stepMetricsListener;
+
+	private TaskletStep instrumented(AbstractTaskletStepBuilder<?> builder) {
+		StepMetricsListener metrics = stepMetricsListener.getIfAvailable();
+		if (metrics != null) {
+			// Como StepExecutionListener el paso lo registra también como ItemProcessListener
+			builder.listener((StepExecutionListener) metrics);
+			builder.listener((ChunkListener) metrics);
+			if (builder instanceof FaultTolerantStepBuilder)
+				((FaultTolerantStepBuilder<?, ?>) builder).listener((RetryListener) metrics);
+		}
+		return builder.build();
+	}
+
+	// Auditoría por elemento (audit.*): buffer circular en memoria y escritura por lotes
+	// en segundo plano a audit.dir/items.audit, que se lee con ItemAuditReader.
+	// Desactivada por defecto: se activa con audit.enabled=true en application.properties
+	// o al arrancar (java -jar demo.jar --audit.enabled=true)
+	@Bean(destroyMethod = "close")
+	@ConditionalOnProperty(name = "audit.enabled", havingValue = "true")
+	public ItemAuditLog itemAuditLog(@Value("${audit.dir:./audit}") String dir,
+			@Value("${audit.capacity:65536}") int capacity, @Value("${audit.sample:1}") int sample,
+			@Value("${audit.max-file-size:67108864}") long maxFileSize, @Value("${audit.max-files:10}") int maxFiles) {
+		ItemAuditLog auditLog = new ItemAuditLog();
+		auditLog.setDirectory(Paths.get(dir));
+		auditLog.setCapacity(capacity);
+		auditLog.setSample(sample);
+		auditLog.setMaxFileSize(maxFileSize);
+		auditLog.setMaxFiles(maxFiles);
+		return auditLog;
+	}
+	@Autowired
+	private ObjectProvider<ItemAuditLog> itemAuditLog;
+
+	private ItemFailureLoggerListener itemFailureLoggerListener() {
+		ItemFailureLoggerListener listener = new ItemFailureLoggerListener();
+		listener.setAuditLog(itemAuditLog.getIfAvailable());
+		return listener;
+	}
+
+	// Pipeline opcional (batch.pipeline.enabled): lectura anticipada, proceso asíncrono
+	// y escritura que resuelve los resultados en orden
+	@Value("${batch.pipeline.enabled:false}")
+	private boolean pipelineEnabled;
+	@Value("${batch.pipeline.read-ahead:100}")
+	private int pipelineReadAhead;
+	@Value("${batch.pipeline.max-in-flight:100}")
+	private int pipelineMaxInFlight;
+
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService pipelineExecutor(@Value("${batch.pipeline.threads:0}") int threads) {
+		return PipelinedItemProcessor.newExecutor(threads);
+	}
+
+	private ItemStreamReader<PersonaDTO> pipelined(ItemStreamReader<PersonaDTO> reader) {
+		return pipelineEnabled ? new PrefetchingItemReader<>(reader, pipelineReadAhead) : reader;
+	}
+
+	// Descarte de ids ya importados (import.dedup.*), con un IdBitmap común a todos los
+	// pasos de importación que se carga de la tabla al empezar cada ejecución. Solo con
+	// persona.writer.mode=insert: upsert y bulk existen para actualizar las filas que ya
+	// están, y el descarte no las dejaría llegar
+	@Bean
+	@ConditionalOnExpression("${import.dedup.enabled:true} and '${persona.writer.mode:insert}'.equalsIgnoreCase('insert')")
+	public PersonaDedupItemProcessor personaDedupItemProcessor(DataSource dataSource,
+			@Value("${import.dedup.fetch-size:1000}") int fetchSize) {
+		PersonaDedupItemProcessor processor = new PersonaDedupItemProcessor();
+		processor.setDataSource(dataSource);
+		processor.setFetchSize(fetchSize);
+		processor.setAuditLog(itemAuditLog.getIfAvailable());
+		return processor;
+	}
+	@Autowired
+	private ObjectProvider<PersonaDedupItemProcessor> personaDedupItemProcessor;
+
+	private ItemProcessor<PersonaDTO, Persona> importProcessor(ItemProcessor<PersonaDTO, Persona> processor,
+			PersonaDedupItemProcessor dedup) {
+		if (dedup == null)
+			return processor;
+		CompositeItemProcessor<PersonaDTO, Persona> composite = new CompositeItemProcessor<>();
+		composite.setDelegates(Arrays.asList(processor, dedup));
+		return composite;
+	}
+
+	// Recuperación sin reproceso (import.recovery.*): los errores de integridad al escribir
+	// se aíslan partiendo el chunk en savepoints y van a dead-letter-dir/<paso>.csv, y los
+	// reintentos del chunk reutilizan lo que PersonaItemProcessor ya había procesado
+	@Value("${import.recovery.enabled:true}")
+	private boolean recoveryEnabled;
+	@Value("${import.recovery.dead-letter-dir:./deadletter}")
+	private String deadLetterDir;
+	@Value("${import.recovery.dead-letter-limit:1000}")
+	private int deadLetterLimit;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@SuppressWarnings("unchecked")
+	private ItemWriter<Persona> recoverable(String name, ItemWriter<Persona> writer,
+			ItemWriteListener<Object>... listeners) throws Exception {
+		return recoveryEnabled ? bisecting(name, writer, listeners) : writer;
+	}
+
+	@SuppressWarnings("unchecked")
+	private BisectingItemWriter<Persona> bisecting(String name, ItemWriter<Persona> writer,
+			ItemWriteListener<Object>... listeners) throws Exception {
+		CsvItemWriter<BisectingItemWriter.DeadLetter<Persona>> deadLetters = new CsvItemWriter<>();
+		deadLetters.setName("deadLetterWriter");
+		deadLetters.setResource(new FileSystemResource(Paths.get(deadLetterDir, name + ".csv").toFile()));
+		deadLetters.setHeader("id,nombre,correo,ip,error");
+		deadLetters.setLineEncoder((deadLetter, line) -> line.field(deadLetter.getItem().getId())
+				.field(deadLetter.getItem().getNombre()).field(deadLetter.getItem().getCorreo())
+				.field(deadLetter.getItem().getIp())
+				.field(NestedExceptionUtils.getMostSpecificCause(deadLetter.getError()).getMessage()));
+		List<ItemWriteListener<Object>> writeListeners = new ArrayList<>(Arrays.asList(listeners));
+		PersonaDedupItemProcessor dedup = personaDedupItemProcessor.getIfAvailable();
+		if (dedup != null)
+			writeListeners.add(dedup);
+		BisectingItemWriter<Persona> bisecting = new BisectingItemWriter<>();
+		bisecting.setDelegate(writer);
+		bisecting.setTransactionManager(transactionManager);
+		bisecting.setDeadLetterWriter(deadLetters);
+		bisecting.setListeners(writeListeners.toArray(new ItemWriteListener[0]));
+		bisecting.setDeadLetterLimit(deadLetterLimit);
+		bisecting.afterPropertiesSet();
+		return bisecting;
+	}
+
+	@SuppressWarnings("unchecked")
+	private SimpleStepBuilder<PersonaDTO, ?> importChunk(String name, ItemReader<PersonaDTO> reader,
+			ItemWriter<Persona> writer, ItemProcessListener<PersonaDTO, Persona>... listeners) {
+		return importChunk(name, reader, writer, false, listeners);
+	}
+
+	@SuppressWarnings("unchecked")
+	private SimpleStepBuilder<PersonaDTO, ?> importChunk(String name, ItemReader<PersonaDTO> reader,
+			ItemWriter<Persona> writer, boolean cached, ItemProcessListener<PersonaDTO, Persona>... listeners) {
+		PersonaDedupItemProcessor dedup = personaDedupItemProcessor.getIfAvailable();
+		RetryCachingItemProcessor<PersonaDTO, Persona> cache = null;
+		if (cached) {
+			cache = new RetryCachingItemProcessor<>();
+			cache.setDelegate(personaItemProcessor);
+		}
+		ItemProcessor<PersonaDTO, Persona> delegate = importProcessor(cache != null ? cache : personaItemProcessor, dedup);
+		if (!pipelineEnabled) {
+			SimpleStepBuilder<PersonaDTO, Persona> builder = stepBuilderFactory.get(name)
+					.<PersonaDTO, Persona>chunk(importCompletionPolicy(0, 0, 0))
+					.reader(reader)
+					.processor(delegate)
+					.writer(writer);
+			for (ItemProcessListener<PersonaDTO, Persona> listener : listeners)
+				builder.listener(listener);
+			return chunkListeners(builder, dedup, cache);
+		}
+		PipelinedItemProcessor<PersonaDTO, Persona> processor = new PipelinedItemProcessor<>();
+		processor.setDelegate(delegate);
+		processor.setExecutor(pipelineExecutor(0));
+		processor.setMaxInFlight(pipelineMaxInFlight);
+		// Con el pipeline los elementos filtrados solo se ven en el procesador
+		List<ItemProcessListener<? super PersonaDTO, ? super Persona>> processListeners = new ArrayList<>(Arrays.asList(listeners));
+		StepMetricsListener metrics = stepMetricsListener.getIfAvailable();
+		if (metrics != null)
+			processListeners.add(metrics);
+		processor.setListeners(processListeners.toArray(new ItemProcessListener[0]));
+		SimpleStepBuilder<PersonaDTO, Future<Persona>> builder = stepBuilderFactory.get(name)
+				.<PersonaDTO, Future<Persona>>chunk(importCompletionPolicy(0, 0, 0))
+				.reader(reader)
+				.processor(processor)
+				.writer(new PipelinedItemWriter<>(writer));
+		// Los errores de proceso llegan por el procesador; lectura y escritura, por el adaptador
+		// (el paso lo registra por todas las interfaces que implementa, no por el cast)
+		for (ItemProcessListener<PersonaDTO, Persona> listener : listeners)
+			builder.listener((ItemReadListener<PersonaDTO>) new PipelinedItemWriter.Listener<PersonaDTO, Persona>(listener));
+		return chunkListeners(builder, dedup, cache);
+	}
+
+	// Procesadores que llevan estado por paso y por chunk (los null se ignoran)
+	private <O> SimpleStepBuilder<PersonaDTO, O> chunkListeners(SimpleStepBuilder<PersonaDTO, O> builder,
+			PersonaDedupItemProcessor dedup, RetryCachingItemProcessor<?, ?> cache) {
+		if (dedup != null) {
+			builder.listener((StepExecutionListener) dedup);
+			builder.listener((ChunkListener) dedup);
+		}
+		if (cache != null) {
+			builder.listener((StepExecutionListener) cache);
+			builder.listener((ChunkListener) cache);
+		}
+		return builder;
 	}
 
 	@Bean
-	public Step importCSV2DBStep1(JdbcBatchItemWriter<Persona> personaDBItemWriter) {
-		return stepBuilderFactory.get("importCSV2DBStep1")
-				.<PersonaDTO, Persona>chunk(10)
-				.listener((ItemProcessListener<PersonaDTO, Persona>)new ItemFailureLoggerListener())
-				.reader(personaCSVItemReader("personas-1.csv"))
-				.processor(personaItemProcessor)
-				.writer(personaDBItemWriter)
+	public Step importCSV2DBStep1(PersonaJdbcItemWriter personaDBItemWriter) throws Exception {
+		ItemFailureLoggerListener failures = itemFailureLoggerListener();
+		return instrumented(importChunk("importCSV2DBStep1",
+				pipelined(personaMappedCSVItemReader("personas-1.csv", "id", "nombre", "apellidos", "correo", "sexo", "ip")),
+				recoverable("importCSV2DBStep1", personaDBItemWriter, failures), recoveryEnabled,
+				(ItemProcessListener<PersonaDTO, Persona>) failures)
 				.faultTolerant()
 				.retry(ItemProcessorException.class)
-				.retryLimit(6)
+				.retryLimit(6));
 //				.skip(ItemProcessorException.class)
 //				.skipLimit(7)
+	}
+
+	@Bean
+	public Step importCSV2DBStep2(PersonaJdbcItemWriter personaDBItemWriter) {
+		return instrumented(importChunk("importCSV2DBStep2",
+				pipelined(personaMappedCSVItemReader("personas-2.csv", "id", "nombre", "apellidos", "correo", "sexo", "ip")),
+				personaDBItemWriter));
+	}
+	@Bean
+	public Step importCSV2DBStep3(PersonaJdbcItemWriter personaDBItemWriter) {
+		return instrumented(importChunk("importCSV2DBStep3",
+				pipelined(personaMappedCSVItemReader("personas-3.csv", "id", "correo", "nombre", "apellidos", "sexo", "ip")),
+				personaDBItemWriter));
+	}
+	
+	// CSV a DB en paralelo: una partición por fichero (o rango de líneas)
+	@Bean
+	public PersonasFilePartitioner personasFilePartitioner(@Value("${input.dir.name:./ftp}") String dir,
+			@Value("${import.partition.max-lines:100000}") int maxLines) {
+		PersonasFilePartitioner partitioner = new PersonasFilePartitioner();
+		partitioner.setDirectoryResource(new FileSystemResource(dir));
+		partitioner.setMaxLines(maxLines);
+		return partitioner;
+	}
+	@Bean
+	public TaskExecutor importTaskExecutor(@Value("${import.partition.threads:0}") int threads) {
+		int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(size);
+		executor.setMaxPoolSize(size);
+		executor.setThreadNamePrefix("import-");
+		// Daemon: el pool no se cierra y no debe impedir que el proceso termine
+		executor.setDaemon(true);
+		return executor;
+	}
+
+	// Lector de cada partición, con y sin pipeline: los beans @StepScope devuelven la clase
+	// concreta para que el paso vea en el proxy lo que implementa
+	@Bean
+	@StepScope
+	public MappedPersonaCSVItemReader personaPartitionCSVItemReader(
+			@Value("#{stepExecutionContext['fileName']}") Resource resource,
+			@Value("#{stepExecutionContext['linesToSkip']}") int linesToSkip,
+			@Value("#{stepExecutionContext['startOffset']}") long startOffset,
+			@Value("#{stepExecutionContext['maxItemCount']}") int maxItemCount,
+			@Value("#{stepExecutionContext['names']}") String[] names) {
+		return partitionReader(resource, linesToSkip, startOffset, maxItemCount, names);
+	}
+	@Bean
+	@StepScope
+	public PrefetchingItemReader<PersonaDTO> personaPartitionPrefetchingItemReader(
+			@Value("#{stepExecutionContext['fileName']}") Resource resource,
+			@Value("#{stepExecutionContext['linesToSkip']}") int linesToSkip,
+			@Value("#{stepExecutionContext['startOffset']}") long startOffset,
+			@Value("#{stepExecutionContext['maxItemCount']}") int maxItemCount,
+			@Value("#{stepExecutionContext['names']}") String[] names) {
+		return new PrefetchingItemReader<>(partitionReader(resource, linesToSkip, startOffset, maxItemCount, names),
+				pipelineReadAhead);
+	}
+	private MappedPersonaCSVItemReader partitionReader(Resource resource, int linesToSkip, long startOffset,
+			int maxItemCount, String[] names) {
+		MappedPersonaCSVItemReader reader = new MappedPersonaCSVItemReader();
+		reader.setName("personaPartitionCSVItemReader");
+		reader.setResource(resource);
+		reader.setGzip(resource.getFilename().endsWith(".gz"));
+		reader.setLinesToSkip(linesToSkip);
+		reader.setStartOffset(startOffset);
+		reader.setMaxItemCount(maxItemCount);
+		reader.setNames(names);
+		return reader;
+	}
+
+	// Recuperación de cada partición: las particiones se ejecutan a la vez, así que cada una
+	// abre su propio fichero de dead letters (dead-letter-dir/<paso>-<partición>.csv) y el
+	// límite de dead-letter-limit se aplica por partición
+	@Bean
+	@StepScope
+	public BisectingItemWriter<Persona> personaPartitionRecoverableItemWriter(
+			@Value("#{stepExecution.stepName}") String stepName, PersonaJdbcItemWriter personaDBItemWriter)
+			throws Exception {
+		return bisecting(stepName.replace(':', '-'), personaDBItemWriter, itemFailureLoggerListener());
+	}
+
+	@Bean
+	public Step importCSV2DBPartitionStep(PersonaJdbcItemWriter personaDBItemWriter) throws Exception {
+		ItemReader<PersonaDTO> reader = pipelineEnabled ? personaPartitionPrefetchingItemReader(null, 0, 0, 0, null)
+				: personaPartitionCSVItemReader(null, 0, 0, 0, null);
+		ItemWriter<Persona> writer = recoveryEnabled ? personaPartitionRecoverableItemWriter(null, personaDBItemWriter)
+				: personaDBItemWriter;
+		return instrumented(importChunk("importCSV2DBPartitionStep", reader, writer, recoveryEnabled,
+				(ItemProcessListener<PersonaDTO, Persona>) itemFailureLoggerListener())
+				.faultTolerant()
+				.retry(ItemProcessorException.class)
+				.retryLimit(6));
+	}
+
+	@Bean
+	public Step importCSV2DBStep(Step importCSV2DBPartitionStep, PersonasFilePartitioner personasFilePartitioner,
+			TaskExecutor importTaskExecutor, @Value("${import.partition.threads:0}") int threads,
+			ObjectProvider<RemotePartitionHandler> remotePartitionHandler) {
+		RemotePartitionHandler remote = remotePartitionHandler.getIfAvailable();
+		if (remote != null)
+			return stepBuilderFactory.get("importCSV2DBStep")
+					.partitioner(importCSV2DBPartitionStep.getName(), personasFilePartitioner)
+					.partitionHandler(remote)
+					.build();
+		return stepBuilderFactory.get("importCSV2DBStep")
+				.partitioner(importCSV2DBPartitionStep.getName(), personasFilePartitioner)
+				.step(importCSV2DBPartitionStep)
+				.gridSize(threads > 0 ? threads : Runtime.getRuntime().availableProcessors())
+				.taskExecutor(importTaskExecutor)
 				.build();
 	}
 
+	// Ingesta continua (ingest.watch.enabled): ingestJob importa solo el fichero que recibe
+	// en el parámetro file, con el mismo paso de partición que importCSV2DBStep
+	@Bean
+	@JobScope
+	public PersonasFilePartitioner ingestFilePartitioner(@Value("#{jobParameters['file']}") String file,
+			@Value("${import.partition.max-lines:100000}") int maxLines) {
+		PersonasFilePartitioner partitioner = new PersonasFilePartitioner();
+		partitioner.setFiles(new String[] { file });
+		partitioner.setMaxLines(maxLines);
+		return partitioner;
+	}
 	@Bean
-	public Step importCSV2DBStep2(JdbcBatchItemWriter<Persona> personaDBItemWriter) {
-		return stepBuilderFactory.get("importCSV2DBStep2")
-				.<PersonaDTO, Persona>chunk(10)
-				.reader(personaCSVItemReader("personas-2.csv"))
-				.processor(personaItemProcessor)
-				.writer(personaDBItemWriter)
+	public Step ingestCSV2DBStep(Step importCSV2DBPartitionStep, TaskExecutor importTaskExecutor,
+			@Value("${import.partition.threads:0}") int threads) {
+		return stepBuilderFactory.get("ingestCSV2DBStep")
+				.partitioner(importCSV2DBPartitionStep.getName(), ingestFilePartitioner(null, 0))
+				.step(importCSV2DBPartitionStep)
+				.gridSize(threads > 0 ? threads : Runtime.getRuntime().availableProcessors())
+				.taskExecutor(importTaskExecutor)
 				.build();
 	}
 	@Bean
-	public Step importCSV2DBStep3(JdbcBatchItemWriter<Persona> personaDBItemWriter) {
-		return stepBuilderFactory.get("importCSV2DBStep3")
-				.<PersonaDTO, Persona>chunk(10)
-				.reader(personaCSV2ItemReader("personas-3.csv"))
-				.processor(personaItemProcessor)
-				.writer(personaDBItemWriter)
+	public Job ingestJob(Step ingestCSV2DBStep) {
+		return jobBuilderFactory
+				.get("ingestJob")
+				.start(ingestCSV2DBStep)
 				.build();
 	}
+	@Bean
+	@ConditionalOnProperty(name = "ingest.watch.enabled", havingValue = "true")
+	public PersonasDirectoryWatcher personasDirectoryWatcher(JobLauncher jobLauncher, Job ingestJob,
+			@Value("${input.dir.name:./ftp}") String dir,
+			@Value("${ingest.watch.quiet-period:1000}") long quietPeriod,
+			@Value("${ingest.watch.concurrency:2}") int concurrency) {
+		PersonasDirectoryWatcher watcher = new PersonasDirectoryWatcher();
+		watcher.setDirectoryResource(new FileSystemResource(dir));
+		watcher.setJobLauncher(jobLauncher);
+		watcher.setJob(ingestJob);
+		watcher.setQuietPeriod(quietPeriod);
+		watcher.setConcurrency(concurrency);
+		return watcher;
+	}
+
+	// Particionado remoto (batch.partition.mode=manager|worker): el manager reparte las
+	// particiones de importCSV2DBStep y los workers ejecutan importCSV2DBPartitionStep.
+	// Los workers necesitan ver el directorio de entrada y la misma base de datos. El
+	// manager escucha en batch.partition.bind-address (loopback por defecto) y los dos lados
+	// se autentican con batch.partition.secret, que es obligatorio
+	@Bean(destroyMethod = "close")
+	@ConditionalOnExpression("'${batch.partition.mode:local}' != 'local'")
+	public PartitionTransport partitionTransport(@Value("${batch.partition.mode}") String mode,
+			@Value("${batch.partition.host:localhost}") String host,
+			@Value("${batch.partition.port:9091}") int port,
+			@Value("${batch.partition.bind-address:127.0.0.1}") String bindAddress,
+			@Value("${batch.partition.secret:}") String secret) throws IOException {
+		return "manager".equals(mode) ? SocketPartitionTransport.listen(bindAddress, port, secret)
+				: SocketPartitionTransport.connect(host, port, secret);
+	}
+	@Bean
+	@ConditionalOnProperty(name = "batch.partition.mode", havingValue = "manager")
+	public RemotePartitionHandler remotePartitionHandler(PartitionTransport partitionTransport,
+			JobRepository jobRepository, Step importCSV2DBPartitionStep,
+			@Value("${batch.partition.timeout:3600000}") long timeout) {
+		RemotePartitionHandler handler = new RemotePartitionHandler();
+		handler.setTransport(partitionTransport);
+		handler.setJobRepository(jobRepository);
+		handler.setStepName(importCSV2DBPartitionStep.getName());
+		handler.setTimeout(timeout);
+		return handler;
+	}
+	@Bean
+	@ConditionalOnProperty(name = "batch.partition.mode", havingValue = "worker")
+	public PartitionWorker partitionWorker(PartitionTransport partitionTransport, JobRepository jobRepository,
+			Step importCSV2DBPartitionStep, @Value("${batch.partition.worker.threads:0}") int threads) {
+		PartitionWorker worker = new PartitionWorker();
+		worker.setTransport(partitionTransport);
+		worker.setJobRepository(jobRepository);
+		worker.setSteps(Collections.singletonList(importCSV2DBPartitionStep));
+		worker.setThreads(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+		return worker;
+	}
 	
-	// DB a CSV
+	// DB a CSV y XML en paralelo: una partición por tramo de ids, leído por páginas
+	// (WHERE id > último id de la página anterior) y escrito en su propio fragmento;
+	// con export.partition.merge, un paso final junta los fragmentos en el fichero destino
+	@Value("${export.partition.merge:true}")
+	private boolean exportMerge;
+
 	@Bean
-	JdbcCursorItemReader<Persona> personaDBItemReader(DataSource dataSource) {
-		return new JdbcCursorItemReaderBuilder<Persona>().name("personaDBItemReader")
-				.sql("SELECT id, nombre, correo, ip FROM personas").dataSource(dataSource)
-				.rowMapper(new BeanPropertyRowMapper<>(Persona.class))
+	public TaskExecutor exportTaskExecutor(@Value("${export.partition.threads:0}") int threads) {
+		int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(size);
+		executor.setMaxPoolSize(size);
+		executor.setThreadNamePrefix("export-");
+		executor.setDaemon(true);
+		return executor;
+	}
+
+	// Exportación comprimida (export.gzip.enabled): los ficheros de output/ se escriben con
+	// .gz, en bloques de export.gzip.block-size bytes comprimidos en paralelo
+	@Bean(destroyMethod = "shutdown")
+	@ConditionalOnProperty(name = "export.gzip.enabled", havingValue = "true")
+	public ExecutorService exportGzipExecutor(@Value("${export.gzip.threads:0}") int threads) {
+		AtomicInteger count = new AtomicInteger();
+		return Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), task -> {
+			Thread thread = new Thread(task, "gzip-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	@Bean
+	@ConditionalOnProperty(name = "export.gzip.enabled", havingValue = "true")
+	public GzipBlockCompressor exportCompressor(@Value("${export.gzip.threads:0}") int threads,
+			@Value("${export.gzip.block-size:131072}") int blockSize, @Value("${export.gzip.level:-1}") int level) {
+		GzipBlockCompressor compressor = new GzipBlockCompressor();
+		compressor.setExecutor(exportGzipExecutor(0));
+		compressor.setBlockSize(blockSize);
+		compressor.setLevel(level);
+		compressor.setMaxPending(2 * (threads > 0 ? threads : Runtime.getRuntime().availableProcessors()));
+		return compressor;
+	}
+	@Autowired
+	private ObjectProvider<GzipBlockCompressor> exportCompressor;
+
+	private FileSystemResource exportResource(String file) {
+		return new FileSystemResource(exportCompressor.getIfAvailable() == null ? file : file + ".gz");
+	}
+
+	private PersonasIdRangePartitioner personasIdRangePartitioner(DataSource dataSource, String target) {
+		PersonasIdRangePartitioner partitioner = new PersonasIdRangePartitioner();
+		partitioner.setDataSource(dataSource);
+		partitioner.setTarget(exportResource(target));
+		return partitioner;
+	}
+	@Bean
+	public PersonasIdRangePartitioner personasCSVPartitioner(DataSource dataSource) {
+		return personasIdRangePartitioner(dataSource, "output/outputData.csv");
+	}
+	@Bean
+	public PersonasIdRangePartitioner personasXMLPartitioner(DataSource dataSource) {
+		return personasIdRangePartitioner(dataSource, "output/outputData.xml");
+	}
+
+	private Step exportPartitionedStep(String name, Step partitionStep, PersonasIdRangePartitioner partitioner,
+			TaskExecutor exportTaskExecutor, int threads) {
+		return stepBuilderFactory.get(name)
+				.partitioner(partitionStep.getName(), partitioner)
+				.step(partitionStep)
+				.gridSize(threads > 0 ? threads : Runtime.getRuntime().availableProcessors())
+				.taskExecutor(exportTaskExecutor)
 				.build();
 	}
 
-	public FlatFileItemWriter<Persona> personaCSVItemWriter() {
-		return new FlatFileItemWriterBuilder<Persona>().name("personaCSVItemWriter")
-				.resource(new FileSystemResource("output/outputData.csv"))
-				.lineAggregator(new DelimitedLineAggregator<Persona>() {
-					{
-						setDelimiter(",");
-						setFieldExtractor(new BeanWrapperFieldExtractor<Persona>() {
-							{
-								setNames(new String[] { "id", "nombre", "correo", "ip" });
-							}
-						});
-					}
-				}).build();
-	}
-	@Bean
-	public Step exportDB2CSVStep(JdbcCursorItemReader<Persona> personaDBItemReader) {
-		return stepBuilderFactory.get("exportDB2CSVStep")
-				.<Persona, Persona>chunk(100)
-				.reader(personaDBItemReader)
-				.writer(personaCSVItemWriter())
+	private Step exportMergeStep(String name, String target, String rootTagName) {
+		ShardMergeTasklet tasklet = new ShardMergeTasklet();
+		tasklet.setTarget(exportResource(target));
+		tasklet.setRootTagName(rootTagName);
+		return instrumented(stepBuilderFactory.get(name).tasklet(tasklet));
+	}
+
+	@Bean
+	@StepScope
+	public JdbcPagingItemReader<Persona> personaDBRangeItemReader(DataSource dataSource,
+			@Value("#{stepExecutionContext['minId']}") long minId,
+			@Value("#{stepExecutionContext['maxId']}") long maxId,
+			@Value("${export.partition.page-size:1000}") int pageSize,
+			@Value("${export.partition.fetch-size:1000}") int fetchSize) {
+		Map<String, Object> parameters = new HashMap<>();
+		parameters.put("minId", minId);
+		parameters.put("maxId", maxId);
+		return new JdbcPagingItemReaderBuilder<Persona>().name("personaDBRangeItemReader")
+				.dataSource(dataSource)
+				.selectClause("SELECT id, nombre, correo, ip")
+				.fromClause("FROM personas")
+				.whereClause("WHERE id BETWEEN :minId AND :maxId")
+				.sortKeys(Collections.singletonMap("id", Order.ASCENDING))
+				.parameterValues(parameters)
+				.pageSize(pageSize)
+				.fetchSize(fetchSize)
+				.rowMapper((rs, rowNum) -> new Persona(rs.getLong("id"), rs.getString("nombre"),
+						rs.getString("correo"), rs.getString("ip")))
 				.build();
 	}
 
+	@Bean
+	@StepScope
+	public CsvItemWriter<Persona> personaCSVItemWriter(@Value("#{stepExecutionContext['fileName']}") Resource resource) {
+		return personaCSVWriter(resource);
+	}
+	private CsvItemWriter<Persona> personaCSVWriter(Resource resource) {
+		CsvItemWriter<Persona> writer = new CsvItemWriter<>();
+		writer.setName("personaCSVItemWriter");
+		writer.setResource(resource);
+		writer.setCompressor(exportCompressor.getIfAvailable());
+		writer.setLineEncoder((item, line) -> line.field(item.getId()).field(item.getNombre())
+				.field(item.getCorreo()).field(item.getIp()));
+		return writer;
+	}
+	@Bean
+	public Step exportDB2CSVPartitionStep() {
+		return instrumented(stepBuilderFactory.get("exportDB2CSVPartitionStep")
+				.<Persona, Persona>chunk(exportCompletionPolicy(0, 0, 0))
+				.reader(personaDBRangeItemReader(null, 0, 0, 0, 0))
+				.writer(personaCSVItemWriter(null)));
+	}
+	@Bean
+	public Step exportDB2CSVStep(Step exportDB2CSVPartitionStep, PersonasIdRangePartitioner personasCSVPartitioner,
+			TaskExecutor exportTaskExecutor, @Value("${export.partition.threads:0}") int threads) {
+		return exportPartitionedStep("exportDB2CSVStep", exportDB2CSVPartitionStep, personasCSVPartitioner,
+				exportTaskExecutor, threads);
+	}
+	@Bean
+	public Step exportDB2CSVMergeStep() {
+		return exportMergeStep("exportDB2CSVMergeStep", "output/outputData.csv", null);
+	}
+
 	@Bean
 	JdbcCursorItemReader<PersonaCortoDTO> personaDBItemReader2(DataSource dataSource) {
 		return new JdbcCursorItemReaderBuilder<PersonaCortoDTO>().name("personaDBItemReader")
@@ -165,116 +754,186 @@ public class PersonasBatchConfiguration {
 				.build();
 	}
 
-	public FlatFileItemWriter<PersonaCortoDTO> personaCSVItemWriter2() {
-		return new FlatFileItemWriterBuilder<PersonaCortoDTO>().name("personaCSVItemWriter")
-				.resource(new FileSystemResource("output/outputData2.csv"))
-				.lineAggregator(new DelimitedLineAggregator<PersonaCortoDTO>() {
-					{
-						setDelimiter(",");
-						setFieldExtractor(new BeanWrapperFieldExtractor<PersonaCortoDTO>() {
-							{
-								setNames(new String[] { "id", "nombre" });
-							}
-						});
-					}
-				}).build();
+	public CsvItemWriter<PersonaCortoDTO> personaCSVItemWriter2() {
+		CsvItemWriter<PersonaCortoDTO> writer = new CsvItemWriter<>();
+		writer.setName("personaCSVItemWriter");
+		writer.setResource(exportResource("output/outputData2.csv"));
+		writer.setCompressor(exportCompressor.getIfAvailable());
+		writer.setLineEncoder((item, line) -> line.field(item.getId()).field(item.getNombre()));
+		return writer;
 	}
 
 	@Bean
 	public Step exportDB2CSVStep2(JdbcCursorItemReader<PersonaCortoDTO> personaDBItemReader2) {
-		return stepBuilderFactory.get("exportDB2CSVStep2")
-				.<PersonaCortoDTO, PersonaCortoDTO>chunk(100)
+		return instrumented(stepBuilderFactory.get("exportDB2CSVStep2")
+				.<PersonaCortoDTO, PersonaCortoDTO>chunk(exportCompletionPolicy(0, 0, 0))
 				.reader(personaDBItemReader2)
-				.writer(personaCSVItemWriter2())
-				.build();
+				.writer(personaCSVItemWriter2()));
 	}
 
 	// Tareas
 	@Bean
-	public FTPLoadTasklet ftpLoadTasklet(@Value("${input.dir.name:./ftp}") String dir) {
+	public FTPLoadTasklet ftpLoadTasklet(@Value("${input.dir.name:./ftp}") String dir,
+			@Value("${staging.dir.name:src/main/resources}") String staging,
+			@Value("${staging.threads:0}") int threads, @Value("${staging.links:false}") boolean links) {
 		FTPLoadTasklet tasklet = new FTPLoadTasklet();
 		tasklet.setDirectoryResource(new FileSystemResource(dir));
+		tasklet.setStagingResource(new FileSystemResource(staging));
+		tasklet.setThreads(threads);
+		tasklet.setLinks(links);
 		return tasklet;
 	}
 	@Bean
 	public Step copyFilesInDir(FTPLoadTasklet ftpLoadTasklet) {
-	        return this.stepBuilderFactory.get("copyFilesInDir")
-	                                .tasklet(ftpLoadTasklet)
-	                                .build();
+	        return instrumented(this.stepBuilderFactory.get("copyFilesInDir")
+	                                .tasklet(ftpLoadTasklet));
 	}
 
 	// XML a BD
 	
-	public StaxEventItemReader<PersonaDTO> personaXMLItemReader() {
-		XStreamMarshaller marshaller = new XStreamMarshaller();
-		Map<String, Class> aliases = new HashMap<>();
-		aliases.put("Persona", PersonaDTO.class);
-		marshaller.setAliases(aliases);
-		return new StaxEventItemReaderBuilder<PersonaDTO>()
-				.name("personaXMLItemReader")
-				.resource(new ClassPathResource("Personas.xml"))
-				.addFragmentRootElements("Persona")
-				.unmarshaller(marshaller)
-				.build();
+	public PersonaXmlItemReader personaXMLItemReader() {
+		PersonaXmlItemReader reader = new PersonaXmlItemReader();
+		Resource resource = new ClassPathResource("Personas.xml");
+		reader.setName("personaXMLItemReader");
+		reader.setResource(resource);
+		reader.setGzip(resource.getFilename().endsWith(".gz"));
+		reader.setFragmentRootElementName("Persona");
+		return reader;
 	}	
 	@Bean
-	public Step importXML2DBStep1(JdbcBatchItemWriter<Persona> personaDBItemWriter) {
-		return stepBuilderFactory.get("importXML2DBStep1")
-				.<PersonaDTO, Persona>chunk(10)
-				.reader(personaXMLItemReader())
-				.processor(personaItemProcessor)
-				.writer(personaDBItemWriter)
-				.build();
+	public Step importXML2DBStep1(PersonaJdbcItemWriter personaDBItemWriter) {
+		return instrumented(importChunk("importXML2DBStep1", pipelined(personaXMLItemReader()), personaDBItemWriter));
 	}
 	
 	// DB a XML
-	
-	public StaxEventItemWriter<Persona> personaXMLItemWriter() {
-		XStreamMarshaller marshaller = new XStreamMarshaller();
-		Map<String, Class> aliases = new HashMap<>();
-		aliases.put("Persona", Persona.class);
-		marshaller.setAliases(aliases);
-		return new StaxEventItemWriterBuilder<Persona>()
-				.name("personaXMLItemWriter")
-				.resource(new FileSystemResource("output/outputData.xml"))
-				.marshaller(marshaller)
-				.rootTagName("Personas")
-				.overwriteOutput(true)
+	@Bean
+	@StepScope
+	public PersonaXmlItemWriter personaXMLItemWriter(@Value("#{stepExecutionContext['fileName']}") Resource resource) {
+		return personaXMLWriter(resource);
+	}
+	private PersonaXmlItemWriter personaXMLWriter(Resource resource) {
+		PersonaXmlItemWriter writer = new PersonaXmlItemWriter();
+		writer.setName("personaXMLItemWriter");
+		writer.setResource(resource);
+		writer.setCompressor(exportCompressor.getIfAvailable());
+		writer.setRootTagName("Personas");
+		writer.setItemTagName("Persona");
+		return writer;
+	}
+	@Bean
+	public Step exportDB2XMLPartitionStep() {
+		return instrumented(stepBuilderFactory.get("exportDB2XMLPartitionStep")
+				.<Persona, Persona>chunk(exportCompletionPolicy(0, 0, 0))
+				.reader(personaDBRangeItemReader(null, 0, 0, 0, 0))
+				.writer(personaXMLItemWriter(null)));
+	}
+	@Bean
+	public Step exportDB2XMLStep(Step exportDB2XMLPartitionStep, PersonasIdRangePartitioner personasXMLPartitioner,
+			TaskExecutor exportTaskExecutor, @Value("${export.partition.threads:0}") int threads) {
+		return exportPartitionedStep("exportDB2XMLStep", exportDB2XMLPartitionStep, personasXMLPartitioner,
+				exportTaskExecutor, threads);
+	}
+	@Bean
+	public Step exportDB2XMLMergeStep() {
+		return exportMergeStep("exportDB2XMLMergeStep", "output/outputData.xml", "Personas");
+	}
+
+
+	// DB a CSV, CSV corto y XML leyendo la tabla una sola vez: cada chunk va a los tres
+	// escritores en paralelo. Con export.all.enabled sustituye en personasJob a las
+	// exportaciones por formato
+	@Value("${export.all.enabled:false}")
+	private boolean exportAll;
+
+	@Bean
+	JdbcCursorItemReader<Persona> personaDBItemReader(DataSource dataSource,
+			@Value("${export.partition.fetch-size:1000}") int fetchSize) {
+		return new JdbcCursorItemReaderBuilder<Persona>().name("personaDBItemReader")
+				.sql("SELECT id, nombre, correo, ip FROM personas ORDER BY id").dataSource(dataSource)
+				.fetchSize(fetchSize)
+				.rowMapper((rs, rowNum) -> new Persona(rs.getLong("id"), rs.getString("nombre"),
+						rs.getString("correo"), rs.getString("ip")))
 				.build();
 	}
-	
 	@Bean
-	public Step exportDB2XMLStep(JdbcCursorItemReader<Persona> personaDBItemReader) {
-		return stepBuilderFactory.get("exportDB2XMLStep")
-				.<Persona, Persona>chunk(100)
+	public Step exportDB2AllStep(JdbcCursorItemReader<Persona> personaDBItemReader) throws Exception {
+		// La proyección de PersonaCortoDTO (id y nombre) sale directamente de Persona
+		CsvItemWriter<Persona> corto = new CsvItemWriter<>();
+		corto.setName("personaCSVItemWriter2");
+		corto.setResource(exportResource("output/outputData2.csv"));
+		corto.setCompressor(exportCompressor.getIfAvailable());
+		corto.setLineEncoder((item, line) -> line.field(item.getId()).field(item.getNombre()));
+		List<ItemWriter<? super Persona>> delegates = new ArrayList<>(Arrays.asList(
+				personaCSVWriter(exportResource("output/outputData.csv")), corto,
+				personaXMLWriter(exportResource("output/outputData.xml"))));
+		if (exportColumnar)
+			delegates.add(personaColumnarWriter());
+		FanOutItemWriter<Persona> writer = new FanOutItemWriter<>();
+		writer.setDelegates(delegates);
+		writer.afterPropertiesSet();
+		return instrumented(stepBuilderFactory.get("exportDB2AllStep")
+				.<Persona, Persona>chunk(exportCompletionPolicy(0, 0, 0))
 				.reader(personaDBItemReader)
-				.writer(personaXMLItemWriter())
-				.build();
+				.writer(writer));
+	}
+
+	// DB a fichero por columnas (output/outputData.pcol), para análisis; con
+	// export.columnar.enabled personasJob lo genera después del XML, o como una salida
+	// más de exportDB2AllStep
+	@Value("${export.columnar.enabled:false}")
+	private boolean exportColumnar;
+	@Value("${export.columnar.row-group-size:10000}")
+	private int exportColumnarRowGroupSize;
+
+	private PersonaColumnarItemWriter personaColumnarWriter() {
+		PersonaColumnarItemWriter writer = new PersonaColumnarItemWriter();
+		writer.setName("personaColumnarItemWriter");
+		writer.setResource(new FileSystemResource("output/outputData.pcol"));
+		writer.setRowGroupSize(exportColumnarRowGroupSize);
+		return writer;
+	}
+	@Bean
+	public Step exportDB2ColumnarStep(JdbcCursorItemReader<Persona> personaDBItemReader) {
+		return instrumented(stepBuilderFactory.get("exportDB2ColumnarStep")
+				.<Persona, Persona>chunk(exportCompletionPolicy(0, 0, 0))
+				.reader(personaDBItemReader)
+				.writer(personaColumnarWriter()));
 	}
 
 
 	// Trabajo
 	@Bean
-	public Job personasJob(PersonasJobListener listener, Step importCSV2DBStep1, Step importCSV2DBStep2, 
-			Step importCSV2DBStep3, Step exportDB2CSVStep, Step exportDB2CSVStep2, Step copyFilesInDir,
-			Step importXML2DBStep1, Step exportDB2XMLStep) {
-		return jobBuilderFactory
+	public Job personasJob(PersonasJobListener listener, Step importCSV2DBStep, Step importCSV2DBStep1, Step importCSV2DBStep2, 
+			Step importCSV2DBStep3, Step exportDB2CSVStep, Step exportDB2CSVMergeStep, Step exportDB2CSVStep2,
+			Step copyFilesInDir, Step importXML2DBStep1, Step exportDB2XMLStep, Step exportDB2XMLMergeStep,
+			Step exportDB2AllStep, Step exportDB2ColumnarStep) {
+		SimpleJobBuilder job = jobBuilderFactory
 				.get("personasJob")
 				.incrementer(new RunIdIncrementer())
 				.listener(listener)
 				.start(copyFilesInDir)
-				.next(importCSV2DBStep1)
+				.next(importCSV2DBStep);
+//				.next(importCSV2DBStep1)
 //				.next(importCSV2DBStep2)
 //				.next(importCSV2DBStep3)
 //				.next(importXML2DBStep1)
 //				.next(exportDB2CSVStep)
+//				.next(exportDB2CSVMergeStep)
 //				.next(exportDB2CSVStep2)
-				.next(exportDB2XMLStep)
-				.build();
+		if (exportAll)
+			return job.next(exportDB2AllStep).build();
+		job.next(exportDB2XMLStep);
+		if (exportMerge)
+			job.next(exportDB2XMLMergeStep);
+		if (exportColumnar)
+			job.next(exportDB2ColumnarStep);
+		return job.build();
 	}
 
 //	@Autowired 
 //	private PhotoRestItemReader photoRestItemReader;
+//	@Autowired 
+//	private PhotoEnrichmentProcessor photoEnrichmentProcessor;
 //	
 //	@Bean
 //	public Job photoJob() {
@@ -284,6 +943,8 @@ public class PersonasBatchConfiguration {
 //			.start(
 //					stepBuilderFactory.get("photoJobStep1").<PhotoDTO, PhotoDTO>chunk(100)
 //						.reader(photoRestItemReader)
+//						.processor(photoEnrichmentProcessor)
+//						.listener((ItemReadListener<PhotoDTO>)photoEnrichmentProcessor)
 //						.writer(new FlatFileItemWriterBuilder<PhotoDTO>().name("photoCSVItemWriter")
 //							.resource(new FileSystemResource("output/photoData.csv"))
 //							.headerCallback(new FlatFileHeaderCallback() {
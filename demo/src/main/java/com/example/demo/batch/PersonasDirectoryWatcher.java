@@ -0,0 +1,243 @@
+package com.example.demo.batch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+/**
+ * Vigila el directorio de entrada con un WatchService y lanza el trabajo de ingesta con
+ * cada fichero nuevo; al arrancar también se lanzan los que ya estaban en el directorio.
+ * Un fichero se da por completo cuando lleva quietPeriod ms sin eventos y sin cambiar de
+ * tamaño ni de fecha, y nunca hay más de concurrency lanzamientos en marcha. El parámetro
+ * identificativo del trabajo es un hash de la ruta, el tamaño y la fecha del fichero (la
+ * ruta va en un parámetro no identificativo): el mismo fichero no se vuelve a importar y
+ * una ingesta fallida se reinicia si el fichero vuelve a llegar. Si el lanzamiento falla,
+ * el fichero se vuelve a intentar pasado un tiempo que se dobla en cada intento (hasta 64
+ * veces quietPeriod). El hilo que vigila no es daemon: mantiene vivo el proceso hasta stop().
+ */
+public class PersonasDirectoryWatcher implements SmartLifecycle, InitializingBean {
+	private static final Logger log = LoggerFactory.getLogger(PersonasDirectoryWatcher.class);
+	public static final String FILE = "file";
+	public static final String KEY = "key";
+
+	private Resource source;
+	private String pattern = "personas-*.csv";
+	private JobLauncher jobLauncher;
+	private Job job;
+	private long quietPeriod = 1000;
+	private int concurrency = 2;
+
+	private volatile boolean running;
+	private WatchService watchService;
+	private Thread watcher;
+	private ExecutorService launcher;
+	private final AtomicInteger launching = new AtomicInteger();
+	private final Queue<Pending> retries = new ConcurrentLinkedQueue<>();
+
+	private static final class Pending {
+		final Path file;
+		long size = -1;
+		long modified = -1;
+		long lastEvent;
+		int attempts;
+
+		Pending(Path file) {
+			this.file = file;
+		}
+
+		// Devuelve true si el fichero ha cambiado desde la última vez
+		boolean touch(long now) {
+			try {
+				long currentSize = Files.size(file);
+				long currentModified = Files.getLastModifiedTime(file).toMillis();
+				if (currentSize == size && currentModified == modified)
+					return false;
+				size = currentSize;
+				modified = currentModified;
+			} catch (IOException e) {
+				size = -1;
+			}
+			lastEvent = now;
+			return true;
+		}
+	}
+
+	@Override
+	public void start() {
+		Path dir;
+		try {
+			dir = source.getFile().toPath();
+			watchService = FileSystems.getDefault().newWatchService();
+			dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (IOException e) {
+			throw new IllegalStateException("No se puede vigilar " + source, e);
+		}
+		AtomicInteger count = new AtomicInteger();
+		launcher = Executors.newFixedThreadPool(concurrency, task -> {
+			Thread thread = new Thread(task, "ingest-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		running = true;
+		watcher = new Thread(() -> watch(dir), "ingest-watcher");
+		watcher.start();
+		log.info("Vigilando {} ({})", dir, pattern);
+	}
+
+	private void watch(Path dir) {
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+		Map<Path, Pending> pending = new LinkedHashMap<>();
+		// Los que ya estaban antes de registrar el directorio no generan eventos
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, pattern)) {
+			long now = System.currentTimeMillis();
+			for (Path file : files)
+				pending.computeIfAbsent(file, Pending::new).touch(now);
+		} catch (IOException e) {
+			log.warn("No se puede listar {}: {}", dir, e.getMessage());
+		}
+		try {
+			while (running) {
+				// Sin ficheros a medio llegar ni lanzamientos que puedan fallar se bloquea
+				// hasta el siguiente evento (launching antes que retries: se encola y luego se
+				// descuenta)
+				WatchKey key = launching.get() == 0 && retries.isEmpty() && pending.isEmpty() ? watchService.take()
+						: watchService.poll(quietPeriod, TimeUnit.MILLISECONDS);
+				long now = System.currentTimeMillis();
+				for (Pending retry; (retry = retries.poll()) != null;)
+					pending.putIfAbsent(retry.file, retry);
+				if (key != null) {
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+							log.warn("Se han perdido eventos de {}", dir);
+							continue;
+						}
+						Path name = (Path) event.context();
+						if (matcher.matches(name))
+							pending.computeIfAbsent(dir.resolve(name), Pending::new).touch(now);
+					}
+					key.reset();
+				}
+				for (Iterator<Pending> it = pending.values().iterator(); it.hasNext();) {
+					Pending file = it.next();
+					if (!Files.isRegularFile(file.file)) {
+						it.remove();
+					} else if (now - file.lastEvent >= quietPeriod && !file.touch(now) && file.size > 0) {
+						it.remove();
+						launch(file);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			// stop()
+		}
+	}
+
+	private void launch(Pending file) {
+		String name = file.file.toAbsolutePath().toString();
+		JobParameters parameters = new JobParametersBuilder()
+				.addString(KEY, key(name + '|' + file.size + '@' + file.modified))
+				.addString(FILE, name, false)
+				.toJobParameters();
+		launching.incrementAndGet();
+		launcher.execute(() -> {
+			try {
+				JobExecution execution = jobLauncher.run(job, parameters);
+				log.info("Ingesta de {}: {}", name, execution.getStatus());
+			} catch (JobInstanceAlreadyCompleteException e) {
+				log.info("Ya importado, se ignora: {}", name);
+			} catch (Exception e) {
+				long delay = quietPeriod << Math.min(file.attempts++, 6);
+				log.error("No se puede lanzar la ingesta de " + name + ", se reintenta en " + delay + " ms", e);
+				file.lastEvent = System.currentTimeMillis() + delay;
+				retries.add(file);
+			} finally {
+				launching.decrementAndGet();
+			}
+		});
+	}
+
+	// SHA-256 en hexadecimal: cabe en las columnas de parámetros del JobRepository
+	private static String key(String value) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+			StringBuilder rslt = new StringBuilder(digest.length * 2);
+			for (byte b : digest)
+				rslt.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			return rslt.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+		if (watchService != null)
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				log.warn("Cerrando el WatchService: {}", e.getMessage());
+			}
+		if (launcher != null) {
+			launcher.shutdown();
+			try {
+				launcher.awaitTermination(30, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	public void setDirectoryResource(Resource directory) { this.source = directory; }
+	public void setPattern(String pattern) { this.pattern = pattern; }
+	public void setJobLauncher(JobLauncher jobLauncher) { this.jobLauncher = jobLauncher; }
+	public void setJob(Job job) { this.job = job; }
+	public void setQuietPeriod(long quietPeriod) { this.quietPeriod = quietPeriod; }
+	public void setConcurrency(int concurrency) { this.concurrency = concurrency; }
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(source, "directory must be set");
+		Assert.notNull(jobLauncher, "jobLauncher must be set");
+		Assert.notNull(job, "job must be set");
+		Assert.isTrue(concurrency > 0, "concurrency must be positive");
+	}
+}
@@ -0,0 +1,161 @@
+package com.example.demo.batch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+/**
+ * Crea una partición por cada fichero personas-*.csv del directorio de entrada y,
+ * si el fichero supera maxLines filas, una partición por cada rango de líneas.
+ * La cabecera de cada fichero decide el orden de las columnas y cada partición
+ * lleva el byte en que empieza su primera línea. Con setFiles se particionan solo los
+ * ficheros indicados en lugar de todo el directorio. Los ficheros comprimidos
+ * (personas-*.csv.gz) van en una sola partición: para cortarlos habría que
+ * descomprimirlos enteros.
+ */
+public class PersonasFilePartitioner implements Partitioner, InitializingBean {
+	private static final Logger log = LoggerFactory.getLogger(PersonasFilePartitioner.class);
+	public static final String FILE_NAME = "fileName";
+	public static final String LINES_TO_SKIP = "linesToSkip";
+	public static final String START_OFFSET = "startOffset";
+	public static final String MAX_ITEM_COUNT = "maxItemCount";
+	public static final String NAMES = "names";
+
+	private static final Map<String, String> COLUMNS = new HashMap<>();
+	static {
+		COLUMNS.put("first_name", "nombre");
+		COLUMNS.put("last_name", "apellidos");
+		COLUMNS.put("email", "correo");
+		COLUMNS.put("gender", "sexo");
+		COLUMNS.put("ip_address", "ip");
+	}
+
+	private Resource source;
+	private String pattern = "personas-*.{csv,csv.gz}";
+	private int maxLines = 100000;
+	private String[] files;
+
+	@Override
+	public Map<String, ExecutionContext> partition(int gridSize) {
+		Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+		for (Path file : listFiles()) {
+			try {
+				String names = names(file);
+				if (gzip(file)) {
+					partitions.put(file.getFileName() + ":0", context(file, 1, -1, Integer.MAX_VALUE, names));
+					continue;
+				}
+				List<Long> offsets = new ArrayList<>();
+				long rows = countLines(file, maxLines, offsets) - 1;
+				for (long start = 0; start < rows; start += maxLines) {
+					partitions.put(file.getFileName() + ":" + start, context(file, (int) (start + 1),
+							offsets.get((int) (start / maxLines)), (int) Math.min(maxLines, rows - start), names));
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("No se puede particionar " + file, e);
+			}
+		}
+		log.info("Particiones: " + partitions.keySet());
+		return partitions;
+	}
+
+	private static ExecutionContext context(Path file, int linesToSkip, long startOffset, int maxItemCount, String names) {
+		ExecutionContext context = new ExecutionContext();
+		context.putString(FILE_NAME, file.toUri().toString());
+		context.putInt(LINES_TO_SKIP, linesToSkip);
+		context.putLong(START_OFFSET, startOffset);
+		context.putInt(MAX_ITEM_COUNT, maxItemCount);
+		context.putString(NAMES, names);
+		return context;
+	}
+
+	static boolean gzip(Path file) {
+		return file.getFileName().toString().endsWith(".gz");
+	}
+
+	protected List<Path> listFiles() {
+		List<Path> files = new ArrayList<>();
+		if (this.files != null) {
+			for (String file : this.files)
+				files.add(Paths.get(file));
+			files.sort(null);
+			return files;
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory().toPath(), pattern)) {
+			stream.forEach(files::add);
+		} catch (IOException e) {
+			throw new IllegalStateException("No se puede leer el directorio " + source, e);
+		}
+		files.sort(null);
+		return files;
+	}
+
+	private File directory() throws IOException {
+		File dir = source.getFile();
+		Assert.state(dir.isDirectory(), "No es un Directory");
+		return dir;
+	}
+
+	static String names(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file);
+				BufferedReader reader = new BufferedReader(new InputStreamReader(gzip(file) ? new GZIPInputStream(in) : in,
+						StandardCharsets.UTF_8))) {
+			String header = reader.readLine();
+			Assert.state(header != null, "Fichero sin cabecera: " + file);
+			String[] columns = header.split(",");
+			for (int i = 0; i < columns.length; i++) {
+				String column = columns[i].trim();
+				columns[i] = COLUMNS.getOrDefault(column, column);
+			}
+			return String.join(",", columns);
+		}
+	}
+
+	// Cuenta las líneas y anota el byte en que empiezan las líneas 1, 1 + every, 1 + 2 * every...
+	static long countLines(Path file, int every, List<Long> offsets) throws IOException {
+		byte[] buffer = new byte[64 * 1024];
+		long lines = 0;
+		long position = 0;
+		int last = '\n';
+		try (InputStream in = Files.newInputStream(file)) {
+			for (int n; (n = in.read(buffer)) != -1; position += n) {
+				for (int i = 0; i < n; i++)
+					if (buffer[i] == '\n' && (++lines - 1) % every == 0)
+						offsets.add(position + i + 1);
+				if (n > 0)
+					last = buffer[n - 1];
+			}
+		}
+		return last == '\n' ? lines : lines + 1;
+	}
+
+	public void setDirectoryResource(Resource directory) { this.source = directory; }
+	public void setPattern(String pattern) { this.pattern = pattern; }
+	public void setMaxLines(int maxLines) { this.maxLines = maxLines; }
+	public void setFiles(String... files) { this.files = files; }
+	public void afterPropertiesSet() throws Exception {
+		Assert.isTrue(source != null || files != null, "directory or files must be set");
+		Assert.isTrue(maxLines > 0, "maxLines must be positive");
+	}
+}
@@ -0,0 +1,147 @@
+package com.example.demo.batch;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.partition.support.PartitionNameProvider;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.Assert;
+
+/**
+ * Reparte el rango de ids de la tabla (mínimo y máximo) en gridSize tramos iguales, uno
+ * por partición, con su fichero de salida: para output/outputData.xml, los fragmentos
+ * output/outputData-000.xml, output/outputData-001.xml... en orden de id. Siempre hay
+ * gridSize particiones (las que no tienen ids quedan vacías), así que los nombres solo
+ * dependen de gridSize. Antes de particionar borra los fragmentos de ejecuciones
+ * anteriores, para que ShardMergeTasklet solo junte los de esta. Al reiniciar el paso
+ * no se particiona de nuevo (getPartitionNames) ni se borra nada: los fragmentos de las
+ * particiones terminadas se conservan y las demás siguen desde su último commit.
+ */
+public class PersonasIdRangePartitioner implements Partitioner, PartitionNameProvider, InitializingBean {
+	private static final Logger log = LoggerFactory.getLogger(PersonasIdRangePartitioner.class);
+	public static final String MIN_ID = "minId";
+	public static final String MAX_ID = "maxId";
+	public static final String FILE_NAME = "fileName";
+
+	private JdbcTemplate jdbcTemplate;
+	private String table = "personas";
+	private String column = "id";
+	private Resource target;
+
+	@Override
+	public Map<String, ExecutionContext> partition(int gridSize) {
+		Map<String, Object> range = jdbcTemplate.queryForMap("SELECT MIN(" + column + ") AS lo, MAX(" + column + ") AS hi FROM " + table);
+		Path file = targetPath();
+		try {
+			for (Path shard : shards(file))
+				Files.delete(shard);
+		} catch (IOException e) {
+			throw new IllegalStateException("No se pueden borrar los fragmentos de " + file, e);
+		}
+		Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+		int count = Math.max(1, gridSize);
+		long lo = range.get("lo") == null ? 1 : ((Number) range.get("lo")).longValue();
+		// Tabla vacía: particiones sin filas, para que el fichero exista igualmente
+		long hi = range.get("hi") == null ? 0 : ((Number) range.get("hi")).longValue();
+		long size = Math.max(1, (hi - lo) / count + 1);
+		long start = lo;
+		for (int index = 0; index < count; index++, start += size) {
+			// Sin ids (o desbordado): vacía
+			if (start > hi || start < lo)
+				partitions.put(name(index), context(1, 0, shard(file, index)));
+			else
+				partitions.put(name(index), context(start, Math.min(hi, start + size - 1), shard(file, index)));
+		}
+		log.info("Particiones: " + partitions.keySet());
+		return partitions;
+	}
+
+	// Al reiniciar: las mismas que partition(gridSize), sin consultar la tabla
+	@Override
+	public Collection<String> getPartitionNames(int gridSize) {
+		List<String> names = new ArrayList<>();
+		for (int index = 0; index < Math.max(1, gridSize); index++)
+			names.add(name(index));
+		return names;
+	}
+
+	private static String name(int index) {
+		return String.format("shard-%03d", index);
+	}
+
+	private static ExecutionContext context(long minId, long maxId, Path shard) {
+		ExecutionContext context = new ExecutionContext();
+		context.putLong(MIN_ID, minId);
+		context.putLong(MAX_ID, maxId);
+		context.putString(FILE_NAME, shard.toUri().toString());
+		return context;
+	}
+
+	private Path targetPath() {
+		try {
+			return target.getFile().toPath().toAbsolutePath();
+		} catch (IOException e) {
+			throw new IllegalStateException("El destino debe ser un fichero: " + target, e);
+		}
+	}
+
+	// outputData.xml -> outputData-007.xml
+	public static Path shard(Path target, int index) {
+		String[] name = split(target);
+		return target.resolveSibling(String.format("%s-%03d%s", name[0], index, name[1]));
+	}
+
+	// Fragmentos existentes del fichero destino, en orden
+	public static List<Path> shards(Path target) throws IOException {
+		List<Path> rslt = new ArrayList<>();
+		Path dir = target.getParent();
+		if (dir == null || !Files.isDirectory(dir))
+			return rslt;
+		String[] name = split(target);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir,
+				name[0] + "-[0-9][0-9][0-9]*" + name[1])) {
+			for (Path file : files)
+				if (index(file, name) >= 0)
+					rslt.add(file);
+		}
+		rslt.sort(Comparator.comparingLong(file -> index(file, name)));
+		return rslt;
+	}
+
+	private static long index(Path shard, String[] name) {
+		String file = shard.getFileName().toString();
+		String digits = file.substring(name[0].length() + 1, file.length() - name[1].length());
+		return digits.chars().allMatch(Character::isDigit) ? Long.parseLong(digits) : -1;
+	}
+
+	private static String[] split(Path target) {
+		String name = target.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		return dot < 0 ? new String[] { name, "" } : new String[] { name.substring(0, dot), name.substring(dot) };
+	}
+
+	public void setDataSource(DataSource dataSource) { this.jdbcTemplate = new JdbcTemplate(dataSource); }
+	public void setTable(String table) { this.table = table; }
+	public void setColumn(String column) { this.column = column; }
+	public void setTarget(Resource target) { this.target = target; }
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(jdbcTemplate, "dataSource must be set");
+		Assert.notNull(target, "target must be set");
+	}
+}
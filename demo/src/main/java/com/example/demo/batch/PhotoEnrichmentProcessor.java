@@ -0,0 +1,232 @@
+package com.example.demo.batch;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.model.PhotoDTO;
+import com.example.demo.proxies.PhotoProxy;
+
+/**
+ * Completa cada PhotoDTO con PhotoProxy.getOne. Registrado también como listener
+ * del paso, lanza la consulta en cuanto se lee el elemento (afterRead), de modo que
+ * las consultas de todo el chunk van en paralelo (como mucho concurrency a la vez)
+ * y process() solo espera su resultado. Las consultas en curso del mismo id se
+ * comparten y las respuestas se guardan en una caché LRU limitada por tamaño y edad.
+ * Como ChunkListener olvida al final de cada chunk las consultas de los elementos que
+ * se leyeron pero no se procesaron (saltos de lectura, errores a mitad del chunk).
+ */
+@Component
+public class PhotoEnrichmentProcessor implements ItemProcessor<PhotoDTO, PhotoDTO>, ItemReadListener<PhotoDTO>,
+		ChunkListener, InitializingBean, DisposableBean {
+	private static final Logger log = LoggerFactory.getLogger(PhotoEnrichmentProcessor.class);
+
+	@Autowired
+	private PhotoProxy srv;
+	@Value("${photos.enrichment.concurrency:8}")
+	private int concurrency = 8;
+	@Value("${photos.enrichment.timeout:5000}")
+	private long timeout = 5000;
+	@Value("${photos.enrichment.cache-size:10000}")
+	private int cacheSize = 10000;
+	@Value("${photos.enrichment.cache-ttl:3600000}")
+	private long cacheTtl = 3600000;
+
+	private ExecutorService executor;
+	private final Map<String, CompletableFuture<PhotoDTO>> inFlight = new ConcurrentHashMap<>();
+	// Consultas lanzadas en afterRead, por elemento del chunk en curso del hilo del paso
+	private final ThreadLocal<Map<PhotoDTO, CompletableFuture<PhotoDTO>>> prefetched = ThreadLocal.withInitial(IdentityHashMap::new);
+	private final Map<String, Cached> cache = new LinkedHashMap<String, Cached>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+			return size() > cacheSize;
+		}
+	};
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong latency = new AtomicLong();
+	private final AtomicLong maxLatency = new AtomicLong();
+
+	private static final class Cached {
+		final PhotoDTO photo;
+		final long expires;
+
+		Cached(PhotoDTO photo, long expires) {
+			this.photo = photo;
+			this.expires = expires;
+		}
+	}
+
+	@Override
+	public void beforeRead() {
+	}
+
+	@Override
+	public void afterRead(PhotoDTO item) {
+		prefetched.get().put(item, lookup(item.getId()));
+	}
+
+	@Override
+	public void onReadError(Exception ex) {
+	}
+
+	@Override
+	public void beforeChunk(ChunkContext context) {
+	}
+
+	@Override
+	public void afterChunk(ChunkContext context) {
+		prefetched.get().clear();
+	}
+
+	@Override
+	public void afterChunkError(ChunkContext context) {
+		prefetched.get().clear();
+	}
+
+	@Override
+	public PhotoDTO process(PhotoDTO item) throws Exception {
+		CompletableFuture<PhotoDTO> future = prefetched.get().remove(item);
+		if (future == null)
+			future = lookup(item.getId());
+		PhotoDTO info;
+		try {
+			info = future.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			throw new ItemProcessorException("Sin respuesta para la foto " + item.getId() + " en " + timeout + " ms", e);
+		} catch (ExecutionException e) {
+			throw new ItemProcessorException("Error consultando la foto " + item.getId(), e.getCause());
+		}
+		if (info == null)
+			return item;
+		return new PhotoDTO(item.getId(), info.getAuthor(), info.getUrl(), info.getDownload_url(), info.getWidth(),
+				info.getHeight());
+	}
+
+	private CompletableFuture<PhotoDTO> lookup(String id) {
+		PhotoDTO cached = cached(id);
+		if (cached != null) {
+			hits.incrementAndGet();
+			return CompletableFuture.completedFuture(cached);
+		}
+		misses.incrementAndGet();
+		CompletableFuture<PhotoDTO> future = new CompletableFuture<>();
+		CompletableFuture<PhotoDTO> running = inFlight.putIfAbsent(id, future);
+		if (running != null)
+			return running;
+		executor.execute(() -> {
+			try {
+				future.complete(fetch(id));
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			} finally {
+				inFlight.remove(id, future);
+			}
+		});
+		return future;
+	}
+
+	private PhotoDTO fetch(String id) {
+		long start = System.nanoTime();
+		requests.incrementAndGet();
+		try {
+			PhotoDTO photo = srv.getOne(id);
+			if (photo != null)
+				synchronized (cache) {
+					cache.put(id, new Cached(photo, System.currentTimeMillis() + cacheTtl));
+				}
+			return photo;
+		} catch (RuntimeException e) {
+			failures.incrementAndGet();
+			throw e;
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			latency.addAndGet(elapsed);
+			maxLatency.accumulateAndGet(elapsed, Math::max);
+		}
+	}
+
+	private PhotoDTO cached(String id) {
+		synchronized (cache) {
+			Cached entry = cache.get(id);
+			if (entry == null)
+				return null;
+			if (entry.expires < System.currentTimeMillis()) {
+				cache.remove(id);
+				return null;
+			}
+			return entry.photo;
+		}
+	}
+
+	public void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	public long getHits() { return hits.get(); }
+	public long getMisses() { return misses.get(); }
+	public long getRequests() { return requests.get(); }
+	public long getFailures() { return failures.get(); }
+	public long getTotalLatencyNanos() { return latency.get(); }
+	public long getMaxLatencyNanos() { return maxLatency.get(); }
+	// Consultas lanzadas y aún sin procesar en el hilo actual
+	public int getPrefetched() { return prefetched.get().size(); }
+	public int getCacheSize() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	@Override
+	public String toString() {
+		long count = requests.get();
+		return "PhotoEnrichmentProcessor [aciertos=" + hits + ", fallos=" + misses + ", peticiones=" + count
+				+ ", errores=" + failures + ", latencia media=" + (count == 0 ? 0 : latency.get() / count / 1000000)
+				+ " ms, latencia máxima=" + maxLatency.get() / 1000000 + " ms]";
+	}
+
+	public void setConcurrency(int concurrency) { this.concurrency = concurrency; }
+	public void setTimeout(long timeout) { this.timeout = timeout; }
+	public void setCacheSize(int cacheSize) { this.cacheSize = cacheSize; }
+	public void setCacheTtl(long cacheTtl) { this.cacheTtl = cacheTtl; }
+	public void afterPropertiesSet() throws Exception {
+		AtomicInteger count = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(concurrency, task -> {
+			Thread thread = new Thread(task, "photo-lookup-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	public void destroy() throws Exception {
+		executor.shutdownNow();
+		log.info(toString());
+	}
+}
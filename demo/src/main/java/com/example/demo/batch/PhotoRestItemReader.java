@@ -1,40 +1,153 @@
 package com.example.demo.batch;
 
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.ExecutionContext;
-import org.springframework.batch.item.ItemReader;
-import org.springframework.batch.item.ItemStream;
 import org.springframework.batch.item.ItemStreamException;
-import org.springframework.batch.item.NonTransientResourceException;
-import org.springframework.batch.item.ParseException;
-import org.springframework.batch.item.UnexpectedInputException;
+import org.springframework.batch.item.support.AbstractItemStreamItemReader;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import com.example.demo.model.PhotoDTO;
 import com.example.demo.proxies.PhotoProxy;
 
+/**
+ * Lee /v2/list página a página (page/limit). Mientras se consume una página, un hilo
+ * descarga las siguientes, como mucho prefetchPages por delante. Guarda la página
+ * en curso y la posición dentro de ella para continuar desde ahí al reiniciar.
+ */
 @Component
-public class PhotoRestItemReader implements ItemReader<PhotoDTO>, ItemStream {
-	private Iterator<PhotoDTO> cache;
+public class PhotoRestItemReader extends AbstractItemStreamItemReader<PhotoDTO> {
+	private static final Logger log = LoggerFactory.getLogger(PhotoRestItemReader.class);
+	private static final String PAGE = "page";
+	private static final String OFFSET = "offset";
+
 	@Autowired
-	private PhotoProxy srv;	
-	
+	private PhotoProxy srv;
+	@Value("${photos.page-size:100}")
+	private int pageSize = 100;
+	@Value("${photos.prefetch-pages:2}")
+	private int prefetchPages = 2;
+
+	private BlockingQueue<Page> pages;
+	private Semaphore ahead;
+	private Thread fetcher;
+	private volatile boolean running;
+	private int startPage;
+	private Page current;
+	private int offset;
+	private boolean exhausted;
+
+	private static final class Page {
+		final int number;
+		final List<PhotoDTO> items;
+		final RuntimeException error;
+
+		Page(int number, List<PhotoDTO> items, RuntimeException error) {
+			this.number = number;
+			this.items = items;
+			this.error = error;
+		}
+	}
+
+	public PhotoRestItemReader() {
+		setName("photoRestItemReader");
+	}
+
 	@Override
-	public PhotoDTO read() throws Exception, UnexpectedInputException, ParseException, NonTransientResourceException {
-		return cache != null && cache.hasNext() ? cache.next() : null;
+	public PhotoDTO read() throws Exception {
+		while (!exhausted) {
+			if (current != null && offset < current.items.size())
+				return current.items.get(offset++);
+			if (current != null && current.items.size() < pageSize) {
+				exhausted = true;
+				break;
+			}
+			if (pages == null)
+				throw new ItemStreamException("El lector no está abierto");
+			Page next = pages.take();
+			ahead.release();
+			if (next.error != null) {
+				exhausted = true;
+				throw next.error;
+			}
+			// La primera página conserva la posición restaurada del ExecutionContext
+			if (current != null)
+				offset = 0;
+			current = next;
+		}
+		return null;
 	}
+
 	@Override
 	public void open(ExecutionContext executionContext) throws ItemStreamException {
-		cache = srv.getAll().iterator();
+		startPage = executionContext.getInt(getExecutionContextKey(PAGE), 1);
+		offset = executionContext.getInt(getExecutionContextKey(OFFSET), 0);
+		current = null;
+		exhausted = false;
+		pages = new LinkedBlockingQueue<>();
+		ahead = new Semaphore(prefetchPages);
+		running = true;
+		BlockingQueue<Page> queue = pages;
+		Semaphore permits = ahead;
+		fetcher = new Thread(() -> fetch(startPage, queue, permits), "photos-prefetch");
+		fetcher.setDaemon(true);
+		fetcher.start();
+	}
+
+	private void fetch(int first, BlockingQueue<Page> queue, Semaphore permits) {
+		try {
+			for (int number = first; running; number++) {
+				permits.acquire();
+				Page page;
+				try {
+					List<PhotoDTO> items = srv.getPage(number, pageSize);
+					page = new Page(number, items == null ? Collections.emptyList() : items, null);
+				} catch (RuntimeException e) {
+					page = new Page(number, null, e);
+				}
+				queue.put(page);
+				if (page.error != null || page.items.size() < pageSize)
+					return;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
 	}
+
 	@Override
 	public void update(ExecutionContext executionContext) throws ItemStreamException {
-		// TODO Auto-generated method stub		
+		executionContext.putInt(getExecutionContextKey(PAGE), current == null ? startPage : current.number);
+		executionContext.putInt(getExecutionContextKey(OFFSET), offset);
 	}
+
 	@Override
 	public void close() throws ItemStreamException {
-		cache = null;
+		running = false;
+		if (fetcher != null) {
+			fetcher.interrupt();
+			// Una petición ya en curso no se interrumpe: se espera a que acabe
+			try {
+				fetcher.join(TimeUnit.SECONDS.toMillis(10));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (fetcher.isAlive())
+				log.warn("La descarga anticipada de fotos sigue en curso tras cerrar el lector");
+			fetcher = null;
+		}
+		pages = null;
+		current = null;
 	}
+
+	public void setPageSize(int pageSize) { this.pageSize = pageSize; }
+	public void setPrefetchPages(int prefetchPages) { this.prefetchPages = prefetchPages; }
 }
@@ -0,0 +1,100 @@
+package com.example.demo.batch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.util.Assert;
+
+/**
+ * Envía cada elemento al procesador delegado en un ejecutor y devuelve el Future,
+ * de modo que el paso sigue leyendo mientras se procesa. Como mucho hay maxInFlight
+ * elementos en proceso: el hilo del paso espera cuando se alcanza el límite.
+ * Los ItemProcessListener se invocan en el hilo que procesa (el paso solo ve el
+ * Future) y los errores los lanza PipelinedItemWriter al resolverlo.
+ */
+public class PipelinedItemProcessor<I, O> implements ItemProcessor<I, Future<O>> {
+	private ItemProcessor<? super I, ? extends O> delegate;
+	private ExecutorService executor;
+	private Semaphore permits = new Semaphore(100);
+	private List<ItemProcessListener<? super I, ? super O>> listeners = new ArrayList<>();
+
+	/**
+	 * Hilos virtuales si la JVM los tiene (Java 21+), si no un pool fijo de threads
+	 * hilos (los núcleos disponibles si es 0).
+	 */
+	public static ExecutorService newExecutor(int threads) {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			AtomicInteger count = new AtomicInteger();
+			return Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+					task -> {
+						Thread thread = new Thread(task, "pipeline-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+		}
+	}
+
+	@Override
+	public Future<O> process(I item) throws Exception {
+		Assert.state(delegate != null && executor != null, "delegate and executor must be set");
+		StepContext context = StepSynchronizationManager.getContext();
+		StepExecution stepExecution = context == null ? null : context.getStepExecution();
+		permits.acquire();
+		try {
+			return executor.submit(() -> {
+				try {
+					return doProcess(item, stepExecution);
+				} finally {
+					permits.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	private O doProcess(I item, StepExecution stepExecution) throws Exception {
+		if (stepExecution != null)
+			StepSynchronizationManager.register(stepExecution);
+		try {
+			for (ItemProcessListener<? super I, ? super O> listener : listeners)
+				listener.beforeProcess(item);
+			O result = delegate.process(item);
+			for (ItemProcessListener<? super I, ? super O> listener : listeners)
+				listener.afterProcess(item, result);
+			return result;
+		} catch (Exception e) {
+			for (ItemProcessListener<? super I, ? super O> listener : listeners)
+				listener.onProcessError(item, e);
+			throw e;
+		} finally {
+			// close() solo deshace el registro de este hilo; release() cerraría el contexto
+			// del paso y con él sus beans @StepScope
+			if (stepExecution != null)
+				StepSynchronizationManager.close();
+		}
+	}
+
+	public void setDelegate(ItemProcessor<? super I, ? extends O> delegate) { this.delegate = delegate; }
+	public void setExecutor(ExecutorService executor) { this.executor = executor; }
+	public void setMaxInFlight(int maxInFlight) { this.permits = new Semaphore(maxInFlight); }
+	@SafeVarargs
+	public final void setListeners(ItemProcessListener<? super I, ? super O>... listeners) {
+		this.listeners = new ArrayList<>(Arrays.asList(listeners));
+	}
+}
@@ -0,0 +1,166 @@
+package com.example.demo.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepListener;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Resuelve en orden los Future de PipelinedItemProcessor y escribe los resultados
+ * no nulos con el escritor delegado. Espera a todo el chunk antes de lanzar el
+ * primer error del procesador (sin envolver, para que la política de reintentos
+ * lo reconozca) y, al confirmar, pasa los filtrados del contador de escritos al de
+ * filtrados, que es donde los anota el paso sin pipeline. Los listeners de lectura y
+ * escritura del paso se registran envueltos en Listener.
+ */
+public class PipelinedItemWriter<T> implements ItemWriter<Future<T>>, ItemStream {
+	private final ItemWriter<? super T> delegate;
+
+	public PipelinedItemWriter(ItemWriter<? super T> delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void write(List<? extends Future<T>> items) throws Exception {
+		List<T> results = new ArrayList<>(items.size());
+		Exception error = null;
+		for (Future<T> future : items) {
+			try {
+				T result = future.get();
+				if (result != null)
+					results.add(result);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Error)
+					throw (Error) e.getCause();
+				if (error == null)
+					error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+			}
+		}
+		if (error != null)
+			throw error;
+		if (!results.isEmpty())
+			delegate.write(results);
+		if (results.size() < items.size())
+			registerFiltered(items.size() - results.size());
+	}
+
+	private void registerFiltered(int filtered) {
+		StepContext context = StepSynchronizationManager.getContext();
+		if (context == null || !TransactionSynchronizationManager.isSynchronizationActive())
+			return;
+		StepExecution stepExecution = context.getStepExecution();
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				stepExecution.setWriteCount(stepExecution.getWriteCount() - filtered);
+				stepExecution.setFilterCount(stepExecution.getFilterCount() + filtered);
+			}
+		});
+	}
+
+	/**
+	 * Adapta al pipeline un listener de lectura y escritura: las lecturas pasan tal cual y
+	 * la escritura recibe los resultados en lugar de los Future. Si algún Future falló, el
+	 * error es del procesador, que ya lo ha notificado como error de proceso
+	 * (PipelinedItemProcessor), y no se notifica también como error de escritura. No es
+	 * ItemProcessListener: el paso solo ve los Future.
+	 */
+	public static class Listener<I, O> implements ItemReadListener<I>, ItemWriteListener<Future<O>> {
+		private final ItemReadListener<? super I> readListener;
+		private final ItemWriteListener<? super O> writeListener;
+
+		@SuppressWarnings("unchecked")
+		public Listener(StepListener delegate) {
+			readListener = delegate instanceof ItemReadListener ? (ItemReadListener<? super I>) delegate : null;
+			writeListener = delegate instanceof ItemWriteListener ? (ItemWriteListener<? super O>) delegate : null;
+		}
+
+		@Override
+		public void beforeRead() {
+			if (readListener != null)
+				readListener.beforeRead();
+		}
+
+		@Override
+		public void afterRead(I item) {
+			if (readListener != null)
+				readListener.afterRead(item);
+		}
+
+		@Override
+		public void onReadError(Exception ex) {
+			if (readListener != null)
+				readListener.onReadError(ex);
+		}
+
+		@Override
+		public void beforeWrite(List<? extends Future<O>> items) {
+			List<O> results = writeListener == null ? null : results(items);
+			if (results != null)
+				writeListener.beforeWrite(results);
+		}
+
+		@Override
+		public void afterWrite(List<? extends Future<O>> items) {
+			List<O> results = writeListener == null ? null : results(items);
+			if (results != null)
+				writeListener.afterWrite(results);
+		}
+
+		@Override
+		public void onWriteError(Exception exception, List<? extends Future<O>> items) {
+			List<O> results = writeListener == null ? null : results(items);
+			if (results != null)
+				writeListener.onWriteError(exception, results);
+		}
+
+		// Resultados no nulos, o null si alguno falló en el procesador
+		private static <O> List<O> results(List<? extends Future<O>> items) {
+			List<O> rslt = new ArrayList<>(items.size());
+			for (Future<O> future : items) {
+				try {
+					O result = future.get();
+					if (result != null)
+						rslt.add(result);
+				} catch (ExecutionException e) {
+					return null;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return null;
+				}
+			}
+			return rslt;
+		}
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		if (delegate instanceof ItemStream)
+			((ItemStream) delegate).open(executionContext);
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		if (delegate instanceof ItemStream)
+			((ItemStream) delegate).update(executionContext);
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		if (delegate instanceof ItemStream)
+			((ItemStream) delegate).close();
+	}
+}
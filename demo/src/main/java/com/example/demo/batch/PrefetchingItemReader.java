@@ -0,0 +1,127 @@
+package com.example.demo.batch;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+
+/**
+ * Lee por adelantado en un hilo propio hasta capacity elementos del lector delegado,
+ * de modo que la lectura del siguiente chunk se solapa con la escritura del actual.
+ * Con cada elemento guarda el estado del delegado justo después de leerlo y update()
+ * publica el del último elemento entregado: al reiniciar se continúa tras el último
+ * elemento confirmado aunque se hubieran leído otros por adelantado.
+ */
+public class PrefetchingItemReader<T> implements ItemStreamReader<T> {
+	private final ItemStreamReader<T> delegate;
+	private final int capacity;
+
+	private BlockingQueue<Entry<T>> queue;
+	private Thread producer;
+	private volatile boolean running;
+	private ExecutionContext state;
+	private boolean exhausted;
+
+	private static final class Entry<T> {
+		final T item;
+		final Exception error;
+		final ExecutionContext state;
+
+		Entry(T item, Exception error, ExecutionContext state) {
+			this.item = item;
+			this.error = error;
+			this.state = state;
+		}
+	}
+
+	public PrefetchingItemReader(ItemStreamReader<T> delegate, int capacity) {
+		this.delegate = delegate;
+		this.capacity = capacity;
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		delegate.open(executionContext);
+		queue = new ArrayBlockingQueue<>(capacity);
+		state = null;
+		exhausted = false;
+		running = true;
+		StepContext context = StepSynchronizationManager.getContext();
+		StepExecution stepExecution = context == null ? null : context.getStepExecution();
+		producer = new Thread(() -> produce(stepExecution), "prefetch-" + Thread.currentThread().getName());
+		producer.setDaemon(true);
+		producer.start();
+	}
+
+	private void produce(StepExecution stepExecution) {
+		if (stepExecution != null)
+			StepSynchronizationManager.register(stepExecution);
+		try {
+			while (running) {
+				T item = null;
+				Exception error = null;
+				try {
+					item = delegate.read();
+				} catch (Exception e) {
+					error = e;
+				} catch (Throwable e) {
+					error = new ItemStreamException("Error leyendo por adelantado", e);
+				}
+				ExecutionContext snapshot = new ExecutionContext();
+				delegate.update(snapshot);
+				queue.put(new Entry<>(item, error, snapshot));
+				if (item == null && error == null)
+					break;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			if (stepExecution != null)
+				StepSynchronizationManager.close();
+		}
+	}
+
+	@Override
+	public T read() throws Exception {
+		if (exhausted)
+			return null;
+		if (queue == null)
+			throw new ItemStreamException("El lector no está abierto");
+		Entry<T> entry = queue.take();
+		state = entry.state;
+		if (entry.error != null)
+			throw entry.error;
+		exhausted = entry.item == null;
+		return entry.item;
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		if (state == null)
+			return;
+		for (Map.Entry<String, Object> entry : state.entrySet())
+			executionContext.put(entry.getKey(), entry.getValue());
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		running = false;
+		if (producer != null) {
+			producer.interrupt();
+			try {
+				producer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			producer = null;
+		}
+		queue = null;
+		delegate.close();
+	}
+}
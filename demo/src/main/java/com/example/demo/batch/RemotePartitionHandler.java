@@ -0,0 +1,85 @@
+package com.example.demo.batch;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.partition.PartitionHandler;
+import org.springframework.batch.core.partition.StepExecutionSplitter;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * PartitionHandler del manager: guarda las particiones en su JobRepository, las
+ * envía a los workers por el PartitionTransport y, según llegan los resultados,
+ * los copia en esas mismas StepExecution. El JobRepository del manager es el único
+ * que tiene la vista del trabajo; los workers solo ejecutan el paso.
+ * Si se agota el tiempo, las particiones sin respuesta quedan FAILED y un reinicio
+ * solo vuelve a enviar las que no terminaron.
+ */
+public class RemotePartitionHandler implements PartitionHandler, InitializingBean {
+	private static final Logger log = LoggerFactory.getLogger(RemotePartitionHandler.class);
+
+	private PartitionTransport transport;
+	private JobRepository jobRepository;
+	private String stepName;
+	private int gridSize = 1;
+	private long timeout = TimeUnit.HOURS.toMillis(1);
+	private long pollInterval = 1000;
+
+	@Override
+	public Collection<StepExecution> handle(StepExecutionSplitter stepSplitter, StepExecution managerStepExecution)
+			throws Exception {
+		Set<StepExecution> executions = stepSplitter.split(managerStepExecution, gridSize);
+		Map<Long, StepExecution> pending = new HashMap<>();
+		for (StepExecution execution : executions) {
+			pending.put(execution.getId(), execution);
+			transport.send(new PartitionRequest(stepName, execution));
+		}
+		log.info("Enviadas " + pending.size() + " particiones de " + stepName);
+		long deadline = System.currentTimeMillis() + timeout;
+		while (!pending.isEmpty() && System.currentTimeMillis() < deadline) {
+			PartitionResult result = transport.receiveResult(pollInterval, TimeUnit.MILLISECONDS);
+			if (result == null)
+				continue;
+			StepExecution execution = pending.remove(result.getStepExecutionId());
+			if (execution == null) {
+				log.warn("Resultado descartado (no pendiente): " + result);
+				continue;
+			}
+			result.applyTo(execution);
+			jobRepository.update(execution);
+			jobRepository.updateExecutionContext(execution);
+			log.info(execution.getStepName() + " terminada en " + result.getWorker() + ": " + result.getStatus());
+		}
+		for (StepExecution execution : pending.values()) {
+			execution.setStatus(BatchStatus.FAILED);
+			execution.setExitStatus(ExitStatus.FAILED.addExitDescription("Sin respuesta de los workers"));
+			execution.setEndTime(new Date());
+			jobRepository.update(execution);
+			log.error(execution.getStepName() + ": sin respuesta de los workers en " + timeout + " ms");
+		}
+		return executions;
+	}
+
+	public void setTransport(PartitionTransport transport) { this.transport = transport; }
+	public void setJobRepository(JobRepository jobRepository) { this.jobRepository = jobRepository; }
+	public void setStepName(String stepName) { this.stepName = stepName; }
+	public void setGridSize(int gridSize) { this.gridSize = gridSize; }
+	public void setTimeout(long timeout) { this.timeout = timeout; }
+	public void setPollInterval(long pollInterval) { this.pollInterval = pollInterval; }
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(transport, "transport must be set");
+		Assert.notNull(jobRepository, "jobRepository must be set");
+		Assert.hasText(stepName, "stepName must be set");
+	}
+}
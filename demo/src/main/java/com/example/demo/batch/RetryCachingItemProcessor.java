@@ -0,0 +1,115 @@
+package com.example.demo.batch;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+/**
+ * Guarda el resultado del delegado (también los filtrados) para cada elemento del chunk
+ * en curso, por identidad, hasta que el chunk se confirma. Cuando el chunk se deshace y
+ * se reintenta (reintentos del paso tolerante a fallos), los elementos que ya se habían
+ * procesado no vuelven a pasar por el delegado. Registrarlo en el paso como
+ * StepExecutionListener y ChunkListener; los aciertos quedan en el ExecutionContext del
+ * paso (recovery.cached), que publica StepMetricsListener.
+ */
+public class RetryCachingItemProcessor<I, O> implements ItemProcessor<I, O>, StepExecutionListener,
+		ChunkListener, InitializingBean {
+	public static final String CACHED = "recovery.cached";
+	private static final Object FILTERED = new Object();
+
+	private ItemProcessor<? super I, ? extends O> delegate;
+
+	private final Map<Long, Cache> caches = new ConcurrentHashMap<>();
+
+	// Resultados del chunk en curso de un paso
+	private static final class Cache {
+		final Map<Object, Object> outputs = Collections.synchronizedMap(new IdentityHashMap<>());
+		final AtomicLong hits = new AtomicLong();
+	}
+
+	@Override
+	public void beforeStep(StepExecution stepExecution) {
+		caches.put(stepExecution.getId(), new Cache());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public O process(I item) throws Exception {
+		Cache cache = current();
+		if (cache == null)
+			return delegate.process(item);
+		Object cached = cache.outputs.get(item);
+		if (cached != null) {
+			cache.hits.incrementAndGet();
+			return cached == FILTERED ? null : (O) cached;
+		}
+		O output = delegate.process(item);
+		cache.outputs.put(item, output == null ? FILTERED : output);
+		return output;
+	}
+
+	private Cache current() {
+		StepContext context = StepSynchronizationManager.getContext();
+		return context == null ? null : caches.get(context.getStepExecution().getId());
+	}
+
+	// En el hilo del paso y dentro de la transacción del chunk, también con el pipeline
+	@Override
+	public void beforeChunk(ChunkContext context) {
+		StepExecution stepExecution = context.getStepContext().getStepExecution();
+		Cache cache = caches.get(stepExecution.getId());
+		if (cache == null || !TransactionSynchronizationManager.isSynchronizationActive())
+			return;
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(int status) {
+				if (status == STATUS_COMMITTED)
+					cache.outputs.clear();
+				publish(stepExecution, cache);
+			}
+		});
+	}
+
+	@Override
+	public void afterChunk(ChunkContext context) {
+	}
+
+	@Override
+	public void afterChunkError(ChunkContext context) {
+	}
+
+	@Override
+	public ExitStatus afterStep(StepExecution stepExecution) {
+		Cache cache = caches.remove(stepExecution.getId());
+		if (cache != null)
+			publish(stepExecution, cache);
+		return null;
+	}
+
+	private static void publish(StepExecution stepExecution, Cache cache) {
+		ExecutionContext executionContext = stepExecution.getExecutionContext();
+		if (cache.hits.get() > executionContext.getLong(CACHED, 0))
+			executionContext.putLong(CACHED, cache.hits.get());
+	}
+
+	public void setDelegate(ItemProcessor<? super I, ? extends O> delegate) { this.delegate = delegate; }
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(delegate, "delegate must be set");
+	}
+}
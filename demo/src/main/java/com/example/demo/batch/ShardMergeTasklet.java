@@ -0,0 +1,174 @@
+package com.example.demo.batch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+/**
+ * Junta en el fichero destino, en orden, los fragmentos que deja la exportación
+ * particionada (PersonasIdRangePartitioner). Sin rootTagName los concatena tal cual
+ * (CSV sin cabecera); con rootTagName son documentos XML: se copian la declaración y la
+ * etiqueta raíz del primero, el contenido de la raíz de todos y el cierre. Los bytes se
+ * copian con FileChannel.transferTo, sin pasar por el heap. Se escribe en un temporal que
+ * sustituye al destino al terminar y, con deleteShards, se borran los fragmentos. Los
+ * fragmentos comprimidos (gzip de varios miembros) se juntan igual sin descomprimirlos:
+ * los escritores dejan la apertura y el cierre de la raíz en miembros propios, que son
+ * los únicos que se descomprimen para localizarlos.
+ */
+public class ShardMergeTasklet implements Tasklet, InitializingBean {
+	private static final Logger log = LoggerFactory.getLogger(ShardMergeTasklet.class);
+	private static final int PEEK = 4096;
+	private static final int GZIP_HEADER = 10;
+	private static final int GZIP_TRAILER = 8;
+
+	private Resource target;
+	private String rootTagName;
+	private boolean deleteShards = true;
+
+	@Override
+	public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+		Path file = target.getFile().toPath().toAbsolutePath();
+		List<Path> shards = PersonasIdRangePartitioner.shards(file);
+		if (shards.isEmpty()) {
+			log.warn("No hay fragmentos de " + file);
+			return RepeatStatus.FINISHED;
+		}
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		long size = 0;
+		try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			for (int i = 0; i < shards.size(); i++)
+				try (FileChannel in = FileChannel.open(shards.get(i), StandardOpenOption.READ)) {
+					if (rootTagName == null) {
+						transfer(in, 0, in.size(), out);
+						continue;
+					}
+					long[] body = body(in, shards.get(i));
+					if (i == 0)
+						transfer(in, 0, body[0], out);
+					transfer(in, body[0], body[1], out);
+					if (i == shards.size() - 1)
+						transfer(in, body[1], in.size(), out);
+				}
+			size = out.size();
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+		if (deleteShards)
+			for (Path shard : shards)
+				Files.delete(shard);
+		log.info("Fragmentos juntados en " + file + ": " + shards.size() + " (" + size + " bytes)");
+		return RepeatStatus.FINISHED;
+	}
+
+	private static void transfer(FileChannel in, long from, long to, FileChannel out) throws IOException {
+		for (long position = from; position < to; )
+			position += in.transferTo(position, to - position, out);
+	}
+
+	// Posición en que empieza el contenido de la raíz (tras <raíz ...>) y en que empieza </raíz>;
+	// los escritores XML escriben siempre las dos etiquetas, aunque no haya elementos
+	private long[] body(FileChannel in, Path shard) throws IOException {
+		if (in.size() >= 2 && isGzip(bytes(in, 0, 2), 0))
+			return gzipBody(in, shard);
+		String head = read(in, 0, (int) Math.min(PEEK, in.size()));
+		int open = head.indexOf("<" + rootTagName);
+		int end = open < 0 ? -1 : head.indexOf('>', open);
+		Assert.state(end > 0 && head.charAt(end - 1) != '/', "No se encuentra <" + rootTagName + "> en " + shard);
+		long start = head.substring(0, end + 1).getBytes(StandardCharsets.UTF_8).length;
+		int length = (int) Math.min(PEEK, in.size() - start);
+		String tail = read(in, in.size() - length, length);
+		int close = tail.lastIndexOf("</" + rootTagName);
+		Assert.state(close >= 0, "No se encuentra </" + rootTagName + "> en " + shard);
+		return new long[] { start, in.size() - tail.substring(close).getBytes(StandardCharsets.UTF_8).length };
+	}
+
+	// Comprimido: el contenido empieza tras el primer miembro (el de <raíz ...>) y acaba
+	// donde empieza el último (el de </raíz>)
+	private long[] gzipBody(FileChannel in, Path shard) throws IOException {
+		StringBuilder text = new StringBuilder();
+		int start = member(bytes(in, 0, (int) Math.min(PEEK, in.size())), 0, text);
+		String head = text.toString().trim();
+		Assert.state(start > 0 && head.contains("<" + rootTagName) && head.endsWith(">") && !head.endsWith("/>"),
+				"No se encuentra <" + rootTagName + "> en un miembro propio de " + shard);
+		byte[] tail = bytes(in, in.size() - Math.min(PEEK, in.size() - start), (int) Math.min(PEEK, in.size() - start));
+		for (int i = tail.length - GZIP_HEADER - GZIP_TRAILER; i >= 0; i--) {
+			if (!isGzip(tail, i))
+				continue;
+			text.setLength(0);
+			if (member(tail, i, text) == tail.length - i && text.indexOf("</" + rootTagName) >= 0)
+				return new long[] { start, in.size() - (tail.length - i) };
+		}
+		throw new IllegalStateException("No se encuentra </" + rootTagName + "> en un miembro propio de " + shard);
+	}
+
+	private static boolean isGzip(byte[] bytes, int offset) {
+		return bytes[offset] == 0x1f && bytes[offset + 1] == (byte) 0x8b;
+	}
+
+	// Longitud del miembro gzip (sin campos opcionales) que empieza en offset, o -1 si no
+	// lo es o no está entero en bytes; deja su contenido en text
+	private static int member(byte[] bytes, int offset, StringBuilder text) {
+		if (bytes.length - offset < GZIP_HEADER + GZIP_TRAILER || bytes[offset + 2] != Deflater.DEFLATED || bytes[offset + 3] != 0)
+			return -1;
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(bytes, offset + GZIP_HEADER, bytes.length - offset - GZIP_HEADER);
+			byte[] out = new byte[PEEK];
+			ByteArrayOutputStream data = new ByteArrayOutputStream();
+			while (!inflater.finished()) {
+				int n = inflater.inflate(out);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					return -1;
+				data.write(out, 0, n);
+			}
+			int length = GZIP_HEADER + (bytes.length - offset - GZIP_HEADER - inflater.getRemaining()) + GZIP_TRAILER;
+			if (offset + length > bytes.length)
+				return -1;
+			text.append(new String(data.toByteArray(), StandardCharsets.UTF_8));
+			return length;
+		} catch (DataFormatException e) {
+			return -1;
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static String read(FileChannel in, long position, int length) throws IOException {
+		return new String(bytes(in, position, length), StandardCharsets.UTF_8);
+	}
+
+	private static byte[] bytes(FileChannel in, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining() && in.read(buffer, position + buffer.position()) >= 0)
+			;
+		return buffer.position() == length ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+	}
+
+	public void setTarget(Resource target) { this.target = target; }
+	public void setRootTagName(String rootTagName) { this.rootTagName = rootTagName; }
+	public void setDeleteShards(boolean deleteShards) { this.deleteShards = deleteShards; }
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(target, "target must be set");
+	}
+}
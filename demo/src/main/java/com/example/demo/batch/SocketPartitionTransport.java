@@ -0,0 +1,317 @@
+package com.example.demo.batch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Transporte por sockets TCP con serialización Java. El manager escucha en un
+ * puerto y cada hilo de worker abre su propia conexión: el manager le envía una
+ * petición, espera su resultado y le envía la siguiente. Si la conexión se corta
+ * con una petición pendiente, la petición vuelve a la cola para otro worker.
+ * Al conectar, los dos lados se autentican con un secreto compartido (cada uno envía
+ * un nonce y responde al del otro con su HMAC-SHA256; el secreto no viaja) y solo
+ * después se deserializa nada, y solo las clases de ALLOWED. El tráfico no va cifrado:
+ * por defecto el manager escucha solo en loopback y, entre máquinas, debería ir por una
+ * red de confianza o un túnel.
+ */
+public class SocketPartitionTransport implements PartitionTransport {
+	private static final Logger log = LoggerFactory.getLogger(SocketPartitionTransport.class);
+	private static final int NONCE = 32;
+	private static final int HANDSHAKE_TIMEOUT = 10000;
+
+	// Clases que forman PartitionRequest y PartitionResult, con los valores habituales de
+	// ExecutionContext y JobParameters (y los arrays de tipos primitivos)
+	private static final Set<String> ALLOWED = new HashSet<>(Arrays.asList(
+			PartitionRequest.class.getName(), PartitionResult.class.getName(),
+			"org.springframework.batch.core.BatchStatus",
+			"org.springframework.batch.core.JobParameter",
+			"org.springframework.batch.core.JobParameter$ParameterType",
+			"org.springframework.batch.core.JobParameters",
+			"org.springframework.batch.item.ExecutionContext",
+			"java.lang.Boolean", "java.lang.Byte", "java.lang.Character", "java.lang.Double", "java.lang.Enum",
+			"java.lang.Float", "java.lang.Integer", "java.lang.Long", "java.lang.Number", "java.lang.Short",
+			"java.lang.String", "[Ljava.lang.String;",
+			"java.util.ArrayList", "java.util.Date", "java.util.HashMap", "java.util.LinkedHashMap",
+			"java.util.concurrent.ConcurrentHashMap", "java.util.concurrent.ConcurrentHashMap$Segment",
+			"[Ljava.util.concurrent.ConcurrentHashMap$Segment;",
+			"java.util.concurrent.locks.AbstractOwnableSynchronizer",
+			"java.util.concurrent.locks.AbstractQueuedSynchronizer",
+			"java.util.concurrent.locks.ReentrantLock", "java.util.concurrent.locks.ReentrantLock$Sync",
+			"java.util.concurrent.locks.ReentrantLock$NonfairSync"));
+
+	private final boolean manager;
+	private final byte[] secret;
+	private final SecureRandom random = new SecureRandom();
+	private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+	private volatile boolean closed;
+
+	// Lado manager
+	private ServerSocket server;
+	private final BlockingQueue<PartitionRequest> requests = new LinkedBlockingQueue<>();
+	private final BlockingQueue<PartitionResult> results = new LinkedBlockingQueue<>();
+	private final Set<Thread> handlers = ConcurrentHashMap.newKeySet();
+
+	// Lado worker
+	private InetSocketAddress address;
+	private final ThreadLocal<Connection> connection = new ThreadLocal<>();
+
+	private SocketPartitionTransport(boolean manager, String secret) {
+		Assert.hasText(secret, "secret must not be empty");
+		this.manager = manager;
+		this.secret = secret.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Transporte del manager: escucha en la dirección y el puerto indicados (0 para uno
+	 * libre); sin dirección, solo en loopback.
+	 */
+	public static SocketPartitionTransport listen(String bindAddress, int port, String secret) throws IOException {
+		SocketPartitionTransport rslt = new SocketPartitionTransport(true, secret);
+		InetAddress address = bindAddress == null || bindAddress.isEmpty() ? InetAddress.getLoopbackAddress()
+				: InetAddress.getByName(bindAddress);
+		rslt.server = new ServerSocket(port, 50, address);
+		Thread acceptor = new Thread(rslt::accept, "partition-accept");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		log.info("Esperando workers en " + address.getHostAddress() + ":" + rslt.getLocalPort());
+		return rslt;
+	}
+
+	/**
+	 * Transporte de un worker: cada hilo que recibe peticiones abre su conexión al manager.
+	 */
+	public static SocketPartitionTransport connect(String host, int port, String secret) {
+		SocketPartitionTransport rslt = new SocketPartitionTransport(false, secret);
+		rslt.address = new InetSocketAddress(host, port);
+		return rslt;
+	}
+
+	public int getLocalPort() {
+		return server.getLocalPort();
+	}
+
+	public InetAddress getLocalAddress() {
+		return server.getInetAddress();
+	}
+
+	@Override
+	public void send(PartitionRequest request) {
+		Assert.state(manager, "Solo el manager envía peticiones");
+		requests.add(request);
+	}
+
+	@Override
+	public PartitionResult receiveResult(long timeout, TimeUnit unit) throws InterruptedException {
+		Assert.state(manager, "Solo el manager recibe resultados");
+		return results.poll(timeout, unit);
+	}
+
+	@Override
+	public PartitionRequest receiveRequest() throws IOException {
+		Assert.state(!manager, "Solo los workers reciben peticiones");
+		Connection current = connection();
+		try {
+			return (PartitionRequest) current.in.readObject();
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			disconnect(current);
+			throw e instanceof IOException ? (IOException) e : new IOException("Petición incorrecta", e);
+		}
+	}
+
+	@Override
+	public void sendResult(PartitionResult result) throws IOException {
+		Assert.state(!manager, "Solo los workers envían resultados");
+		Connection current = connection();
+		try {
+			current.write(result);
+		} catch (IOException e) {
+			disconnect(current);
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		if (server != null)
+			server.close();
+		for (Socket socket : sockets)
+			socket.close();
+		for (Thread handler : handlers)
+			handler.interrupt();
+	}
+
+	private void accept() {
+		AtomicInteger count = new AtomicInteger();
+		while (!closed) {
+			try {
+				Socket socket = server.accept();
+				Thread handler = new Thread(() -> serve(socket), "partition-worker-" + count.incrementAndGet());
+				handler.setDaemon(true);
+				handlers.add(handler);
+				handler.start();
+			} catch (IOException e) {
+				if (!closed)
+					log.warn("Error aceptando conexiones de workers", e);
+			}
+		}
+	}
+
+	private void serve(Socket socket) {
+		String worker = socket.getRemoteSocketAddress().toString();
+		log.info("Worker conectado: " + worker);
+		PartitionRequest pending = null;
+		try (Connection current = new Connection(socket)) {
+			while (!closed) {
+				pending = requests.take();
+				current.write(pending);
+				PartitionResult result = (PartitionResult) current.in.readObject();
+				pending = null;
+				results.add(result);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			if (!closed)
+				log.warn("Conexión perdida con el worker " + worker + ": " + e);
+		} finally {
+			if (pending != null)
+				requests.add(pending);
+			handlers.remove(Thread.currentThread());
+		}
+	}
+
+	private Connection connection() throws IOException {
+		Connection current = connection.get();
+		if (current == null) {
+			Assert.state(!closed, "Transporte cerrado");
+			Socket socket = new Socket();
+			socket.connect(address);
+			current = new Connection(socket);
+			connection.set(current);
+		}
+		return current;
+	}
+
+	private void disconnect(Connection current) {
+		connection.remove();
+		current.close();
+	}
+
+	private final class Connection implements AutoCloseable {
+		private final Socket socket;
+		private final ObjectOutputStream out;
+		private final ObjectInputStream in;
+
+		Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			sockets.add(socket);
+			try {
+				socket.setTcpNoDelay(true);
+				OutputStream output = new BufferedOutputStream(socket.getOutputStream());
+				InputStream input = new BufferedInputStream(socket.getInputStream());
+				handshake(socket, output, input);
+				out = new ObjectOutputStream(output);
+				out.flush();
+				in = new FilteredObjectInputStream(input);
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
+		}
+
+		// Cada lado envía su nonce y responde al del otro con HMAC(secreto, rol + nonce)
+		private void handshake(Socket socket, OutputStream output, InputStream input) throws IOException {
+			socket.setSoTimeout(HANDSHAKE_TIMEOUT);
+			byte[] nonce = new byte[NONCE];
+			random.nextBytes(nonce);
+			DataOutputStream dataOut = new DataOutputStream(output);
+			DataInputStream dataIn = new DataInputStream(input);
+			dataOut.write(nonce);
+			dataOut.flush();
+			byte[] peerNonce = new byte[NONCE];
+			dataIn.readFully(peerNonce);
+			dataOut.write(mac(manager, peerNonce));
+			dataOut.flush();
+			byte[] peerMac = new byte[mac(!manager, nonce).length];
+			dataIn.readFully(peerMac);
+			if (!MessageDigest.isEqual(peerMac, mac(!manager, nonce)))
+				throw new IOException("Autenticación fallida con " + socket.getRemoteSocketAddress());
+			socket.setSoTimeout(0);
+		}
+
+		void write(Object message) throws IOException {
+			out.writeObject(message);
+			out.flush();
+			out.reset();
+		}
+
+		@Override
+		public void close() {
+			sockets.remove(socket);
+			try {
+				socket.close();
+			} catch (IOException e) {
+				log.debug("Error cerrando " + socket, e);
+			}
+		}
+	}
+
+	private byte[] mac(boolean fromManager, byte[] nonce) throws IOException {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+			mac.update((byte) (fromManager ? 'M' : 'W'));
+			return mac.doFinal(nonce);
+		} catch (GeneralSecurityException e) {
+			throw new IOException("HMAC no disponible", e);
+		}
+	}
+
+	private static final class FilteredObjectInputStream extends ObjectInputStream {
+		FilteredObjectInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			String name = desc.getName();
+			// Arrays de tipos primitivos ([B, [J...)
+			if (ALLOWED.contains(name) || name.length() == 2 && name.charAt(0) == '[')
+				return super.resolveClass(desc);
+			throw new InvalidClassException(desc.getName(), "Clase no permitida en el transporte de particiones");
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package com.example.demo.batch;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.util.Assert;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * Publica en un MeterRegistry las métricas de cada paso al que se añade como listener
+ * (etiquetas job y step; las particiones cuentan como su paso): elementos leídos,
+ * escritos y filtrados, omitidos por fase, commits y rollbacks, reintentos, tamaño de
+ * los chunks y elementos por segundo. Los contadores se actualizan una vez por chunk a
+ * partir de los de la StepExecution; por elemento solo se miran los filtrados, para
+ * contarlos por motivo con filterReasons. Los tiempos de lectura, proceso y escritura
+ * son los que ya registra Spring Batch (spring.batch.item.read, spring.batch.item.process
+ * y spring.batch.chunk.write) en Metrics.globalRegistry. El coste de recuperación que
+ * BisectingItemWriter y RetryCachingItemProcessor dejan en el ExecutionContext
+ * (recovery.*) se publica como batch.step.recovery.writes, batch.step.recovery.dead.letters,
+ * batch.step.recovery.cached y el tiempo batch.step.recovery. Con enabled a false no hace nada.
+ */
+public class StepMetricsListener implements StepExecutionListener, ChunkListener,
+		ItemProcessListener<Object, Object>, RetryListener, InitializingBean {
+	private MeterRegistry registry;
+	private Function<Object, String> filterReasons = item -> "null";
+	private boolean enabled = true;
+
+	private final Map<Long, Snapshot> executions = new ConcurrentHashMap<>();
+	private final Map<Tags, Map<Long, Double>> throughput = new ConcurrentHashMap<>();
+	private final Map<Tags, Map<String, Counter>> filtered = new ConcurrentHashMap<>();
+
+	// Contadores de la StepExecution ya publicados
+	private static final class Snapshot {
+		final Tags tags;
+		long read, write, filter, readSkip, processSkip, writeSkip, commit, rollback;
+		long recoveryWrites, deadLetters, cached, recoveryNanos;
+		long time = System.nanoTime();
+
+		Snapshot(Tags tags) {
+			this.tags = tags;
+		}
+	}
+
+	@Override
+	public void beforeStep(StepExecution stepExecution) {
+		if (!enabled)
+			return;
+		Tags tags = tags(stepExecution);
+		executions.put(stepExecution.getId(), new Snapshot(tags));
+		throughput.computeIfAbsent(tags, key -> {
+			Map<Long, Double> rates = new ConcurrentHashMap<>();
+			Gauge.builder("batch.step.throughput", rates, map -> map.values().stream().mapToDouble(Double::doubleValue).sum())
+					.tags(key).baseUnit("items/s").description("Elementos por segundo en el último chunk de las ejecuciones en marcha")
+					.register(registry);
+			return rates;
+		});
+	}
+
+	@Override
+	public ExitStatus afterStep(StepExecution stepExecution) {
+		if (!enabled)
+			return null;
+		Snapshot snapshot = executions.remove(stepExecution.getId());
+		if (snapshot != null) {
+			publish(stepExecution, snapshot);
+			throughput.get(snapshot.tags).remove(stepExecution.getId());
+		}
+		return null;
+	}
+
+	@Override
+	public void beforeChunk(ChunkContext context) {
+	}
+
+	@Override
+	public void afterChunk(ChunkContext context) {
+		if (!enabled)
+			return;
+		StepExecution stepExecution = context.getStepContext().getStepExecution();
+		Snapshot snapshot = executions.get(stepExecution.getId());
+		if (snapshot == null)
+			return;
+		long read = snapshot.read;
+		long done = snapshot.write + snapshot.filter;
+		long time = snapshot.time;
+		publish(stepExecution, snapshot);
+		if (snapshot.read > read)
+			DistributionSummary.builder("batch.step.chunk.size").tags(snapshot.tags)
+					.baseUnit("items").minimumExpectedValue(1.0).maximumExpectedValue(100000.0)
+					.publishPercentileHistogram().register(registry).record(snapshot.read - read);
+		long nanos = snapshot.time - time;
+		if (nanos > 0)
+			throughput.get(snapshot.tags).put(stepExecution.getId(),
+					(snapshot.write + snapshot.filter - done) * 1e9 / nanos);
+	}
+
+	@Override
+	public void afterChunkError(ChunkContext context) {
+		if (!enabled)
+			return;
+		StepExecution stepExecution = context.getStepContext().getStepExecution();
+		Snapshot snapshot = executions.get(stepExecution.getId());
+		if (snapshot != null)
+			publish(stepExecution, snapshot);
+	}
+
+	private void publish(StepExecution stepExecution, Snapshot snapshot) {
+		snapshot.read = increment("batch.step.items", snapshot.tags.and("type", "read"), snapshot.read, stepExecution.getReadCount());
+		snapshot.write = increment("batch.step.items", snapshot.tags.and("type", "write"), snapshot.write, stepExecution.getWriteCount());
+		snapshot.filter = increment("batch.step.items", snapshot.tags.and("type", "filter"), snapshot.filter, stepExecution.getFilterCount());
+		snapshot.readSkip = increment("batch.step.skips", snapshot.tags.and("phase", "read"), snapshot.readSkip, stepExecution.getReadSkipCount());
+		snapshot.processSkip = increment("batch.step.skips", snapshot.tags.and("phase", "process"), snapshot.processSkip, stepExecution.getProcessSkipCount());
+		snapshot.writeSkip = increment("batch.step.skips", snapshot.tags.and("phase", "write"), snapshot.writeSkip, stepExecution.getWriteSkipCount());
+		snapshot.commit = increment("batch.step.commits", snapshot.tags, snapshot.commit, stepExecution.getCommitCount());
+		snapshot.rollback = increment("batch.step.rollbacks", snapshot.tags, snapshot.rollback, stepExecution.getRollbackCount());
+		ExecutionContext context = stepExecution.getExecutionContext();
+		snapshot.recoveryWrites = increment("batch.step.recovery.writes", snapshot.tags, snapshot.recoveryWrites,
+				context.getLong(BisectingItemWriter.WRITES, 0));
+		snapshot.deadLetters = increment("batch.step.recovery.dead.letters", snapshot.tags, snapshot.deadLetters,
+				context.getLong(BisectingItemWriter.DEAD_LETTERS, 0));
+		snapshot.cached = increment("batch.step.recovery.cached", snapshot.tags, snapshot.cached,
+				context.getLong(RetryCachingItemProcessor.CACHED, 0));
+		long recoveryNanos = context.getLong(BisectingItemWriter.NANOS, 0);
+		if (recoveryNanos > snapshot.recoveryNanos) {
+			registry.timer("batch.step.recovery", snapshot.tags).record(recoveryNanos - snapshot.recoveryNanos, TimeUnit.NANOSECONDS);
+			snapshot.recoveryNanos = recoveryNanos;
+		}
+		snapshot.time = System.nanoTime();
+	}
+
+	private long increment(String name, Tags tags, long published, long current) {
+		if (current > published)
+			registry.counter(name, tags).increment(current - published);
+		return current;
+	}
+
+	@Override
+	public void beforeProcess(Object item) {
+	}
+
+	@Override
+	public void afterProcess(Object item, Object result) {
+		if (!enabled || result != null)
+			return;
+		StepContext context = StepSynchronizationManager.getContext();
+		if (context == null)
+			return;
+		Tags tags = tags(context.getStepExecution());
+		String reason = filterReasons.apply(item);
+		filtered.computeIfAbsent(tags, key -> new ConcurrentHashMap<>())
+				.computeIfAbsent(reason == null ? "null" : reason,
+						key -> registry.counter("batch.step.filtered", tags.and("reason", key)))
+				.increment();
+	}
+
+	@Override
+	public void onProcessError(Object item, Exception e) {
+	}
+
+	@Override
+	public <T, E extends Throwable> boolean open(RetryContext context, RetryCallback<T, E> callback) {
+		return true;
+	}
+
+	@Override
+	public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+		if (!enabled)
+			return;
+		StepContext step = StepSynchronizationManager.getContext();
+		if (step != null)
+			registry.counter("batch.step.retries", tags(step.getStepExecution()).and("exception",
+					throwable.getClass().getSimpleName())).increment();
+	}
+
+	@Override
+	public <T, E extends Throwable> void close(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+	}
+
+	// Las particiones (paso:partición) se agrupan bajo el nombre del paso
+	private static Tags tags(StepExecution stepExecution) {
+		String step = stepExecution.getStepName();
+		int partition = step.indexOf(':');
+		return Tags.of("job", stepExecution.getJobExecution().getJobInstance().getJobName(),
+				"step", partition < 0 ? step : step.substring(0, partition));
+	}
+
+	public void setMeterRegistry(MeterRegistry registry) { this.registry = registry; }
+	public void setFilterReasons(Function<Object, String> filterReasons) { this.filterReasons = filterReasons; }
+	public void setEnabled(boolean enabled) { this.enabled = enabled; }
+	public void afterPropertiesSet() throws Exception {
+		Assert.isTrue(!enabled || registry != null, "meterRegistry must be set");
+		Assert.notNull(filterReasons, "filterReasons must be set");
+	}
+}
@@ -0,0 +1,266 @@
+package com.example.demo.proxies;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.demo.model.PhotoDTO;
+
+/**
+ * Caché en disco de respuestas HTTP. Cada entrada es un fichero .http con la URL, los
+ * validadores (ETag y Last-Modified), el instante de la última validación y el cuerpo
+ * tal cual llegó, más un .bin opcional con la lista de PhotoDTO ya decodificada.
+ * La fecha de modificación de los ficheros marca el último uso: al pasar de maxSize
+ * bytes se borran primero las entradas usadas hace más tiempo.
+ * get() abre el cuerpo con el cerrojo tomado: aunque otro hilo sustituya o borre el
+ * fichero después, la entrada sigue leyendo la versión que se encontró.
+ */
+public class DiskCache {
+	private static final Logger log = LoggerFactory.getLogger(DiskCache.class);
+	private static final int PHOTOS_MAGIC = 0x50485431; // PHT1
+	private static final String HTTP = ".http";
+	private static final String BIN = ".bin";
+
+	private final File dir;
+	private final long maxSize;
+
+	/** Entrada leída por get(): hay que servir su cuerpo con openBody() o cerrarla. */
+	public static final class Entry implements Closeable {
+		private final String url;
+		private final String etag;
+		private final String lastModified;
+		private final String contentType;
+		private final long validated;
+		private final int bodyLength;
+		private InputStream body;
+
+		private Entry(String url, String etag, String lastModified, String contentType, long validated,
+				InputStream body, int bodyLength) {
+			this.url = url;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.contentType = contentType;
+			this.validated = validated;
+			this.body = body;
+			this.bodyLength = bodyLength;
+		}
+
+		public String getUrl() { return url; }
+		public String getEtag() { return etag; }
+		public String getLastModified() { return lastModified; }
+		public String getContentType() { return contentType; }
+		public long getValidated() { return validated; }
+		public int getBodyLength() { return bodyLength; }
+
+		/** Entrega el cuerpo, ya abierto y colocado al principio; quien lo recibe lo cierra. */
+		public synchronized InputStream openBody() {
+			if (body == null)
+				throw new IllegalStateException("El cuerpo de " + url + " ya se ha entregado o cerrado");
+			InputStream rslt = body;
+			body = null;
+			return rslt;
+		}
+
+		/** Cierra el cuerpo si no se ha llegado a entregar. */
+		@Override
+		public synchronized void close() throws IOException {
+			if (body != null)
+				body.close();
+			body = null;
+		}
+	}
+
+	public DiskCache(File dir, long maxSize) {
+		this.dir = dir;
+		this.maxSize = maxSize;
+		dir.mkdirs();
+	}
+
+	public String key(String url) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+			StringBuilder rslt = new StringBuilder(digest.length * 2);
+			for (byte b : digest)
+				rslt.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			return rslt.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public synchronized Entry get(String key) {
+		File file = new File(dir, key + HTTP);
+		if (!file.isFile())
+			return null;
+		FileInputStream body = null;
+		try {
+			body = new FileInputStream(file);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(body));
+			long validated = in.readLong();
+			String url = in.readUTF();
+			String etag = readNullable(in);
+			String lastModified = readNullable(in);
+			String contentType = readNullable(in);
+			int length = in.readInt();
+			// El buffer ha leído de más: se recoloca el descriptor, que es el que se entrega
+			FileChannel channel = body.getChannel();
+			channel.position(channel.size() - length);
+			file.setLastModified(System.currentTimeMillis());
+			return new Entry(url, etag, lastModified, contentType, validated, body, length);
+		} catch (IOException e) {
+			log.warn("Entrada de caché ilegible {}, se descarta: {}", file, e.getMessage());
+			closeQuietly(body);
+			remove(key);
+			return null;
+		}
+	}
+
+	public synchronized void put(String key, String url, String etag, String lastModified, String contentType,
+			byte[] body) throws IOException {
+		File tmp = File.createTempFile(key, ".tmp", dir);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+			out.writeLong(System.currentTimeMillis());
+			out.writeUTF(url);
+			writeNullable(out, etag);
+			writeNullable(out, lastModified);
+			writeNullable(out, contentType);
+			out.writeInt(body.length);
+			out.write(body);
+		}
+		// El .bin de la versión anterior ya no corresponde al cuerpo nuevo
+		new File(dir, key + BIN).delete();
+		Files.move(tmp.toPath(), new File(dir, key + HTTP).toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		evict();
+	}
+
+	/** Anota una revalidación (304): la entrada vuelve a ser fresca sin reescribir el cuerpo. */
+	public synchronized void revalidated(String key) throws IOException {
+		File file = new File(dir, key + HTTP);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.writeLong(System.currentTimeMillis());
+		}
+		file.setLastModified(System.currentTimeMillis());
+	}
+
+	public synchronized void remove(String key) {
+		new File(dir, key + HTTP).delete();
+		new File(dir, key + BIN).delete();
+	}
+
+	public synchronized List<PhotoDTO> readPhotos(String key) {
+		File file = new File(dir, key + BIN);
+		if (!file.isFile())
+			return null;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != PHOTOS_MAGIC)
+				return null;
+			int count = in.readInt();
+			List<PhotoDTO> rslt = new ArrayList<>(count);
+			for (int i = 0; i < count; i++)
+				rslt.add(new PhotoDTO(readNullable(in), readNullable(in), readNullable(in), readNullable(in),
+						in.readInt(), in.readInt()));
+			file.setLastModified(System.currentTimeMillis());
+			return rslt;
+		} catch (IOException e) {
+			log.warn("Lista de fotos ilegible {}, se vuelve a decodificar: {}", file, e.getMessage());
+			file.delete();
+			return null;
+		}
+	}
+
+	public synchronized void writePhotos(String key, List<PhotoDTO> photos) throws IOException {
+		if (!new File(dir, key + HTTP).isFile())
+			return;
+		File tmp = File.createTempFile(key, ".tmp", dir);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+			out.writeInt(PHOTOS_MAGIC);
+			out.writeInt(photos.size());
+			for (PhotoDTO photo : photos) {
+				writeNullable(out, photo.getId());
+				writeNullable(out, photo.getAuthor());
+				writeNullable(out, photo.getUrl());
+				writeNullable(out, photo.getDownload_url());
+				out.writeInt(photo.getWidth());
+				out.writeInt(photo.getHeight());
+			}
+		}
+		Files.move(tmp.toPath(), new File(dir, key + BIN).toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		evict();
+	}
+
+	public synchronized long size() {
+		long rslt = 0;
+		for (File file : files())
+			rslt += file.length();
+		return rslt;
+	}
+
+	private void evict() {
+		File[] files = files();
+		long total = 0;
+		for (File file : files)
+			total += file.length();
+		if (total <= maxSize)
+			return;
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (File file : files) {
+			if (total <= maxSize)
+				break;
+			String name = file.getName();
+			String key = name.substring(0, name.lastIndexOf('.'));
+			for (File victim : new File[] { new File(dir, key + HTTP), new File(dir, key + BIN) }) {
+				long length = victim.length();
+				if (victim.delete())
+					total -= length;
+			}
+			log.debug("Caché llena, se descarta {}", key);
+		}
+	}
+
+	private File[] files() {
+		File[] rslt = dir.listFiles((parent, name) -> name.endsWith(HTTP) || name.endsWith(BIN));
+		return rslt == null ? new File[0] : rslt;
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		if (closeable == null)
+			return;
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			log.debug("No se pudo cerrar {}: {}", closeable, e.getMessage());
+		}
+	}
+
+	private static void writeNullable(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null)
+			out.writeUTF(value);
+	}
+
+	private static String readNullable(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+}
@@ -0,0 +1,123 @@
+package com.example.demo.proxies;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import feign.Client;
+import feign.Request;
+import feign.Request.HttpMethod;
+import feign.Response;
+import feign.Util;
+
+/**
+ * Client de Feign que guarda en DiskCache las respuestas GET con ETag o Last-Modified.
+ * Mientras la entrada tenga menos de maxAge ms desde su última validación se sirve sin
+ * ir al servidor; después se revalida con If-None-Match / If-Modified-Since y, si la
+ * respuesta es 304, se sirve el cuerpo guardado. Las respuestas servidas desde la caché
+ * llevan la cabecera CACHE_HEADER con la clave, para que DiskCacheDecoder pueda usar
+ * la forma ya decodificada en lugar de volver a leer el JSON.
+ */
+public class DiskCacheClient implements Client {
+	private static final Logger log = LoggerFactory.getLogger(DiskCacheClient.class);
+	public static final String CACHE_HEADER = "X-Disk-Cache";
+
+	private final Client delegate;
+	private final DiskCache cache;
+	private final long maxAge;
+
+	public DiskCacheClient(Client delegate, DiskCache cache, long maxAge) {
+		this.delegate = delegate;
+		this.cache = cache;
+		this.maxAge = maxAge;
+	}
+
+	@Override
+	public Response execute(Request request, Request.Options options) throws IOException {
+		if (request.httpMethod() != HttpMethod.GET)
+			return delegate.execute(request, options);
+		String key = cache.key(request.url());
+		DiskCache.Entry entry = cache.get(key);
+		// La entrada llega con el cuerpo abierto: si al final no se sirve, se cierra
+		try {
+			if (entry != null && System.currentTimeMillis() - entry.getValidated() < maxAge) {
+				log.debug("Caché fresca para {}", request.url());
+				return cached(request, key, entry);
+			}
+
+			Response response = delegate.execute(entry == null ? request : conditional(request, entry), options);
+			if (response.status() == 304 && entry != null) {
+				response.close();
+				cache.revalidated(key);
+				log.debug("Sin cambios (304) en {}", request.url());
+				return cached(request, key, entry);
+			}
+			String etag = header(response, "ETag");
+			String lastModified = header(response, "Last-Modified");
+			if (response.status() != 200 || response.body() == null || (etag == null && lastModified == null))
+				return response;
+
+			byte[] body;
+			try {
+				body = Util.toByteArray(response.body().asInputStream());
+			} finally {
+				response.close();
+			}
+			cache.put(key, request.url(), etag, lastModified, header(response, "Content-Type"), body);
+			return response.toBuilder()
+					.headers(with(response.headers(), CACHE_HEADER, key))
+					.body(body)
+					.build();
+		} finally {
+			if (entry != null)
+				entry.close();
+		}
+	}
+
+	private Request conditional(Request request, DiskCache.Entry entry) {
+		Map<String, Collection<String>> headers = new LinkedHashMap<>(request.headers());
+		if (entry.getEtag() != null)
+			headers.put("If-None-Match", Collections.singletonList(entry.getEtag()));
+		if (entry.getLastModified() != null)
+			headers.put("If-Modified-Since", Collections.singletonList(entry.getLastModified()));
+		return Request.create(request.httpMethod(), request.url(), headers, request.body(), request.charset(),
+				request.requestTemplate());
+	}
+
+	private Response cached(Request request, String key, DiskCache.Entry entry) throws IOException {
+		Map<String, Collection<String>> headers = new LinkedHashMap<>();
+		if (entry.getContentType() != null)
+			headers.put("Content-Type", Collections.singletonList(entry.getContentType()));
+		if (entry.getEtag() != null)
+			headers.put("ETag", Collections.singletonList(entry.getEtag()));
+		if (entry.getLastModified() != null)
+			headers.put("Last-Modified", Collections.singletonList(entry.getLastModified()));
+		headers.put(CACHE_HEADER, Collections.singletonList(key));
+		return Response.builder()
+				.status(200)
+				.reason("OK")
+				.request(request)
+				.headers(headers)
+				.body(entry.openBody(), entry.getBodyLength())
+				.build();
+	}
+
+	private static Map<String, Collection<String>> with(Map<String, Collection<String>> headers, String name,
+			String value) {
+		Map<String, Collection<String>> rslt = new LinkedHashMap<>(headers);
+		rslt.put(name, Collections.singletonList(value));
+		return rslt;
+	}
+
+	private static String header(Response response, String name) {
+		for (Map.Entry<String, Collection<String>> header : response.headers().entrySet())
+			if (header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty())
+				return header.getValue().iterator().next();
+		return null;
+	}
+}
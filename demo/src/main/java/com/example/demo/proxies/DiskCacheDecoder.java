@@ -0,0 +1,55 @@
+package com.example.demo.proxies;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ResolvableType;
+
+import com.example.demo.model.PhotoDTO;
+
+import feign.Response;
+import feign.codec.Decoder;
+
+/**
+ * Decoder que, para las respuestas marcadas por DiskCacheClient, guarda junto a la
+ * entrada la List&lt;PhotoDTO&gt; en binario la primera vez y en las siguientes la
+ * devuelve directamente desde ese binario, sin pasar el JSON por Jackson.
+ */
+public class DiskCacheDecoder implements Decoder {
+	private static final Logger log = LoggerFactory.getLogger(DiskCacheDecoder.class);
+
+	private final Decoder delegate;
+	private final DiskCache cache;
+
+	public DiskCacheDecoder(Decoder delegate, DiskCache cache) {
+		this.delegate = delegate;
+		this.cache = cache;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Object decode(Response response, Type type) throws IOException {
+		Collection<String> keys = response.headers().get(DiskCacheClient.CACHE_HEADER);
+		if (keys == null || keys.isEmpty() || !isPhotoList(type))
+			return delegate.decode(response, type);
+		String key = keys.iterator().next();
+		List<PhotoDTO> photos = cache.readPhotos(key);
+		if (photos != null) {
+			log.debug("Lista de fotos servida desde la caché binaria {}", key);
+			return photos;
+		}
+		Object rslt = delegate.decode(response, type);
+		if (rslt instanceof List)
+			cache.writePhotos(key, (List<PhotoDTO>) rslt);
+		return rslt;
+	}
+
+	private static boolean isPhotoList(Type type) {
+		ResolvableType resolved = ResolvableType.forType(type);
+		return List.class.equals(resolved.resolve()) && PhotoDTO.class.equals(resolved.resolveGeneric(0));
+	}
+}
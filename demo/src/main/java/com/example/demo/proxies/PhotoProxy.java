@@ -3,15 +3,19 @@ package com.example.demo.proxies;
 import java.util.List;
 
 import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import com.example.demo.model.PhotoDTO;
 
-@FeignClient(name="photos", url="https://picsum.photos")
+@FeignClient(name="photos", url="${photos.url:https://picsum.photos}", configuration=PhotoProxyConfiguration.class)
 public interface PhotoProxy {
     @RequestMapping(method = RequestMethod.GET, value = "/v2/list")
     List<PhotoDTO> getAll();
+    @RequestMapping(method = RequestMethod.GET, value = "/v2/list")
+    List<PhotoDTO> getPage(@RequestParam("page") int page, @RequestParam("limit") int limit);
     @RequestMapping(method = RequestMethod.GET, value = "/id/{id}/info")
-    List<PhotoDTO> getOne(int id);
+    PhotoDTO getOne(@PathVariable("id") String id);
 }
@@ -0,0 +1,60 @@
+package com.example.demo.proxies;
+
+import java.io.File;
+
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.cloud.openfeign.support.ResponseEntityDecoder;
+import org.springframework.cloud.openfeign.support.SpringDecoder;
+import org.springframework.context.annotation.Bean;
+
+import feign.Client;
+import feign.codec.Decoder;
+import feign.httpclient.ApacheHttpClient;
+import feign.optionals.OptionalDecoder;
+
+/**
+ * Configuración propia del cliente "photos" (sin @Configuration para que no la recoja
+ * el escaneo y se aplique a todos los clientes Feign). El Client es el HttpClient de
+ * Apache con pool de conexiones y gzip, envuelto en la caché en disco (DiskCacheClient)
+ * y con DiskCacheDecoder delante del decoder habitual.
+ */
+public class PhotoProxyConfiguration {
+	@Value("${photos.cache.dir:./cache/photos}")
+	private File dir;
+	@Value("${photos.cache.max-size:52428800}")
+	private long maxSize;
+	@Value("${photos.cache.max-age:0}")
+	private long maxAge;
+
+	@Bean
+	public DiskCache photosDiskCache() {
+		return new DiskCache(dir, maxSize);
+	}
+
+	// El CloseableHttpClient de Spring Cloud desactiva la compresión; este comparte su pool
+	// de conexiones (feign.httpclient.*) pero negocia gzip y descomprime él mismo.
+	@Bean(destroyMethod = "close")
+	public CloseableHttpClient photosHttpClient(HttpClientConnectionManager connectionManager) {
+		return HttpClientBuilder.create()
+				.setConnectionManager(connectionManager)
+				.setConnectionManagerShared(true)
+				.disableCookieManagement()
+				.build();
+	}
+
+	@Bean
+	public Client feignClient(CloseableHttpClient photosHttpClient, DiskCache photosDiskCache) {
+		return new DiskCacheClient(new ApacheHttpClient(photosHttpClient), photosDiskCache, maxAge);
+	}
+
+	@Bean
+	public Decoder feignDecoder(ObjectFactory<HttpMessageConverters> messageConverters, DiskCache photosDiskCache) {
+		return new DiskCacheDecoder(
+				new OptionalDecoder(new ResponseEntityDecoder(new SpringDecoder(messageConverters))), photosDiskCache);
+	}
+}
@@ -5,3 +5,10 @@ CREATE TABLE personas  (
     correo VARCHAR(250),
     ip VARCHAR(20)
 );
+DROP TABLE personas_stage IF EXISTS;
+CREATE GLOBAL TEMPORARY TABLE personas_stage  (
+    id BIGINT NOT NULL PRIMARY KEY,
+    nombre VARCHAR(250),
+    correo VARCHAR(250),
+    ip VARCHAR(20)
+) ON COMMIT PRESERVE ROWS;
@@ -0,0 +1,119 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntToLongFunction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.repeat.RepeatContext;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+class AdaptiveCompletionPolicyTests {
+	private static final int MIN = 5;
+	private static final int MAX = 80;
+	// Coste fijo por chunk (commit) más uno por elemento: los chunks grandes rinden más
+	private static final IntToLongFunction WITH_OVERHEAD = items -> micros(1000 + 10 * items);
+	// Solo coste por elemento: el tamaño no cambia el rendimiento
+	private static final IntToLongFunction LINEAR = items -> micros(10 * items);
+
+	private final AtomicLong clock = new AtomicLong();
+	private StepExecution stepExecution;
+
+	@BeforeEach
+	void setUp() {
+		stepExecution = MetaDataInstanceFactory.createStepExecution();
+		StepSynchronizationManager.register(stepExecution);
+	}
+
+	@AfterEach
+	void tearDown() {
+		StepSynchronizationManager.close();
+	}
+
+	@Test
+	void doublesWhileThroughputImprovesAndStopsAtMaxSize() throws Exception {
+		AdaptiveCompletionPolicy policy = policy(10, 0);
+
+		List<Integer> sizes = run(policy, 15, WITH_OVERHEAD, false);
+
+		// Tres chunks medidos con cada tamaño antes de decidir
+		assertThat(sizes).containsExactly(10, 10, 10, 20, 20, 20, 40, 40, 40, 80, 80, 80, 80, 80, 80);
+		assertThat(stepExecution.getExecutionContext().getInt(AdaptiveCompletionPolicy.SIZE)).isEqualTo(MAX);
+		assertThat(stepExecution.getExecutionContext().getString(AdaptiveCompletionPolicy.HISTORY))
+				.isEqualTo("10x3,20x3,40x3,80x6");
+	}
+
+	@Test
+	void growthWithoutThroughputGainIsUndone() throws Exception {
+		AdaptiveCompletionPolicy policy = policy(10, 0);
+
+		List<Integer> sizes = run(policy, 12, LINEAR, false);
+
+		assertThat(sizes).containsExactly(10, 10, 10, 20, 20, 20, 10, 10, 10, 10, 10, 10);
+	}
+
+	@Test
+	void rollbackHalvesTheSizeDownToMinSize() throws Exception {
+		// Al reiniciar se continúa con el tamaño guardado, dentro de los límites
+		stepExecution.getExecutionContext().putInt(AdaptiveCompletionPolicy.SIZE, 500);
+		AdaptiveCompletionPolicy policy = policy(10, 0);
+
+		List<Integer> sizes = run(policy, 6, WITH_OVERHEAD, true);
+
+		assertThat(sizes).containsExactly(MAX, 40, 20, 10, MIN, MIN);
+	}
+
+	@Test
+	void slowChunksShrinkInProportionToTargetLatency() throws Exception {
+		AdaptiveCompletionPolicy policy = policy(40, 10);
+
+		// 1 ms por elemento: 40 tardan 40 ms, el cuádruple de lo permitido
+		List<Integer> sizes = run(policy, 4, items -> TimeUnit.MILLISECONDS.toNanos(items), false);
+		// 10 ms por elemento: ni uno cabe en 10 ms, se queda en el mínimo
+		sizes.addAll(run(policy, 2, items -> TimeUnit.MILLISECONDS.toNanos(10L * items), false));
+
+		assertThat(sizes).containsExactly(40, 10, 10, 10, 10, MIN);
+	}
+
+	private AdaptiveCompletionPolicy policy(int initialSize, long targetLatency) throws Exception {
+		AdaptiveCompletionPolicy policy = new AdaptiveCompletionPolicy();
+		policy.setInitialSize(initialSize);
+		policy.setMinSize(MIN);
+		policy.setMaxSize(MAX);
+		policy.setTargetLatency(targetLatency);
+		policy.setNanoTime(clock::get);
+		policy.afterPropertiesSet();
+		return policy;
+	}
+
+	// Como el paso: cada chunk lee hasta que la política lo da por completo, tarda lo que
+	// diga cost y se confirma (o se deshace)
+	private List<Integer> run(AdaptiveCompletionPolicy policy, int chunks, IntToLongFunction cost, boolean rollback) {
+		List<Integer> sizes = new ArrayList<>();
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			RepeatContext context = policy.start(null);
+			int items = 0;
+			for (; !policy.isComplete(context); items++)
+				policy.update(context);
+			clock.addAndGet(cost.applyAsLong(items));
+			if (rollback)
+				stepExecution.incrementRollbackCount();
+			else
+				stepExecution.setWriteCount(stepExecution.getWriteCount() + items);
+			sizes.add(items);
+		}
+		return sizes;
+	}
+
+	private static long micros(long micros) {
+		return TimeUnit.MICROSECONDS.toNanos(micros);
+	}
+}
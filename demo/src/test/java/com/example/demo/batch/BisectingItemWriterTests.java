@@ -0,0 +1,178 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.listener.ItemListenerSupport;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class BisectingItemWriterTests {
+	private static final int ITEMS = 1000;
+	private static final List<Long> BAD = Arrays.asList(17L, 400L, 401L, 999L);
+
+	private EmbeddedDatabase database;
+	private JdbcTemplate jdbcTemplate;
+	private TransactionTemplate chunk;
+	private StepExecution stepExecution;
+	private final AtomicInteger writes = new AtomicInteger();
+	private final List<BisectingItemWriter.DeadLetter<Long>> deadLetters = new ArrayList<>();
+	private final List<Object> failed = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.HSQL).generateUniqueName(true).build();
+		jdbcTemplate = new JdbcTemplate(database);
+		jdbcTemplate.execute("CREATE TABLE personas (id BIGINT PRIMARY KEY)");
+		// Las filas malas ya están: al escribirlas falla la clave primaria
+		for (Long id : BAD)
+			jdbcTemplate.update("INSERT INTO personas VALUES (?)", id);
+		chunk = new TransactionTemplate(new DataSourceTransactionManager(database));
+		stepExecution = MetaDataInstanceFactory.createStepExecution();
+		StepSynchronizationManager.register(stepExecution);
+	}
+
+	@AfterEach
+	void tearDown() {
+		StepSynchronizationManager.close();
+		database.shutdown();
+	}
+
+	@Test
+	void isolatesTheBadRowsInLogarithmicWritesAndCommitsTheRest() throws Exception {
+		BisectingItemWriter<Long> writer = writer(Integer.MAX_VALUE);
+
+		write(writer, items(ITEMS));
+
+		assertThat(deadLetters).extracting(BisectingItemWriter.DeadLetter::getItem).containsExactlyElementsOf(BAD);
+		assertThat(deadLetters).allSatisfy(deadLetter -> assertThat(deadLetter.getError())
+				.isInstanceOf(DuplicateKeyException.class));
+		assertThat(failed).containsExactlyElementsOf(BAD);
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM personas", Integer.class)).isEqualTo(ITEMS);
+		// k·log2(n): 4 filas malas en 1000, frente a las 1000 escrituras de una en una
+		assertThat(writes.get()).isLessThanOrEqualTo(1 + 2 * BAD.size() * 10);
+		assertThat(stepExecution.getWriteCount()).isEqualTo(ITEMS - BAD.size());
+		assertThat(stepExecution.getWriteSkipCount()).isEqualTo(BAD.size());
+		assertThat(stepExecution.getExecutionContext().getLong(BisectingItemWriter.DEAD_LETTERS)).isEqualTo(BAD.size());
+		assertThat(stepExecution.getExecutionContext().getLong(BisectingItemWriter.WRITES)).isEqualTo(writes.get());
+	}
+
+	@Test
+	void chunkWithoutBadRowsIsWrittenOnce() throws Exception {
+		BisectingItemWriter<Long> writer = writer(Integer.MAX_VALUE);
+
+		write(writer, Arrays.asList(1L, 2L, 3L));
+
+		assertThat(writes).hasValue(1);
+		assertThat(deadLetters).isEmpty();
+		assertThat(stepExecution.getExecutionContext().containsKey(BisectingItemWriter.WRITES)).isFalse();
+	}
+
+	@Test
+	void rolledBackChunkLeavesNoCounts() {
+		BisectingItemWriter<Long> writer = writer(Integer.MAX_VALUE);
+
+		assertThatThrownBy(() -> chunk.execute(status -> {
+			try {
+				writer.write(items(ITEMS));
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			throw new IllegalStateException("Fallo al confirmar");
+		})).hasMessage("Fallo al confirmar");
+
+		assertThat(deadLetters).hasSize(BAD.size());
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM personas", Integer.class)).isEqualTo(BAD.size());
+		assertThat(stepExecution.getWriteSkipCount()).isZero();
+		assertThat(stepExecution.getWriteCount()).isZero();
+		assertThat(stepExecution.getExecutionContext().containsKey(BisectingItemWriter.DEAD_LETTERS)).isFalse();
+	}
+
+	@Test
+	void failsWhenTheDeadLetterLimitIsExceeded() {
+		BisectingItemWriter<Long> writer = writer(BAD.size() - 1);
+
+		assertThatThrownBy(() -> write(writer, items(ITEMS))).isInstanceOf(DuplicateKeyException.class);
+		assertThat(deadLetters).isEmpty();
+	}
+
+	@Test
+	void otherErrorsAreNotBisected() {
+		BisectingItemWriter<Long> writer = writer(Integer.MAX_VALUE);
+		writer.setDelegate(items -> {
+			writes.incrementAndGet();
+			throw new IllegalStateException("Sin conexión");
+		});
+
+		assertThatThrownBy(() -> write(writer, items(10))).hasMessage("Sin conexión");
+		assertThat(writes).hasValue(1);
+	}
+
+	private BisectingItemWriter<Long> writer(int deadLetterLimit) {
+		BisectingItemWriter<Long> writer = new BisectingItemWriter<>();
+		writer.setDelegate(items -> {
+			writes.incrementAndGet();
+			for (Long id : items)
+				jdbcTemplate.update("INSERT INTO personas VALUES (?)", id);
+		});
+		writer.setTransactionManager(chunk.getTransactionManager());
+		writer.setDeadLetterWriter(deadLetters::addAll);
+		writer.setListeners(listeners(new ItemListenerSupport<Object, Long>() {
+			@Override
+			public void onWriteError(Exception exception, List<? extends Long> items) {
+				failed.addAll(items);
+			}
+		}));
+		writer.setDeadLetterLimit(deadLetterLimit);
+		try {
+			writer.afterPropertiesSet();
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+		return writer;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ItemWriteListener<? super Long>[] listeners(ItemWriteListener<Long> listener) {
+		return new ItemWriteListener[] { listener };
+	}
+
+	// Un chunk: el paso suma a los escritos el chunk entero y confirma
+	private void write(BisectingItemWriter<Long> writer, List<Long> items) throws Exception {
+		chunk.execute(status -> {
+			try {
+				writer.write(items);
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			stepExecution.setWriteCount(stepExecution.getWriteCount() + items.size());
+			return null;
+		});
+	}
+
+	private static List<Long> items(int count) {
+		List<Long> rslt = new ArrayList<>();
+		for (long id = 1; id <= count; id++)
+			rslt.add(id);
+		return rslt;
+	}
+}
@@ -0,0 +1,209 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+
+import com.example.demo.model.Persona;
+
+class CsvItemWriterTests {
+	private static final String HEADER = "id,nombre,correo,ip";
+
+	@TempDir
+	Path dir;
+
+	private ExecutorService executor;
+	private GzipBlockCompressor compressor;
+	private final TransactionTemplate chunk = new TransactionTemplate(new ResourcelessTransactionManager());
+
+	@BeforeEach
+	void setUp() throws Exception {
+		executor = Executors.newFixedThreadPool(2);
+		compressor = new GzipBlockCompressor();
+		compressor.setExecutor(executor);
+		compressor.setBlockSize(256);
+		compressor.afterPropertiesSet();
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void fieldsAreQuotedAsInRfc4180OnlyWhenNeeded() throws Exception {
+		CsvItemWriter<Persona> writer = writer(false);
+		writer.setLineSeparator("\r\n");
+		writer.open(new ExecutionContext());
+		write(writer, Arrays.asList(
+				new Persona(1, "García, Ana", "ana@example.com", "10.0.0.1"),
+				new Persona(-2, "Luis \"el de Cuenca\"", null, ""),
+				new Persona(3, "línea 1\nlínea 2", "retorno\r", "a\r\nb"),
+				new Persona(Long.MIN_VALUE, "sin; comillas", "ñ'€", "10.0.0.4")));
+		writer.close();
+
+		assertThat(content(false)).isEqualTo(HEADER + "\r\n"
+				+ "1,\"García, Ana\",ana@example.com,10.0.0.1\r\n"
+				+ "-2,\"Luis \"\"el de Cuenca\"\"\",,\r\n"
+				+ "3,\"línea 1\nlínea 2\",\"retorno\r\",\"a\r\nb\"\r\n"
+				+ Long.MIN_VALUE + ",sin; comillas,ñ'€,10.0.0.4\r\n");
+	}
+
+	@Test
+	void otherDelimitersAreQuotedInsteadOfTheComma() throws Exception {
+		CsvItemWriter<Persona> writer = writer(false);
+		writer.setDelimiter(';');
+		writer.setHeader(null);
+		writer.open(new ExecutionContext());
+		write(writer, Arrays.asList(new Persona(1, "García, Ana", "a;b@example.com", "10.0.0.1")));
+		writer.close();
+
+		assertThat(content(false)).isEqualTo("1;García, Ana;\"a;b@example.com\";10.0.0.1\n");
+	}
+
+	@Test
+	void linesLongerThanTheBufferAndMultibyteCharactersAreWrittenWhole() throws Exception {
+		CsvItemWriter<Persona> writer = writer(false);
+		writer.setBufferSize(16);
+		writer.open(new ExecutionContext());
+		StringBuilder name = new StringBuilder();
+		for (int i = 0; i < 50; i++)
+			name.append("ñandú€");
+		List<Persona> items = new ArrayList<>();
+		for (long id = 1; id <= 40; id++)
+			items.add(new Persona(id, name.substring(0, (int) id * 7), "persona" + id + "@example.com", "10.0.0.1"));
+		write(writer, items);
+		writer.close();
+
+		StringBuilder expected = new StringBuilder(HEADER).append('\n');
+		for (Persona item : items)
+			expected.append(line(item));
+		assertThat(content(false)).isEqualTo(expected.toString());
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	void rolledBackChunkIsTruncated(boolean gzip) throws Exception {
+		CsvItemWriter<Persona> writer = writer(gzip);
+		writer.open(new ExecutionContext());
+		write(writer, personas(1, 10));
+
+		chunk.execute(status -> {
+			try {
+				writer.write(personas(11, 20));
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			status.setRollbackOnly();
+			return null;
+		});
+		write(writer, personas(21, 30));
+		ExecutionContext executionContext = new ExecutionContext();
+		writer.update(executionContext);
+		writer.close();
+
+		assertThat(content(gzip)).isEqualTo(lines(1, 10) + lines(21, 30));
+		assertThat(executionContext.getLong("personas.written")).isEqualTo(20);
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	void restartTruncatesToTheSavedPositionWithoutRewritingTheHeader(boolean gzip) throws Exception {
+		ExecutionContext executionContext = new ExecutionContext();
+		CsvItemWriter<Persona> failed = writer(gzip);
+		failed.open(executionContext);
+		write(failed, personas(1, 10));
+		failed.update(executionContext);
+		// El chunk siguiente se escribe pero el paso falla antes de guardar su estado
+		write(failed, personas(11, 20));
+		failed.close();
+
+		CsvItemWriter<Persona> restarted = writer(gzip);
+		restarted.open(executionContext);
+		write(restarted, personas(11, 30));
+		restarted.update(executionContext);
+		restarted.close();
+
+		assertThat(content(gzip)).isEqualTo(lines(1, 30));
+		assertThat(executionContext.getLong("personas.written")).isEqualTo(30);
+		if (!gzip)
+			assertThat(executionContext.getLong("personas.current.count")).isEqualTo(Files.size(file(false)));
+	}
+
+	private CsvItemWriter<Persona> writer(boolean gzip) {
+		CsvItemWriter<Persona> writer = new CsvItemWriter<>();
+		writer.setName("personas");
+		writer.setResource(new FileSystemResource(file(gzip).toFile()));
+		writer.setHeader(HEADER);
+		writer.setLineSeparator("\n");
+		writer.setLineEncoder((item, line) -> line.field(item.getId()).field(item.getNombre()).field(item.getCorreo())
+				.field(item.getIp()));
+		if (gzip)
+			writer.setCompressor(compressor);
+		return writer;
+	}
+
+	// Como el paso: cada chunk en su transacción
+	private void write(CsvItemWriter<Persona> writer, List<Persona> items) {
+		chunk.execute(status -> {
+			try {
+				writer.write(items);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			return null;
+		});
+	}
+
+	private String content(boolean gzip) throws IOException {
+		try (InputStream in = gzip ? new GZIPInputStream(Files.newInputStream(file(gzip)))
+				: Files.newInputStream(file(gzip))) {
+			return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+		}
+	}
+
+	private Path file(boolean gzip) {
+		return dir.resolve(gzip ? "personas.csv.gz" : "personas.csv");
+	}
+
+	// La cabecera y las líneas de from a to
+	private static String lines(long from, long to) {
+		StringBuilder rslt = new StringBuilder(from == 1 ? HEADER + "\n" : "");
+		for (Persona item : personas(from, to))
+			rslt.append(line(item));
+		return rslt.toString();
+	}
+
+	private static String line(Persona item) {
+		return item.getId() + "," + item.getNombre() + "," + item.getCorreo() + "," + item.getIp() + "\n";
+	}
+
+	private static List<Persona> personas(long from, long to) {
+		List<Persona> rslt = new ArrayList<>();
+		for (long id = from; id <= to; id++)
+			rslt.add(new Persona(id, "Persona " + id, "persona" + id + "@example.com", "10.0.0." + (id % 256)));
+		return rslt;
+	}
+}
@@ -0,0 +1,158 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+import org.springframework.core.io.FileSystemResource;
+
+class FTPLoadTaskletTests {
+	private static final int THREADS = 2;
+
+	@TempDir
+	Path dir;
+
+	private Path input;
+	private Path staging;
+	private FTPLoadTasklet tasklet;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		input = Files.createDirectories(dir.resolve("ftp"));
+		staging = dir.resolve("staging");
+		for (int i = 1; i <= 5; i++)
+			write(input.resolve("personas-" + i + ".csv"), "id,nombre\n" + i + ",Persona " + i + "\n");
+		write(input.resolve("leeme.txt"), "no es un csv");
+		tasklet = new FTPLoadTasklet();
+		tasklet.setDirectoryResource(new FileSystemResource(input.toFile()));
+		tasklet.setStagingResource(new FileSystemResource(staging.toFile()));
+		tasklet.setThreads(THREADS);
+		tasklet.afterPropertiesSet();
+	}
+
+	@AfterEach
+	void tearDown() {
+		tasklet.destroy();
+	}
+
+	@Test
+	void copiesTheCsvFilesInBatchesOfThreadsWithTheSamePool() throws Exception {
+		StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+		List<RepeatStatus> statuses = new ArrayList<>();
+		Set<Thread> before = poolThreads();
+
+		for (RepeatStatus status = RepeatStatus.CONTINUABLE; status.isContinuable();)
+			statuses.add(status = execute(stepExecution));
+
+		assertThat(statuses).containsExactly(RepeatStatus.CONTINUABLE, RepeatStatus.CONTINUABLE, RepeatStatus.FINISHED);
+		assertThat(names(staging)).containsExactly("personas-1.csv", "personas-2.csv", "personas-3.csv",
+				"personas-4.csv", "personas-5.csv");
+		for (int i = 1; i <= 5; i++)
+			assertThat(staging.resolve("personas-" + i + ".csv")).hasSameContentAs(input.resolve("personas-" + i + ".csv"));
+		assertThat(stepExecution.getReadCount()).isEqualTo(5);
+		assertThat(stepExecution.getWriteCount()).isEqualTo(5);
+		// Un solo pool para todas las llamadas, no uno por lote
+		Set<Thread> created = poolThreads();
+		created.removeAll(before);
+		assertThat(created).hasSizeBetween(1, THREADS);
+	}
+
+	@Test
+	void unchangedFilesAreNotCopiedAgain() throws Exception {
+		runToEnd(MetaDataInstanceFactory.createStepExecution());
+		FileTime copied = Files.getLastModifiedTime(staging.resolve("personas-1.csv"));
+		// Mismo tamaño y fecha pero otro contenido: lo detecta el CRC32
+		Path changed = input.resolve("personas-2.csv");
+		FileTime modified = Files.getLastModifiedTime(changed);
+		write(changed, new String(Files.readAllBytes(changed), StandardCharsets.UTF_8).replace("Persona", "PERSONA"));
+		Files.setLastModifiedTime(changed, modified);
+
+		StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution("copyFilesInDir", 2L);
+		runToEnd(stepExecution);
+
+		assertThat(stepExecution.getReadCount()).isEqualTo(5);
+		assertThat(stepExecution.getFilterCount()).isEqualTo(4);
+		assertThat(stepExecution.getWriteCount()).isEqualTo(1);
+		assertThat(staging.resolve("personas-2.csv")).hasSameContentAs(changed);
+		assertThat(Files.getLastModifiedTime(staging.resolve("personas-1.csv"))).isEqualTo(copied);
+	}
+
+	@Test
+	void copiesThroughATemporaryFileThatIsMovedIntoPlace() throws Exception {
+		Files.createDirectories(staging);
+		// Restos de una ejecución cortada: un .tmp a medias y un destino truncado
+		write(staging.resolve("personas-1.csv.tmp"), "id,nom");
+		write(staging.resolve("personas-1.csv"), "id,nom");
+
+		runToEnd(MetaDataInstanceFactory.createStepExecution());
+
+		assertThat(staging.resolve("personas-1.csv")).hasSameContentAs(input.resolve("personas-1.csv"));
+		assertThat(Files.getLastModifiedTime(staging.resolve("personas-1.csv")))
+				.isEqualTo(Files.getLastModifiedTime(input.resolve("personas-1.csv")));
+		assertThat(names(staging)).noneMatch(name -> name.endsWith(".tmp"));
+	}
+
+	@Test
+	void restartSkipsTheFilesRecordedInTheExecutionContext() throws Exception {
+		StepExecution failed = MetaDataInstanceFactory.createStepExecution();
+		assertThat(execute(failed)).isEqualTo(RepeatStatus.CONTINUABLE);
+		assertThat(failed.getExecutionContext().getString("ftpLoad.staged")).isEqualTo("personas-1.csv/personas-2.csv");
+		// Un fichero ya copiado cambia antes del reinicio: no se vuelve a copiar
+		write(input.resolve("personas-1.csv"), "id,nombre\n1,Otra\n");
+
+		StepExecution restarted = MetaDataInstanceFactory.createStepExecution("copyFilesInDir", 2L);
+		restarted.setExecutionContext(failed.getExecutionContext());
+		runToEnd(restarted);
+
+		assertThat(restarted.getReadCount()).isEqualTo(3);
+		assertThat(restarted.getExecutionContext().getString("ftpLoad.staged")).isEqualTo(
+				"personas-1.csv/personas-2.csv/personas-3.csv/personas-4.csv/personas-5.csv");
+		assertThat(new String(Files.readAllBytes(staging.resolve("personas-1.csv")), StandardCharsets.UTF_8))
+				.isEqualTo("id,nombre\n1,Persona 1\n");
+	}
+
+	private RepeatStatus execute(StepExecution stepExecution) throws Exception {
+		StepContribution contribution = stepExecution.createStepContribution();
+		RepeatStatus status = tasklet.execute(contribution, new ChunkContext(new StepContext(stepExecution)));
+		stepExecution.apply(contribution);
+		return status;
+	}
+
+	private void runToEnd(StepExecution stepExecution) throws Exception {
+		while (execute(stepExecution).isContinuable())
+			;
+	}
+
+	private static Set<Thread> poolThreads() {
+		return Thread.getAllStackTraces().keySet().stream()
+				.filter(thread -> thread.getName().startsWith("ftp-load-")).collect(Collectors.toSet());
+	}
+
+	private static List<String> names(Path dir) throws Exception {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+		}
+	}
+
+	private static void write(Path file, String content) throws Exception {
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,161 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.MapJobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.core.io.FileSystemResource;
+
+import com.example.demo.model.Persona;
+
+class FanOutItemWriterTests {
+	private static final int ITEMS = 50;
+	private static final int CHUNK = 10;
+	// Falla el cuarto chunk, cuando los otros delegados ya han escrito parte de él
+	private static final long FAILING_ID = 35;
+
+	@TempDir
+	Path dir;
+
+	private JobRepository repository;
+	private final AtomicBoolean fail = new AtomicBoolean(true);
+	private final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+	@BeforeEach
+	void setUp() throws Exception {
+		MapJobRepositoryFactoryBean factory = new MapJobRepositoryFactoryBean(new ResourcelessTransactionManager());
+		factory.afterPropertiesSet();
+		repository = factory.getObject();
+	}
+
+	@Test
+	void rollbackReopensEveryDelegateFromTheSavedStateAndTheRetryWritesOnce() throws Exception {
+		Job job = job(step(true));
+
+		JobExecution execution = run(job);
+
+		assertThat(execution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		assertThat(fail).isFalse();
+		assertComplete();
+		// Cada delegado escribe desde su hilo, ninguno desde el del paso
+		assertThat(threads).containsOnly("fan-out-0", "fan-out-1", "fan-out-2");
+	}
+
+	@Test
+	void failedStepRestartsEveryDelegateFromTheLastCommittedChunk() throws Exception {
+		Job job = job(step(false));
+
+		assertThat(run(job).getStatus()).isEqualTo(BatchStatus.FAILED);
+		// Lo escrito del chunk deshecho se recorta al reabrir
+		assertThat(Files.readAllLines(dir.resolve("a.csv"))).containsExactlyElementsOf(lines(1, 30));
+		assertThat(Files.readAllLines(dir.resolve("b.csv"))).containsExactlyElementsOf(lines(1, 30));
+
+		assertThat(run(job).getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		assertComplete();
+	}
+
+	private SimpleStepBuilder<Persona, Persona> step(boolean retry) throws Exception {
+		FanOutItemWriter<Persona> writer = new FanOutItemWriter<>();
+		writer.setDelegates(Arrays.asList(csv("a"), csv("b"), flaky()));
+		writer.afterPropertiesSet();
+		SimpleStepBuilder<Persona, Persona> builder = new StepBuilder("exportStep").repository(repository)
+				.transactionManager(new ResourcelessTransactionManager())
+				.<Persona, Persona>chunk(CHUNK)
+				.reader(reader())
+				.writer(writer);
+		if (retry)
+			builder = builder.faultTolerant().retry(IllegalStateException.class).retryLimit(2);
+		return builder;
+	}
+
+	private Job job(SimpleStepBuilder<Persona, Persona> step) {
+		return new JobBuilder("exportJob").repository(repository).start(step.build()).build();
+	}
+
+	private JobExecution run(Job job) throws Exception {
+		SimpleJobLauncher launcher = new SimpleJobLauncher();
+		launcher.setJobRepository(repository);
+		launcher.afterPropertiesSet();
+		JobParameters parameters = new JobParametersBuilder().addLong("run.id", 1L).toJobParameters();
+		return launcher.run(job, parameters);
+	}
+
+	private void assertComplete() throws Exception {
+		assertThat(Files.readAllLines(dir.resolve("a.csv"))).containsExactlyElementsOf(lines(1, ITEMS));
+		assertThat(Files.readAllLines(dir.resolve("b.csv"))).containsExactlyElementsOf(lines(1, ITEMS));
+	}
+
+	private CsvItemWriter<Persona> csv(String name) {
+		CsvItemWriter<Persona> writer = new CsvItemWriter<>();
+		writer.setName(name);
+		writer.setResource(new FileSystemResource(dir.resolve(name + ".csv").toFile()));
+		writer.setLineSeparator("\n");
+		writer.setLineEncoder((item, line) -> {
+			threads.add(Thread.currentThread().getName());
+			line.field(item.getId()).field(item.getNombre());
+		});
+		return writer;
+	}
+
+	// Falla una sola vez, al llegar a FAILING_ID
+	private ItemWriter<Persona> flaky() {
+		return items -> {
+			threads.add(Thread.currentThread().getName());
+			for (Persona item : items)
+				if (item.getId() == FAILING_ID && fail.getAndSet(false))
+					throw new IllegalStateException("Fallo al escribir " + item.getId());
+		};
+	}
+
+	private static AbstractItemCountingItemStreamItemReader<Persona> reader() {
+		AbstractItemCountingItemStreamItemReader<Persona> reader = new AbstractItemCountingItemStreamItemReader<Persona>() {
+			@Override
+			protected Persona doRead() {
+				int id = getCurrentItemCount();
+				return id > ITEMS ? null : new Persona(id, "Persona " + id, "persona" + id + "@example.com", "10.0.0.1");
+			}
+
+			@Override
+			protected void doOpen() {
+			}
+
+			@Override
+			protected void doClose() {
+			}
+		};
+		reader.setName("reader");
+		return reader;
+	}
+
+	private static List<String> lines(int from, int to) {
+		List<String> rslt = new ArrayList<>();
+		for (int id = from; id <= to; id++)
+			rslt.add(id + ",Persona " + id);
+		return Collections.unmodifiableList(rslt);
+	}
+}
@@ -0,0 +1,122 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class IdBitmapTests {
+	// Valores de un contenedor a partir de los que pasa de array a mapa de bits
+	private static final int ARRAY_MAX = 4096;
+
+	@Test
+	void switchesToBitsAndBackAtTheArrayLimit() {
+		IdBitmap bitmap = new IdBitmap();
+		long base = 7L << 16;
+		for (int i = 0; i < ARRAY_MAX; i++)
+			assertThat(bitmap.add(base + i * 2)).isTrue();
+		assertThat(bitmap.add(base + 2)).isFalse();
+		assertThat(bitmap.cardinality()).isEqualTo(ARRAY_MAX);
+
+		// Uno más: mapa de bits, con los mismos valores
+		assertThat(bitmap.add(base + 1)).isTrue();
+		assertThat(bitmap.add(base + 1)).isFalse();
+		assertThat(bitmap.cardinality()).isEqualTo(ARRAY_MAX + 1);
+		assertThat(bitmap.sizeInBytes()).isEqualTo(8192);
+		for (int i = 0; i < ARRAY_MAX; i++) {
+			assertThat(bitmap.contains(base + i * 2)).isTrue();
+			assertThat(bitmap.contains(base + i * 2 + 1)).isEqualTo(i == 0);
+		}
+
+		// Uno menos: otra vez array, con los mismos valores
+		assertThat(bitmap.remove(base + 2)).isTrue();
+		assertThat(bitmap.remove(base + 2)).isFalse();
+		assertThat(bitmap.cardinality()).isEqualTo(ARRAY_MAX);
+		assertThat(bitmap.contains(base + 1)).isTrue();
+		assertThat(bitmap.contains(base + 2)).isFalse();
+		assertThat(bitmap.contains(base + 4)).isTrue();
+		assertThat(bitmap.add(base + 3)).isTrue();
+		assertThat(bitmap.contains(base + 3)).isTrue();
+	}
+
+	@Test
+	void behavesLikeASetAcrossContainersAndTransitions() {
+		IdBitmap bitmap = new IdBitmap();
+		Set<Long> expected = new HashSet<>();
+		Random random = new Random(42);
+		// Pocos contenedores (también ids negativos) para que crucen el límite varias veces
+		long[] bases = { 0, 1L << 16, -1L << 16, Long.MAX_VALUE & ~0xFFFFL };
+		for (int op = 0; op < 200_000; op++) {
+			long id = bases[random.nextInt(bases.length)] + random.nextInt(6000) * 10;
+			if (random.nextInt(3) == 0)
+				assertThat(bitmap.remove(id)).isEqualTo(expected.remove(id));
+			else
+				assertThat(bitmap.add(id)).isEqualTo(expected.add(id));
+		}
+		assertThat(bitmap.cardinality()).isEqualTo(expected.size());
+		for (Long id : expected)
+			assertThat(bitmap.contains(id)).isTrue();
+		assertThat(bitmap.contains(5)).isFalse();
+
+		bitmap.clear();
+		assertThat(bitmap.cardinality()).isZero();
+		assertThat(bitmap.sizeInBytes()).isZero();
+	}
+
+	@Test
+	void denseIdsCostABitEach() {
+		IdBitmap bitmap = new IdBitmap();
+		for (long id = 0; id < 1 << 20; id++)
+			bitmap.add(id);
+
+		assertThat(bitmap.cardinality()).isEqualTo(1 << 20);
+		assertThat(bitmap.sizeInBytes()).isEqualTo((1 << 20) / 8);
+	}
+
+	@Test
+	void concurrentAddsLetExactlyOneThreadWinEachId() throws Exception {
+		int threads = 8;
+		int ids = 3 * (1 << 16);
+		IdBitmap bitmap = new IdBitmap();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Integer>> results = new ArrayList<>();
+		try {
+			// Todos los hilos añaden los mismos ids, cada uno en otro orden
+			for (int thread = 0; thread < threads; thread++) {
+				long seed = thread;
+				results.add(executor.submit(() -> {
+					start.await();
+					int won = 0;
+					Random random = new Random(seed);
+					int offset = random.nextInt(ids);
+					for (int i = 0; i < ids; i++)
+						if (bitmap.add((offset + (long) i * 7919) % ids))
+							won++;
+					return won;
+				}));
+			}
+			start.countDown();
+			int won = 0;
+			for (Future<Integer> result : results)
+				won += result.get(30, TimeUnit.SECONDS);
+			assertThat(won).isEqualTo(ids);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(bitmap.cardinality()).isEqualTo(ids);
+		for (long id = 0; id < ids; id++)
+			assertThat(bitmap.contains(id)).isTrue();
+	}
+}
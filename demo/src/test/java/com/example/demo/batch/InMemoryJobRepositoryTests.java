@@ -0,0 +1,172 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
+import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
+import org.springframework.batch.core.repository.JobRestartException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+class InMemoryJobRepositoryTests {
+	private static final String JOB = "job";
+
+	private InMemoryJobRepository repository;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		repository = new InMemoryJobRepository();
+		repository.afterPropertiesSet();
+	}
+
+	@Test
+	void restartsFailedInstancesWithTheirContextAndRejectsRunningOrCompleteOnes() throws Exception {
+		JobExecution first = repository.createJobExecution(JOB, parameters(1));
+		// Recién creada, sin empezar: ya cuenta como en marcha
+		assertThatThrownBy(() -> repository.createJobExecution(JOB, parameters(1)))
+				.isInstanceOf(JobExecutionAlreadyRunningException.class);
+
+		first.getExecutionContext().putLong("leidos", 42);
+		repository.updateExecutionContext(first);
+		finish(first, BatchStatus.FAILED, System.currentTimeMillis());
+
+		JobExecution second = repository.createJobExecution(JOB, parameters(1));
+		assertThat(second.getJobInstance()).isEqualTo(first.getJobInstance());
+		assertThat(second.getId()).isNotEqualTo(first.getId());
+		assertThat(second.getExecutionContext().getLong("leidos")).isEqualTo(42);
+		assertThat(repository.getJobExecutions(first.getJobInstance())).extracting(JobExecution::getId)
+				.containsExactly(second.getId(), first.getId());
+
+		finish(second, BatchStatus.COMPLETED, System.currentTimeMillis());
+		assertThatThrownBy(() -> repository.createJobExecution(JOB, parameters(1)))
+				.isInstanceOf(JobInstanceAlreadyCompleteException.class);
+
+		JobExecution unknown = repository.createJobExecution(JOB, parameters(2));
+		finish(unknown, BatchStatus.UNKNOWN, System.currentTimeMillis());
+		assertThatThrownBy(() -> repository.createJobExecution(JOB, parameters(2)))
+				.isInstanceOf(JobRestartException.class);
+	}
+
+	@Test
+	void staleStepExecutionUpdatesFailWithOptimisticLocking() throws Exception {
+		JobExecution jobExecution = repository.createJobExecution(JOB, parameters(1));
+		StepExecution stepExecution = jobExecution.createStepExecution("step");
+		repository.add(stepExecution);
+		StepExecution stale = repository.getStepExecution(jobExecution.getId(), stepExecution.getId());
+
+		stepExecution.setReadCount(10);
+		repository.update(stepExecution);
+
+		stale.setReadCount(5);
+		assertThatThrownBy(() -> repository.update(stale)).isInstanceOf(OptimisticLockingFailureException.class);
+		StepExecution stored = repository.getStepExecution(jobExecution.getId(), stepExecution.getId());
+		assertThat(stored.getReadCount()).isEqualTo(10);
+		assertThat(stored.getVersion()).isEqualTo(stepExecution.getVersion());
+	}
+
+	@Test
+	void evictsTheOldestFinishedInstancesButNeverRunningOnes() throws Exception {
+		repository.setMaxInstances(2);
+		JobExecution running = repository.createJobExecution(JOB, parameters(0));
+		List<JobExecution> finished = new ArrayList<>();
+		for (long run = 1; run <= 3; run++) {
+			JobExecution jobExecution = repository.createJobExecution(JOB, parameters(run));
+			finish(jobExecution, BatchStatus.COMPLETED, System.currentTimeMillis());
+			finished.add(jobExecution);
+		}
+
+		JobExecution evicted = finished.get(0);
+		assertThat(repository.isJobInstanceExists(JOB, parameters(1))).isFalse();
+		assertThat(repository.getJobInstance(evicted.getJobId())).isNull();
+		assertThat(repository.getJobExecution(evicted.getId())).isNull();
+		// Descartada: se puede volver a lanzar como instancia nueva
+		assertThat(repository.createJobExecution(JOB, parameters(1)).getJobId()).isNotEqualTo(evicted.getJobId());
+
+		assertThat(repository.isJobInstanceExists(JOB, parameters(2))).isTrue();
+		assertThat(repository.isJobInstanceExists(JOB, parameters(3))).isTrue();
+		assertThat(repository.getJobExecution(running.getId())).isNotNull();
+	}
+
+	@Test
+	void evictsInstancesFinishedLongerAgoThanMaxAge() throws Exception {
+		repository.setMaxAge(60_000);
+		JobExecution old = repository.createJobExecution(JOB, parameters(1));
+		finish(old, BatchStatus.COMPLETED, System.currentTimeMillis() - 120_000);
+		JobExecution recent = repository.createJobExecution(JOB, parameters(2));
+		finish(recent, BatchStatus.COMPLETED, System.currentTimeMillis());
+
+		assertThat(repository.getJobInstance(old.getJobId())).isNull();
+		assertThat(repository.getJobInstance(recent.getJobId())).isNotNull();
+		assertThat(repository.getLastJobExecution(JOB, parameters(2)).getStatus()).isEqualTo(BatchStatus.COMPLETED);
+	}
+
+	@Test
+	void partitionsOfTheSameJobExecutionUpdateConcurrently() throws Exception {
+		int partitions = 8;
+		int updates = 200;
+		JobExecution jobExecution = repository.createJobExecution(JOB, parameters(1));
+		List<StepExecution> stepExecutions = new ArrayList<>();
+		for (int partition = 0; partition < partitions; partition++)
+			stepExecutions.add(jobExecution.createStepExecution("step:partition" + partition));
+		repository.addAll(stepExecutions);
+
+		ExecutorService executor = Executors.newFixedThreadPool(partitions);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> results = new ArrayList<>();
+		try {
+			for (StepExecution stepExecution : stepExecutions)
+				results.add(executor.submit(() -> {
+					start.await();
+					for (int update = 0; update < updates; update++) {
+						stepExecution.setReadCount(stepExecution.getReadCount() + 1);
+						stepExecution.getExecutionContext().putInt("leidos", stepExecution.getReadCount());
+						repository.update(stepExecution);
+						repository.updateExecutionContext(stepExecution);
+					}
+					return null;
+				}));
+			start.countDown();
+			// Sin OptimisticLockingFailureException: cada partición solo compite consigo misma
+			for (Future<?> result : results)
+				result.get(30, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		JobExecution stored = repository.getJobExecution(jobExecution.getId());
+		assertThat(stored.getStepExecutions()).hasSize(partitions).allSatisfy(stepExecution -> {
+			assertThat(stepExecution.getReadCount()).isEqualTo(updates);
+			// add la deja en la versión 0 y cada update la sube una
+			assertThat(stepExecution.getVersion()).isEqualTo(updates);
+			assertThat(stepExecution.getExecutionContext().getInt("leidos")).isEqualTo(updates);
+		});
+		assertThat(repository.getStepExecutionCount(jobExecution.getJobInstance(), "step:partition0")).isEqualTo(1);
+	}
+
+	private void finish(JobExecution jobExecution, BatchStatus status, long endTime) {
+		jobExecution.setStartTime(new Date(endTime));
+		jobExecution.setEndTime(new Date(endTime));
+		jobExecution.setStatus(status);
+		repository.update(jobExecution);
+	}
+
+	private static JobParameters parameters(long run) {
+		return new JobParametersBuilder().addLong("run.id", run).toJobParameters();
+	}
+}
@@ -0,0 +1,199 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.demo.batch.ItemAuditLog.Outcome;
+import com.example.demo.batch.ItemAuditLog.Phase;
+
+class ItemAuditLogTests {
+	@TempDir
+	Path dir;
+
+	@Test
+	void recordsFromSeveralThreadsRoundTripThroughTheReader() throws Exception {
+		ItemAuditLog auditLog = auditLog(dir);
+		// Buffer pequeño: los productores tienen que esperar al escritor
+		auditLog.setCapacity(64);
+		auditLog.afterPropertiesSet();
+		int threads = 4, perThread = 5000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<?>> results = new ArrayList<>();
+		try {
+			for (int thread = 0; thread < threads; thread++) {
+				int step = thread;
+				results.add(executor.submit(() -> {
+					for (int id = 0; id < perThread; id++)
+						auditLog.record(step * 100_000L + id, "paso" + step, Phase.values()[id % 3],
+								id % 7 == 0 ? Outcome.FILTERED : Outcome.OK, id);
+				}));
+			}
+			for (Future<?> result : results)
+				result.get(30, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+		auditLog.close();
+
+		List<ItemAuditReader.Entry> entries = readAll(dir);
+		assertThat(entries).hasSize(threads * perThread);
+		// Cada hilo en su orden, con su paso, fase, resultado y nanos
+		Map<String, Long> next = new HashMap<>();
+		for (ItemAuditReader.Entry entry : entries) {
+			int step = Integer.parseInt(entry.step.substring(4));
+			long id = next.getOrDefault(entry.step, 0L);
+			assertThat(entry.id).isEqualTo(step * 100_000L + id);
+			assertThat(entry.phase).isEqualTo(Phase.values()[(int) id % 3]);
+			assertThat(entry.outcome).isEqualTo(id % 7 == 0 ? Outcome.FILTERED : Outcome.OK);
+			assertThat(entry.nanos).isEqualTo(id);
+			next.put(entry.step, id + 1);
+		}
+	}
+
+	@Test
+	void samplingKeepsAllPhasesOfTheSameIdsAndEveryError() throws Exception {
+		ItemAuditLog auditLog = auditLog(dir);
+		auditLog.setSample(10);
+		auditLog.afterPropertiesSet();
+		for (long id = 0; id < 10_000; id++)
+			for (Phase phase : Phase.values())
+				auditLog.record(id, "paso", phase, id % 100 == 0 && phase == Phase.WRITE ? Outcome.ERROR : Outcome.OK, 0);
+		auditLog.close();
+
+		Map<Long, List<Phase>> phases = new HashMap<>();
+		long errors = 0;
+		for (ItemAuditReader.Entry entry : readAll(dir)) {
+			if (entry.outcome == Outcome.ERROR)
+				errors++;
+			else
+				phases.computeIfAbsent(entry.id, id -> new ArrayList<>()).add(entry.phase);
+		}
+		assertThat(errors).isEqualTo(100);
+		// Uno de cada diez ids, aproximadamente, con sus tres fases (o las dos sin error)
+		assertThat(phases.size()).isBetween(800, 1200);
+		phases.forEach((id, recorded) -> assertThat(recorded)
+				.containsExactly(id % 100 == 0 ? new Phase[] { Phase.READ, Phase.PROCESS } : Phase.values()));
+	}
+
+	@Test
+	void rotatesAtMaxFileSizeAndKeepsTheLastMaxFiles() throws Exception {
+		ItemAuditLog auditLog = auditLog(dir);
+		auditLog.setMaxFileSize(4 + 100 * ItemAuditLog.RECORD_SIZE);
+		auditLog.setMaxFiles(2);
+		auditLog.afterPropertiesSet();
+		for (long id = 0; id < 1000; id++)
+			auditLog.record(id, "paso", Phase.READ, Outcome.OK, 0);
+		auditLog.close();
+
+		List<Path> files = ItemAuditReader.files(dir);
+		assertThat(files).hasSize(3);
+		assertThat(files.get(2).getFileName().toString()).isEqualTo("items.audit");
+		for (Path file : files)
+			assertThat(Files.size(file)).isLessThanOrEqualTo(4 + 100 * ItemAuditLog.RECORD_SIZE);
+		// Los últimos registros, seguidos y cada fichero con el nombre de su paso
+		List<ItemAuditReader.Entry> entries = readAll(dir);
+		assertThat(entries).isNotEmpty().allSatisfy(entry -> assertThat(entry.step).isEqualTo("paso"));
+		long first = 1000 - entries.size();
+		for (int i = 0; i < entries.size(); i++)
+			assertThat(entries.get(i).id).isEqualTo(first + i);
+
+		// Al arrancar otra vez, el fichero actual pasa a los rotados
+		ItemAuditLog restarted = auditLog(dir);
+		restarted.setMaxFiles(2);
+		restarted.afterPropertiesSet();
+		restarted.close();
+		files = ItemAuditReader.files(dir);
+		assertThat(files).hasSize(3);
+		assertThat(Files.size(files.get(2))).isEqualTo(4);
+		List<ItemAuditReader.Entry> rolled = new ArrayList<>();
+		ItemAuditReader.read(files.get(1), rolled::add);
+		assertThat(rolled.get(rolled.size() - 1).id).isEqualTo(999);
+	}
+
+	@Test
+	void restartRotatesAfterRolledFilesStampedAheadOfTheClock() throws Exception {
+		// Muchas rotaciones en el mismo milisegundo dejan fechas por delante del reloj
+		ItemAuditLog previous = auditLog(dir);
+		previous.afterPropertiesSet();
+		previous.record(1, "paso", Phase.READ, Outcome.OK, 0);
+		previous.close();
+		Path ahead = dir.resolve("items-20991231-235959-998.audit");
+		Files.move(dir.resolve("items.audit"), ahead);
+		Files.write(dir.resolve("items.audit"), Files.readAllBytes(ahead));
+
+		ItemAuditLog restarted = auditLog(dir);
+		restarted.setMaxFiles(2);
+		restarted.afterPropertiesSet();
+		restarted.close();
+
+		List<Path> files = ItemAuditReader.files(dir);
+		assertThat(files).extracting(file -> file.getFileName().toString()).containsExactly(
+				"items-20991231-235959-998.audit", "items-20991231-235959-999.audit", "items.audit");
+	}
+
+	@Test
+	void closeWhileProducersWaitOnAFullBufferNeitherHangsNorLosesPublishedRecords() throws Exception {
+		for (int round = 0; round < 20; round++) {
+			Path roundDir = dir.resolve("ronda" + round);
+			ItemAuditLog auditLog = auditLog(roundDir);
+			auditLog.setCapacity(4);
+			auditLog.afterPropertiesSet();
+			int threads = 8;
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			CountDownLatch started = new CountDownLatch(threads);
+			AtomicLong recorded = new AtomicLong();
+			List<Future<?>> results = new ArrayList<>();
+			try {
+				for (int thread = 0; thread < threads; thread++)
+					results.add(executor.submit(() -> {
+						started.countDown();
+						for (long id = 0; id < 100_000; id++) {
+							auditLog.record(id, "paso", Phase.WRITE, Outcome.OK, 0);
+							recorded.incrementAndGet();
+						}
+					}));
+				started.await();
+				Thread.sleep(5);
+				long beforeClose = recorded.get();
+				auditLog.close();
+				// Ningún productor se queda esperando un hueco que nadie vacía
+				for (Future<?> result : results)
+					result.get(30, TimeUnit.SECONDS);
+
+				// Lo que se registró antes de cerrar está en el fichero, completo
+				long entries = readAll(roundDir).size();
+				assertThat(entries).isGreaterThanOrEqualTo(beforeClose).isLessThanOrEqualTo(recorded.get());
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	private static ItemAuditLog auditLog(Path dir) {
+		ItemAuditLog auditLog = new ItemAuditLog();
+		auditLog.setDirectory(dir);
+		return auditLog;
+	}
+
+	private static List<ItemAuditReader.Entry> readAll(Path dir) throws Exception {
+		List<ItemAuditReader.Entry> rslt = new ArrayList<>();
+		for (Path file : ItemAuditReader.files(dir))
+			ItemAuditReader.read(file, rslt::add);
+		return rslt;
+	}
+}
@@ -0,0 +1,236 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.UrlResource;
+
+import com.example.demo.model.PersonaDTO;
+
+class MappedPersonaCSVItemReaderTests {
+	private static final String HEADER = "id,first_name,last_name,email,gender,ip_address\n";
+	private static final String[] NAMES = { "id", "nombre", "apellidos", "correo", "sexo", "ip" };
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void quotedFieldsKeepDoubledQuotesDelimitersAndNewLines() throws Exception {
+		Resource resource = file("personas.csv", HEADER
+				+ "1,\"Ana \"\"la Grande\"\"\",\"López, García\",ana@example.com,Female,10.0.0.1\n"
+				+ "2,\"Luis\nMaría\",Pérez,luis@example.com,Male,10.0.0.2\n"
+				+ "3,  Eva  ,Ruiz,eva@example.com,Female,10.0.0.3");
+
+		List<PersonaDTO> personas = readAll(reader(resource));
+
+		assertThat(personas).extracting(PersonaDTO::getId).containsExactly(1L, 2L, 3L);
+		assertThat(personas.get(0).getNombre()).isEqualTo("Ana \"la Grande\"");
+		assertThat(personas.get(0).getApellidos()).isEqualTo("López, García");
+		assertThat(personas.get(1).getNombre()).isEqualTo("Luis\nMaría");
+		// Sin comillas se quitan los espacios de los extremos; la última línea no tiene \n
+		assertThat(personas.get(2).getNombre()).isEqualTo("Eva");
+		assertThat(personas.get(2).getIp()).isEqualTo("10.0.0.3");
+	}
+
+	@Test
+	void crlfLineEndingsAndBlankLines() throws Exception {
+		Resource resource = file("personas.csv", HEADER.replace("\n", "\r\n")
+				+ "1,Ana,López,ana@example.com,Female,10.0.0.1\r\n"
+				+ "\r\n"
+				+ "2,Luis,Pérez,luis@example.com,Male,10.0.0.2\r\n");
+
+		List<PersonaDTO> personas = readAll(reader(resource));
+
+		assertThat(personas).extracting(PersonaDTO::getId).containsExactly(1L, 2L);
+		assertThat(personas).extracting(PersonaDTO::getIp).containsExactly("10.0.0.1", "10.0.0.2");
+	}
+
+	@Test
+	void linesThatCrossTheWindowAreRemapped() throws Exception {
+		String csv = csv(200);
+		MappedPersonaCSVItemReader reader = reader(file("personas.csv", csv));
+		// Cada línea ocupa unos 60 bytes: casi todas cruzan el final de alguna ventana
+		reader.setWindowSize(100);
+
+		List<PersonaDTO> personas = readAll(reader);
+
+		assertThat(personas).hasSize(200);
+		assertThat(personas).extracting(PersonaDTO::getId).containsExactlyElementsOf(ids(1, 200));
+		assertThat(personas.get(199).getCorreo()).isEqualTo("persona200@example.com");
+	}
+
+	@Test
+	void partitionsReadTheirLinesFromStartOffsetUpToMaxItemCount() throws Exception {
+		String csv = csv(100);
+		Resource resource = file("personas.csv", csv);
+		// Como PersonasFilePartitioner: tramos de 30 líneas desde el byte en que empiezan
+		List<Long> read = new ArrayList<>();
+		for (int first = 0; first < 100; first += 30) {
+			MappedPersonaCSVItemReader reader = reader(resource);
+			reader.setStartOffset(offsetOfLine(csv, first + 1));
+			reader.setMaxItemCount(30);
+			List<PersonaDTO> partition = readAll(reader);
+			assertThat(partition).hasSize(Math.min(30, 100 - first));
+			partition.forEach(persona -> read.add(persona.getId()));
+		}
+
+		assertThat(read).containsExactlyElementsOf(ids(1, 100));
+	}
+
+	@Test
+	void restartContinuesFromTheSavedOffset() throws Exception {
+		Resource resource = file("personas.csv", csv(10));
+		ExecutionContext executionContext = new ExecutionContext();
+		MappedPersonaCSVItemReader reader = reader(resource);
+		reader.open(executionContext);
+		for (int i = 0; i < 4; i++)
+			reader.read();
+		reader.update(executionContext);
+		reader.close();
+		assertThat(executionContext.getInt("personaMappedCSVItemReader.read.count")).isEqualTo(4);
+		assertThat(executionContext.getLong("personaMappedCSVItemReader.offset"))
+				.isEqualTo(offsetOfLine(csv(10), 5));
+
+		reader = reader(resource);
+		reader.open(executionContext);
+		List<Long> rest = new ArrayList<>();
+		for (PersonaDTO persona; (persona = reader.read()) != null;)
+			rest.add(persona.getId());
+		reader.close();
+
+		assertThat(rest).containsExactlyElementsOf(ids(5, 10));
+	}
+
+	@Test
+	void gzipInputIsReadAndRestartedInUncompressedOffsets() throws Exception {
+		Path file = dir.resolve("personas.csv.gz");
+		Files.write(file, gzip(csv(500)));
+		ExecutionContext executionContext = new ExecutionContext();
+		MappedPersonaCSVItemReader reader = reader(new FileSystemResource(file.toFile()));
+		reader.setGzip(true);
+		reader.setGzipWindowSize(1024);
+		reader.open(executionContext);
+		for (int i = 0; i < 250; i++)
+			assertThat(reader.read().getId()).isEqualTo(i + 1);
+		reader.update(executionContext);
+		reader.close();
+
+		reader = reader(new FileSystemResource(file.toFile()));
+		reader.setGzip(true);
+		reader.setGzipWindowSize(1024);
+		reader.open(executionContext);
+		List<Long> rest = new ArrayList<>();
+		for (PersonaDTO persona; (persona = reader.read()) != null;)
+			rest.add(persona.getId());
+		reader.close();
+
+		assertThat(rest).containsExactlyElementsOf(ids(251, 500));
+	}
+
+	@Test
+	void resourcesInsideAJarAreReadAsStreams() throws Exception {
+		Path jar = dir.resolve("personas.jar");
+		try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+			entry(out, "personas-1.csv", csv(300).getBytes(StandardCharsets.UTF_8));
+			entry(out, "personas-2.csv.gz", gzip(csv(300)));
+		}
+		String base = "jar:" + jar.toUri() + "!/";
+
+		MappedPersonaCSVItemReader plain = reader(new UrlResource(base + "personas-1.csv"));
+		plain.setGzipWindowSize(1000);
+		MappedPersonaCSVItemReader compressed = reader(new UrlResource(base + "personas-2.csv.gz"));
+		compressed.setGzip(true);
+
+		assertThat(readAll(plain)).extracting(PersonaDTO::getId).containsExactlyElementsOf(ids(1, 300));
+		assertThat(readAll(compressed)).extracting(PersonaDTO::getId).containsExactlyElementsOf(ids(1, 300));
+
+		// También reinicia desde el desplazamiento guardado
+		ExecutionContext executionContext = new ExecutionContext();
+		executionContext.putLong("personaMappedCSVItemReader.offset", offsetOfLine(csv(300), 101));
+		executionContext.putInt("personaMappedCSVItemReader.read.count", 100);
+		plain = reader(new UrlResource(base + "personas-1.csv"));
+		plain.open(executionContext);
+		assertThat(plain.read().getId()).isEqualTo(101);
+		plain.close();
+	}
+
+	private MappedPersonaCSVItemReader reader(Resource resource) {
+		MappedPersonaCSVItemReader reader = new MappedPersonaCSVItemReader();
+		reader.setName("personaMappedCSVItemReader");
+		reader.setResource(resource);
+		reader.setLinesToSkip(1);
+		reader.setNames(NAMES);
+		return reader;
+	}
+
+	private static List<PersonaDTO> readAll(MappedPersonaCSVItemReader reader) throws Exception {
+		List<PersonaDTO> rslt = new ArrayList<>();
+		reader.open(new ExecutionContext());
+		try {
+			for (PersonaDTO persona; (persona = reader.read()) != null;)
+				rslt.add(persona);
+		} finally {
+			reader.close();
+		}
+		return rslt;
+	}
+
+	private Resource file(String name, String content) throws IOException {
+		Path file = dir.resolve(name);
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+		return new FileSystemResource(file.toFile());
+	}
+
+	private static String csv(int count) {
+		StringBuilder rslt = new StringBuilder(HEADER);
+		for (int id = 1; id <= count; id++)
+			rslt.append(id).append(",Persona").append(id).append(",Apellido,persona").append(id)
+					.append("@example.com,Female,10.0.").append(id / 256).append('.').append(id % 256).append('\n');
+		return rslt.toString();
+	}
+
+	// Byte en que empieza la línea (0 es la cabecera)
+	private static long offsetOfLine(String csv, int line) {
+		int offset = 0;
+		for (int i = 0; i < line; i++)
+			offset = csv.indexOf('\n', offset) + 1;
+		return csv.substring(0, offset).getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	private static List<Long> ids(long from, long to) {
+		List<Long> rslt = new ArrayList<>();
+		for (long id = from; id <= to; id++)
+			rslt.add(id);
+		return rslt;
+	}
+
+	private static byte[] gzip(String text) throws IOException {
+		ByteArrayOutputStream rslt = new ByteArrayOutputStream();
+		try (OutputStream out = new GZIPOutputStream(rslt)) {
+			out.write(text.getBytes(StandardCharsets.UTF_8));
+		}
+		return rslt.toByteArray();
+	}
+
+	private static void entry(JarOutputStream out, String name, byte[] data) throws IOException {
+		out.putNextEntry(new JarEntry(name));
+		out.write(data);
+		out.closeEntry();
+	}
+}
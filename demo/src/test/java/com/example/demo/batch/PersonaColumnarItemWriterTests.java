@@ -0,0 +1,156 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.FileSystemResource;
+
+import com.example.demo.model.Persona;
+
+class PersonaColumnarItemWriterTests {
+	@TempDir
+	Path dir;
+
+	@Test
+	void roundTripKeepsEveryColumnIncludingNulls() throws Exception {
+		List<Persona> personas = Arrays.asList(
+				new Persona(5, "Ana María López", "ana@example.com", "10.0.0.1"),
+				new Persona(3, "Luis", "luis@example.com", "255.255.255.255"),
+				new Persona(9, null, null, null),
+				new Persona(-7, "Ana López", "sin-arroba", "0.0.0.0"),
+				new Persona(1000000, "", "@example.com", "192.168.1.20"));
+		Path file = write(100, personas);
+
+		List<Persona> read = read(file, Long.MIN_VALUE, Long.MAX_VALUE);
+
+		assertThat(read).usingFieldByFieldElementComparator().containsExactlyElementsOf(personas);
+		// Las palabras repetidas son el mismo String del diccionario
+		assertThat(read.get(3).getNombre()).isEqualTo("Ana López");
+	}
+
+	@Test
+	void nonCanonicalIpsAreKeptAsText() throws Exception {
+		List<Persona> personas = Arrays.asList(
+				new Persona(1, "a", "a@b.c", "010.0.0.1"),
+				new Persona(2, "b", "b@b.c", "256.1.1.1"),
+				new Persona(3, "c", "c@b.c", "1.2.3"),
+				new Persona(4, "d", "d@b.c", "1.2.3.4.5"),
+				new Persona(5, "e", "e@b.c", "::1"),
+				new Persona(6, "f", "f@b.c", "1.2.3.4"),
+				new Persona(7, "g", "g@b.c", null));
+		Path file = write(100, personas);
+
+		assertThat(read(file, Long.MIN_VALUE, Long.MAX_VALUE)).extracting(Persona::getIp)
+				.containsExactly("010.0.0.1", "256.1.1.1", "1.2.3", "1.2.3.4.5", "::1", "1.2.3.4", null);
+		assertThat(PersonaColumnarItemWriter.ipv4("010.0.0.1")).isEqualTo(-1);
+		assertThat(PersonaColumnarItemWriter.ipv4("0.0.0.0")).isZero();
+		assertThat(PersonaColumnarItemWriter.ipv4("255.255.255.255")).isEqualTo(0xFFFFFFFFL);
+	}
+
+	@Test
+	void rangeReadsSkipGroupsOutsideTheIdsWithoutDecodingThem() throws Exception {
+		List<Persona> personas = personas(1, 100);
+		Path file = write(10, personas);
+		// Estropea los grupos de los ids 1 a 40: si se leyeran, no se podrían decodificar
+		corrupt(file, 4);
+
+		List<Persona> read = read(file, 45, 62);
+
+		assertThat(read).extracting(Persona::getId).containsExactlyElementsOf(ids(45, 62));
+		assertThat(read).usingFieldByFieldElementComparator().containsExactlyElementsOf(personas.subList(44, 62));
+	}
+
+	@Test
+	void restartSkipsTheGroupsAlreadyRead() throws Exception {
+		Path file = write(10, personas(1, 50));
+		ExecutionContext executionContext = new ExecutionContext();
+		PersonaColumnarItemReader reader = reader(file, Long.MIN_VALUE, Long.MAX_VALUE);
+		reader.open(executionContext);
+		for (int i = 0; i < 23; i++)
+			reader.read();
+		reader.update(executionContext);
+		reader.close();
+		corrupt(file, 2);
+
+		reader = reader(file, Long.MIN_VALUE, Long.MAX_VALUE);
+		reader.open(executionContext);
+		assertThat(reader.read().getId()).isEqualTo(24);
+		reader.close();
+	}
+
+	private Path write(int rowGroupSize, List<Persona> personas) throws Exception {
+		Path file = dir.resolve("personas.pcol");
+		PersonaColumnarItemWriter writer = new PersonaColumnarItemWriter();
+		writer.setResource(new FileSystemResource(file.toFile()));
+		writer.setRowGroupSize(rowGroupSize);
+		writer.open(new ExecutionContext());
+		writer.write(personas);
+		writer.close();
+		return file;
+	}
+
+	private static PersonaColumnarItemReader reader(Path file, long minId, long maxId) {
+		PersonaColumnarItemReader reader = new PersonaColumnarItemReader();
+		reader.setResource(new FileSystemResource(file.toFile()));
+		reader.setMinId(minId);
+		reader.setMaxId(maxId);
+		return reader;
+	}
+
+	private static List<Persona> read(Path file, long minId, long maxId) throws Exception {
+		PersonaColumnarItemReader reader = reader(file, minId, maxId);
+		reader.open(new ExecutionContext());
+		List<Persona> rslt = new ArrayList<>();
+		try {
+			for (Persona item; (item = reader.read()) != null;)
+				rslt.add(item);
+			assertThat(reader.getRowCount()).isGreaterThanOrEqualTo(rslt.size());
+		} finally {
+			reader.close();
+		}
+		return rslt;
+	}
+
+	// Deja la cabecera de los primeros grupos pero rellena sus columnas con 0xFF
+	private static void corrupt(Path file, int groups) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(4);
+			channel.read(header, 4 + 1);
+			long position = 4 + 1 + 4 + ((ByteBuffer) header.flip()).getInt();
+			for (int group = 0; group < groups; group++) {
+				ByteBuffer groupHeader = ByteBuffer.allocate(PersonaColumnarItemWriter.GROUP_HEADER);
+				channel.read(groupHeader, position);
+				int length = ((ByteBuffer) groupHeader.flip()).getInt(4 + 8 + 8);
+				byte[] garbage = new byte[length];
+				Arrays.fill(garbage, (byte) 0xFF);
+				channel.write(ByteBuffer.wrap(garbage), position + PersonaColumnarItemWriter.GROUP_HEADER);
+				position += PersonaColumnarItemWriter.GROUP_HEADER + length;
+			}
+		}
+	}
+
+	private static List<Persona> personas(long from, long to) {
+		List<Persona> rslt = new ArrayList<>();
+		for (long id = from; id <= to; id++)
+			rslt.add(new Persona(id, "Persona " + id, "persona" + id + "@example.com", "10.0." + id / 256 + "." + id % 256));
+		return rslt;
+	}
+
+	private static List<Long> ids(long from, long to) {
+		List<Long> rslt = new ArrayList<>();
+		for (long id = from; id <= to; id++)
+			rslt.add(id);
+		return rslt;
+	}
+}
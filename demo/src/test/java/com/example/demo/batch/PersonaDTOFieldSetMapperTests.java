@@ -0,0 +1,85 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.batch.item.file.transform.DefaultFieldSet;
+import org.springframework.core.io.FileSystemResource;
+
+import com.example.demo.model.PersonaDTO;
+
+class PersonaDTOFieldSetMapperTests {
+	@TempDir
+	Path dir;
+
+	@Test
+	void sameMapperReadsFilesWithDifferentColumnOrders() throws Exception {
+		// Como personaCSVItemReader y personaCSV2ItemReader, pero con un único mapper
+		PersonaDTOFieldSetMapper mapper = new PersonaDTOFieldSetMapper();
+		FlatFileItemReader<PersonaDTO> first = reader(mapper, "personas-1.csv",
+				"1,Ana,García,ana@example.com,F,10.0.0.1\n2,Luis,Pérez,luis@example.com,M,10.0.0.2\n",
+				"id", "nombre", "apellidos", "correo", "sexo", "ip");
+		FlatFileItemReader<PersonaDTO> second = reader(mapper, "personas-2.csv",
+				"3,eva@example.com,Eva,López,F,10.0.0.3\n4,juan@example.com,Juan,Ruiz,M,10.0.0.4\n",
+				"id", "correo", "nombre", "apellidos", "sexo", "ip");
+		try {
+			// Alternando: cada lectura con las columnas de su fichero
+			assertThat(first.read()).isEqualTo(persona(1, "Ana", "García", "ana@example.com", "F", "10.0.0.1"));
+			assertThat(second.read()).isEqualTo(persona(3, "Eva", "López", "eva@example.com", "F", "10.0.0.3"));
+			assertThat(first.read()).isEqualTo(persona(2, "Luis", "Pérez", "luis@example.com", "M", "10.0.0.2"));
+			assertThat(second.read()).isEqualTo(persona(4, "Juan", "Ruiz", "juan@example.com", "M", "10.0.0.4"));
+			assertThat(first.read()).isNull();
+			assertThat(second.read()).isNull();
+		} finally {
+			first.close();
+			second.close();
+		}
+	}
+
+	@Test
+	void namesSetOnTheMapperWinOverTheFieldSetNames() {
+		PersonaDTOFieldSetMapper mapper = PersonaDTOFieldSetMapper.forNames("ip", "id", " nombre ");
+
+		PersonaDTO persona = mapper.mapFieldSet(new DefaultFieldSet(new String[] { "10.0.0.7", "7", "Sara" },
+				new String[] { "a", "b", "c" }));
+
+		assertThat(persona).isEqualTo(persona(7, "Sara", null, null, null, "10.0.0.7"));
+	}
+
+	@Test
+	void unknownColumnIsRejected() {
+		PersonaDTOFieldSetMapper mapper = new PersonaDTOFieldSetMapper();
+
+		assertThatThrownBy(() -> mapper.mapFieldSet(new DefaultFieldSet(new String[] { "1", "x" },
+				new String[] { "id", "telefono" }))).isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("telefono");
+	}
+
+	private FlatFileItemReader<PersonaDTO> reader(PersonaDTOFieldSetMapper mapper, String file, String rows,
+			String... names) throws Exception {
+		Files.write(dir.resolve(file), (String.join(",", names) + "\n" + rows).getBytes(StandardCharsets.UTF_8));
+		FlatFileItemReader<PersonaDTO> reader = new FlatFileItemReaderBuilder<PersonaDTO>().name(file)
+				.resource(new FileSystemResource(dir.resolve(file).toFile()))
+				.encoding("UTF-8")
+				.linesToSkip(1)
+				.delimited()
+				.names(names)
+				.fieldSetMapper(mapper)
+				.build();
+		reader.open(new ExecutionContext());
+		return reader;
+	}
+
+	private static PersonaDTO persona(long id, String nombre, String apellidos, String correo, String sexo, String ip) {
+		return new PersonaDTO(id, nombre, apellidos, correo, sexo, ip);
+	}
+}
@@ -0,0 +1,142 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.batch.PersonaJdbcItemWriter.Mode;
+import com.example.demo.model.Persona;
+
+class PersonaJdbcItemWriterTests {
+	private static final int ITEMS = 250;
+
+	private EmbeddedDatabase database;
+	private JdbcTemplate jdbcTemplate;
+	private TransactionTemplate chunk;
+
+	@BeforeEach
+	void setUp() {
+		// El mismo esquema que la aplicación, con la tabla temporal personas_stage
+		database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.HSQL).generateUniqueName(true)
+				.addScript("schema-all.sql").build();
+		jdbcTemplate = new JdbcTemplate(database);
+		chunk = new TransactionTemplate(new DataSourceTransactionManager(database));
+	}
+
+	@AfterEach
+	void tearDown() {
+		database.shutdown();
+	}
+
+	@ParameterizedTest
+	@EnumSource(Mode.class)
+	void writesEveryRowInBatchesSmallerThanTheChunk(Mode mode) throws Exception {
+		PersonaJdbcItemWriter writer = writer(mode);
+
+		write(writer, personas(1, ITEMS, "uno"));
+
+		assertThat(rows()).usingFieldByFieldElementComparator().containsExactlyElementsOf(personas(1, ITEMS, "uno"));
+	}
+
+	@Test
+	void insertFailsWhenTheSameIdsAreWrittenAgain() throws Exception {
+		PersonaJdbcItemWriter writer = writer(Mode.INSERT);
+		write(writer, personas(1, ITEMS, "uno"));
+
+		assertThatThrownBy(() -> write(writer, personas(ITEMS - 10, ITEMS + 10, "dos")))
+				.isInstanceOf(DuplicateKeyException.class);
+		// El chunk se deshace entero
+		assertThat(rows()).usingFieldByFieldElementComparator().containsExactlyElementsOf(personas(1, ITEMS, "uno"));
+	}
+
+	@ParameterizedTest
+	@EnumSource(value = Mode.class, names = { "UPSERT", "BULK" })
+	void rerunOfTheSameIdsUpdatesThemAndAddsTheNewOnes(Mode mode) throws Exception {
+		PersonaJdbcItemWriter writer = writer(mode);
+		write(writer, personas(1, ITEMS, "uno"));
+
+		write(writer, personas(ITEMS / 2, ITEMS + 50, "dos"));
+
+		List<Persona> expected = personas(1, ITEMS / 2 - 1, "uno");
+		expected.addAll(personas(ITEMS / 2, ITEMS + 50, "dos"));
+		assertThat(rows()).usingFieldByFieldElementComparator().containsExactlyElementsOf(expected);
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM personas_stage", Integer.class)).isZero();
+	}
+
+	@ParameterizedTest
+	@EnumSource(value = Mode.class, names = { "UPSERT", "BULK" })
+	void sameIdTwiceInAChunkKeepsTheLastOne(Mode mode) throws Exception {
+		PersonaJdbcItemWriter writer = writer(mode);
+		List<Persona> items = personas(1, 10, "uno");
+		items.add(persona(3, "dos"));
+		items.add(persona(7, "dos"));
+		items.add(persona(3, "tres"));
+
+		write(writer, items);
+
+		List<Persona> expected = personas(1, 10, "uno");
+		expected.set(2, persona(3, "tres"));
+		expected.set(6, persona(7, "dos"));
+		assertThat(rows()).usingFieldByFieldElementComparator().containsExactlyElementsOf(expected);
+	}
+
+	private PersonaJdbcItemWriter writer(Mode mode) throws Exception {
+		PersonaJdbcItemWriter writer = new PersonaJdbcItemWriter();
+		writer.setDataSource(database);
+		writer.setMode(mode);
+		writer.setBatchSize(64);
+		writer.afterPropertiesSet();
+		return writer;
+	}
+
+	// Como el paso: cada chunk en su transacción
+	private void write(PersonaJdbcItemWriter writer, List<Persona> items) throws Exception {
+		try {
+			chunk.execute(status -> {
+				try {
+					writer.write(items);
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+				return null;
+			});
+		} catch (IllegalStateException e) {
+			throw (Exception) e.getCause();
+		}
+	}
+
+	// Persona.equals solo compara el id: las comprobaciones comparan campo a campo
+	private List<Persona> rows() {
+		return new ArrayList<>(jdbcTemplate.query("SELECT id, nombre, correo, ip FROM personas ORDER BY id",
+				(rs, rowNum) -> new Persona(rs.getLong("id"), rs.getString("nombre"), rs.getString("correo"),
+						rs.getString("ip"))));
+	}
+
+	private static List<Persona> personas(long from, long to, String version) {
+		List<Persona> rslt = new ArrayList<>();
+		for (long id = from; id <= to; id++)
+			rslt.add(persona(id, version));
+		return rslt;
+	}
+
+	private static Persona persona(long id, String version) {
+		return new Persona(id, "Persona " + id + " " + version, "persona" + id + "@example.com",
+				String.join(".", Arrays.asList("10", "0", String.valueOf(id / 256), String.valueOf(id % 256))));
+	}
+}
@@ -0,0 +1,153 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.NonTransientResourceException;
+import org.springframework.core.io.FileSystemResource;
+
+import com.example.demo.model.PersonaDTO;
+
+class PersonaXmlItemReaderTests {
+	private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void readsEveryChildAndSkipsUnknownElements() throws Exception {
+		write(DECLARATION + "<Personas>\n"
+				+ "  <Persona><id> 1 </id><nombre>Ana &amp; &lt;Luis&gt;</nombre><apellidos>Peña</apellidos>"
+				+ "<extra><id>99</id><Persona/></extra><correo><![CDATA[a&b@example.com]]></correo>"
+				+ "<sexo>F</sexo><ip>10.0.0.1</ip></Persona>\n"
+				+ "  <!-- comentario --><otros><Persona><id>2</id></Persona></otros>\n"
+				+ "</Personas>");
+
+		List<PersonaDTO> items = readAll(reader(false), new ExecutionContext());
+
+		assertThat(items).containsExactly(
+				new PersonaDTO(1, "Ana & <Luis>", "Peña", "a&b@example.com", "F", "10.0.0.1"),
+				new PersonaDTO(2, null, null, null, null, null));
+	}
+
+	@Test
+	void restartSkipsTheFragmentsAlreadyRead() throws Exception {
+		writePersonas(false, 25);
+		ExecutionContext executionContext = new ExecutionContext();
+		PersonaXmlItemReader failed = reader(false);
+		failed.open(executionContext);
+		for (int i = 0; i < 10; i++)
+			failed.read();
+		failed.update(executionContext);
+		// Se lee más allá del último chunk confirmado antes de fallar
+		failed.read();
+		failed.close();
+		assertThat(executionContext.getInt("PersonaXmlItemReader.read.count")).isEqualTo(10);
+
+		List<PersonaDTO> items = readAll(reader(false), executionContext);
+
+		assertThat(items).extracting(PersonaDTO::getId).containsExactlyElementsOf(ids(11, 25));
+		assertThat(items.get(0)).isEqualTo(persona(11));
+	}
+
+	@Test
+	void readsCompressedFilesAndRestartsInThem() throws Exception {
+		writePersonas(true, 25);
+		assertThat(readAll(reader(true), new ExecutionContext())).extracting(PersonaDTO::getId)
+				.containsExactlyElementsOf(ids(1, 25));
+
+		ExecutionContext executionContext = new ExecutionContext();
+		executionContext.putInt("PersonaXmlItemReader.read.count", 20);
+
+		assertThat(readAll(reader(true), executionContext)).containsExactly(persona(21), persona(22), persona(23),
+				persona(24), persona(25));
+	}
+
+	@Test
+	void malformedFragmentFailsWithItsLine() throws Exception {
+		write(DECLARATION + "<Personas>\n<Persona><id>1</id></Persona>\n<Persona><id>dos</id></Persona>\n</Personas>");
+		PersonaXmlItemReader reader = reader(false);
+		reader.open(new ExecutionContext());
+		try {
+			assertThat(reader.read().getId()).isEqualTo(1);
+			assertThatThrownBy(reader::read).isInstanceOf(NonTransientResourceException.class)
+					.hasMessageContaining("línea 3");
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	void missingFileFailsOnlyWhenStrict() throws Exception {
+		PersonaXmlItemReader strict = reader(false);
+		assertThatThrownBy(() -> strict.open(new ExecutionContext())).hasRootCauseInstanceOf(IllegalStateException.class);
+
+		PersonaXmlItemReader lenient = reader(false);
+		lenient.setStrict(false);
+		assertThat(readAll(lenient, new ExecutionContext())).isEmpty();
+	}
+
+	private PersonaXmlItemReader reader(boolean gzip) {
+		PersonaXmlItemReader reader = new PersonaXmlItemReader();
+		reader.setResource(new FileSystemResource(dir.resolve(gzip ? "Personas.xml.gz" : "Personas.xml").toFile()));
+		reader.setGzip(gzip);
+		return reader;
+	}
+
+	private static List<PersonaDTO> readAll(PersonaXmlItemReader reader, ExecutionContext executionContext)
+			throws Exception {
+		reader.open(executionContext);
+		List<PersonaDTO> rslt = new ArrayList<>();
+		try {
+			for (PersonaDTO item; (item = reader.read()) != null;)
+				rslt.add(item);
+		} finally {
+			reader.close();
+		}
+		return rslt;
+	}
+
+	private void writePersonas(boolean gzip, int count) throws Exception {
+		StringBuilder xml = new StringBuilder(DECLARATION).append("<Personas>");
+		for (int id = 1; id <= count; id++) {
+			PersonaDTO persona = persona(id);
+			xml.append("<Persona><id>").append(id).append("</id><nombre>").append(persona.getNombre())
+					.append("</nombre><correo>").append(persona.getCorreo()).append("</correo><ip>")
+					.append(persona.getIp()).append("</ip></Persona>");
+		}
+		xml.append("</Personas>");
+		if (!gzip) {
+			write(xml.toString());
+			return;
+		}
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(dir.resolve("Personas.xml.gz")))) {
+			out.write(xml.toString().getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private void write(String xml) throws Exception {
+		Files.write(dir.resolve("Personas.xml"), xml.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static PersonaDTO persona(long id) {
+		return new PersonaDTO(id, "Persona " + id, null, "persona" + id + "@example.com", null, "10.0.0." + id);
+	}
+
+	private static List<Long> ids(long from, long to) {
+		List<Long> rslt = new ArrayList<>();
+		for (long id = from; id <= to; id++)
+			rslt.add(id);
+		return rslt;
+	}
+}
@@ -0,0 +1,187 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+
+import com.example.demo.model.Persona;
+import com.example.demo.model.PersonaDTO;
+
+class PersonaXmlItemWriterTests {
+	private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+	@TempDir
+	Path dir;
+
+	private ExecutorService executor;
+	private GzipBlockCompressor compressor;
+	private final TransactionTemplate chunk = new TransactionTemplate(new ResourcelessTransactionManager());
+
+	@BeforeEach
+	void setUp() throws Exception {
+		executor = Executors.newFixedThreadPool(2);
+		compressor = new GzipBlockCompressor();
+		compressor.setExecutor(executor);
+		compressor.setBlockSize(256);
+		compressor.afterPropertiesSet();
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	void whatIsWrittenReadsBackEqual(boolean gzip) throws Exception {
+		PersonaXmlItemWriter writer = writer(gzip);
+		writer.open(new ExecutionContext());
+		List<Persona> items = personas(1, 250);
+		for (int from = 0; from < items.size(); from += 100)
+			write(writer, items.subList(from, Math.min(from + 100, items.size())));
+		writer.close();
+
+		assertThat(read(gzip)).usingFieldByFieldElementComparator().containsExactlyElementsOf(items);
+	}
+
+	@Test
+	void markupInTheValuesIsEscapedAndNullsAreOmitted() throws Exception {
+		PersonaXmlItemWriter writer = writer(false);
+		writer.open(new ExecutionContext());
+		List<Persona> items = Arrays.asList(new Persona(1, "Ana & <Luis> \"Peña\"", null, "10.0.0.1"),
+				new Persona(2, "]]> fin", "a&b@example.com", null));
+		write(writer, items);
+		writer.close();
+
+		assertThat(content(false)).isEqualTo(DECLARATION + "<Personas>"
+				+ "<Persona><id>1</id><nombre>Ana &amp; &lt;Luis&gt; \"Peña\"</nombre><ip>10.0.0.1</ip></Persona>"
+				+ "<Persona><id>2</id><nombre>]]&gt; fin</nombre><correo>a&amp;b@example.com</correo></Persona>"
+				+ "</Personas>");
+		assertThat(read(false)).usingFieldByFieldElementComparator().containsExactlyElementsOf(items);
+	}
+
+	@Test
+	void rolledBackChunkIsTruncated() throws Exception {
+		PersonaXmlItemWriter writer = writer(false);
+		writer.open(new ExecutionContext());
+		write(writer, personas(1, 10));
+
+		chunk.execute(status -> {
+			try {
+				writer.write(personas(11, 20));
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			status.setRollbackOnly();
+			return null;
+		});
+		write(writer, personas(21, 30));
+		writer.close();
+
+		List<Persona> expected = personas(1, 10);
+		expected.addAll(personas(21, 30));
+		assertThat(read(false)).usingFieldByFieldElementComparator().containsExactlyElementsOf(expected);
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	void restartTruncatesToTheSavedPosition(boolean gzip) throws Exception {
+		ExecutionContext executionContext = new ExecutionContext();
+		PersonaXmlItemWriter failed = writer(gzip);
+		failed.open(executionContext);
+		write(failed, personas(1, 10));
+		failed.update(executionContext);
+		// El chunk siguiente se escribe pero el paso falla antes de guardar su estado
+		write(failed, personas(11, 20));
+		failed.close();
+		assertThat(executionContext.getLong("personaXMLItemWriter.record.count")).isEqualTo(10);
+
+		PersonaXmlItemWriter restarted = writer(gzip);
+		restarted.open(executionContext);
+		write(restarted, personas(11, 30));
+		restarted.update(executionContext);
+		restarted.close();
+
+		assertThat(read(gzip)).usingFieldByFieldElementComparator().containsExactlyElementsOf(personas(1, 30));
+		assertThat(executionContext.getLong("personaXMLItemWriter.record.count")).isEqualTo(30);
+		if (!gzip)
+			assertThat(executionContext.getLong("personaXMLItemWriter.position"))
+					.isEqualTo(Files.size(file(false)) - "</Personas>".length());
+	}
+
+	private PersonaXmlItemWriter writer(boolean gzip) {
+		PersonaXmlItemWriter writer = new PersonaXmlItemWriter();
+		writer.setName("personaXMLItemWriter");
+		writer.setResource(new FileSystemResource(file(gzip).toFile()));
+		if (gzip)
+			writer.setCompressor(compressor);
+		return writer;
+	}
+
+	// Como el paso: cada chunk en su transacción
+	private void write(PersonaXmlItemWriter writer, List<Persona> items) {
+		chunk.execute(status -> {
+			try {
+				writer.write(items);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			return null;
+		});
+	}
+
+	private List<Persona> read(boolean gzip) throws Exception {
+		PersonaXmlItemReader reader = new PersonaXmlItemReader();
+		reader.setResource(new FileSystemResource(file(gzip).toFile()));
+		reader.setGzip(gzip);
+		reader.open(new ExecutionContext());
+		List<Persona> rslt = new ArrayList<>();
+		try {
+			for (PersonaDTO item; (item = reader.read()) != null;)
+				rslt.add(new Persona(item.getId(), item.getNombre(), item.getCorreo(), item.getIp()));
+		} finally {
+			reader.close();
+		}
+		return rslt;
+	}
+
+	private String content(boolean gzip) throws IOException {
+		try (InputStream in = gzip ? new GZIPInputStream(Files.newInputStream(file(gzip)))
+				: Files.newInputStream(file(gzip))) {
+			return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+		}
+	}
+
+	private Path file(boolean gzip) {
+		return dir.resolve(gzip ? "Personas.xml.gz" : "Personas.xml");
+	}
+
+	private static List<Persona> personas(long from, long to) {
+		List<Persona> rslt = new ArrayList<>();
+		for (long id = from; id <= to; id++)
+			rslt.add(new Persona(id, "Persona " + id, "persona" + id + "@example.com", "10.0.0." + (id % 256)));
+		return rslt;
+	}
+}
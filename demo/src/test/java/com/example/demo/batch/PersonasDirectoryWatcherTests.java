@@ -0,0 +1,210 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.MapJobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.core.io.FileSystemResource;
+
+class PersonasDirectoryWatcherTests {
+	private static final long QUIET_PERIOD = 200;
+
+	@TempDir
+	Path dir;
+
+	private JobRepository repository;
+	private SimpleJobLauncher jobLauncher;
+	private Job job;
+	private PersonasDirectoryWatcher watcher;
+	// Cada llamada al JobLauncher: cuándo, con qué fichero y tamaño, y cómo acabó
+	private final List<Launch> launches = new CopyOnWriteArrayList<>();
+	private final AtomicInteger failures = new AtomicInteger();
+
+	private static final class Launch {
+		final long time = System.currentTimeMillis();
+		final String file;
+		final long size;
+		final String key;
+		volatile BatchStatus status;
+		volatile Exception error;
+
+		Launch(JobParameters parameters) {
+			file = parameters.getString(PersonasDirectoryWatcher.FILE);
+			size = new File(file).length();
+			key = parameters.getString(PersonasDirectoryWatcher.KEY);
+		}
+	}
+
+	@BeforeEach
+	void setUp() throws Exception {
+		MapJobRepositoryFactoryBean factory = new MapJobRepositoryFactoryBean(new ResourcelessTransactionManager());
+		factory.afterPropertiesSet();
+		repository = factory.getObject();
+		jobLauncher = new SimpleJobLauncher();
+		jobLauncher.setJobRepository(repository);
+		jobLauncher.afterPropertiesSet();
+		job = new JobBuilder("ingestJob").repository(repository)
+				.start(new StepBuilder("ingestStep").repository(repository)
+						.transactionManager(new ResourcelessTransactionManager())
+						.tasklet((contribution, chunkContext) -> RepeatStatus.FINISHED).build())
+				.build();
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (watcher != null)
+			watcher.stop();
+	}
+
+	@Test
+	void fileIsLaunchedOnceItHasBeenQuietForTheQuietPeriod() throws Exception {
+		start();
+		long lastWrite;
+		try (OutputStream out = Files.newOutputStream(dir.resolve("personas-1.csv"))) {
+			// Llega a trozos, cada uno antes de que pase el periodo de calma
+			for (int i = 0; i < 8; i++) {
+				out.write(("id,nombre\n" + i + ",Persona " + i + "\n").getBytes(StandardCharsets.UTF_8));
+				out.flush();
+				Thread.sleep(QUIET_PERIOD / 2);
+			}
+			lastWrite = System.currentTimeMillis();
+		}
+		Files.write(dir.resolve("leeme.txt"), "no es de personas".getBytes(StandardCharsets.UTF_8));
+
+		awaitLaunches(1);
+		Thread.sleep(3 * QUIET_PERIOD);
+
+		assertThat(launches).hasSize(1);
+		Launch launch = launches.get(0);
+		assertThat(launch.file).isEqualTo(dir.resolve("personas-1.csv").toAbsolutePath().toString());
+		assertThat(launch.size).isEqualTo(Files.size(dir.resolve("personas-1.csv")));
+		assertThat(launch.time - lastWrite).isGreaterThanOrEqualTo(QUIET_PERIOD);
+		assertThat(launch.status).isEqualTo(BatchStatus.COMPLETED);
+	}
+
+	@Test
+	void sameFileIsNotImportedAgainButAChangedOneIs() throws Exception {
+		Path file = dir.resolve("personas-1.csv");
+		write(file, "id,nombre\n1,Ana\n");
+		// Los que ya estaban al arrancar también se lanzan
+		start();
+		awaitLaunches(1);
+
+		// Mismo contenido, tamaño y fecha: mismo key, la instancia ya está completa
+		FileTime modified = Files.getLastModifiedTime(file);
+		write(file, "id,nombre\n1,Ana\n");
+		Files.setLastModifiedTime(file, modified);
+		awaitLaunches(2);
+		// Al volver a arrancar se encuentra el mismo fichero
+		watcher.stop();
+		start();
+		awaitLaunches(3);
+		// Otro contenido: otro key
+		write(file, "id,nombre\n1,Ana\n2,Luis\n");
+		awaitLaunches(4);
+		awaitStatus(4);
+
+		assertThat(launches.get(0).status).isEqualTo(BatchStatus.COMPLETED);
+		assertThat(launches.get(1).key).isEqualTo(launches.get(0).key);
+		assertThat(launches.get(1).error).isInstanceOf(JobInstanceAlreadyCompleteException.class);
+		assertThat(launches.get(2).key).isEqualTo(launches.get(0).key);
+		assertThat(launches.get(2).error).isInstanceOf(JobInstanceAlreadyCompleteException.class);
+		assertThat(launches.get(3).key).isNotEqualTo(launches.get(0).key);
+		assertThat(launches.get(3).status).isEqualTo(BatchStatus.COMPLETED);
+		// Una instancia por key: la ruta no identifica
+		for (int i : new int[] { 0, 3 })
+			assertThat(repository.getLastJobExecution(job.getName(), parameters(launches.get(i))).getStatus())
+					.isEqualTo(BatchStatus.COMPLETED);
+	}
+
+	@Test
+	void failedLaunchIsRetriedWithADelayThatDoubles() throws Exception {
+		failures.set(3);
+		start();
+		write(dir.resolve("personas-1.csv"), "id,nombre\n1,Ana\n");
+
+		awaitLaunches(4);
+		awaitStatus(4);
+
+		assertThat(launches).extracting(launch -> launch.status).containsExactly(null, null, null,
+				BatchStatus.COMPLETED);
+		assertThat(launches.subList(0, 3)).allSatisfy(launch -> assertThat(launch.error)
+				.isInstanceOf(IllegalStateException.class));
+		// Espera quietPeriod, 2 * quietPeriod y 4 * quietPeriod antes de cada reintento
+		for (int attempt = 1; attempt < 4; attempt++)
+			assertThat(launches.get(attempt).time - launches.get(attempt - 1).time)
+					.isGreaterThanOrEqualTo(QUIET_PERIOD << (attempt - 1));
+		assertThat(launches.get(3).time - launches.get(2).time)
+				.isGreaterThan(launches.get(1).time - launches.get(0).time);
+	}
+
+	private void start() throws Exception {
+		watcher = new PersonasDirectoryWatcher();
+		watcher.setDirectoryResource(new FileSystemResource(dir.toFile()));
+		watcher.setJob(job);
+		watcher.setQuietPeriod(QUIET_PERIOD);
+		watcher.setConcurrency(1);
+		watcher.setJobLauncher((job, parameters) -> {
+			Launch launch = new Launch(parameters);
+			launches.add(launch);
+			try {
+				if (failures.getAndUpdate(left -> Math.max(left - 1, 0)) > 0)
+					throw new IllegalStateException("JobRepository no disponible");
+				JobExecution execution = jobLauncher.run(job, parameters);
+				launch.status = execution.getStatus();
+				return execution;
+			} catch (Exception e) {
+				launch.error = e;
+				throw e;
+			}
+		});
+		watcher.afterPropertiesSet();
+		watcher.start();
+	}
+
+	private static JobParameters parameters(Launch launch) {
+		return new JobParametersBuilder().addString(PersonasDirectoryWatcher.KEY, launch.key).toJobParameters();
+	}
+
+	private void awaitLaunches(int count) throws InterruptedException {
+		for (long deadline = System.currentTimeMillis() + 20_000; launches.size() < count
+				&& System.currentTimeMillis() < deadline;)
+			Thread.sleep(20);
+		assertThat(launches).hasSizeGreaterThanOrEqualTo(count);
+	}
+
+	private void awaitStatus(int count) throws InterruptedException {
+		for (long deadline = System.currentTimeMillis() + 20_000; launches.get(count - 1).status == null
+				&& System.currentTimeMillis() < deadline;)
+			Thread.sleep(20);
+	}
+
+	private static void write(Path file, String content) throws Exception {
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,131 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.FileSystemResource;
+
+class PersonasFilePartitionerTests {
+	private static final String HEADER = "id,first_name,last_name,email,gender,ip_address";
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void splitsEachFileIntoRangesOfMaxLinesStartingAtTheirFirstByte() throws Exception {
+		write("personas-1.csv", rows(1, 7) + "\n");
+		write("personas-2.csv", rows(8, 9) + "\n");
+		write("otros.csv", rows(1, 3) + "\n");
+
+		Map<String, ExecutionContext> partitions = partitioner(3).partition(1);
+
+		assertThat(partitions).containsOnlyKeys("personas-1.csv:0", "personas-1.csv:3", "personas-1.csv:6",
+				"personas-2.csv:0");
+		assertPartition(partitions.get("personas-1.csv:0"), "personas-1.csv", 1, 3, 1);
+		assertPartition(partitions.get("personas-1.csv:3"), "personas-1.csv", 4, 3, 4);
+		assertPartition(partitions.get("personas-1.csv:6"), "personas-1.csv", 7, 1, 7);
+		assertPartition(partitions.get("personas-2.csv:0"), "personas-2.csv", 1, 2, 8);
+	}
+
+	@Test
+	void lastRowWithoutTrailingNewlineIsCounted() throws Exception {
+		write("personas-1.csv", rows(1, 6));
+
+		Map<String, ExecutionContext> partitions = partitioner(3).partition(1);
+
+		assertThat(partitions).containsOnlyKeys("personas-1.csv:0", "personas-1.csv:3");
+		assertPartition(partitions.get("personas-1.csv:3"), "personas-1.csv", 4, 3, 4);
+		assertThat(lineAt("personas-1.csv", partitions.get("personas-1.csv:3").getLong(
+				PersonasFilePartitioner.START_OFFSET), 3)).endsWith("6,Nombre6,Apellidos6,persona6@example.com,F,10.0.0.6");
+	}
+
+	@Test
+	void headerColumnsAreMappedToPersonaFieldNames() throws Exception {
+		write("personas-1.csv", "ip_address, email ,first_name,id,otra\n1.2.3.4,a@example.com,Ana,1,x\n");
+
+		ExecutionContext context = partitioner(10).partition(1).get("personas-1.csv:0");
+
+		assertThat(context.getString(PersonasFilePartitioner.NAMES)).isEqualTo("ip,correo,nombre,id,otra");
+	}
+
+	@Test
+	void compressedFilesGoInASinglePartition() throws Exception {
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(dir.resolve("personas-1.csv.gz")))) {
+			out.write((rows(1, 7) + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+
+		Map<String, ExecutionContext> partitions = partitioner(3).partition(1);
+
+		assertThat(partitions).containsOnlyKeys("personas-1.csv.gz:0");
+		ExecutionContext context = partitions.get("personas-1.csv.gz:0");
+		assertThat(context.getInt(PersonasFilePartitioner.LINES_TO_SKIP)).isEqualTo(1);
+		assertThat(context.getLong(PersonasFilePartitioner.START_OFFSET)).isEqualTo(-1);
+		assertThat(context.getInt(PersonasFilePartitioner.MAX_ITEM_COUNT)).isEqualTo(Integer.MAX_VALUE);
+		assertThat(context.getString(PersonasFilePartitioner.NAMES)).isEqualTo("id,nombre,apellidos,correo,sexo,ip");
+	}
+
+	@Test
+	void onlyTheGivenFilesArePartitionedWhenSet() throws Exception {
+		write("personas-1.csv", rows(1, 2) + "\n");
+		write("personas-2.csv", rows(3, 4) + "\n");
+		PersonasFilePartitioner partitioner = new PersonasFilePartitioner();
+		partitioner.setFiles(dir.resolve("personas-2.csv").toString());
+		partitioner.afterPropertiesSet();
+
+		assertThat(partitioner.partition(1)).containsOnlyKeys("personas-2.csv:0");
+	}
+
+	private PersonasFilePartitioner partitioner(int maxLines) throws Exception {
+		PersonasFilePartitioner partitioner = new PersonasFilePartitioner();
+		partitioner.setDirectoryResource(new FileSystemResource(dir.toFile()));
+		partitioner.setMaxLines(maxLines);
+		partitioner.afterPropertiesSet();
+		return partitioner;
+	}
+
+	// La partición empieza en la fila firstId: el byte de inicio apunta a esa línea
+	private void assertPartition(ExecutionContext context, String file, int linesToSkip, int maxItemCount, int firstId)
+			throws Exception {
+		assertThat(context.getString(PersonasFilePartitioner.FILE_NAME)).isEqualTo(dir.resolve(file).toUri().toString());
+		assertThat(context.getInt(PersonasFilePartitioner.LINES_TO_SKIP)).isEqualTo(linesToSkip);
+		assertThat(context.getInt(PersonasFilePartitioner.MAX_ITEM_COUNT)).isEqualTo(maxItemCount);
+		assertThat(context.getString(PersonasFilePartitioner.NAMES)).isEqualTo("id,nombre,apellidos,correo,sexo,ip");
+		assertThat(lineAt(file, context.getLong(PersonasFilePartitioner.START_OFFSET), 1)).isEqualTo(row(firstId));
+	}
+
+	private String lineAt(String file, long offset, int lines) throws Exception {
+		try (RandomAccessFile raf = new RandomAccessFile(dir.resolve(file).toFile(), "r")) {
+			raf.seek(offset);
+			StringBuilder rslt = new StringBuilder();
+			for (int i = 0; i < lines; i++)
+				rslt.append(i == 0 ? "" : "\n").append(raf.readLine());
+			return rslt.toString();
+		}
+	}
+
+	private void write(String file, String content) throws Exception {
+		Files.write(dir.resolve(file), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String rows(int from, int to) {
+		StringBuilder rslt = new StringBuilder(HEADER);
+		for (int id = from; id <= to; id++)
+			rslt.append('\n').append(row(id));
+		return rslt.toString();
+	}
+
+	private static String row(int id) {
+		return id + ",Nombre" + id + ",Apellidos" + id + ",persona" + id + "@example.com," + (id % 2 == 0 ? "F" : "M")
+				+ ",10.0.0." + id;
+	}
+}
@@ -0,0 +1,168 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.MapJobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+class PersonasIdRangePartitionerTests {
+	private static final int GRID_SIZE = 4;
+
+	@TempDir
+	Path dir;
+
+	private EmbeddedDatabase database;
+	private JdbcTemplate jdbcTemplate;
+	private Path target;
+	private final AtomicInteger partitioned = new AtomicInteger();
+	private PersonasIdRangePartitioner partitioner;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.HSQL).generateUniqueName(true).build();
+		jdbcTemplate = new JdbcTemplate(database);
+		jdbcTemplate.execute("CREATE TABLE personas (id BIGINT PRIMARY KEY)");
+		target = dir.resolve("outputData.csv");
+		partitioner = new PersonasIdRangePartitioner() {
+			@Override
+			public Map<String, ExecutionContext> partition(int gridSize) {
+				partitioned.incrementAndGet();
+				return super.partition(gridSize);
+			}
+		};
+		partitioner.setDataSource(database);
+		partitioner.setTarget(new FileSystemResource(target.toFile()));
+		partitioner.afterPropertiesSet();
+	}
+
+	@AfterEach
+	void tearDown() {
+		database.shutdown();
+	}
+
+	@Test
+	void splitsTheIdRangeInGridSizePartitionsAndDeletesOldShards() throws Exception {
+		insert(3, 40);
+		Path old = PersonasIdRangePartitioner.shard(target, 7);
+		Files.write(old, "de otra ejecución".getBytes(StandardCharsets.UTF_8));
+
+		Map<String, ExecutionContext> partitions = partitioner.partition(GRID_SIZE);
+
+		assertThat(partitions).containsOnlyKeys("shard-000", "shard-001", "shard-002", "shard-003");
+		long next = 3;
+		for (int index = 0; index < GRID_SIZE; index++) {
+			ExecutionContext context = partitions.get(String.format("shard-%03d", index));
+			assertThat(context.getLong(PersonasIdRangePartitioner.MIN_ID)).isEqualTo(next);
+			next = context.getLong(PersonasIdRangePartitioner.MAX_ID) + 1;
+			assertThat(shard(context)).isEqualTo(PersonasIdRangePartitioner.shard(target, index));
+		}
+		assertThat(next).isEqualTo(41);
+		assertThat(old).doesNotExist();
+	}
+
+	@Test
+	void emptyTableStillGivesGridSizeEmptyPartitions() {
+		Map<String, ExecutionContext> partitions = partitioner.partition(GRID_SIZE);
+
+		assertThat(partitions).hasSize(GRID_SIZE).allSatisfy((name, context) -> assertThat(
+				context.getLong(PersonasIdRangePartitioner.MIN_ID)).isGreaterThan(context.getLong(PersonasIdRangePartitioner.MAX_ID)));
+		assertThat(partitioner.getPartitionNames(GRID_SIZE)).containsExactlyElementsOf(partitions.keySet());
+	}
+
+	@Test
+	void restartKeepsTheShardsOfCompletedPartitions() throws Exception {
+		insert(1, 40);
+		AtomicBoolean fail = new AtomicBoolean(true);
+		List<String> written = new ArrayList<>();
+		JobRepository repository = repository();
+		// Cada partición escribe sus ids en su fragmento; shard-002 falla la primera vez
+		Step worker = new StepBuilder("exportStep").repository(repository)
+				.transactionManager(new ResourcelessTransactionManager())
+				.tasklet((contribution, chunkContext) -> {
+					ExecutionContext context = chunkContext.getStepContext().getStepExecution().getExecutionContext();
+					String name = chunkContext.getStepContext().getStepName();
+					if (name.endsWith("shard-002") && fail.getAndSet(false))
+						throw new IllegalStateException("Fallo en " + name);
+					StringBuilder ids = new StringBuilder();
+					for (long id = context.getLong(PersonasIdRangePartitioner.MIN_ID); id <= context
+							.getLong(PersonasIdRangePartitioner.MAX_ID); id++)
+						ids.append(id).append('\n');
+					Files.write(shard(context), ids.toString().getBytes(StandardCharsets.UTF_8));
+					synchronized (written) {
+						written.add(name);
+					}
+					return RepeatStatus.FINISHED;
+				}).build();
+		Step manager = new StepBuilder("exportManagerStep").repository(repository)
+				.partitioner("exportStep", partitioner).step(worker).gridSize(GRID_SIZE).build();
+		ShardMergeTasklet merge = new ShardMergeTasklet();
+		merge.setTarget(new FileSystemResource(target.toFile()));
+		merge.afterPropertiesSet();
+		Step mergeStep = new StepBuilder("mergeStep").repository(repository)
+				.transactionManager(new ResourcelessTransactionManager()).tasklet(merge).build();
+		Job job = new JobBuilder("exportJob").repository(repository).start(manager).next(mergeStep).build();
+		SimpleJobLauncher launcher = new SimpleJobLauncher();
+		launcher.setJobRepository(repository);
+		launcher.afterPropertiesSet();
+		JobParameters parameters = new JobParametersBuilder().addLong("run.id", 1L).toJobParameters();
+
+		assertThat(launcher.run(job, parameters).getStatus()).isEqualTo(BatchStatus.FAILED);
+		assertThat(written).hasSize(GRID_SIZE - 1);
+		written.clear();
+		assertThat(launcher.run(job, parameters).getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+		// Solo se repite la partición fallida, sin volver a particionar ni borrar
+		assertThat(written).containsExactly("exportStep:shard-002");
+		assertThat(partitioned).hasValue(1);
+		List<String> lines = Files.readAllLines(target);
+		assertThat(lines).hasSize(40);
+		for (int id = 1; id <= 40; id++)
+			assertThat(lines.get(id - 1)).isEqualTo(String.valueOf(id));
+	}
+
+	private void insert(long from, long to) {
+		for (long id = from; id <= to; id++)
+			jdbcTemplate.update("INSERT INTO personas VALUES (?)", id);
+	}
+
+	private static Path shard(ExecutionContext context) {
+		return Paths.get(URI.create(context.getString(PersonasIdRangePartitioner.FILE_NAME)));
+	}
+
+	private static JobRepository repository() throws Exception {
+		MapJobRepositoryFactoryBean factory = new MapJobRepositoryFactoryBean(new ResourcelessTransactionManager());
+		factory.afterPropertiesSet();
+		return factory.getObject();
+	}
+}
@@ -0,0 +1,174 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.example.demo.model.PhotoDTO;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+@SpringBootTest(properties = { "spring.batch.job.enabled=false", "photos.enrichment.concurrency=3",
+		"photos.enrichment.timeout=1000" })
+class PhotoEnrichmentProcessorTests {
+	private static final long DELAY = 200;
+	private static final List<String> requested = new CopyOnWriteArrayList<>();
+	private static final AtomicInteger active = new AtomicInteger();
+	private static final AtomicInteger maxActive = new AtomicInteger();
+	private static final HttpServer server = stub();
+
+	@Autowired
+	private PhotoEnrichmentProcessor processor;
+
+	@DynamicPropertySource
+	static void photosUrl(DynamicPropertyRegistry registry) {
+		registry.add("photos.url", () -> "http://localhost:" + server.getAddress().getPort());
+	}
+
+	@AfterAll
+	static void stopServer() {
+		server.stop(0);
+	}
+
+	@BeforeEach
+	void reset() {
+		processor.clearCache();
+		requested.clear();
+		maxActive.set(0);
+	}
+
+	@Test
+	void chunkLookupsRunInParallelUpToConcurrency() throws Exception {
+		// Calienta el cliente HTTP y sus conexiones para que no cuenten en el tiempo
+		processChunk(asList("a", "b", "c"));
+		processor.clearCache();
+		requested.clear();
+		maxActive.set(0);
+		List<PhotoDTO> chunk = new ArrayList<>();
+		for (int i = 0; i < 9; i++)
+			chunk.add(photo(String.valueOf(i)));
+
+		long start = System.currentTimeMillis();
+		List<PhotoDTO> rslt = processChunk(chunk);
+		long elapsed = System.currentTimeMillis() - start;
+
+		assertThat(rslt).extracting(PhotoDTO::getAuthor).containsExactly("Autor 0", "Autor 1", "Autor 2", "Autor 3",
+				"Autor 4", "Autor 5", "Autor 6", "Autor 7", "Autor 8");
+		assertThat(requested).hasSize(9);
+		assertThat(maxActive).hasValue(3);
+		// Nueve consultas de DELAY ms de tres en tres, no una detrás de otra
+		assertThat(elapsed).isLessThan(6 * DELAY);
+	}
+
+	@Test
+	void repeatedIdsShareTheRequestAndLaterChunksUseTheCache() throws Exception {
+		long hits = processor.getHits();
+
+		List<PhotoDTO> first = processChunk(asList("10", "11", "10", "10"));
+		List<PhotoDTO> second = processChunk(asList("11", "10"));
+
+		assertThat(first).extracting(PhotoDTO::getAuthor).containsExactly("Autor 10", "Autor 11", "Autor 10",
+				"Autor 10");
+		assertThat(second).extracting(PhotoDTO::getAuthor).containsExactly("Autor 11", "Autor 10");
+		assertThat(requested).containsExactlyInAnyOrder("10", "11");
+		assertThat(processor.getHits() - hits).isEqualTo(2);
+		assertThat(processor.getCacheSize()).isEqualTo(2);
+	}
+
+	@Test
+	void slowLookupFailsTheItemAfterTimeout() throws Exception {
+		PhotoDTO slow = photo("slow");
+		processor.afterRead(slow);
+
+		assertThatThrownBy(() -> processor.process(slow)).isInstanceOf(ItemProcessorException.class)
+				.hasMessageContaining("slow");
+	}
+
+	@Test
+	void lookupsOfItemsNeverProcessedAreDroppedAtTheEndOfTheChunk() throws Exception {
+		List<PhotoDTO> chunk = asList("20", "21", "22");
+		for (PhotoDTO item : chunk)
+			processor.afterRead(item);
+		processor.process(chunk.get(0));
+		assertThat(processor.getPrefetched()).isEqualTo(2);
+
+		// Error a mitad del chunk: los otros dos no llegan a process()
+		processor.afterChunkError(null);
+		assertThat(processor.getPrefetched()).isZero();
+
+		processor.afterRead(photo("23"));
+		processor.afterChunk(null);
+		assertThat(processor.getPrefetched()).isZero();
+	}
+
+	private List<PhotoDTO> processChunk(List<PhotoDTO> chunk) throws Exception {
+		for (PhotoDTO item : chunk)
+			processor.afterRead(item);
+		List<PhotoDTO> rslt = new ArrayList<>();
+		for (PhotoDTO item : chunk)
+			rslt.add(processor.process(item));
+		return rslt;
+	}
+
+	private static List<PhotoDTO> asList(String... ids) {
+		List<PhotoDTO> rslt = new ArrayList<>();
+		for (String id : ids)
+			rslt.add(photo(id));
+		return rslt;
+	}
+
+	private static PhotoDTO photo(String id) {
+		return new PhotoDTO(id, null, null, null, 0, 0);
+	}
+
+	// Sustituto de picsum.photos: /id/{id}/info tarda DELAY ms (la foto "slow", mucho más)
+	private static HttpServer stub() {
+		try {
+			HttpServer rslt = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+			rslt.createContext("/id/", PhotoEnrichmentProcessorTests::info);
+			rslt.setExecutor(Executors.newCachedThreadPool());
+			rslt.start();
+			return rslt;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void info(HttpExchange exchange) throws IOException {
+		String id = exchange.getRequestURI().getPath().split("/")[2];
+		requested.add(id);
+		maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+		try {
+			Thread.sleep("slow".equals(id) ? 2000 : DELAY);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			active.decrementAndGet();
+		}
+		byte[] body = ("{\"id\":\"" + id + "\",\"author\":\"Autor " + id + "\",\"width\":640,\"height\":480,"
+				+ "\"url\":\"https://unsplash.com/photos/" + id + "\",\"download_url\":\"https://picsum.photos/id/"
+				+ id + "/640/480\"}").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
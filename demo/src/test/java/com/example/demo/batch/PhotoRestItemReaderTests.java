@@ -0,0 +1,143 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.example.demo.model.PhotoDTO;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+@SpringBootTest(properties = { "spring.batch.job.enabled=false", "photos.page-size=10", "photos.prefetch-pages=2" })
+class PhotoRestItemReaderTests {
+	private static final int PHOTOS = 95;
+	private static final List<Integer> requestedPages = new CopyOnWriteArrayList<>();
+	private static final HttpServer server = stub();
+
+	@Autowired
+	private PhotoRestItemReader reader;
+
+	@DynamicPropertySource
+	static void photosUrl(DynamicPropertyRegistry registry) {
+		registry.add("photos.url", () -> "http://localhost:" + server.getAddress().getPort());
+	}
+
+	@AfterAll
+	static void stopServer() {
+		server.stop(0);
+	}
+
+	@BeforeEach
+	void reset() {
+		requestedPages.clear();
+	}
+
+	@AfterEach
+	void close() {
+		reader.close();
+	}
+
+	@Test
+	void readsEveryPageInOrder() throws Exception {
+		reader.open(new ExecutionContext());
+
+		List<String> ids = readAll();
+
+		assertThat(ids).hasSize(PHOTOS);
+		for (int i = 0; i < PHOTOS; i++)
+			assertThat(ids.get(i)).isEqualTo(String.valueOf(i));
+		assertThat(requestedPages).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+	}
+
+	@Test
+	void prefetchIsBoundedByPrefetchPages() throws Exception {
+		reader.open(new ExecutionContext());
+		assertThat(reader.read().getId()).isEqualTo("0");
+		Thread.sleep(500);
+
+		// La página en curso y como mucho dos más por delante
+		assertThat(requestedPages).containsExactly(1, 2, 3);
+	}
+
+	@Test
+	void restartContinuesFromSavedPageAndOffset() throws Exception {
+		ExecutionContext context = new ExecutionContext();
+		reader.open(context);
+		for (int i = 0; i < 13; i++)
+			reader.read();
+		reader.update(context);
+		reader.close();
+		assertThat(context.getInt("photoRestItemReader.page")).isEqualTo(2);
+		assertThat(context.getInt("photoRestItemReader.offset")).isEqualTo(3);
+
+		requestedPages.clear();
+		reader.open(context);
+		List<String> ids = readAll();
+
+		assertThat(ids).hasSize(PHOTOS - 13);
+		assertThat(ids.get(0)).isEqualTo("13");
+		assertThat(requestedPages.get(0)).isEqualTo(2);
+	}
+
+	private List<String> readAll() throws Exception {
+		List<String> ids = new ArrayList<>();
+		for (PhotoDTO photo; (photo = reader.read()) != null;)
+			ids.add(photo.getId());
+		return ids;
+	}
+
+	// Sustituto de picsum.photos: /v2/list?page=N&limit=M sobre PHOTOS fotos
+	private static HttpServer stub() {
+		try {
+			HttpServer rslt = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+			rslt.createContext("/v2/list", PhotoRestItemReaderTests::list);
+			rslt.start();
+			return rslt;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void list(HttpExchange exchange) throws IOException {
+		Map<String, Integer> query = new HashMap<>();
+		for (String param : exchange.getRequestURI().getQuery().split("&")) {
+			String[] pair = param.split("=");
+			query.put(pair[0], Integer.valueOf(pair[1]));
+		}
+		int page = query.get("page");
+		int limit = query.get("limit");
+		requestedPages.add(page);
+		StringBuilder json = new StringBuilder("[");
+		for (int i = (page - 1) * limit; i < Math.min(page * limit, PHOTOS); i++) {
+			if (json.length() > 1)
+				json.append(',');
+			json.append("{\"id\":\"").append(i).append("\",\"author\":\"Autor ").append(i)
+					.append("\",\"width\":640,\"height\":480,\"url\":\"https://unsplash.com/photos/").append(i)
+					.append("\",\"download_url\":\"https://picsum.photos/id/").append(i).append("/640/480\"}");
+		}
+		byte[] body = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.listener.ItemListenerSupport;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.MapJobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+
+class PipelinedItemProcessorTests {
+	private static final int ITEMS = 100;
+	private static final int CHUNK = 10;
+	private static final int FAILING = 42;
+
+	private JobRepository repository;
+	private ExecutorService executor;
+	private final List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+	private final List<Integer> processErrors = Collections.synchronizedList(new ArrayList<>());
+	private final List<Object> writeErrors = Collections.synchronizedList(new ArrayList<>());
+	private final Set<String> processThreads = ConcurrentHashMap.newKeySet();
+	private final AtomicBoolean fail = new AtomicBoolean();
+
+	@BeforeEach
+	void setUp() throws Exception {
+		MapJobRepositoryFactoryBean factory = new MapJobRepositoryFactoryBean(new ResourcelessTransactionManager());
+		factory.afterPropertiesSet();
+		repository = factory.getObject();
+		executor = PipelinedItemProcessor.newExecutor(4);
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void keepsTheReadOrderAndCountsFilteredItemsAsFiltered() throws Exception {
+		StepExecution stepExecution = run(step(false, false));
+
+		assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		// Se procesan desordenados en varios hilos, pero se escriben en el orden de lectura
+		assertThat(processThreads.size()).isGreaterThan(1);
+		assertThat(written).containsExactlyElementsOf(expected(1, ITEMS));
+		assertThat(stepExecution.getReadCount()).isEqualTo(ITEMS);
+		assertThat(stepExecution.getFilterCount()).isEqualTo(ITEMS / 5);
+		assertThat(stepExecution.getWriteCount()).isEqualTo(ITEMS - ITEMS / 5);
+	}
+
+	@Test
+	void processorErrorsReachOnProcessErrorAndNotOnWriteError() throws Exception {
+		fail.set(true);
+
+		StepExecution stepExecution = run(step(false, false));
+
+		assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.FAILED);
+		assertThat(processErrors).containsExactly(FAILING);
+		assertThat(writeErrors).isEmpty();
+		// Nada del chunk que falló
+		assertThat(written).containsExactlyElementsOf(expected(1, 40));
+		assertThat(stepExecution.getWriteCount()).isEqualTo(32);
+		assertThat(stepExecution.getFilterCount()).isEqualTo(8);
+	}
+
+	@Test
+	void rolledBackChunkIsRetriedWithoutCountingItTwice() throws Exception {
+		fail.set(true);
+
+		StepExecution stepExecution = run(step(true, false));
+
+		assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		assertThat(processErrors).containsExactly(FAILING);
+		assertThat(stepExecution.getRollbackCount()).isEqualTo(1);
+		assertThat(written).containsExactlyElementsOf(expected(1, ITEMS));
+		// Los filtrados del chunk deshecho solo se cuentan al confirmarlo
+		assertThat(stepExecution.getFilterCount()).isEqualTo(ITEMS / 5);
+		assertThat(stepExecution.getWriteCount()).isEqualTo(ITEMS - ITEMS / 5);
+	}
+
+	@Test
+	void prefetchedItemsAfterTheFailedChunkAreReadAgainOnRestart() throws Exception {
+		fail.set(true);
+		SimpleStepBuilder<Integer, Future<Integer>> step = step(false, true);
+
+		assertThat(run(step).getStatus()).isEqualTo(BatchStatus.FAILED);
+		assertThat(written).containsExactlyElementsOf(expected(1, 40));
+		StepExecution restarted = run(step);
+
+		// El lector había leído más allá del chunk 41-50, pero se continúa tras el 40
+		assertThat(restarted.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		assertThat(restarted.getReadCount()).isEqualTo(ITEMS - 40);
+		assertThat(written).containsExactlyElementsOf(expected(1, ITEMS));
+	}
+
+	// Como importChunk con batch.pipeline.enabled
+	private SimpleStepBuilder<Integer, Future<Integer>> step(boolean retry, boolean prefetch) {
+		PipelinedItemProcessor<Integer, Integer> processor = new PipelinedItemProcessor<>();
+		processor.setExecutor(executor);
+		processor.setMaxInFlight(8);
+		processor.setDelegate(item -> {
+			processThreads.add(Thread.currentThread().getName());
+			Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+			if (item == FAILING && fail.getAndSet(false))
+				throw new IllegalStateException("Fallo al procesar " + item);
+			return item % 5 == 0 ? null : item;
+		});
+		ItemListenerSupport<Integer, Integer> listener = new ItemListenerSupport<Integer, Integer>() {
+			@Override
+			public void onProcessError(Integer item, Exception e) {
+				processErrors.add(item);
+			}
+
+			@Override
+			public void onWriteError(Exception ex, List<? extends Integer> items) {
+				writeErrors.add(items);
+			}
+		};
+		processor.setListeners(listener);
+		SimpleStepBuilder<Integer, Future<Integer>> builder = new StepBuilder("pipelineStep").repository(repository)
+				.transactionManager(new ResourcelessTransactionManager())
+				.<Integer, Future<Integer>>chunk(CHUNK)
+				.reader(prefetch ? new PrefetchingItemReader<>(reader(), 25) : reader())
+				.processor(processor)
+				.writer(new PipelinedItemWriter<Integer>(written::addAll));
+		builder.listener((ItemReadListener<Integer>) new PipelinedItemWriter.Listener<Integer, Integer>(listener));
+		if (retry)
+			return builder.faultTolerant().retry(IllegalStateException.class).retryLimit(2);
+		return builder;
+	}
+
+	private StepExecution run(SimpleStepBuilder<Integer, Future<Integer>> step) throws Exception {
+		SimpleJobLauncher launcher = new SimpleJobLauncher();
+		launcher.setJobRepository(repository);
+		launcher.afterPropertiesSet();
+		JobExecution execution = launcher.run(new JobBuilder("pipelineJob").repository(repository)
+				.start(step.build()).build(), new JobParametersBuilder().addLong("run.id", 1L).toJobParameters());
+		return execution.getStepExecutions().iterator().next();
+	}
+
+	private static AbstractItemCountingItemStreamItemReader<Integer> reader() {
+		AbstractItemCountingItemStreamItemReader<Integer> reader = new AbstractItemCountingItemStreamItemReader<Integer>() {
+			@Override
+			protected Integer doRead() {
+				int item = getCurrentItemCount();
+				return item > ITEMS ? null : item;
+			}
+
+			@Override
+			protected void doOpen() {
+			}
+
+			@Override
+			protected void doClose() {
+			}
+		};
+		reader.setName("reader");
+		return reader;
+	}
+
+	// Los no filtrados (múltiplos de 5) de from a to
+	private static List<Integer> expected(int from, int to) {
+		List<Integer> rslt = new ArrayList<>();
+		for (int item = from; item <= to; item++)
+			if (item % 5 != 0)
+				rslt.add(item);
+		return rslt;
+	}
+}
@@ -0,0 +1,244 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.support.MapJobExplorerFactoryBean;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.MapJobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+
+class RemotePartitionHandlerTests {
+	private static final int PARTITIONS = 6;
+	private static final String SECRET = "secreto";
+
+	private final Map<String, AtomicInteger> processed = new ConcurrentHashMap<>();
+	private final Set<String> failing = ConcurrentHashMap.newKeySet();
+	private final List<PartitionWorker> workers = new ArrayList<>();
+	private final List<PartitionTransport> transports = new ArrayList<>();
+	private JobRepository managerRepository;
+
+	@AfterEach
+	void tearDown() throws Exception {
+		for (PartitionTransport transport : transports)
+			transport.close();
+		workers.forEach(PartitionWorker::stop);
+	}
+
+	@Test
+	void inVmBrokerRunsEachPartitionOnceAndManagerKeepsTheResults() throws Exception {
+		InVmPartitionTransport broker = new InVmPartitionTransport();
+		worker(broker, "worker-1");
+		worker(broker, "worker-2");
+
+		JobExecution execution = run(broker, new JobParameters());
+
+		assertThat(execution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		assertThat(processed).hasSize(PARTITIONS).allSatisfy((key, count) -> assertThat(count).hasValue(1));
+		List<StepExecution> partitions = partitions(execution);
+		assertThat(partitions).hasSize(PARTITIONS).allSatisfy(partition -> {
+			assertThat(partition.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+			assertThat(partition.getReadCount()).isEqualTo(1);
+			assertThat(partition.getExecutionContext().getString("worker")).startsWith("partition-");
+		});
+		StepExecution manager = managerRepository.getLastStepExecution(execution.getJobInstance(), "managerStep");
+		assertThat(manager.getReadCount()).isEqualTo(PARTITIONS);
+	}
+
+	@Test
+	void socketTransportDistributesPartitionsToConnectedWorkers() throws Exception {
+		SocketPartitionTransport manager = SocketPartitionTransport.listen(null, 0, SECRET);
+		transports.add(manager);
+		for (int i = 1; i <= 2; i++) {
+			SocketPartitionTransport client = SocketPartitionTransport.connect("localhost", manager.getLocalPort(), SECRET);
+			transports.add(client);
+			worker(client, "worker-" + i);
+		}
+
+		JobExecution execution = run(manager, new JobParameters());
+
+		assertThat(execution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		assertThat(processed).hasSize(PARTITIONS).allSatisfy((key, count) -> assertThat(count).hasValue(1));
+		assertThat(partitions(execution)).extracting(StepExecution::getStatus).containsOnly(BatchStatus.COMPLETED);
+	}
+
+	@Test
+	void socketTransportOnlyServesWorkersWithTheSecret() throws Exception {
+		SocketPartitionTransport manager = SocketPartitionTransport.listen(null, 0, SECRET);
+		transports.add(manager);
+		assertThat(manager.getLocalAddress().isLoopbackAddress()).isTrue();
+		JobExecution jobExecution = new JobExecution(new JobInstance(1L, "remoteJob"), 1L, new JobParameters(), null);
+		StepExecution stepExecution = jobExecution.createStepExecution("workerStep:p0");
+		stepExecution.setId(1L);
+		manager.send(new PartitionRequest("workerStep", stepExecution));
+
+		SocketPartitionTransport intruder = SocketPartitionTransport.connect("localhost", manager.getLocalPort(), "otro");
+		transports.add(intruder);
+		assertThatThrownBy(intruder::receiveRequest).isInstanceOf(IOException.class)
+				.hasMessageContaining("Autenticación fallida");
+
+		SocketPartitionTransport worker = SocketPartitionTransport.connect("localhost", manager.getLocalPort(), SECRET);
+		transports.add(worker);
+		assertThat(worker.receiveRequest().getStepExecutionName()).isEqualTo("workerStep:p0");
+	}
+
+	@Test
+	void restartOnlySendsThePartitionsThatFailed() throws Exception {
+		InVmPartitionTransport broker = new InVmPartitionTransport();
+		worker(broker, "worker-1");
+		failing.add("p2");
+		JobParameters parameters = new JobParametersBuilder().addLong("run.id", 1L).toJobParameters();
+
+		JobExecution first = run(broker, parameters);
+
+		assertThat(first.getStatus()).isEqualTo(BatchStatus.FAILED);
+		assertThat(partitions(first)).filteredOn(partition -> partition.getStatus() == BatchStatus.FAILED)
+				.extracting(StepExecution::getStepName).containsExactly("workerStep:p2");
+		assertThat(processed).doesNotContainKey("p2");
+
+		JobExecution second = run(broker, parameters);
+
+		assertThat(second.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		assertThat(managerRepository.getLastStepExecution(second.getJobInstance(), "workerStep:p2").getStatus())
+				.isEqualTo(BatchStatus.COMPLETED);
+		assertThat(managerRepository.getStepExecutionCount(second.getJobInstance(), "workerStep:p2")).isEqualTo(2);
+		assertThat(processed).hasSize(PARTITIONS).allSatisfy((key, count) -> assertThat(count).hasValue(1));
+	}
+
+	@Test
+	void resentPartitionReusesItsWorkerJobInstance() throws Exception {
+		MapJobRepositoryFactoryBean factory = factory();
+		PartitionWorker worker = worker(new InVmPartitionTransport(), "worker-1", factory.getObject());
+		MapJobExplorerFactoryBean explorer = new MapJobExplorerFactoryBean(factory);
+		explorer.afterPropertiesSet();
+		failing.add("p1");
+
+		assertThat(worker.execute(request(7L, "p0")).getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		assertThat(worker.execute(request(7L, "p0")).getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		assertThat(worker.execute(request(7L, "p1")).getStatus()).isEqualTo(BatchStatus.FAILED);
+		assertThat(worker.execute(request(7L, "p1")).getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+		assertThat(processed).containsOnlyKeys("p0", "p1").allSatisfy((key, count) -> assertThat(count).hasValue(1));
+		assertThat(explorer.getObject().getJobInstanceCount("remoteJob.worker")).isEqualTo(2);
+		assertThat(worker.execute(request(8L, "p0")).getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		assertThat(processed.get("p0")).hasValue(2);
+	}
+
+	// Petición de la partición key de la ejecución jobExecutionId del manager
+	private static PartitionRequest request(long jobExecutionId, String key) {
+		JobExecution jobExecution = new JobExecution(new JobInstance(1L, "remoteJob"), jobExecutionId, new JobParameters(), null);
+		StepExecution stepExecution = jobExecution.createStepExecution("workerStep:" + key);
+		stepExecution.setId(jobExecutionId * 100 + key.hashCode());
+		stepExecution.getExecutionContext().putString("key", key);
+		return new PartitionRequest("workerStep", stepExecution);
+	}
+
+	private JobExecution run(PartitionTransport transport, JobParameters parameters) throws Exception {
+		if (managerRepository == null)
+			managerRepository = repository();
+		RemotePartitionHandler handler = new RemotePartitionHandler();
+		handler.setTransport(transport);
+		handler.setJobRepository(managerRepository);
+		handler.setStepName("workerStep");
+		handler.setTimeout(30000);
+		handler.setPollInterval(100);
+		handler.afterPropertiesSet();
+		Step managerStep = new StepBuilder("managerStep").repository(managerRepository)
+				.partitioner("workerStep", partitioner())
+				.partitionHandler(handler)
+				.build();
+		Job job = new JobBuilder("remoteJob").repository(managerRepository).start(managerStep).build();
+		SimpleJobLauncher launcher = new SimpleJobLauncher();
+		launcher.setJobRepository(managerRepository);
+		launcher.afterPropertiesSet();
+		return launcher.run(job, parameters);
+	}
+
+	private static Partitioner partitioner() {
+		return gridSize -> {
+			Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+			for (int i = 0; i < PARTITIONS; i++) {
+				ExecutionContext context = new ExecutionContext();
+				context.putString("key", "p" + i);
+				partitions.put("p" + i, context);
+			}
+			return partitions;
+		};
+	}
+
+	// Cada worker tiene su propio JobRepository, como si estuviera en otra JVM
+	private void worker(PartitionTransport transport, String name) throws Exception {
+		worker(transport, name, repository());
+	}
+
+	private PartitionWorker worker(PartitionTransport transport, String name, JobRepository repository) throws Exception {
+		Step step = new StepBuilder("workerStep").repository(repository)
+				.transactionManager(new ResourcelessTransactionManager())
+				.tasklet((contribution, chunkContext) -> {
+					ExecutionContext context = chunkContext.getStepContext().getStepExecution().getExecutionContext();
+					String key = context.getString("key");
+					if (failing.remove(key))
+						throw new IllegalStateException("Fallo forzado en " + key);
+					processed.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+					contribution.incrementReadCount();
+					context.putString("worker", Thread.currentThread().getName());
+					return RepeatStatus.FINISHED;
+				})
+				.build();
+		PartitionWorker worker = new PartitionWorker();
+		worker.setTransport(transport);
+		worker.setJobRepository(repository);
+		worker.setSteps(Collections.singletonList(step));
+		worker.setName(name);
+		worker.setThreads(2);
+		worker.setRetryInterval(100);
+		worker.afterPropertiesSet();
+		worker.start();
+		workers.add(worker);
+		return worker;
+	}
+
+	private List<StepExecution> partitions(JobExecution execution) {
+		List<StepExecution> rslt = new ArrayList<>();
+		for (StepExecution step : execution.getStepExecutions())
+			if (step.getStepName().startsWith("workerStep:"))
+				rslt.add(step);
+		return rslt;
+	}
+
+	private static JobRepository repository() throws Exception {
+		return factory().getObject();
+	}
+
+	private static MapJobRepositoryFactoryBean factory() throws Exception {
+		MapJobRepositoryFactoryBean factory = new MapJobRepositoryFactoryBean(new ResourcelessTransactionManager());
+		factory.afterPropertiesSet();
+		return factory;
+	}
+}
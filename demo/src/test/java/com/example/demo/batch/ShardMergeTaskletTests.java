@@ -0,0 +1,185 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.util.StreamUtils;
+
+class ShardMergeTaskletTests {
+	private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+	private static final int SHARDS = 3;
+
+	@TempDir
+	Path dir;
+
+	private ExecutorService executor;
+	private GzipBlockCompressor compressor;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		executor = Executors.newFixedThreadPool(4);
+		compressor = new GzipBlockCompressor();
+		compressor.setExecutor(executor);
+		// Bloques pequeños: cada fragmento tiene muchos miembros
+		compressor.setBlockSize(256);
+		compressor.setMaxPending(3);
+		compressor.afterPropertiesSet();
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void compressedOutputIsAValidMultiMemberGzip() throws Exception {
+		byte[] data = new byte[100_000];
+		Random random = new Random(7);
+		for (int i = 0; i < data.length; i++)
+			data[i] = (byte) ('a' + random.nextInt(4));
+		Path file = dir.resolve("datos.gz");
+
+		try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			GzipBlockCompressor.Channel gzip = compressor.channel(out);
+			// Escrituras que no coinciden con los bloques y un finish a mitad
+			for (int from = 0; from < data.length; from += 1000) {
+				gzip.write(ByteBuffer.wrap(data, from, Math.min(1000, data.length - from)));
+				if (from == 50_000)
+					gzip.finish();
+			}
+			gzip.close();
+		}
+
+		assertThat(gunzip(file)).isEqualTo(data);
+	}
+
+	@Test
+	void discardDropsWhatWasNotWrittenYet() throws Exception {
+		compressor.setMaxPending(100);
+		Path file = dir.resolve("datos.gz");
+
+		try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			GzipBlockCompressor.Channel gzip = compressor.channel(out);
+			gzip.write(utf8("confirmado;"));
+			gzip.finish();
+			gzip.write(utf8(repeat("deshecho;", 100)));
+			gzip.discard();
+			gzip.write(utf8("después"));
+			gzip.close();
+		}
+
+		assertThat(new String(gunzip(file), StandardCharsets.UTF_8)).isEqualTo("confirmado;después");
+	}
+
+	@Test
+	void mergesCompressedXmlShardsWithoutRepeatingTheRoot() throws Exception {
+		Path target = dir.resolve("outputData.xml.gz");
+		StringBuilder expected = new StringBuilder(DECLARATION + "<personas>");
+		for (int shard = 0; shard < SHARDS; shard++) {
+			String body = shard == 1 ? "" : persons(shard);
+			expected.append(body);
+			// Como PersonaXmlItemWriter: la apertura y el cierre de la raíz en miembros propios
+			writeShard(target, shard, DECLARATION + "<personas>", body, "</personas>");
+		}
+		expected.append("</personas>");
+
+		merge(target, "personas");
+
+		assertThat(new String(gunzip(target), StandardCharsets.UTF_8)).isEqualTo(expected.toString());
+		assertThat(PersonasIdRangePartitioner.shards(target)).isEmpty();
+	}
+
+	@Test
+	void concatenatesCompressedCsvShards() throws Exception {
+		Path target = dir.resolve("outputData.csv.gz");
+		StringBuilder expected = new StringBuilder();
+		for (int shard = 0; shard < SHARDS; shard++) {
+			String body = persons(shard).replace("<persona>", "").replace("</persona>", "\n");
+			expected.append(body);
+			writeShard(target, shard, "", body, "");
+		}
+
+		merge(target, null);
+
+		assertThat(new String(gunzip(target), StandardCharsets.UTF_8)).isEqualTo(expected.toString());
+	}
+
+	@Test
+	void mergesPlainXmlShards() throws Exception {
+		Path target = dir.resolve("outputData.xml");
+		for (int shard = 0; shard < SHARDS; shard++)
+			Files.write(PersonasIdRangePartitioner.shard(target, shard),
+					utf8(DECLARATION + "\n<personas>\n" + persons(shard) + "\n</personas>\n").array());
+
+		merge(target, "personas");
+
+		// Se copia todo lo que hay entre las etiquetas de la raíz, saltos de línea incluidos
+		assertThat(new String(Files.readAllBytes(target), StandardCharsets.UTF_8)).isEqualTo(DECLARATION
+				+ "\n<personas>\n" + persons(0) + "\n\n" + persons(1) + "\n\n" + persons(2) + "\n</personas>\n");
+	}
+
+	private void writeShard(Path target, int shard, String head, String body, String tail) throws IOException {
+		try (FileChannel out = FileChannel.open(PersonasIdRangePartitioner.shard(target, shard),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			GzipBlockCompressor.Channel gzip = compressor.channel(out);
+			for (String part : new String[] { head, body, tail }) {
+				gzip.write(utf8(part));
+				gzip.finish();
+			}
+			gzip.close();
+		}
+	}
+
+	private static void merge(Path target, String rootTagName) throws Exception {
+		ShardMergeTasklet tasklet = new ShardMergeTasklet();
+		tasklet.setTarget(new FileSystemResource(target.toFile()));
+		tasklet.setRootTagName(rootTagName);
+		tasklet.afterPropertiesSet();
+		tasklet.execute(null, null);
+	}
+
+	private static String persons(int shard) {
+		StringBuilder rslt = new StringBuilder();
+		for (int id = shard * 100; id < shard * 100 + 60; id++)
+			rslt.append("<persona><id>").append(id).append("</id><nombre>Persona ").append(id)
+					.append("</nombre></persona>");
+		return rslt.toString();
+	}
+
+	private static byte[] gunzip(Path file) throws IOException {
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			StreamUtils.copy(in, out);
+			return out.toByteArray();
+		}
+	}
+
+	private static ByteBuffer utf8(String text) {
+		return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String repeat(String text, int times) {
+		StringBuilder rslt = new StringBuilder();
+		for (int i = 0; i < times; i++)
+			rslt.append(text);
+		return rslt.toString();
+	}
+}
@@ -0,0 +1,179 @@
+package com.example.demo.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.MapJobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.FaultTolerantStepBuilder;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.retry.RetryListener;
+import org.springframework.util.StreamUtils;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+
+class StepMetricsListenerTests {
+	private static final int ITEMS = 20;
+	private static final String JOB = "metricsJob";
+	private static final String STEP = "metricsStep";
+
+	private PrometheusMeterRegistry registry;
+	private PrometheusEndpoint endpoint;
+	private JobRepository repository;
+	private final AtomicBoolean failWrite = new AtomicBoolean(true);
+
+	@BeforeEach
+	void setUp() throws Exception {
+		registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+		endpoint = new PrometheusEndpoint();
+		endpoint.setMeterRegistry(registry);
+		endpoint.setPort(0);
+		endpoint.afterPropertiesSet();
+		endpoint.start();
+		MapJobRepositoryFactoryBean factory = new MapJobRepositoryFactoryBean(new ResourcelessTransactionManager());
+		factory.afterPropertiesSet();
+		repository = factory.getObject();
+	}
+
+	@AfterEach
+	void tearDown() {
+		endpoint.stop();
+	}
+
+	@Test
+	void stepCountersErrorsAndPhaseTimersAppearInTheScrape() throws Exception {
+		StepExecution stepExecution = run();
+		assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+		String scrape = scrape();
+
+		// Contadores del paso, los mismos que la StepExecution
+		assertThat(value(scrape, "batch_step_items_total", "type=\"read\"")).isEqualTo(ITEMS);
+		assertThat(value(scrape, "batch_step_items_total", "type=\"write\"")).isEqualTo(stepExecution.getWriteCount());
+		assertThat(value(scrape, "batch_step_items_total", "type=\"filter\"")).isEqualTo(stepExecution.getFilterCount());
+		assertThat(value(scrape, "batch_step_commits_total")).isEqualTo(stepExecution.getCommitCount());
+		// Por motivo solo cuentan los que el procesador devolvió a null: el 7 y el 14
+		assertThat(value(scrape, "batch_step_filtered_total", "reason=\"multiplo7\"")).isEqualTo(2);
+		assertThat(value(scrape, "batch_step_chunk_size_items_count")).isPositive();
+		assertThat(scrape).contains("batch_step_throughput_items_s{job=\"" + JOB + "\",step=\"" + STEP + "\",}");
+		// Errores: omitidos por fase, reintentos por excepción y rollbacks
+		assertThat(value(scrape, "batch_step_skips_total", "phase=\"process\"")).isEqualTo(1);
+		assertThat(value(scrape, "batch_step_skips_total", "phase=\"write\"")).isEqualTo(1);
+		assertThat(value(scrape, "batch_step_retries_total", "exception=\"IllegalStateException\"")).isEqualTo(1);
+		assertThat(value(scrape, "batch_step_rollbacks_total")).isEqualTo(stepExecution.getRollbackCount())
+				.isGreaterThanOrEqualTo(2);
+		// Tiempos por fase de Spring Batch, llegados por Metrics.globalRegistry
+		for (String phase : Arrays.asList("spring_batch_item_read_seconds_count",
+				"spring_batch_item_process_seconds_count", "spring_batch_chunk_write_seconds_count"))
+			assertThat(value(scrape, phase, "step_name=\"" + STEP + "\"", "status=\"SUCCESS\"")).as(phase).isPositive();
+		assertThat(value(scrape, "spring_batch_item_process_seconds_count", "step_name=\"" + STEP + "\"",
+				"status=\"FAILURE\"")).isEqualTo(1);
+		assertThat(value(scrape, "spring_batch_chunk_write_seconds_count", "step_name=\"" + STEP + "\"",
+				"status=\"FAILURE\"")).isPositive();
+	}
+
+	// Como instrumented() en PersonasBatchConfiguration, sobre un paso tolerante a fallos:
+	// filtra los múltiplos de 7, omite el 9 al procesar y el 17 al escribir, y reintenta
+	// una vez el chunk del 13
+	private StepExecution run() throws Exception {
+		StepMetricsListener metrics = new StepMetricsListener();
+		metrics.setMeterRegistry(registry);
+		metrics.setFilterReasons(item -> "multiplo7");
+		metrics.afterPropertiesSet();
+		FaultTolerantStepBuilder<Integer, Integer> builder = new StepBuilder(STEP).repository(repository)
+				.transactionManager(new ResourcelessTransactionManager())
+				.<Integer, Integer>chunk(5)
+				.reader(reader())
+				.processor((ItemProcessor<Integer, Integer>) item -> {
+					if (item == 9)
+						throw new IllegalArgumentException("No se puede procesar " + item);
+					return item % 7 == 0 ? null : item;
+				})
+				.writer(items -> {
+					if (items.contains(13) && failWrite.getAndSet(false))
+						throw new IllegalStateException("Fallo transitorio");
+					if (items.contains(17))
+						throw new IllegalArgumentException("No se puede escribir 17");
+				})
+				.faultTolerant()
+				.retry(IllegalStateException.class).retryLimit(2)
+				.skip(IllegalArgumentException.class).skipLimit(5);
+		builder.listener((StepExecutionListener) metrics);
+		builder.listener((ChunkListener) metrics);
+		builder.listener((RetryListener) metrics);
+
+		SimpleJobLauncher launcher = new SimpleJobLauncher();
+		launcher.setJobRepository(repository);
+		launcher.afterPropertiesSet();
+		JobExecution execution = launcher.run(new JobBuilder(JOB).repository(repository).start(builder.build()).build(),
+				new JobParametersBuilder().addLong("run.id", 1L).toJobParameters());
+		return execution.getStepExecutions().iterator().next();
+	}
+
+	private String scrape() throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(
+				"http://localhost:" + endpoint.getPort() + "/metrics").openConnection();
+		assertThat(connection.getResponseCode()).isEqualTo(200);
+		assertThat(connection.getContentType()).startsWith("text/plain; version=0.0.4");
+		try (InputStream in = connection.getInputStream()) {
+			return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+		}
+	}
+
+	// Valor de la serie name de este paso que tiene todas las etiquetas indicadas
+	private static double value(String scrape, String name, String... labels) {
+		List<String> wanted = Arrays.asList(labels);
+		for (String line : scrape.split("\n")) {
+			if (!line.startsWith(name + "{"))
+				continue;
+			String series = line.substring(0, line.lastIndexOf('}') + 1);
+			boolean step = series.contains("step=\"" + STEP + "\"") || series.contains("step_name=\"" + STEP + "\"");
+			if (step && wanted.stream().allMatch(series::contains))
+				return Double.parseDouble(line.substring(series.length()).trim());
+		}
+		throw new AssertionError("No está " + name + " " + wanted + " en:\n" + scrape);
+	}
+
+	private static AbstractItemCountingItemStreamItemReader<Integer> reader() {
+		AbstractItemCountingItemStreamItemReader<Integer> reader = new AbstractItemCountingItemStreamItemReader<Integer>() {
+			@Override
+			protected Integer doRead() {
+				int item = getCurrentItemCount();
+				return item > ITEMS ? null : item;
+			}
+
+			@Override
+			protected void doOpen() {
+			}
+
+			@Override
+			protected void doClose() {
+			}
+		};
+		reader.setName("reader");
+		return reader;
+	}
+}
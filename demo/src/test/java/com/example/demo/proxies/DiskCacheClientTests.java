@@ -0,0 +1,184 @@
+package com.example.demo.proxies;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import feign.Client;
+import feign.Request;
+import feign.Request.HttpMethod;
+import feign.Response;
+import feign.Util;
+
+class DiskCacheClientTests {
+	private static final String LAST_MODIFIED = "Wed, 21 Oct 2026 07:28:00 GMT";
+
+	@TempDir
+	Path dir;
+
+	private HttpServer server;
+	private DiskCache cache;
+	// Lo que ha recibido el servidor: "GET", "If-None-Match: ..." o "If-Modified-Since: ..."
+	private final List<String> received = new CopyOnWriteArrayList<>();
+	private volatile String body = "[1]";
+	private volatile String etag = "\"v1\"";
+
+	@BeforeEach
+	void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/etag", exchange -> {
+			String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+			received.add(ifNoneMatch == null ? "GET" : "If-None-Match: " + ifNoneMatch);
+			if (etag.equals(ifNoneMatch))
+				respond(exchange, 304, null);
+			else {
+				exchange.getResponseHeaders().add("ETag", etag);
+				respond(exchange, 200, body);
+			}
+		});
+		server.createContext("/fecha", exchange -> {
+			String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+			received.add(ifModifiedSince == null ? "GET" : "If-Modified-Since: " + ifModifiedSince);
+			if (LAST_MODIFIED.equals(ifModifiedSince))
+				respond(exchange, 304, null);
+			else {
+				exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+				respond(exchange, 200, body);
+			}
+		});
+		server.start();
+		cache = new DiskCache(dir.toFile(), 1 << 20);
+	}
+
+	@AfterEach
+	void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	void freshEntriesAreServedWithoutGoingToTheServer() throws Exception {
+		Client client = client(60_000);
+
+		assertThat(get(client, "/etag")).isEqualTo("[1]");
+		body = "[2]";
+
+		assertThat(get(client, "/etag")).isEqualTo("[1]");
+		assertThat(received).containsExactly("GET");
+	}
+
+	@Test
+	void staleEntryIsRevalidatedWithIfNoneMatchAndA304ServesTheCachedBody() throws Exception {
+		Client client = client(0);
+		assertThat(get(client, "/etag")).isEqualTo("[1]");
+		String key = cache.key(url("/etag"));
+		long validated = validated(key);
+		Thread.sleep(5);
+
+		Response response = execute(client, "/etag");
+
+		assertThat(received).containsExactly("GET", "If-None-Match: \"v1\"");
+		assertThat(response.status()).isEqualTo(200);
+		assertThat(response.headers().get(DiskCacheClient.CACHE_HEADER)).containsExactly(key);
+		assertThat(response.headers().get("ETag")).containsExactly("\"v1\"");
+		assertThat(read(response)).isEqualTo("[1]");
+		// El 304 renueva la validación
+		assertThat(validated(key)).isGreaterThan(validated);
+	}
+
+	@Test
+	void staleEntryIsRevalidatedWithIfModifiedSince() throws Exception {
+		Client client = client(0);
+		assertThat(get(client, "/fecha")).isEqualTo("[1]");
+
+		assertThat(get(client, "/fecha")).isEqualTo("[1]");
+		assertThat(received).containsExactly("GET", "If-Modified-Since: " + LAST_MODIFIED);
+	}
+
+	@Test
+	void changedResourceReplacesTheCachedBody() throws Exception {
+		Client client = client(0);
+		assertThat(get(client, "/etag")).isEqualTo("[1]");
+		body = "[1,2]";
+		etag = "\"v2\"";
+
+		assertThat(get(client, "/etag")).isEqualTo("[1,2]");
+		assertThat(get(client, "/etag")).isEqualTo("[1,2]");
+		assertThat(received).containsExactly("GET", "If-None-Match: \"v1\"", "If-None-Match: \"v2\"");
+	}
+
+	@Test
+	void entryKeepsReadingTheBodyItFoundWhenAnotherThreadReplacesOrRemovesIt() throws Exception {
+		String key = cache.key("http://fotos/1");
+		cache.put(key, "http://fotos/1", "\"v1\"", null, "application/json", bytes("[\"uno\"]"));
+		DiskCache.Entry replaced = cache.get(key);
+		cache.put(key, "http://fotos/1", "\"v2\"", null, "application/json", bytes("[\"dos\",\"tres\"]"));
+		DiskCache.Entry removed = cache.get(key);
+		cache.remove(key);
+
+		assertThat(cache.get(key)).isNull();
+		try (InputStream in = replaced.openBody()) {
+			assertThat(new String(Util.toByteArray(in), StandardCharsets.UTF_8)).isEqualTo("[\"uno\"]");
+		}
+		try (InputStream in = removed.openBody()) {
+			assertThat(new String(Util.toByteArray(in), StandardCharsets.UTF_8)).isEqualTo("[\"dos\",\"tres\"]");
+		}
+	}
+
+	private DiskCacheClient client(long maxAge) {
+		return new DiskCacheClient(new Client.Default(null, null), cache, maxAge);
+	}
+
+	private String get(Client client, String path) throws IOException {
+		return read(execute(client, path));
+	}
+
+	private Response execute(Client client, String path) throws IOException {
+		return client.execute(Request.create(HttpMethod.GET, url(path), Collections.emptyMap(), null,
+				StandardCharsets.UTF_8, null), new Request.Options());
+	}
+
+	private String url(String path) {
+		return "http://localhost:" + server.getAddress().getPort() + path;
+	}
+
+	private long validated(String key) throws IOException {
+		try (DiskCache.Entry entry = cache.get(key)) {
+			return entry.getValidated();
+		}
+	}
+
+	private static String read(Response response) throws IOException {
+		try (InputStream in = response.body().asInputStream()) {
+			return new String(Util.toByteArray(in), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body == null ? new byte[0] : bytes(body);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, body == null ? -1 : bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}